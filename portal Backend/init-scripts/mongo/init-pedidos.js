@@ -16,6 +16,35 @@ db.orders.createIndex({ "items.productId": 1 });
 db.orders.createIndex({ "status": 1, "dateCreated": -1 });
 db.orders.createIndex({ "restaurant.restaurantId": 1, "status": 1 });
 
+// Paginación por cursor (keyset) de listados por restaurante y por usuario
+db.orders.createIndex({ "restaurant.restaurantId": 1, "dateCreated": -1, "_id": -1 });
+db.orders.createIndex({ "userId": 1, "dateCreated": -1, "_id": -1 });
+
+// Outbox embebido: el relay sólo recorre pedidos con mensajes pendientes
+db.orders.createIndex({ "outbox.nextAttemptAt": 1 }, { sparse: true });
+
+// Idempotency-Key de POST /orders/new: el _id (usuario + clave) es único; se borran a las 24 h
+db.createCollection('idempotency_keys');
+db.idempotency_keys.createIndex({ "createdAt": 1 }, { expireAfterSeconds: 86400 });
+
+// Rollups diarios de ventas (_id = restaurantId:yyyy-MM-dd) y aporte de cada pedido (_id = id del pedido)
+db.createCollection('daily_sales');
+db.daily_sales.createIndex({ "restaurantId": 1, "fecha": 1 });
+db.createCollection('ventas_aportes');
+// Aportes cuya diferencia todavía no se aplicó: los busca la reconciliación
+db.ventas_aportes.createIndex({ "pendiente": 1 }, { partialFilterExpression: { "pendiente": true } });
+// Lease del backfill de ventas, para que lo corra una sola réplica
+db.createCollection('tareas');
+
+// Archivo frío: bloques gzip de pedidos viejos por restaurante y mes (la retención archiva en lugar de borrar)
+db.createCollection('orders_archive');
+db.orders_archive.createIndex({ "restaurantId": 1, "mes": 1, "desde": 1 });
+
+// Resume tokens del change stream: orders-notificaciones (con el lease de la réplica que publica) y uno
+// orders-local:<réplica> por réplica; los de réplicas que no vuelven vencen por "caduca"
+db.createCollection('change_stream_tokens');
+db.change_stream_tokens.createIndex({ "caduca": 1 }, { expireAfterSeconds: 0, sparse: true });
+
 // Validación de esquema (opcional, pero recomendado)
 db.runCommand({
     collMod: "orders",
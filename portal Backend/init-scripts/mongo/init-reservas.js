@@ -24,6 +24,13 @@ db.reservations.createIndex({ "isActive": 1, "dateCreated": -1 });
 db.reservations.createIndex({ "hotel.hotelId": 1, "stayPeriod.checkInDate": 1 });
 db.reservations.createIndex({ "payment.isPaid": 1, "payment.hasPendingAmount": 1 });
 
+// Libro de ocupación: una entrada por habitación y noche; el índice único impide la doble reserva.
+// Las retenciones de reservas online (expiraEn) vencen solas por TTL
+db.createCollection('ocupacion_noches');
+db.ocupacion_noches.createIndex({ "hotelId": 1, "roomNumber": 1, "noche": 1 }, { unique: true, name: "hotel_habitacion_noche" });
+db.ocupacion_noches.createIndex({ "expiraEn": 1 }, { expireAfterSeconds: 0 });
+db.ocupacion_noches.createIndex({ "reservaId": 1 });
+
 // Validación de esquema (opcional, pero recomendado)
 db.runCommand({
     collMod: "reservations",
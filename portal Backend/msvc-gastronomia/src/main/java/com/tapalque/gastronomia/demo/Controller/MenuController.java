@@ -19,6 +19,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.tapalque.gastronomia.demo.DTO.DishCategoryDTO;
 import com.tapalque.gastronomia.demo.DTO.DishDTO;
 import com.tapalque.gastronomia.demo.DTO.DishRestrictionDTO;
+import com.tapalque.gastronomia.demo.DTO.DishSnapshotDTO;
 import com.tapalque.gastronomia.demo.DTO.MenuDTO;
 import com.tapalque.gastronomia.demo.Service.MenuServiceInterface;
 
@@ -27,6 +28,8 @@ import com.tapalque.gastronomia.demo.Service.MenuServiceInterface;
 @RequestMapping("gastronomia/menu")
 public class MenuController {
 
+    private static final int MAX_DISH_BATCH = 200;
+
     private final MenuServiceInterface menuService;
 
     public MenuController(MenuServiceInterface menuService) {
@@ -126,6 +129,23 @@ public class MenuController {
         }
     }
 
+    /**
+     * Resuelve varios platos en una sola llamada (usado por msvc-pedidos al crear pedidos).
+     * GET /gastronomia/menu/dishes?ids=1,2,3
+     */
+    @GetMapping("/dishes")
+    public ResponseEntity<List<DishSnapshotDTO>> getDishesByIds(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_DISH_BATCH) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(menuService.getDishSnapshots(ids));
+        } catch (Exception e) {
+            System.err.println("Error fetching dishes " + ids + ": " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @PostMapping("/restaurant/{restaurantId}/dish")
     public ResponseEntity<DishDTO> createDish(
             @PathVariable Long restaurantId,
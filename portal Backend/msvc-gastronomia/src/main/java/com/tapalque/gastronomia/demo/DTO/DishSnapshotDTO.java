@@ -0,0 +1,35 @@
+package com.tapalque.gastronomia.demo.DTO;
+
+/**
+ * Vista mínima de un plato (id, nombre, precio y disponibilidad) usada por
+ * msvc-pedidos para validar precios al crear un pedido.
+ */
+public class DishSnapshotDTO {
+
+    private Long idDish;
+    private String name;
+    private Double price;
+    private Boolean available;
+
+    public DishSnapshotDTO() {}
+
+    public DishSnapshotDTO(Long idDish, String name, Double price, Boolean available) {
+        this.idDish = idDish;
+        this.name = name;
+        this.price = price;
+        this.available = available != null ? available : true;
+    }
+
+    // Getters y Setters
+    public Long getIdDish() { return idDish; }
+    public void setIdDish(Long idDish) { this.idDish = idDish; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Double getPrice() { return price; }
+    public void setPrice(Double price) { this.price = price; }
+
+    public Boolean getAvailable() { return available; }
+    public void setAvailable(Boolean available) { this.available = available; }
+}
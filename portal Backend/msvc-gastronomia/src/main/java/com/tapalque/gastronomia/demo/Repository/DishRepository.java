@@ -1,11 +1,14 @@
 package com.tapalque.gastronomia.demo.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import com.tapalque.gastronomia.demo.DTO.DishSnapshotDTO;
 import com.tapalque.gastronomia.demo.Entity.Dish;
 
 @Repository
@@ -25,4 +28,12 @@ public interface DishRepository extends JpaRepository<Dish, Long> {
      * Elimina todos los platos de un menú
      */
     void deleteByMenu_IdMenu(Long menuId);
+
+    /**
+     * Proyección liviana de varios platos en una sola consulta (sin cargar
+     * categorías, ingredientes ni restricciones)
+     */
+    @Query("SELECT new com.tapalque.gastronomia.demo.DTO.DishSnapshotDTO(d.idDish, d.name, d.price, d.available) "
+            + "FROM Dish d WHERE d.idDish IN :ids")
+    List<DishSnapshotDTO> findSnapshotsByIdDishIn(Collection<Long> ids);
 }
@@ -13,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 import com.tapalque.gastronomia.demo.DTO.DishCategoryDTO;
 import com.tapalque.gastronomia.demo.DTO.DishDTO;
 import com.tapalque.gastronomia.demo.DTO.DishRestrictionDTO;
+import com.tapalque.gastronomia.demo.DTO.DishSnapshotDTO;
 import com.tapalque.gastronomia.demo.DTO.MenuDTO;
 import com.tapalque.gastronomia.demo.Entity.Dish;
 import com.tapalque.gastronomia.demo.Entity.DishCategory;
@@ -369,4 +370,12 @@ public class MenuService implements MenuServiceInterface {
             .orElseThrow(() -> new IllegalArgumentException("Plato no encontrado con ID: " + dishId));
         return DishDTO.fromEntity(dish);
     }
+
+    @Override
+    public List<DishSnapshotDTO> getDishSnapshots(List<Long> dishIds) {
+        if (dishIds == null || dishIds.isEmpty()) {
+            return List.of();
+        }
+        return dishRepository.findSnapshotsByIdDishIn(dishIds.stream().distinct().toList());
+    }
 }
@@ -5,6 +5,7 @@ import java.util.List;
 import com.tapalque.gastronomia.demo.DTO.DishCategoryDTO;
 import com.tapalque.gastronomia.demo.DTO.DishDTO;
 import com.tapalque.gastronomia.demo.DTO.DishRestrictionDTO;
+import com.tapalque.gastronomia.demo.DTO.DishSnapshotDTO;
 import com.tapalque.gastronomia.demo.DTO.MenuDTO;
 
 public interface MenuServiceInterface {
@@ -27,4 +28,6 @@ public interface MenuServiceInterface {
     DishDTO updateDishAvailability(Long dishId, Boolean available);
 
     DishDTO getDishById(Long dishId);
+
+    List<DishSnapshotDTO> getDishSnapshots(List<Long> dishIds);
 }
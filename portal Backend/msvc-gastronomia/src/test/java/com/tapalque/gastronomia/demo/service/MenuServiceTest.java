@@ -1,8 +1,10 @@
 package com.tapalque.gastronomia.demo.service;
 
+import com.tapalque.gastronomia.demo.DTO.DishSnapshotDTO;
 import com.tapalque.gastronomia.demo.DTO.MenuDTO;
 import com.tapalque.gastronomia.demo.Entity.Menu;
 import com.tapalque.gastronomia.demo.Entity.Restaurant;
+import com.tapalque.gastronomia.demo.Repository.DishRepository;
 import com.tapalque.gastronomia.demo.Repository.MenuRepositoryInterface;
 import com.tapalque.gastronomia.demo.Service.MenuService;
 
@@ -16,6 +18,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,6 +31,9 @@ class MenuServiceTest {
     @Mock
     private MenuRepositoryInterface menuRepository;
 
+    @Mock
+    private DishRepository dishRepository;
+
     @InjectMocks
     private MenuService menuService;
 
@@ -120,4 +126,34 @@ class MenuServiceTest {
             assertTrue(result.getDishes().isEmpty());
         }
     }
+
+    @Nested
+    @DisplayName("Tests de getDishSnapshots")
+    class GetDishSnapshotsTests {
+
+        @Test
+        @DisplayName("Debe resolver varios platos en una sola consulta sin ids repetidos")
+        void getDishSnapshots_ConIdsRepetidos_ConsultaUnaVez() {
+            // Given
+            when(dishRepository.findSnapshotsByIdDishIn(List.of(1L, 2L)))
+                    .thenReturn(List.of(
+                            new DishSnapshotDTO(1L, "Pizza", 1500.0, true),
+                            new DishSnapshotDTO(2L, "Empanada", 300.0, null)));
+
+            // When
+            List<DishSnapshotDTO> result = menuService.getDishSnapshots(List.of(1L, 2L, 1L));
+
+            // Then
+            assertEquals(2, result.size());
+            assertTrue(result.get(1).getAvailable());
+            verify(dishRepository, times(1)).findSnapshotsByIdDishIn(List.of(1L, 2L));
+        }
+
+        @Test
+        @DisplayName("Debe retornar lista vacía sin consultar cuando no hay ids")
+        void getDishSnapshots_SinIds_RetornaListaVacia() {
+            assertTrue(menuService.getDishSnapshots(List.of()).isEmpty());
+            verifyNoInteractions(dishRepository);
+        }
+    }
 }
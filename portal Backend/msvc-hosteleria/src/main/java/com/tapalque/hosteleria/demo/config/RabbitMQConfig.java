@@ -0,0 +1,24 @@
+package com.tapalque.hosteleria.demo.config;
+
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RabbitMQConfig {
+
+    // Cambios de habitaciones: cada réplica de msvc-reservas invalida su cache al recibirlos
+    public static final String EXCHANGE_CATALOGO = "hospedajes.catalogo";
+
+    @Bean
+    public FanoutExchange catalogoExchange() {
+        return new FanoutExchange(EXCHANGE_CATALOGO);
+    }
+
+    @Bean
+    public MessageConverter jsonMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+}
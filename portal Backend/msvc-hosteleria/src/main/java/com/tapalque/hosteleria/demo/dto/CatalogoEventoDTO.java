@@ -0,0 +1,29 @@
+package com.tapalque.hosteleria.demo.dto;
+
+import java.io.Serializable;
+
+/**
+ * Aviso a msvc-reservas de que cambiaron las habitaciones de un hospedaje
+ * (mismo formato que CatalogoEventoDTO de msvc-reservas).
+ */
+public class CatalogoEventoDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String HABITACIONES = "HABITACIONES";
+
+    private String tipo;
+    private String hospedajeId;
+
+    public CatalogoEventoDTO() {}
+
+    public CatalogoEventoDTO(String tipo, String hospedajeId) {
+        this.tipo = tipo;
+        this.hospedajeId = hospedajeId;
+    }
+
+    public String getTipo() { return tipo; }
+    public void setTipo(String tipo) { this.tipo = tipo; }
+
+    public String getHospedajeId() { return hospedajeId; }
+    public void setHospedajeId(String hospedajeId) { this.hospedajeId = hospedajeId; }
+}
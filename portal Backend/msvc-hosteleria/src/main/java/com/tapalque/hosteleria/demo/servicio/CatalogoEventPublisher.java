@@ -0,0 +1,37 @@
+package com.tapalque.hosteleria.demo.servicio;
+
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.tapalque.hosteleria.demo.config.RabbitMQConfig;
+import com.tapalque.hosteleria.demo.dto.CatalogoEventoDTO;
+
+/**
+ * Publica en hospedajes.catalogo los cambios de habitaciones, una vez confirmada la transacción:
+ * si se avisara antes, msvc-reservas podría volver a cachear los datos viejos.
+ */
+@Component
+public class CatalogoEventPublisher {
+
+    /** Evento interno que publica HabitacionService en cada alta, cambio o baja. */
+    public record HabitacionesCambiadas(Long hospedajeId) {}
+
+    private final RabbitTemplate rabbitTemplate;
+
+    public CatalogoEventPublisher(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void habitacionesCambiadas(HabitacionesCambiadas evento) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_CATALOGO, "",
+                    new CatalogoEventoDTO(CatalogoEventoDTO.HABITACIONES, String.valueOf(evento.hospedajeId())));
+        } catch (Exception e) {
+            // msvc-reservas igual refresca su cache por tiempo
+            System.err.println("No se pudo avisar el cambio de habitaciones del hospedaje " + evento.hospedajeId() + ": " + e.getMessage());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.util.stream.Collectors;
 
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 
@@ -26,10 +27,13 @@ public class HabitacionService {
 
     private final HabitacionRepository habitacionRepository;
     private final HospedajeRepository hospedajeRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public HabitacionService(HabitacionRepository habitacionRepository, HospedajeRepository hospedajeRepository) {
+    public HabitacionService(HabitacionRepository habitacionRepository, HospedajeRepository hospedajeRepository,
+                             ApplicationEventPublisher eventPublisher) {
         this.habitacionRepository = habitacionRepository;
         this.hospedajeRepository = hospedajeRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Cacheable(value = "habitaciones", key = "#hospedajeId")
@@ -72,6 +76,7 @@ public class HabitacionService {
         habitacion.setHospedaje(hospedaje);
 
         Habitacion guardada = habitacionRepository.save(habitacion);
+        habitacionesCambiadas(hospedajeId);
         return new HabitacionDTO(guardada);
     }
 
@@ -119,16 +124,17 @@ public class HabitacionService {
         habitacion.setPrecioUnaPersona(dto.getPrecioUnaPersona());
 
         Habitacion actualizada = habitacionRepository.save(habitacion);
+        habitacionesCambiadas(actualizada.getHospedaje());
         return new HabitacionDTO(actualizada);
     }
 
     @CacheEvict(value = "habitaciones", allEntries = true)
     @Transactional
     public void eliminar(@NonNull Long id) {
-        if (!habitacionRepository.existsById(id)) {
-            throw new EntityNotFoundException("Habitación no encontrada con ID: " + id);
-        }
+        Habitacion habitacion = habitacionRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Habitación no encontrada con ID: " + id));
         habitacionRepository.deleteById(id);
+        habitacionesCambiadas(habitacion.getHospedaje());
     }
 
     @CacheEvict(value = "habitaciones", allEntries = true)
@@ -139,9 +145,21 @@ public class HabitacionService {
 
         habitacion.setDisponible(disponible);
         Habitacion actualizada = habitacionRepository.save(habitacion);
+        habitacionesCambiadas(actualizada.getHospedaje());
         return new HabitacionDTO(actualizada);
     }
 
+    // msvc-reservas cachea las habitaciones por hospedaje; el aviso sale al confirmar la transacción
+    private void habitacionesCambiadas(Hospedaje hospedaje) {
+        if (hospedaje != null) {
+            habitacionesCambiadas(hospedaje.getId());
+        }
+    }
+
+    private void habitacionesCambiadas(Long hospedajeId) {
+        eventPublisher.publishEvent(new CatalogoEventPublisher.HabitacionesCambiadas(hospedajeId));
+    }
+
     private Habitacion.TipoPrecio parseTipoPrecio(String tipoPrecio) {
         if (tipoPrecio == null) {
             return Habitacion.TipoPrecio.POR_HABITACION;
@@ -0,0 +1,108 @@
+package com.tapalque.hosteleria.demo.servicio;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.tapalque.hosteleria.demo.dto.HabitacionRequestDTO;
+import com.tapalque.hosteleria.demo.entidades.Habitacion;
+import com.tapalque.hosteleria.demo.entidades.Hospedaje;
+import com.tapalque.hosteleria.demo.repositorio.HabitacionRepository;
+import com.tapalque.hosteleria.demo.repositorio.HospedajeRepository;
+import com.tapalque.hosteleria.demo.servicio.CatalogoEventPublisher.HabitacionesCambiadas;
+
+import jakarta.persistence.EntityNotFoundException;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("HabitacionService Tests")
+class HabitacionServiceTest {
+
+    @Mock
+    private HabitacionRepository habitacionRepository;
+
+    @Mock
+    private HospedajeRepository hospedajeRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private HabitacionService habitacionService;
+
+    private Hospedaje hospedaje;
+    private Habitacion habitacion;
+
+    @BeforeEach
+    void setUp() {
+        hospedaje = new Hospedaje();
+        hospedaje.setId(5L);
+
+        habitacion = new Habitacion();
+        habitacion.setId(10L);
+        habitacion.setNumero(1);
+        habitacion.setTitulo("Doble");
+        habitacion.setMaxPersonas(2);
+        habitacion.setPrecio(new BigDecimal("30000"));
+        habitacion.setHospedaje(hospedaje);
+    }
+
+    private HabitacionRequestDTO request() {
+        HabitacionRequestDTO dto = new HabitacionRequestDTO();
+        dto.setNumero(1);
+        dto.setTitulo("Doble");
+        dto.setMaxPersonas(2);
+        dto.setPrecio(new BigDecimal("35000"));
+        return dto;
+    }
+
+    @Test
+    @DisplayName("Crear una habitación avisa el cambio del hospedaje")
+    void crear_AvisaCambio() {
+        when(hospedajeRepository.findById(5L)).thenReturn(Optional.of(hospedaje));
+        when(habitacionRepository.save(any(Habitacion.class))).thenReturn(habitacion);
+
+        habitacionService.crear(5L, request());
+
+        verify(eventPublisher).publishEvent(new HabitacionesCambiadas(5L));
+    }
+
+    @Test
+    @DisplayName("Actualizar y cambiar disponibilidad avisan el hospedaje de la habitación")
+    void actualizar_AvisaCambio() {
+        when(habitacionRepository.findById(10L)).thenReturn(Optional.of(habitacion));
+        when(habitacionRepository.save(any(Habitacion.class))).thenReturn(habitacion);
+
+        habitacionService.actualizar(10L, request());
+        habitacionService.cambiarDisponibilidad(10L, false);
+
+        verify(eventPublisher, times(2)).publishEvent(new HabitacionesCambiadas(5L));
+    }
+
+    @Test
+    @DisplayName("Eliminar avisa el cambio; si la habitación no existe no avisa nada")
+    void eliminar_AvisaCambio() {
+        when(habitacionRepository.findById(10L)).thenReturn(Optional.of(habitacion));
+        when(habitacionRepository.findById(99L)).thenReturn(Optional.empty());
+
+        habitacionService.eliminar(10L);
+        assertThrows(EntityNotFoundException.class, () -> habitacionService.eliminar(99L));
+
+        verify(habitacionRepository).deleteById(10L);
+        verify(habitacionRepository, never()).deleteById(99L);
+        verify(eventPublisher).publishEvent(new HabitacionesCambiadas(5L));
+    }
+}
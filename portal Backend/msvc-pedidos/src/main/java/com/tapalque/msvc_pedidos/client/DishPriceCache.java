@@ -0,0 +1,65 @@
+package com.tapalque.msvc_pedidos.client;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tapalque.msvc_pedidos.dto.DishPriceDTO;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Snapshot local (acotado y con TTL) de nombre, precio y disponibilidad de platos.
+ * Un pedido resuelve sus platos con a lo sumo una llamada a msvc-gastronomia;
+ * si todos están en el snapshot no se hace ninguna.
+ * El precio que queda guardado en cada Order.Item sigue siendo el de referencia del pedido.
+ */
+@Component
+public class DishPriceCache {
+
+    private final GastronomiaClient gastronomiaClient;
+    private final Cache<Long, DishPriceDTO> snapshots;
+
+    public DishPriceCache(GastronomiaClient gastronomiaClient,
+                          @Value("${pedidos.dish-cache.ttl-seconds:60}") long ttlSeconds,
+                          @Value("${pedidos.dish-cache.max-size:5000}") long maxSize) {
+        this.gastronomiaClient = gastronomiaClient;
+        this.snapshots = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * Devuelve los platos encontrados indexados por id. Los ids que no existen
+     * en gastronomía no aparecen en el mapa.
+     */
+    public Mono<Map<Long, DishPriceDTO>> getDishes(Collection<Long> dishIds) {
+        Map<Long, DishPriceDTO> found = new HashMap<>(snapshots.getAllPresent(dishIds));
+        List<Long> missing = dishIds.stream()
+                .filter(id -> !found.containsKey(id))
+                .distinct()
+                .toList();
+        if (missing.isEmpty()) {
+            return Mono.just(found);
+        }
+
+        return gastronomiaClient.getDishesByIds(missing)
+                .map(dishes -> {
+                    for (DishPriceDTO dish : dishes) {
+                        if (dish.getIdDish() != null) {
+                            snapshots.put(dish.getIdDish(), dish);
+                            found.put(dish.getIdDish(), dish);
+                        }
+                    }
+                    return found;
+                });
+    }
+}
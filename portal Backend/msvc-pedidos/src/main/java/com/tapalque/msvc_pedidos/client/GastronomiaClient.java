@@ -1,46 +1,154 @@
 package com.tapalque.msvc_pedidos.client;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import com.tapalque.msvc_pedidos.config.GastronomiaClientProperties;
 import com.tapalque.msvc_pedidos.dto.DishPriceDTO;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutException;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
 
+/**
+ * Cliente no bloqueante de msvc-gastronomia sobre WebClient con balanceo de Eureka (ver AppConfig).
+ * Todas las llamadas son GET idempotentes: se reintentan ante fallas transitorias (conexión,
+ * timeout de respuesta, 5xx) y, con hedging habilitado, si la primera no respondió en hedgeDelay
+ * se lanza una segunda (el balanceador la manda a otra instancia) y gana la que responda primero.
+ * La latencia de cada llamada se publica como histograma en pedidos.gastronomia.client.
+ */
 @Service
 public class GastronomiaClient {
 
-    private final RestTemplate restTemplate;
+    private static final ParameterizedTypeReference<List<DishPriceDTO>> LISTA_PLATOS = new ParameterizedTypeReference<>() {};
+
+    private final WebClient webClient;
+    private final GastronomiaClientProperties properties;
+    private final MeterRegistry meterRegistry;
 
-    public GastronomiaClient(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    public GastronomiaClient(@Qualifier("gastronomiaWebClient") WebClient webClient,
+                             GastronomiaClientProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.webClient = webClient;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
     }
 
+    /** WebClient con pool de conexiones propio y timeouts de conexión y respuesta; el balanceo lo agrega AppConfig. */
+    public static WebClient.Builder webClientBuilder(WebClient.Builder builder, GastronomiaClientProperties properties) {
+        ConnectionProvider pool = ConnectionProvider.builder("msvc-gastronomia")
+                .maxConnections(properties.getMaxConnections())
+                .pendingAcquireMaxCount(properties.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+                .maxIdleTime(properties.getMaxIdleTime())
+                .evictInBackground(properties.getMaxIdleTime())
+                .build();
+        HttpClient httpClient = HttpClient.create(pool)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .responseTimeout(properties.getResponseTimeout());
+        return builder.clone()
+                .baseUrl(properties.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient));
+    }
 
     /**
      * Obtiene el precio real de un plato desde msvc-gastronomia.
      * GET /gastronomia/menu/dish/{dishId}
      */
     public Mono<DishPriceDTO> getDishById(Long dishId) {
-        return Mono.fromCallable(() -> {
-            try {
-                DishPriceDTO dish = restTemplate.getForObject(
-                    "http://msvc-gastronomia/gastronomia/menu/dish/" + dishId,
-                    DishPriceDTO.class
-                );
-                if (dish == null) {
-                    throw new IllegalArgumentException("Plato no encontrado en gastronomía: " + dishId);
-                }
-                return dish;
-            } catch (HttpClientErrorException e) {
-                throw new IllegalArgumentException("Plato no encontrado en gastronomía: " + dishId);
-            } catch (IllegalArgumentException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new RuntimeException("Error interno en msvc-gastronomia: " + e.getMessage());
-            }
-        }).subscribeOn(Schedulers.boundedElastic());
+        return llamar("dish", () -> webClient.get()
+                        .uri("/gastronomia/menu/dish/{id}", dishId)
+                        .retrieve()
+                        .bodyToMono(DishPriceDTO.class))
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Plato no encontrado en gastronomía: " + dishId)))
+                .onErrorMap(e -> e instanceof WebClientResponseException r && r.getStatusCode().is4xxClientError(),
+                        e -> new IllegalArgumentException("Plato no encontrado en gastronomía: " + dishId));
+    }
+
+    /**
+     * Obtiene precio, nombre y disponibilidad de varios platos en una sola llamada.
+     * GET /gastronomia/menu/dishes?ids=1,2,3
+     * Los platos inexistentes simplemente no aparecen en la respuesta.
+     */
+    public Mono<List<DishPriceDTO>> getDishesByIds(Collection<Long> dishIds) {
+        if (dishIds.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        String ids = dishIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return llamar("dishes", () -> webClient.get()
+                        .uri(uri -> uri.path("/gastronomia/menu/dishes").queryParam("ids", ids).build())
+                        .retrieve()
+                        .bodyToMono(LISTA_PLATOS))
+                .defaultIfEmpty(List.of());
+    }
+
+    private <T> Mono<T> llamar(String operacion, Supplier<Mono<T>> request) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            Mono<T> intento = properties.isHedgeEnabled() ? conHedge(operacion, request) : Mono.defer(request);
+            return intento
+                    .retryWhen(Retry.backoff(properties.getMaxRetries(), properties.getRetryBackoff())
+                            .filter(GastronomiaClient::esTransitorio)
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                    .timeout(properties.getTimeout())
+                    .doOnSuccess(v -> sample.stop(timer(operacion, "ok")))
+                    .doOnError(e -> sample.stop(timer(operacion, e instanceof TimeoutException ? "timeout" : "error")))
+                    .onErrorMap(e -> !(e instanceof WebClientResponseException r && r.getStatusCode().is4xxClientError()),
+                            e -> new RuntimeException("Error interno en msvc-gastronomia: " + e.getMessage(), e));
+        });
+    }
+
+    // Gana la primera respuesta; la otra se cancela y libera su conexión
+    private <T> Mono<T> conHedge(String operacion, Supplier<Mono<T>> request) {
+        Mono<T> hedge = Mono.delay(properties.getHedgeDelay())
+                .doOnNext(t -> meterRegistry.counter("pedidos.gastronomia.client.hedged", "operacion", operacion).increment())
+                .then(Mono.defer(request));
+        return Mono.firstWithValue(Mono.defer(request), hedge)
+                .onErrorMap(NoSuchElementException.class, GastronomiaClient::primerError);
+    }
+
+    // Si fallan las dos, firstWithValue deja los errores como causa compuesta; se propaga el del primer intento
+    private static Throwable primerError(NoSuchElementException e) {
+        if (e.getCause() == null) {
+            return e;
+        }
+        List<Throwable> errores = Exceptions.unwrapMultiple(e.getCause());
+        return errores.isEmpty() ? e : errores.get(0);
+    }
+
+    private static boolean esTransitorio(Throwable e) {
+        if (e instanceof WebClientResponseException r) {
+            return r.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException
+                || e instanceof ReadTimeoutException
+                || e.getCause() instanceof ReadTimeoutException;
+    }
+
+    private Timer timer(String operacion, String resultado) {
+        return Timer.builder("pedidos.gastronomia.client")
+                .description("Latencia de las llamadas a msvc-gastronomia, con reintentos y hedge")
+                .tag("operacion", operacion)
+                .tag("resultado", resultado)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,68 @@
+package com.tapalque.msvc_pedidos.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Control de admisión de pedidos por restaurante (prefijo pedidos.admission): cuántos pedidos puede
+ * tener la cocina entre manos, tope adaptativo según lo que despacha, y qué hacer al superarlo
+ * (rechazar con 429 o esperar en una cola corta).
+ */
+@Component
+@ConfigurationProperties(prefix = "pedidos.admission")
+public class AdmissionProperties {
+
+    public enum Modo { RECHAZAR, ESPERAR }
+
+    private boolean enabled = true;
+    // Tope fijo de pedidos en cocina; 0 = sin tope fijo
+    private int maxEnCocina = 40;
+    private boolean adaptativo = false;
+    private int minEnCocina = 5;
+    private Duration demoraObjetivo = Duration.ofMinutes(45);
+    private Duration ventanaDespacho = Duration.ofMinutes(15);
+    private int minDespachos = 5;
+    private Modo modo = Modo.RECHAZAR;
+    private int colaMaxima = 20;
+    private Duration esperaMaxima = Duration.ofSeconds(10);
+    private Duration retryAfterPorDefecto = Duration.ofSeconds(30);
+    private Duration retryAfterMaximo = Duration.ofMinutes(5);
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getMaxEnCocina() { return maxEnCocina; }
+    public void setMaxEnCocina(int maxEnCocina) { this.maxEnCocina = maxEnCocina; }
+
+    public boolean isAdaptativo() { return adaptativo; }
+    public void setAdaptativo(boolean adaptativo) { this.adaptativo = adaptativo; }
+
+    public int getMinEnCocina() { return minEnCocina; }
+    public void setMinEnCocina(int minEnCocina) { this.minEnCocina = minEnCocina; }
+
+    public Duration getDemoraObjetivo() { return demoraObjetivo; }
+    public void setDemoraObjetivo(Duration demoraObjetivo) { this.demoraObjetivo = demoraObjetivo; }
+
+    public Duration getVentanaDespacho() { return ventanaDespacho; }
+    public void setVentanaDespacho(Duration ventanaDespacho) { this.ventanaDespacho = ventanaDespacho; }
+
+    public int getMinDespachos() { return minDespachos; }
+    public void setMinDespachos(int minDespachos) { this.minDespachos = minDespachos; }
+
+    public Modo getModo() { return modo; }
+    public void setModo(Modo modo) { this.modo = modo; }
+
+    public int getColaMaxima() { return colaMaxima; }
+    public void setColaMaxima(int colaMaxima) { this.colaMaxima = colaMaxima; }
+
+    public Duration getEsperaMaxima() { return esperaMaxima; }
+    public void setEsperaMaxima(Duration esperaMaxima) { this.esperaMaxima = esperaMaxima; }
+
+    public Duration getRetryAfterPorDefecto() { return retryAfterPorDefecto; }
+    public void setRetryAfterPorDefecto(Duration retryAfterPorDefecto) { this.retryAfterPorDefecto = retryAfterPorDefecto; }
+
+    public Duration getRetryAfterMaximo() { return retryAfterMaximo; }
+    public void setRetryAfterMaximo(Duration retryAfterMaximo) { this.retryAfterMaximo = retryAfterMaximo; }
+}
@@ -1,16 +1,22 @@
 package com.tapalque.msvc_pedidos.config;
 
-import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.tapalque.msvc_pedidos.client.GastronomiaClient;
 
 @Configuration
 public class AppConfig {
 
+    // El filtro de balanceo resuelve http://msvc-gastronomia contra las instancias de Eureka en cada request
     @Bean
-    @LoadBalanced
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public WebClient gastronomiaWebClient(WebClient.Builder builder,
+                                          ReactorLoadBalancerExchangeFilterFunction loadBalancer,
+                                          GastronomiaClientProperties properties) {
+        return GastronomiaClient.webClientBuilder(builder, properties)
+                .filter(loadBalancer)
+                .build();
     }
 }
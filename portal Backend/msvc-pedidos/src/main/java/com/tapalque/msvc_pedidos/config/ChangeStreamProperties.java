@@ -0,0 +1,45 @@
+package com.tapalque.msvc_pedidos.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Notificaciones desde el change stream de orders (prefijo pedidos.change-stream): cuántos eventos
+ * se piden por adelantado al cursor, cada cuánto se persiste el resume token, backoff al reconectar,
+ * duración del lease de la réplica que publica y el id estable de esta réplica (para su token local).
+ */
+@Component
+@ConfigurationProperties(prefix = "pedidos.change-stream")
+public class ChangeStreamProperties {
+
+    private boolean enabled = true;
+    private int prefetch = 256;
+    private Duration tokenFlushInterval = Duration.ofSeconds(1);
+    private Duration initialBackoff = Duration.ofSeconds(1);
+    private Duration maxBackoff = Duration.ofSeconds(30);
+    private Duration lease = Duration.ofSeconds(15);
+    private String instanceId;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getPrefetch() { return prefetch; }
+    public void setPrefetch(int prefetch) { this.prefetch = prefetch; }
+
+    public Duration getTokenFlushInterval() { return tokenFlushInterval; }
+    public void setTokenFlushInterval(Duration tokenFlushInterval) { this.tokenFlushInterval = tokenFlushInterval; }
+
+    public Duration getInitialBackoff() { return initialBackoff; }
+    public void setInitialBackoff(Duration initialBackoff) { this.initialBackoff = initialBackoff; }
+
+    public Duration getMaxBackoff() { return maxBackoff; }
+    public void setMaxBackoff(Duration maxBackoff) { this.maxBackoff = maxBackoff; }
+
+    public Duration getLease() { return lease; }
+    public void setLease(Duration lease) { this.lease = lease; }
+
+    public String getInstanceId() { return instanceId; }
+    public void setInstanceId(String instanceId) { this.instanceId = instanceId; }
+}
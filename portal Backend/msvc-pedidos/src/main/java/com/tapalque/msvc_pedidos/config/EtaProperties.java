@@ -0,0 +1,37 @@
+package com.tapalque.msvc_pedidos.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimación de demora (prefijo pedidos.eta): ventana de historia que se considera, muestras mínimas
+ * para confiar en una franja horaria, tope de minutos que se registra y cada cuánto se guarda el snapshot.
+ */
+@Component
+@ConfigurationProperties(prefix = "pedidos.eta")
+public class EtaProperties {
+
+    private Duration ventana = Duration.ofDays(28);
+    private int minMuestras = 10;
+    private int maxMinutos = 240;
+    private long snapshotIntervalMs = 300_000;
+
+    public Duration getVentana() { return ventana; }
+    public void setVentana(Duration ventana) { this.ventana = ventana; }
+
+    public int getMinMuestras() { return minMuestras; }
+    public void setMinMuestras(int minMuestras) { this.minMuestras = minMuestras; }
+
+    public int getMaxMinutos() { return maxMinutos; }
+    public void setMaxMinutos(int maxMinutos) { this.maxMinutos = maxMinutos; }
+
+    public long getSnapshotIntervalMs() { return snapshotIntervalMs; }
+    public void setSnapshotIntervalMs(long snapshotIntervalMs) { this.snapshotIntervalMs = snapshotIntervalMs; }
+
+    /** Días de cada mitad de la ventana: los histogramas rotan con esa frecuencia. */
+    public long diasPorPeriodo() {
+        return Math.max(1, ventana.toDays() / 2);
+    }
+}
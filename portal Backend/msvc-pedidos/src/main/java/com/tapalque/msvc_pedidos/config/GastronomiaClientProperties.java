@@ -0,0 +1,65 @@
+package com.tapalque.msvc_pedidos.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cliente HTTP hacia msvc-gastronomia (prefijo pedidos.gastronomia): pool de conexiones propio,
+ * timeouts, reintentos de GET y hedging opcional entre instancias de Eureka.
+ * timeout es el tope total de una llamada, con reintentos y hedge incluidos.
+ */
+@Component
+@ConfigurationProperties(prefix = "pedidos.gastronomia")
+public class GastronomiaClientProperties {
+
+    private String baseUrl = "http://msvc-gastronomia";
+    private int maxConnections = 50;
+    private int pendingAcquireMaxCount = 200;
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(1);
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+    private Duration connectTimeout = Duration.ofSeconds(1);
+    private Duration responseTimeout = Duration.ofSeconds(2);
+    private Duration timeout = Duration.ofSeconds(4);
+    private int maxRetries = 2;
+    private Duration retryBackoff = Duration.ofMillis(100);
+    private boolean hedgeEnabled = false;
+    private Duration hedgeDelay = Duration.ofMillis(150);
+
+    public String getBaseUrl() { return baseUrl; }
+    public void setBaseUrl(String baseUrl) { this.baseUrl = baseUrl; }
+
+    public int getMaxConnections() { return maxConnections; }
+    public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+
+    public int getPendingAcquireMaxCount() { return pendingAcquireMaxCount; }
+    public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) { this.pendingAcquireMaxCount = pendingAcquireMaxCount; }
+
+    public Duration getPendingAcquireTimeout() { return pendingAcquireTimeout; }
+    public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) { this.pendingAcquireTimeout = pendingAcquireTimeout; }
+
+    public Duration getMaxIdleTime() { return maxIdleTime; }
+    public void setMaxIdleTime(Duration maxIdleTime) { this.maxIdleTime = maxIdleTime; }
+
+    public Duration getConnectTimeout() { return connectTimeout; }
+    public void setConnectTimeout(Duration connectTimeout) { this.connectTimeout = connectTimeout; }
+
+    public Duration getResponseTimeout() { return responseTimeout; }
+    public void setResponseTimeout(Duration responseTimeout) { this.responseTimeout = responseTimeout; }
+
+    public Duration getTimeout() { return timeout; }
+    public void setTimeout(Duration timeout) { this.timeout = timeout; }
+
+    public int getMaxRetries() { return maxRetries; }
+    public void setMaxRetries(int maxRetries) { this.maxRetries = maxRetries; }
+
+    public Duration getRetryBackoff() { return retryBackoff; }
+    public void setRetryBackoff(Duration retryBackoff) { this.retryBackoff = retryBackoff; }
+
+    public boolean isHedgeEnabled() { return hedgeEnabled; }
+    public void setHedgeEnabled(boolean hedgeEnabled) { this.hedgeEnabled = hedgeEnabled; }
+
+    public Duration getHedgeDelay() { return hedgeDelay; }
+    public void setHedgeDelay(Duration hedgeDelay) { this.hedgeDelay = hedgeDelay; }
+}
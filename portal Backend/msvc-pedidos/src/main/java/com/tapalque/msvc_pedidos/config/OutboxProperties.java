@@ -0,0 +1,51 @@
+package com.tapalque.msvc_pedidos.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Relay del outbox de pedidos (prefijo pedidos.outbox): tamaño de lote, espera de confirms
+ * del broker, lease por pedido y backoff exponencial entre reintentos.
+ */
+@Component
+@ConfigurationProperties(prefix = "pedidos.outbox")
+public class OutboxProperties {
+
+    private boolean enabled = true;
+    private int batchSize = 100;
+    private int maxBatchesPerRun = 50;
+    private Duration confirmTimeout = Duration.ofSeconds(5);
+    private Duration lease = Duration.ofSeconds(30);
+    private Duration initialBackoff = Duration.ofSeconds(1);
+    private Duration maxBackoff = Duration.ofMinutes(5);
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+    public int getMaxBatchesPerRun() { return maxBatchesPerRun; }
+    public void setMaxBatchesPerRun(int maxBatchesPerRun) { this.maxBatchesPerRun = maxBatchesPerRun; }
+
+    public Duration getConfirmTimeout() { return confirmTimeout; }
+    public void setConfirmTimeout(Duration confirmTimeout) { this.confirmTimeout = confirmTimeout; }
+
+    public Duration getLease() { return lease; }
+    public void setLease(Duration lease) { this.lease = lease; }
+
+    public Duration getInitialBackoff() { return initialBackoff; }
+    public void setInitialBackoff(Duration initialBackoff) { this.initialBackoff = initialBackoff; }
+
+    public Duration getMaxBackoff() { return maxBackoff; }
+    public void setMaxBackoff(Duration maxBackoff) { this.maxBackoff = maxBackoff; }
+
+    /** Espera antes del intento número {@code attempts} (1, 2, 4, 8... veces el inicial, con tope). */
+    public Duration backoff(int attempts) {
+        int exponent = Math.max(0, Math.min(attempts - 1, 20));
+        Duration delay = initialBackoff.multipliedBy(1L << exponent);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+}
@@ -0,0 +1,36 @@
+package com.tapalque.msvc_pedidos.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumo en lotes de pagos.pedidos (prefijo pedidos.pagos): tamaño de lote, prefetch del canal,
+ * espera para completar un lote y tope para la escritura en Mongo antes de devolver el lote a la cola.
+ */
+@Component
+@ConfigurationProperties(prefix = "pedidos.pagos")
+public class PagoBatchProperties {
+
+    private int batchSize = 50;
+    private int prefetch = 250;
+    private int concurrency = 1;
+    private Duration receiveTimeout = Duration.ofMillis(200);
+    private Duration writeTimeout = Duration.ofSeconds(10);
+
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+    public int getPrefetch() { return prefetch; }
+    public void setPrefetch(int prefetch) { this.prefetch = prefetch; }
+
+    public int getConcurrency() { return concurrency; }
+    public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+    public Duration getReceiveTimeout() { return receiveTimeout; }
+    public void setReceiveTimeout(Duration receiveTimeout) { this.receiveTimeout = receiveTimeout; }
+
+    public Duration getWriteTimeout() { return writeTimeout; }
+    public void setWriteTimeout(Duration writeTimeout) { this.writeTimeout = writeTimeout; }
+}
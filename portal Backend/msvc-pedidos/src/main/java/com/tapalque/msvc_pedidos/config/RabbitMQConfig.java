@@ -1,10 +1,14 @@
 package com.tapalque.msvc_pedidos.config;
 
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -13,6 +17,7 @@ import org.springframework.context.annotation.Configuration;
 public class RabbitMQConfig {
 
     public static final String QUEUE_PEDIDOS = "pagos.pedidos";
+    public static final String QUEUE_PEDIDOS_DLQ = "pagos.pedidos.dlq";
     public static final String QUEUE_GASTRONOMIA = "pagos-gastronomia-queue";
     public static final String EXCHANGE_PEDIDOS = "pedido-exchange";
 
@@ -21,6 +26,12 @@ public class RabbitMQConfig {
         return new Queue(QUEUE_PEDIDOS, true);
     }
 
+    // Mensajes de pago que no se pueden aplicar (malformados, estado desconocido, pedido inexistente)
+    @Bean
+    public Queue pedidosDeadLetterQueue() {
+        return new Queue(QUEUE_PEDIDOS_DLQ, true);
+    }
+
     @Bean
     public Queue gastronomiaQueue() {
         return new Queue(QUEUE_GASTRONOMIA, true);
@@ -35,4 +46,25 @@ public class RabbitMQConfig {
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
     }
-}
\ No newline at end of file
+
+    /**
+     * Contenedor en lotes para pagos.pedidos: el listener recibe hasta batchSize mensajes y confirma
+     * (ack múltiple) recién después de la escritura en bloque en Mongo.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory pagosBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            PagoBatchProperties properties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(properties.getBatchSize());
+        factory.setPrefetchCount(Math.max(properties.getPrefetch(), properties.getBatchSize()));
+        factory.setReceiveTimeout(properties.getReceiveTimeout().toMillis());
+        factory.setConcurrentConsumers(properties.getConcurrency());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+}
@@ -0,0 +1,38 @@
+package com.tapalque.msvc_pedidos.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * RabbitMQ no acepta '/' dentro del nombre de un destino /topic/.
+ * Traduce los destinos que usan los clientes (/topic/pedidos/{id}, /topic/pedidos/user/{id})
+ * a claves de ruteo con puntos (/topic/pedidos.{id}, /topic/pedidos.user.{id}) antes de
+ * llegar al relay. Los clientes siguen suscribiéndose a los destinos de siempre.
+ */
+public class RabbitStompDestinationInterceptor implements ChannelInterceptor {
+
+    private static final String TOPIC_PREFIX = "/topic/";
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        String translated = toRabbitDestination(destination);
+        if (translated == null || translated.equals(destination)) {
+            return message;
+        }
+        accessor.setDestination(translated);
+        accessor.setNativeHeader(StompHeaderAccessor.STOMP_DESTINATION_HEADER, translated);
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+
+    static String toRabbitDestination(String destination) {
+        if (destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+            return destination;
+        }
+        return TOPIC_PREFIX + destination.substring(TOPIC_PREFIX.length()).replace('/', '.');
+    }
+}
@@ -0,0 +1,63 @@
+package com.tapalque.msvc_pedidos.config;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.tapalque.msvc_pedidos.entity.Order.OrderStatus;
+
+/**
+ * Políticas de retención de pedidos (prefijo pedidos.retention).
+ * Cada política nombrada indica a qué estados aplica, si filtra por pagados/no pagados,
+ * el campo de fecha a comparar y la antigüedad máxima. Con archive=true los pedidos se mueven al
+ * archivo frío (orders_archive) por meses completos en lugar de borrarse.
+ */
+@Component
+@ConfigurationProperties(prefix = "pedidos.retention")
+public class RetentionProperties {
+
+    private boolean enabled = true;
+    private int batchSize = 500;
+    private int maxBatchesPerRun = 200;
+    private Map<String, Policy> policies = new LinkedHashMap<>();
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+    public int getMaxBatchesPerRun() { return maxBatchesPerRun; }
+    public void setMaxBatchesPerRun(int maxBatchesPerRun) { this.maxBatchesPerRun = maxBatchesPerRun; }
+
+    public Map<String, Policy> getPolicies() { return policies; }
+    public void setPolicies(Map<String, Policy> policies) { this.policies = policies; }
+
+    public static class Policy {
+        private Set<OrderStatus> statuses = EnumSet.allOf(OrderStatus.class);
+        private Boolean paid; // null = no filtra por pago
+        private String dateField = "dateCreated"; // dateCreated o fechaPago
+        private Duration maxAge;
+        private boolean archive;
+
+        public Set<OrderStatus> getStatuses() { return statuses; }
+        public void setStatuses(Set<OrderStatus> statuses) { this.statuses = statuses; }
+
+        public Boolean getPaid() { return paid; }
+        public void setPaid(Boolean paid) { this.paid = paid; }
+
+        public String getDateField() { return dateField; }
+        public void setDateField(String dateField) { this.dateField = dateField; }
+
+        public Duration getMaxAge() { return maxAge; }
+        public void setMaxAge(Duration maxAge) { this.maxAge = maxAge; }
+
+        public boolean isArchive() { return archive; }
+        public void setArchive(boolean archive) { this.archive = archive; }
+    }
+}
@@ -1,23 +1,91 @@
 package com.tapalque.msvc_pedidos.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.broker.BrokerAvailabilityEvent;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+/**
+ * Broker STOMP de msvc-pedidos.
+ * - simple (default): broker en memoria, sólo llega a sockets de esta misma JVM.
+ * - relay: broker relay sobre el plugin STOMP de RabbitMQ; permite varias réplicas de pedidos.
+ *   La sesión de sistema envía/espera heartbeats y se reconecta sola (cada 5s) si RabbitMQ se cae.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
+
+    @Value("${pedidos.websocket.broker:simple}")
+    private String brokerMode;
+
+    @Value("${pedidos.websocket.relay.host:rabbitmq}")
+    private String relayHost;
+
+    @Value("${pedidos.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${pedidos.websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${pedidos.websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${pedidos.websocket.relay.heartbeat-ms:10000}")
+    private long relayHeartbeatMs;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/queue", "/topic");
+        if (isRelay()) {
+            registry.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(relayHeartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(relayHeartbeatMs)
+                    // convertAndSendToUser entre réplicas
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            registry.configureBrokerChannel().interceptors(new RabbitStompDestinationInterceptor());
+        } else {
+            registry.enableSimpleBroker("/queue", "/topic");
+        }
         registry.setUserDestinationPrefix("/user");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (isRelay()) {
+            registration.interceptors(new RabbitStompDestinationInterceptor());
+        }
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws").setAllowedOriginPatterns("*").withSockJS();
     }
-}
\ No newline at end of file
+
+    @EventListener
+    public void onBrokerAvailability(BrokerAvailabilityEvent event) {
+        if (event.isBrokerAvailable()) {
+            logger.info("Broker STOMP disponible ({})", brokerMode);
+        } else {
+            logger.warn("Broker STOMP no disponible ({}), reintentando conexión", brokerMode);
+        }
+    }
+
+    private boolean isRelay() {
+        return "relay".equalsIgnoreCase(brokerMode);
+    }
+}
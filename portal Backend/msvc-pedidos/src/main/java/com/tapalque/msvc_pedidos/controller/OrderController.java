@@ -1,12 +1,20 @@
 package com.tapalque.msvc_pedidos.controller;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.Objects;
 
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.lang.NonNull;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,16 +23,28 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.tapalque.msvc_pedidos.dto.CursorPageDTO;
+import com.tapalque.msvc_pedidos.dto.EtaDTO;
 import com.tapalque.msvc_pedidos.dto.ItemDTO;
+import com.tapalque.msvc_pedidos.dto.KitchenBoardDTO;
 import com.tapalque.msvc_pedidos.dto.OrderDTO;
 import com.tapalque.msvc_pedidos.dto.OrderStatusUpdateDTO;
 import com.tapalque.msvc_pedidos.dto.RestaurantDTO;
+import com.tapalque.msvc_pedidos.dto.VentasResumenDTO;
 import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.event.OrderCreated;
+import com.tapalque.msvc_pedidos.service.DailySalesService;
+import com.tapalque.msvc_pedidos.service.EtaService;
+import com.tapalque.msvc_pedidos.service.IdempotencyService;
+import com.tapalque.msvc_pedidos.service.KitchenBoardService;
+import com.tapalque.msvc_pedidos.service.OrderArchiveService;
 import com.tapalque.msvc_pedidos.service.OrderService;
 
 import reactor.core.publisher.Flux;
@@ -34,18 +54,39 @@ import reactor.core.publisher.Mono;
 @RequestMapping("/orders")
 public class OrderController {
 
+    private static final String VISTA_FULL = "full";
+    private static final String VISTA_SUMMARY = "summary";
+
     private final OrderService orderService;
+    private final KitchenBoardService kitchenBoardService;
+    private final IdempotencyService idempotencyService;
+    private final DailySalesService dailySalesService;
+    private final EtaService etaService;
+    private final OrderArchiveService archiveService;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, KitchenBoardService kitchenBoardService,
+                           IdempotencyService idempotencyService, DailySalesService dailySalesService,
+                           EtaService etaService, OrderArchiveService archiveService) {
         this.orderService = orderService;
+        this.kitchenBoardService = kitchenBoardService;
+        this.idempotencyService = idempotencyService;
+        this.dailySalesService = dailySalesService;
+        this.etaService = etaService;
+        this.archiveService = archiveService;
     }
 
     // --- Crear pedido ---
     @PostMapping ("/new")
     @ResponseStatus(HttpStatus.CREATED)
-    public Mono<OrderDTO> createOrder(@RequestBody OrderDTO orderDto) {
+    public Mono<OrderDTO> createOrder(
+            @RequestBody OrderDTO orderDto,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         Objects.requireNonNull(orderDto, "Order must not be null");
-        return orderService.createOrder(orderDto);
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return orderService.createOrder(orderDto);
+        }
+        // Reintentos con la misma clave devuelven el pedido ya creado en lugar de crear otro
+        return idempotencyService.ejecutar(idempotencyKey, orderDto, () -> orderService.createOrder(orderDto));
     }
 
     // --- Obtener pedido por ID ---
@@ -54,13 +95,27 @@ public class OrderController {
         return orderService.getOrderById(id).map(this::mapToDTO);
     }
 
-    // --- Obtener pedidos por restaurante (con filtro opcional de fechas) ---
+    // --- Resincronización: snapshot compacto (mismo formato que pedido:nuevo) cuando el cliente ve un salto de versión ---
+    @GetMapping("/{id}/snapshot")
+    public Mono<OrderCreated> getOrderSnapshot(@PathVariable @NonNull String id) {
+        return orderService.getOrderById(id)
+                .map(OrderCreated::from)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Pedido no encontrado")));
+    }
+
+    // --- Obtener pedidos por restaurante (con filtro opcional de fechas; ?view=summary para el listado liviano) ---
     @GetMapping("/restaurant/{restaurantId}")
-    public Flux<OrderDTO> getOrdersByRestaurant(
+    public Flux<?> getOrdersByRestaurant(
             @PathVariable @NonNull String restaurantId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = VISTA_FULL) String view) {
 
+        if (vistaResumen(view)) {
+            return orderService.getOrderSummariesByRestaurant(restaurantId,
+                    desde != null ? desde.atStartOfDay() : null,
+                    hasta != null ? hasta.atTime(LocalTime.MAX) : null);
+        }
         if (desde != null && hasta != null) {
             LocalDateTime desdeDateTime = Objects.requireNonNull(desde).atStartOfDay();
             LocalDateTime hastaDateTime = Objects.requireNonNull(hasta).atTime(LocalTime.MAX);
@@ -70,13 +125,62 @@ public class OrderController {
         return orderService.getOrdersByRestaurant(restaurantId).map(this::mapToDTO);
     }
 
-    // --- Obtener pedidos por usuario (con filtro opcional de fechas) ---
+    // --- Resumen de ventas (pedidos entregados) entre dos fechas, desde los rollups de daily_sales ---
+    @GetMapping("/restaurant/{restaurantId}/ventas/resumen")
+    public Mono<VentasResumenDTO> getResumenVentas(
+            @PathVariable @NonNull String restaurantId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        if (hasta.isBefore(desde)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "hasta no puede ser anterior a desde"));
+        }
+        return dailySalesService.resumen(restaurantId, desde, hasta);
+    }
+
+    // --- Exportación del archivo frío (meses yyyy-MM, inclusive) en NDJSON o CSV, escrita a medida que se descomprime ---
+    @GetMapping("/restaurant/{restaurantId}/archivo")
+    public ResponseEntity<Flux<String>> exportarArchivo(
+            @PathVariable @NonNull String restaurantId,
+            @RequestParam String desde,
+            @RequestParam String hasta,
+            @RequestParam(defaultValue = "ndjson") String formato) {
+        YearMonth mesDesde;
+        YearMonth mesHasta;
+        OrderArchiveService.Formato tipo;
+        try {
+            mesDesde = YearMonth.parse(desde);
+            mesHasta = YearMonth.parse(hasta);
+            tipo = OrderArchiveService.Formato.de(formato);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "desde y hasta deben tener el formato yyyy-MM");
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (mesHasta.isBefore(mesDesde)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "hasta no puede ser anterior a desde");
+        }
+
+        boolean csv = tipo == OrderArchiveService.Formato.CSV;
+        String archivo = "pedidos-" + restaurantId + "-" + mesDesde + "-" + mesHasta + (csv ? ".csv" : ".ndjson");
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(archivo).build().toString())
+                .body(archiveService.exportar(restaurantId, mesDesde, mesHasta, tipo));
+    }
+
+    // --- Obtener pedidos por usuario (con filtro opcional de fechas; ?view=summary para el listado liviano) ---
     @GetMapping("/user/{userId}")
-    public Flux<OrderDTO> getOrdersByUser(
+    public Flux<?> getOrdersByUser(
             @PathVariable @NonNull String userId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = VISTA_FULL) String view) {
 
+        if (vistaResumen(view)) {
+            return orderService.getOrderSummariesByUser(userId,
+                    desde != null ? desde.atStartOfDay() : null,
+                    hasta != null ? hasta.atTime(LocalTime.MAX) : null);
+        }
         if (desde != null && hasta != null) {
             LocalDateTime desdeDateTime = desde.atStartOfDay();
             LocalDateTime hastaDateTime = hasta.atTime(LocalTime.MAX);
@@ -86,10 +190,91 @@ public class OrderController {
         return orderService.getOrdersByUser(userId).map(this::mapToDTO);
     }
 
+    // --- Streaming NDJSON (Accept: application/x-ndjson): cada pedido se escribe apenas se lee de Mongo ---
+    @GetMapping(value = "/restaurant/{restaurantId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<?> streamOrdersByRestaurant(
+            @PathVariable @NonNull String restaurantId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = VISTA_FULL) String view) {
+        return getOrdersByRestaurant(restaurantId, desde, hasta, view);
+    }
+
+    @GetMapping(value = "/user/{userId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<?> streamOrdersByUser(
+            @PathVariable @NonNull String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = VISTA_FULL) String view) {
+        return getOrdersByUser(userId, desde, hasta, view);
+    }
+
+    // --- Tablero de cocina: pedidos activos del día agrupados por estado, con contadores ---
+    @GetMapping("/restaurant/{restaurantId}/board")
+    public KitchenBoardDTO getKitchenBoard(@PathVariable @NonNull String restaurantId) {
+        return kitchenBoardService.snapshot(restaurantId);
+    }
+
+    // --- Demora estimada (p50/p90 en minutos) según la historia del restaurante a esta hora ---
+    @GetMapping("/restaurant/{restaurantId}/eta")
+    public EtaDTO getEta(@PathVariable @NonNull String restaurantId,
+                         @RequestParam(defaultValue = "false") boolean delivery) {
+        return etaService.estimar(restaurantId, delivery);
+    }
+
+    // --- Cambios del tablero de cocina por Server-Sent Events ---
+    @GetMapping(value = "/restaurant/{restaurantId}/board/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<OrderCreated>> streamKitchenBoard(@PathVariable @NonNull String restaurantId) {
+        return kitchenBoardService.stream(restaurantId);
+    }
+
+    // --- Pedidos por restaurante paginados por cursor (más recientes primero) ---
+    @GetMapping("/restaurant/{restaurantId}/page")
+    public Mono<? extends CursorPageDTO<?>> getOrdersPageByRestaurant(
+            @PathVariable @NonNull String restaurantId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = VISTA_FULL) String view) {
+        LocalDateTime from = desde != null ? desde.atStartOfDay() : null;
+        LocalDateTime to = hasta != null ? hasta.atTime(LocalTime.MAX) : null;
+        Mono<? extends CursorPageDTO<?>> page = vistaResumen(view)
+                ? orderService.getOrderSummariesPageByRestaurant(restaurantId, from, to, cursor, limit)
+                : orderService.getOrdersPageByRestaurant(restaurantId, from, to, cursor, limit).map(this::mapPage);
+        return page
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    // --- Pedidos por usuario paginados por cursor (más recientes primero) ---
+    @GetMapping("/user/{userId}/page")
+    public Mono<? extends CursorPageDTO<?>> getOrdersPageByUser(
+            @PathVariable @NonNull String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = VISTA_FULL) String view) {
+        LocalDateTime from = desde != null ? desde.atStartOfDay() : null;
+        LocalDateTime to = hasta != null ? hasta.atTime(LocalTime.MAX) : null;
+        Mono<? extends CursorPageDTO<?>> page = vistaResumen(view)
+                ? orderService.getOrderSummariesPageByUser(userId, from, to, cursor, limit)
+                : orderService.getOrdersPageByUser(userId, from, to, cursor, limit).map(this::mapPage);
+        return page
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
     // --- Actualizar pedido ---
     @PutMapping("/{id}")
     public Mono<OrderDTO> updateOrder(@PathVariable @NonNull String id, @RequestBody @NonNull OrderDTO orderDTO) {
-        return orderService.updateOrder(orderDTO).map(this::mapToDTO);
+        orderDTO.setId(id);
+        return orderService.updateOrder(orderDTO)
+                .map(this::mapToDTO)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Pedido no encontrado")))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
     }
 
     // --- Borrar pedido ---
@@ -99,12 +284,32 @@ public class OrderController {
         return orderService.deleteOrder(id);
     }
 
-    // --- Actualizar estado del pedido ---
+    // --- Actualizar estado del pedido (409 si la transición no es válida o cambió la versión) ---
     @PatchMapping("/{id}/estado")
     public Mono<OrderDTO> updateOrderStatus(
             @PathVariable @NonNull String id,
             @RequestBody @NonNull OrderStatusUpdateDTO update) {
-        return orderService.updateOrderStatus(id, update.getStatus()).map(this::mapToDTO);
+        if (update.getStatus() == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "status es obligatorio"));
+        }
+        return orderService.updateOrderStatus(id, update.getStatus(), update.getVersion())
+                .map(this::mapToDTO)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Pedido no encontrado")))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    // ?view=summary devuelve OrderSummaryDTO, proyectado en Mongo; full (default) el pedido completo
+    private static boolean vistaResumen(String view) {
+        return switch (view.toLowerCase()) {
+            case VISTA_SUMMARY -> true;
+            case VISTA_FULL -> false;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "view debe ser summary o full");
+        };
+    }
+
+    private CursorPageDTO<OrderDTO> mapPage(CursorPageDTO<Order> page) {
+        return new CursorPageDTO<>(page.getItems().stream().map(this::mapToDTO).toList(), page.getNextCursor());
     }
 
     // --- Mapeo DTO <-> Entity ---
@@ -120,6 +325,7 @@ public class OrderController {
         dto.setStatus(order.getStatus().name());
         dto.setDateCreated(order.getDateCreated());
         dto.setDateUpdated(order.getDateUpdated());
+        dto.setVersion(order.getVersion());
         dto.setIsDelivery(order.getIsDelivery());
         dto.setDeliveryAddress(order.getDeliveryAddress());
         dto.setItems(order.getItems().stream()
@@ -2,6 +2,7 @@ package com.tapalque.msvc_pedidos.dto;
 
 public class DishPriceDTO {
     private Long idDish;
+    private String name;
     private Double price;
     private Boolean available;
 
@@ -10,6 +11,9 @@ public class DishPriceDTO {
     public Long getIdDish() { return idDish; }
     public void setIdDish(Long idDish) { this.idDish = idDish; }
 
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
     public Double getPrice() { return price; }
     public void setPrice(Double price) { this.price = price; }
 
@@ -0,0 +1,23 @@
+package com.tapalque.msvc_pedidos.dto;
+
+/**
+ * Demora estimada de un pedido hecho ahora, en minutos. base indica de dónde sale: "franja" (misma hora
+ * y día de la semana), "restaurante" (todas las horas del restaurante) o "sin-datos" (p50/p90 en null,
+ * el frontend usa el tiempo que carga el dueño).
+ */
+public record EtaDTO(
+        String restaurantId,
+        boolean delivery,
+        Integer p50Minutos,
+        Integer p90Minutos,
+        long muestras,
+        String base) {
+
+    public static final String BASE_FRANJA = "franja";
+    public static final String BASE_RESTAURANTE = "restaurante";
+    public static final String BASE_SIN_DATOS = "sin-datos";
+
+    public static EtaDTO sinDatos(String restaurantId, boolean delivery) {
+        return new EtaDTO(restaurantId, delivery, null, null, 0, BASE_SIN_DATOS);
+    }
+}
@@ -0,0 +1,20 @@
+package com.tapalque.msvc_pedidos.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import com.tapalque.msvc_pedidos.entity.Order.OrderStatus;
+import com.tapalque.msvc_pedidos.event.OrderCreated;
+
+/**
+ * Tablero de cocina de un restaurante: pedidos activos del día agrupados por estado.
+ * revision es la del último cambio aplicado; los eventos SSE continúan desde ahí.
+ */
+public record KitchenBoardDTO(
+        String restaurantId,
+        LocalDate fecha,
+        long revision,
+        Map<OrderStatus, List<OrderCreated>> columnas,
+        Map<OrderStatus, Integer> contadores) {
+}
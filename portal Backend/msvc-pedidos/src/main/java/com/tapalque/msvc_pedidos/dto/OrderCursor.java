@@ -0,0 +1,29 @@
+package com.tapalque.msvc_pedidos.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import org.bson.types.ObjectId;
+
+/**
+ * Cursor opaco para paginar pedidos por (dateCreated, _id) descendente.
+ * Se serializa como base64url de "dateCreated|id".
+ */
+public record OrderCursor(LocalDateTime dateCreated, ObjectId id) {
+
+    public String encode() {
+        String raw = dateCreated + "|" + id.toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new OrderCursor(LocalDateTime.parse(raw.substring(0, sep)), new ObjectId(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
+}
@@ -19,7 +19,7 @@ public class OrderDTO {
     private String paymentReceiptPath;
     private Boolean isDelivery;
     private String deliveryAddress;
-
+    private Long version;
     
     public OrderDTO() {}
 
@@ -73,4 +73,7 @@ public class OrderDTO {
 
     public String getDeliveryAddress() { return deliveryAddress; }
     public void setDeliveryAddress(String deliveryAddress) { this.deliveryAddress = deliveryAddress; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
@@ -2,6 +2,8 @@ package com.tapalque.msvc_pedidos.dto;
 
 public class OrderStatusUpdateDTO {
     private String status;
+    // Versión que vio el cliente; si viene, el cambio sólo se aplica si nadie escribió el pedido después
+    private Long version;
 
     public OrderStatusUpdateDTO() {}
 
@@ -11,4 +13,7 @@ public class OrderStatusUpdateDTO {
 
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
@@ -0,0 +1,25 @@
+package com.tapalque.msvc_pedidos.dto;
+
+import java.time.LocalDateTime;
+
+import com.tapalque.msvc_pedidos.entity.Order;
+
+/**
+ * Vista liviana de un pedido para los listados (?view=summary): lo que muestran la lista del
+ * restaurante y "mis pedidos", sin ítems, dirección, comprobante ni datos de Mercado Pago.
+ * Se lee directo de Mongo con la proyección OrderRepository.CAMPOS_RESUMEN, así que cada
+ * componente tiene que llamarse igual que el campo del documento.
+ */
+public record OrderSummaryDTO(
+        String id,
+        String userId,
+        Order.Restaurant restaurant,
+        Order.OrderStatus status,
+        Double totalPrice,
+        Boolean isDelivery,
+        Boolean paidWithMercadoPago,
+        Boolean paidWithCash,
+        LocalDateTime dateCreated,
+        LocalDateTime dateUpdated,
+        long version) {
+}
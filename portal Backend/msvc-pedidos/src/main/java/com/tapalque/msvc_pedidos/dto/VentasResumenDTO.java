@@ -0,0 +1,28 @@
+package com.tapalque.msvc_pedidos.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.tapalque.msvc_pedidos.entity.DailySales;
+
+/**
+ * Resumen de ventas de un restaurante entre dos fechas (inclusive), armado sólo con daily_sales.
+ * dias trae un documento por día con ventas; platosTop, los más vendidos por cantidad.
+ */
+public record VentasResumenDTO(
+        String restaurantId,
+        LocalDate desde,
+        LocalDate hasta,
+        int pedidos,
+        double total,
+        int pedidosEfectivo,
+        double totalEfectivo,
+        int pedidosMercadoPago,
+        double totalMercadoPago,
+        int deliveries,
+        double ticketPromedio,
+        List<DailySales> dias,
+        List<PlatoTop> platosTop) {
+
+    public record PlatoTop(String productId, String nombre, int cantidad, double total) {}
+}
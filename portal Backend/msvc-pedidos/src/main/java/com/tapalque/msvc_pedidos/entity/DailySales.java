@@ -0,0 +1,95 @@
+package com.tapalque.msvc_pedidos.entity;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Totales de ventas de un restaurante en un día (_id = restaurantId:yyyy-MM-dd).
+ * Los mantiene DailySalesService con $inc a medida que cambian los pedidos; el backfill
+ * los reconstruye con una agregación sobre orders. El documento guarda además, en aportes, la
+ * versión de cada pedido ya sumada; no se mapea acá.
+ */
+@Document(collection = "daily_sales")
+public class DailySales {
+
+    @Id
+    private String id;
+    private String restaurantId;
+    private String fecha; // yyyy-MM-dd
+    private int pedidos;
+    private double total;
+    private int pedidosEfectivo;
+    private double totalEfectivo;
+    private int pedidosMercadoPago;
+    private double totalMercadoPago;
+    private int deliveries;
+    private Map<String, PlatoVendido> platos; // por productId
+    private LocalDateTime actualizado;
+
+    public DailySales() {}
+
+    public static String idDe(String restaurantId, String fecha) {
+        return restaurantId + ":" + fecha;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getRestaurantId() { return restaurantId; }
+    public void setRestaurantId(String restaurantId) { this.restaurantId = restaurantId; }
+
+    public String getFecha() { return fecha; }
+    public void setFecha(String fecha) { this.fecha = fecha; }
+
+    public int getPedidos() { return pedidos; }
+    public void setPedidos(int pedidos) { this.pedidos = pedidos; }
+
+    public double getTotal() { return total; }
+    public void setTotal(double total) { this.total = total; }
+
+    public int getPedidosEfectivo() { return pedidosEfectivo; }
+    public void setPedidosEfectivo(int pedidosEfectivo) { this.pedidosEfectivo = pedidosEfectivo; }
+
+    public double getTotalEfectivo() { return totalEfectivo; }
+    public void setTotalEfectivo(double totalEfectivo) { this.totalEfectivo = totalEfectivo; }
+
+    public int getPedidosMercadoPago() { return pedidosMercadoPago; }
+    public void setPedidosMercadoPago(int pedidosMercadoPago) { this.pedidosMercadoPago = pedidosMercadoPago; }
+
+    public double getTotalMercadoPago() { return totalMercadoPago; }
+    public void setTotalMercadoPago(double totalMercadoPago) { this.totalMercadoPago = totalMercadoPago; }
+
+    public int getDeliveries() { return deliveries; }
+    public void setDeliveries(int deliveries) { this.deliveries = deliveries; }
+
+    public Map<String, PlatoVendido> getPlatos() { return platos; }
+    public void setPlatos(Map<String, PlatoVendido> platos) { this.platos = platos; }
+
+    public LocalDateTime getActualizado() { return actualizado; }
+    public void setActualizado(LocalDateTime actualizado) { this.actualizado = actualizado; }
+
+    public static class PlatoVendido {
+        private String nombre;
+        private int cantidad;
+        private double total;
+
+        public PlatoVendido() {}
+        public PlatoVendido(String nombre, int cantidad, double total) {
+            this.nombre = nombre;
+            this.cantidad = cantidad;
+            this.total = total;
+        }
+
+        public String getNombre() { return nombre; }
+        public void setNombre(String nombre) { this.nombre = nombre; }
+
+        public int getCantidad() { return cantidad; }
+        public void setCantidad(int cantidad) { this.cantidad = cantidad; }
+
+        public double getTotal() { return total; }
+        public void setTotal(double total) { this.total = total; }
+    }
+}
@@ -0,0 +1,54 @@
+package com.tapalque.msvc_pedidos.entity;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Snapshot de una franja de EtaService (_id = restaurantId:tramo:hora). Los histogramas van en el
+ * formato comprimido de HdrHistogram; periodo indica a qué ventana pertenece "actual".
+ */
+@Document(collection = "eta_histogramas")
+public class EtaHistograma {
+
+    @Id
+    private String id;
+    private String restaurantId;
+    private String tramo;
+    private int hora; // 0..167 (lunes 00 a domingo 23), 168 = todas las horas
+    private long periodo;
+    private byte[] actual;
+    private byte[] anterior;
+    private LocalDateTime actualizado;
+
+    public EtaHistograma() {}
+
+    public static String idDe(String restaurantId, String tramo, int hora) {
+        return restaurantId + ":" + tramo + ":" + hora;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getRestaurantId() { return restaurantId; }
+    public void setRestaurantId(String restaurantId) { this.restaurantId = restaurantId; }
+
+    public String getTramo() { return tramo; }
+    public void setTramo(String tramo) { this.tramo = tramo; }
+
+    public int getHora() { return hora; }
+    public void setHora(int hora) { this.hora = hora; }
+
+    public long getPeriodo() { return periodo; }
+    public void setPeriodo(long periodo) { this.periodo = periodo; }
+
+    public byte[] getActual() { return actual; }
+    public void setActual(byte[] actual) { this.actual = actual; }
+
+    public byte[] getAnterior() { return anterior; }
+    public void setAnterior(byte[] anterior) { this.anterior = anterior; }
+
+    public LocalDateTime getActualizado() { return actualizado; }
+    public void setActualizado(LocalDateTime actualizado) { this.actualizado = actualizado; }
+}
@@ -0,0 +1,64 @@
+package com.tapalque.msvc_pedidos.entity;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.tapalque.msvc_pedidos.dto.OrderDTO;
+
+/**
+ * Registro de una solicitud POST /orders/new con Idempotency-Key.
+ * El _id (usuario + clave) es único: sólo la primera solicitud logra insertarlo y ejecutar el alta;
+ * las repetidas esperan a que quede COMPLETADO y devuelven la misma respuesta.
+ * Un índice TTL sobre createdAt los borra pasadas 24 h (init-pedidos.js).
+ */
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+
+    @Id
+    private String id;
+    private String fingerprint; // hash del cuerpo: la misma clave con otro pedido es un error del cliente
+    private Estado estado;
+    private OrderDTO response;
+    private LocalDateTime createdAt;
+    private LocalDateTime lockedUntil; // si vence sin completarse, otra solicitud puede tomar la clave
+
+    public IdempotencyRecord() {}
+
+    public IdempotencyRecord(String id, String fingerprint, LocalDateTime createdAt, LocalDateTime lockedUntil) {
+        this.id = id;
+        this.fingerprint = fingerprint;
+        this.estado = Estado.EN_CURSO;
+        this.createdAt = createdAt;
+        this.lockedUntil = lockedUntil;
+    }
+
+    public void completar(OrderDTO response) {
+        this.estado = Estado.COMPLETADO;
+        this.response = response;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getFingerprint() { return fingerprint; }
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+
+    public Estado getEstado() { return estado; }
+    public void setEstado(Estado estado) { this.estado = estado; }
+
+    public OrderDTO getResponse() { return response; }
+    public void setResponse(OrderDTO response) { this.response = response; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(LocalDateTime lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public enum Estado {
+        EN_CURSO,
+        COMPLETADO
+    }
+}
@@ -1,7 +1,11 @@
 package com.tapalque.msvc_pedidos.entity;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -36,6 +40,19 @@ public class Order {
     private String userName;
     private String userPhone;
 
+    // Versión monótona del pedido: cada cambio la incrementa y viaja en los eventos WebSocket
+    // para que los clientes detecten huecos y se resincronicen
+    private long version;
+
+    // Último ingreso a cada estado; con esto EtaService mide preparación y entrega
+    private Map<OrderStatus, LocalDateTime> statusTimestamps;
+
+    // Outbox embebido: mensajes a RabbitMQ que se guardan en la misma escritura que el pedido
+    // y que publica OutboxRelayService. El lease evita que dos réplicas publiquen el mismo pedido.
+    private List<OutboxMessage> outbox;
+    private String outboxLease;
+    private LocalDateTime outboxLeaseUntil;
+
     // --- Constructores ---
     public Order() {
         this.status = OrderStatus.RECIBIDO;
@@ -121,6 +138,21 @@ public class Order {
 
     public void setDeliveryPrice(double deliveryPrice) {this.deliveryPrice = deliveryPrice;}
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public Map<OrderStatus, LocalDateTime> getStatusTimestamps() { return statusTimestamps; }
+    public void setStatusTimestamps(Map<OrderStatus, LocalDateTime> statusTimestamps) { this.statusTimestamps = statusTimestamps; }
+
+    public List<OutboxMessage> getOutbox() { return outbox; }
+    public void setOutbox(List<OutboxMessage> outbox) { this.outbox = outbox; }
+
+    public String getOutboxLease() { return outboxLease; }
+    public void setOutboxLease(String outboxLease) { this.outboxLease = outboxLease; }
+
+    public LocalDateTime getOutboxLeaseUntil() { return outboxLeaseUntil; }
+    public void setOutboxLeaseUntil(LocalDateTime outboxLeaseUntil) { this.outboxLeaseUntil = outboxLeaseUntil; }
+
     // --- Clases internas ---
     public static class Item {
         private String productId;
@@ -172,6 +204,57 @@ public class Order {
         public void setRestaurantName(String restaurantName) { this.restaurantName = restaurantName; }
     }
 
+    public static class OutboxMessage {
+        private String messageId;
+        private int sequence; // orden de publicación dentro del pedido
+        private String exchange;
+        private String routingKey;
+        private Map<String, Object> payload;
+        private LocalDateTime createdAt;
+        private LocalDateTime nextAttemptAt;
+        private int attempts;
+        private String lastError;
+
+        public OutboxMessage() {}
+        public OutboxMessage(String messageId, int sequence, String exchange, String routingKey,
+                             Map<String, Object> payload, LocalDateTime createdAt) {
+            this.messageId = messageId;
+            this.sequence = sequence;
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.payload = payload;
+            this.createdAt = createdAt;
+            this.nextAttemptAt = createdAt;
+        }
+
+        public String getMessageId() { return messageId; }
+        public void setMessageId(String messageId) { this.messageId = messageId; }
+
+        public int getSequence() { return sequence; }
+        public void setSequence(int sequence) { this.sequence = sequence; }
+
+        public String getExchange() { return exchange; }
+        public void setExchange(String exchange) { this.exchange = exchange; }
+
+        public String getRoutingKey() { return routingKey; }
+        public void setRoutingKey(String routingKey) { this.routingKey = routingKey; }
+
+        public Map<String, Object> getPayload() { return payload; }
+        public void setPayload(Map<String, Object> payload) { this.payload = payload; }
+
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+        public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+        public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+        public int getAttempts() { return attempts; }
+        public void setAttempts(int attempts) { this.attempts = attempts; }
+
+        public String getLastError() { return lastError; }
+        public void setLastError(String lastError) { this.lastError = lastError; }
+    }
+
     // --- Enum para status ---
     public enum OrderStatus {
         RECIBIDO,        // Pedido recibido
@@ -180,7 +263,33 @@ public class Order {
         EN_DELIVERY,     // Solo si isDelivery=true
         ENTREGADO,       // Finalizado
         PAID,            // Pagado via Mercado Pago
-        FAILED           // Pago fallido
+        FAILED;          // Pago fallido o pedido cancelado
+
+        /**
+         * Estados a los que se puede pasar desde éste. El avance de cocina es lineal, cualquier
+         * estado puede cancelarse (FAILED) y los pagos mueven entre RECIBIDO, PAID y FAILED
+         * (un pago rechazado vuelve a RECIBIDO para reintentarse).
+         */
+        public Set<OrderStatus> siguientes() {
+            return switch (this) {
+                case RECIBIDO -> EnumSet.of(EN_PREPARACION, PAID, FAILED);
+                case PAID -> EnumSet.of(RECIBIDO, EN_PREPARACION, FAILED);
+                case EN_PREPARACION -> EnumSet.of(LISTO, FAILED);
+                case LISTO -> EnumSet.of(EN_DELIVERY, ENTREGADO, FAILED);
+                case EN_DELIVERY -> EnumSet.of(ENTREGADO, FAILED);
+                case ENTREGADO -> EnumSet.of(FAILED);
+                case FAILED -> EnumSet.of(RECIBIDO);
+            };
+        }
+
+        public boolean puedePasarA(OrderStatus destino) {
+            return siguientes().contains(destino);
+        }
+
+        /** Estados desde los que se llega a éste: es la guarda de las actualizaciones condicionales. */
+        public List<OrderStatus> origenes() {
+            return Arrays.stream(values()).filter(origen -> origen.puedePasarA(this)).toList();
+        }
     }
 
  
@@ -0,0 +1,61 @@
+package com.tapalque.msvc_pedidos.entity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Bloque del archivo frío de pedidos: los pedidos de un restaurante en un mes (por dateCreated),
+ * como NDJSON (JSON extendido relajado, un documento de orders por línea) comprimido con gzip.
+ * Un mes puede ocupar varios bloques; pedidos guarda los _id archivados para no duplicarlos
+ * si un archivado se corta entre el insert del bloque y el borrado de orders.
+ */
+@Document(collection = "orders_archive")
+public class OrderArchive {
+
+    @Id
+    private String id;
+    private String restaurantId;
+    private String mes; // yyyy-MM
+    private LocalDateTime desde;
+    private LocalDateTime hasta;
+    private int cantidad;
+    private long bytesOriginales;
+    private List<String> pedidos;
+    private byte[] datos;
+    private LocalDateTime archivado;
+
+    public OrderArchive() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getRestaurantId() { return restaurantId; }
+    public void setRestaurantId(String restaurantId) { this.restaurantId = restaurantId; }
+
+    public String getMes() { return mes; }
+    public void setMes(String mes) { this.mes = mes; }
+
+    public LocalDateTime getDesde() { return desde; }
+    public void setDesde(LocalDateTime desde) { this.desde = desde; }
+
+    public LocalDateTime getHasta() { return hasta; }
+    public void setHasta(LocalDateTime hasta) { this.hasta = hasta; }
+
+    public int getCantidad() { return cantidad; }
+    public void setCantidad(int cantidad) { this.cantidad = cantidad; }
+
+    public long getBytesOriginales() { return bytesOriginales; }
+    public void setBytesOriginales(long bytesOriginales) { this.bytesOriginales = bytesOriginales; }
+
+    public List<String> getPedidos() { return pedidos; }
+    public void setPedidos(List<String> pedidos) { this.pedidos = pedidos; }
+
+    public byte[] getDatos() { return datos; }
+    public void setDatos(byte[] datos) { this.datos = datos; }
+
+    public LocalDateTime getArchivado() { return archivado; }
+    public void setArchivado(LocalDateTime archivado) { this.archivado = archivado; }
+}
@@ -0,0 +1,85 @@
+package com.tapalque.msvc_pedidos.entity;
+
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Lo que un pedido aporta hoy a daily_sales (_id = id del pedido). Al cambiar el pedido se calcula
+ * la venta nueva, se reemplaza ésta con control de versión y se aplica la diferencia a los totales
+ * del día. Hasta que la diferencia está aplicada queda pendiente y guarda la venta anterior.
+ * Vive fuera de orders para que los save() completos del pedido no la pisen, y se borra cuando el
+ * pedido sale de orders (archivo o retención).
+ */
+@Document(collection = "ventas_aportes")
+public class VentaAporte {
+
+    @Id
+    private String id;
+    private Venta venta; // null si el pedido no cuenta como venta (no entregado, cancelado)
+    private long version;
+    private Venta anterior; // venta reemplazada, mientras la diferencia está pendiente
+    private boolean pendiente;
+
+    public VentaAporte() {}
+
+    public VentaAporte(String id, Venta venta, long version) {
+        this.id = id;
+        this.venta = venta;
+        this.version = version;
+    }
+
+    /** Un pedido cuenta como venta cuando está ENTREGADO, igual que en el cierre del día del panel. */
+    public static Venta ventaDe(Order order) {
+        if (order == null || order.getStatus() != Order.OrderStatus.ENTREGADO
+                || order.getRestaurant() == null || order.getRestaurant().getRestaurantId() == null
+                || order.getDateCreated() == null) {
+            return null;
+        }
+        List<Plato> platos = order.getItems() == null ? List.of() : order.getItems().stream()
+                .map(item -> {
+                    int cantidad = item.getItemQuantity() != null ? item.getItemQuantity() : 0;
+                    double precio = item.getItemPrice() != null ? item.getItemPrice() : 0.0;
+                    return new Plato(item.getProductId() != null ? item.getProductId() : Plato.SIN_ID,
+                            item.getItemName(), cantidad, precio * cantidad);
+                })
+                .toList();
+        return new Venta(
+                order.getRestaurant().getRestaurantId(),
+                order.getDateCreated().toLocalDate().toString(),
+                order.getTotalPrice() != null ? order.getTotalPrice() : 0.0,
+                Boolean.TRUE.equals(order.getPaidWithMercadoPago()),
+                Boolean.TRUE.equals(order.getIsDelivery()),
+                platos);
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Venta getVenta() { return venta; }
+    public void setVenta(Venta venta) { this.venta = venta; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public Venta getAnterior() { return anterior; }
+    public void setAnterior(Venta anterior) { this.anterior = anterior; }
+
+    public boolean isPendiente() { return pendiente; }
+    public void setPendiente(boolean pendiente) { this.pendiente = pendiente; }
+
+    /** fecha en formato yyyy-MM-dd (día de creación del pedido). */
+    public record Venta(String restaurantId, String fecha, double total, boolean mercadoPago,
+                        boolean delivery, List<Plato> platos) {
+
+        public boolean mismoDia(Venta otra) {
+            return otra != null && Objects.equals(restaurantId, otra.restaurantId) && Objects.equals(fecha, otra.fecha);
+        }
+    }
+
+    public record Plato(String productId, String nombre, int cantidad, double total) {
+        public static final String SIN_ID = "sin-id";
+    }
+}
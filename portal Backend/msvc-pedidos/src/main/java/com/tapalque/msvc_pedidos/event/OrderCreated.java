@@ -0,0 +1,48 @@
+package com.tapalque.msvc_pedidos.event;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.tapalque.msvc_pedidos.entity.Order;
+
+/**
+ * Snapshot compacto que recibe el panel de cocina cuando llega un pedido (pedido:nuevo).
+ * Sólo lleva lo que el panel muestra; también es la respuesta del endpoint de resincronización.
+ */
+public record OrderCreated(
+        String id,
+        long version,
+        String status,
+        LocalDateTime dateCreated,
+        String userName,
+        String userPhone,
+        Double totalPrice,
+        Boolean isDelivery,
+        String deliveryAddress,
+        Boolean paidWithCash,
+        Boolean paidWithMercadoPago,
+        List<Item> items) {
+
+    public record Item(String itemName, Double itemPrice, Integer itemQuantity, String notas) {}
+
+    public static OrderCreated from(Order order) {
+        List<Item> items = order.getItems() == null
+                ? List.of()
+                : order.getItems().stream()
+                        .map(i -> new Item(i.getItemName(), i.getItemPrice(), i.getItemQuantity(), i.getNotas()))
+                        .toList();
+        return new OrderCreated(
+                order.getId(),
+                order.getVersion(),
+                order.getStatus().name(),
+                order.getDateCreated(),
+                order.getUserName(),
+                order.getUserPhone(),
+                order.getTotalPrice(),
+                order.getIsDelivery(),
+                order.getDeliveryAddress(),
+                order.getPaidWithCash(),
+                order.getPaidWithMercadoPago(),
+                items);
+    }
+}
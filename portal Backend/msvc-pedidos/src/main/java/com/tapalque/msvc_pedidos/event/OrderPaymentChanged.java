@@ -0,0 +1,14 @@
+package com.tapalque.msvc_pedidos.event;
+
+import com.tapalque.msvc_pedidos.entity.Order;
+
+/**
+ * Delta de cambio en el pago (pedido:pago): estado actual y si quedó pagado por Mercado Pago.
+ */
+public record OrderPaymentChanged(String id, String status, Boolean paidWithMercadoPago, long version) {
+
+    public static OrderPaymentChanged from(Order order) {
+        return new OrderPaymentChanged(order.getId(), order.getStatus().name(),
+                order.getPaidWithMercadoPago(), order.getVersion());
+    }
+}
@@ -0,0 +1,14 @@
+package com.tapalque.msvc_pedidos.event;
+
+import com.tapalque.msvc_pedidos.entity.Order;
+
+/**
+ * Delta de cambio de estado (pedido:actualizado / pedido:estado).
+ * Si el cliente ve un salto de versión pide el snapshot con GET /orders/{id}/snapshot.
+ */
+public record OrderStatusChanged(String id, String status, long version) {
+
+    public static OrderStatusChanged from(Order order) {
+        return new OrderStatusChanged(order.getId(), order.getStatus().name(), order.getVersion());
+    }
+}
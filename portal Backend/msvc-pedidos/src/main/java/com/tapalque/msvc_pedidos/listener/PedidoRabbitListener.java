@@ -1,35 +1,119 @@
 package com.tapalque.msvc_pedidos.listener;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import com.tapalque.msvc_pedidos.config.PagoBatchProperties;
+import com.tapalque.msvc_pedidos.config.RabbitMQConfig;
 import com.tapalque.msvc_pedidos.dto.PagoEventoDTO;
-import com.tapalque.msvc_pedidos.service.OrderService;
+import com.tapalque.msvc_pedidos.service.PagoPedidoBatchService;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
+/**
+ * Resultados de pago de msvc-mercado-pago, consumidos en lotes.
+ * Cada lote se escribe con un solo bulk en Mongo y se confirma con un ack múltiple recién cuando
+ * la escritura terminó; si falla, el lote completo vuelve a la cola. Los mensajes que nunca van a
+ * poder aplicarse se copian a pagos.pedidos.dlq con el motivo y se confirman junto con el lote.
+ */
 @Component
 public class PedidoRabbitListener {
 
-    @Autowired
-    private OrderService orderService;
+    private static final Logger logger = LoggerFactory.getLogger(PedidoRabbitListener.class);
+
+    static final String HEADER_MOTIVO = "x-motivo-rechazo";
+
+    private final PagoPedidoBatchService batchService;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper objectMapper;
+    private final PagoBatchProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public PedidoRabbitListener(PagoPedidoBatchService batchService, RabbitTemplate rabbitTemplate,
+                                ObjectMapper objectMapper, PagoBatchProperties properties,
+                                MeterRegistry meterRegistry) {
+        this.batchService = batchService;
+        this.rabbitTemplate = rabbitTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @RabbitListener(queues = RabbitMQConfig.QUEUE_PEDIDOS, containerFactory = "pagosBatchContainerFactory")
+    public void recibirPagosPedidos(List<Message> mensajes, Channel channel) throws IOException {
+        if (mensajes.isEmpty()) {
+            return;
+        }
+        long ultimoTag = mensajes.get(mensajes.size() - 1).getMessageProperties().getDeliveryTag();
+
+        List<Recibido> validos = new ArrayList<>();
+        List<Rechazado> rechazados = new ArrayList<>();
+        for (Message mensaje : mensajes) {
+            try {
+                PagoEventoDTO evento = objectMapper.readValue(mensaje.getBody(), PagoEventoDTO.class);
+                String motivo = validar(evento);
+                if (motivo == null) {
+                    validos.add(new Recibido(mensaje, evento));
+                } else {
+                    rechazados.add(new Rechazado(mensaje, motivo));
+                }
+            } catch (IOException e) {
+                rechazados.add(new Rechazado(mensaje, "JSON inválido: " + e.getMessage()));
+            }
+        }
 
-    @RabbitListener(queues = "pagos.pedidos")
-    public void recibirPagoPedido(PagoEventoDTO evento) {
         try {
-            System.out.println("Recibido evento de pago para pedido ID: " + evento.getReferenciaId());
-
-            if ("APROBADO".equals(evento.getEstado())) {
-                orderService.confirmarPagoPedido(evento.getReferenciaId(), evento);
-            } else if ("RECHAZADO".equals(evento.getEstado())) {
-                orderService.rechazarPagoPedido(evento.getReferenciaId(), evento);
-            } else if ("PENDIENTE".equals(evento.getEstado())) {
-                orderService.marcarPagoPendientePedido(evento.getReferenciaId(), evento);
+            Set<String> aplicados = batchService.aplicar(validos.stream().map(Recibido::evento).toList())
+                    .block(properties.getWriteTimeout());
+            for (Recibido recibido : validos) {
+                if (aplicados == null || !aplicados.contains(recibido.evento().getReferenciaId())) {
+                    rechazados.add(new Rechazado(recibido.mensaje(), "Pedido inexistente"));
+                }
             }
+            rechazados.forEach(this::enviarADeadLetter);
+        } catch (RuntimeException e) {
+            // Mongo o el broker no respondieron: todo el lote vuelve a la cola y se reintenta
+            logger.error("Error aplicando lote de {} pagos de pedidos, se devuelve a la cola: {}",
+                    mensajes.size(), e.getMessage(), e);
+            channel.basicNack(ultimoTag, true, true);
+            return;
+        }
 
-            System.out.println("Pedido ID " + evento.getReferenciaId() + " actualizado con estado: " + evento.getEstado());
-        } catch (Exception e) {
-            System.err.println("Error al procesar evento de pago pedido: " + e.getMessage());
-            throw e; // Para reintento automático
+        channel.basicAck(ultimoTag, true);
+        meterRegistry.summary("pedidos.pagos.lote").record(mensajes.size());
+        logger.info("Lote de pagos de pedidos aplicado: {} mensajes, {} a la DLQ", mensajes.size(), rechazados.size());
+    }
+
+    private static String validar(PagoEventoDTO evento) {
+        if (evento == null || evento.getReferenciaId() == null || evento.getReferenciaId().isBlank()) {
+            return "Evento sin referenciaId";
+        }
+        if (evento.getEstado() == null || !PagoPedidoBatchService.ESTADOS.contains(evento.getEstado())) {
+            return "Estado de pago desconocido: " + evento.getEstado();
         }
+        return null;
     }
+
+    private void enviarADeadLetter(Rechazado rechazado) {
+        Message mensaje = rechazado.mensaje();
+        mensaje.getMessageProperties().setHeader(HEADER_MOTIVO, rechazado.motivo());
+        rabbitTemplate.send("", RabbitMQConfig.QUEUE_PEDIDOS_DLQ, mensaje);
+        meterRegistry.counter("pedidos.pagos.dead_letter").increment();
+        logger.warn("Pago de pedido enviado a {}: {}", RabbitMQConfig.QUEUE_PEDIDOS_DLQ, rechazado.motivo());
+    }
+
+    private record Recibido(Message mensaje, PagoEventoDTO evento) {}
+
+    private record Rechazado(Message mensaje, String motivo) {}
 }
@@ -0,0 +1,18 @@
+package com.tapalque.msvc_pedidos.repository;
+
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.tapalque.msvc_pedidos.entity.DailySales;
+
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface DailySalesRepository extends ReactiveMongoRepository<DailySales, String> {
+
+    // fecha es yyyy-MM-dd: el orden de los strings coincide con el de los días (índice restaurantId + fecha)
+    // Sin aportes: son las versiones por pedido que usa DailySalesService para no sumar dos veces
+    @Query(value = "{ 'restaurantId': ?0, 'fecha': { $gte: ?1, $lte: ?2 } }", sort = "{ 'fecha': 1 }", fields = "{ 'aportes': 0 }")
+    Flux<DailySales> findRango(String restaurantId, String desde, String hasta);
+}
@@ -0,0 +1,17 @@
+package com.tapalque.msvc_pedidos.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.tapalque.msvc_pedidos.entity.IdempotencyRecord;
+
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface IdempotencyRepository extends ReactiveMongoRepository<IdempotencyRecord, String> {
+
+    // Libera una clave cuyo dueño no terminó a tiempo (instancia caída a mitad del alta)
+    Mono<Long> deleteByIdAndLockedUntilBefore(String id, LocalDateTime now);
+}
@@ -1,10 +1,15 @@
 package com.tapalque.msvc_pedidos.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 
+import com.tapalque.msvc_pedidos.dto.OrderSummaryDTO;
 import com.tapalque.msvc_pedidos.entity.Order;
 
 import reactor.core.publisher.Flux;
@@ -13,6 +18,10 @@ import reactor.core.publisher.Mono;
 @Repository
 public interface  OrderRepository extends ReactiveMongoRepository<Order, String> {
 
+    // Proyección de los listados livianos: mismos campos que OrderSummaryDTO
+    String CAMPOS_RESUMEN = "{ 'userId': 1, 'restaurant': 1, 'status': 1, 'totalPrice': 1, 'isDelivery': 1, "
+            + "'paidWithMercadoPago': 1, 'paidWithCash': 1, 'dateCreated': 1, 'dateUpdated': 1, 'version': 1 }";
+
     // Pedidos de un restaurante
     Flux<Order> findByRestaurant_RestaurantId(String restaurantId);
 
@@ -30,4 +39,54 @@ public interface  OrderRepository extends ReactiveMongoRepository<Order, String>
     Flux<Order> findByUserIdAndDateCreatedBetween(
             String userId, LocalDateTime desde, LocalDateTime hasta);
 
+    // Pedidos activos del día para reconstruir el tablero de cocina (índice { status: 1, dateCreated: -1 })
+    Flux<Order> findByStatusInAndDateCreatedGreaterThanEqual(
+            Collection<Order.OrderStatus> statuses, LocalDateTime desde);
+
+    // --- Paginación por cursor (keyset) sobre dateCreated + _id, más recientes primero ---
+    // Índices: { restaurant.restaurantId: 1, dateCreated: -1, _id: -1 } y { userId: 1, dateCreated: -1, _id: -1 }
+
+    @Query(value = "{ 'restaurant.restaurantId': ?0, 'dateCreated': { $gte: ?1, $lte: ?2 } }",
+           sort = "{ 'dateCreated': -1, '_id': -1 }")
+    Flux<Order> findRestaurantPage(String restaurantId, LocalDateTime desde, LocalDateTime hasta, Limit limit);
+
+    @Query(value = "{ 'restaurant.restaurantId': ?0, 'dateCreated': { $gte: ?1, $lte: ?2 }, "
+                 + "$or: [ { 'dateCreated': { $lt: ?3 } }, { 'dateCreated': ?3, '_id': { $lt: ?4 } } ] }",
+           sort = "{ 'dateCreated': -1, '_id': -1 }")
+    Flux<Order> findRestaurantPageAfter(String restaurantId, LocalDateTime desde, LocalDateTime hasta,
+            LocalDateTime cursorDate, ObjectId cursorId, Limit limit);
+
+    @Query(value = "{ 'userId': ?0, 'dateCreated': { $gte: ?1, $lte: ?2 } }",
+           sort = "{ 'dateCreated': -1, '_id': -1 }")
+    Flux<Order> findUserPage(String userId, LocalDateTime desde, LocalDateTime hasta, Limit limit);
+
+    @Query(value = "{ 'userId': ?0, 'dateCreated': { $gte: ?1, $lte: ?2 }, "
+                 + "$or: [ { 'dateCreated': { $lt: ?3 } }, { 'dateCreated': ?3, '_id': { $lt: ?4 } } ] }",
+           sort = "{ 'dateCreated': -1, '_id': -1 }")
+    Flux<Order> findUserPageAfter(String userId, LocalDateTime desde, LocalDateTime hasta,
+            LocalDateTime cursorDate, ObjectId cursorId, Limit limit);
+
+    // --- Resúmenes (?view=summary): mismas consultas, pero Mongo devuelve sólo CAMPOS_RESUMEN ---
+    // Los listados sin paginar usan Limit.unlimited()
+
+    @Query(value = "{ 'restaurant.restaurantId': ?0, 'dateCreated': { $gte: ?1, $lte: ?2 } }",
+           fields = CAMPOS_RESUMEN, sort = "{ 'dateCreated': -1, '_id': -1 }")
+    Flux<OrderSummaryDTO> findRestaurantSummaryPage(String restaurantId, LocalDateTime desde, LocalDateTime hasta, Limit limit);
+
+    @Query(value = "{ 'restaurant.restaurantId': ?0, 'dateCreated': { $gte: ?1, $lte: ?2 }, "
+                 + "$or: [ { 'dateCreated': { $lt: ?3 } }, { 'dateCreated': ?3, '_id': { $lt: ?4 } } ] }",
+           fields = CAMPOS_RESUMEN, sort = "{ 'dateCreated': -1, '_id': -1 }")
+    Flux<OrderSummaryDTO> findRestaurantSummaryPageAfter(String restaurantId, LocalDateTime desde, LocalDateTime hasta,
+            LocalDateTime cursorDate, ObjectId cursorId, Limit limit);
+
+    @Query(value = "{ 'userId': ?0, 'dateCreated': { $gte: ?1, $lte: ?2 } }",
+           fields = CAMPOS_RESUMEN, sort = "{ 'dateCreated': -1, '_id': -1 }")
+    Flux<OrderSummaryDTO> findUserSummaryPage(String userId, LocalDateTime desde, LocalDateTime hasta, Limit limit);
+
+    @Query(value = "{ 'userId': ?0, 'dateCreated': { $gte: ?1, $lte: ?2 }, "
+                 + "$or: [ { 'dateCreated': { $lt: ?3 } }, { 'dateCreated': ?3, '_id': { $lt: ?4 } } ] }",
+           fields = CAMPOS_RESUMEN, sort = "{ 'dateCreated': -1, '_id': -1 }")
+    Flux<OrderSummaryDTO> findUserSummaryPageAfter(String userId, LocalDateTime desde, LocalDateTime hasta,
+            LocalDateTime cursorDate, ObjectId cursorId, Limit limit);
+
 }
@@ -0,0 +1,43 @@
+package com.tapalque.msvc_pedidos.scheduled;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.tapalque.msvc_pedidos.service.EtaService;
+
+@Component
+public class EtaSnapshotScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(EtaSnapshotScheduler.class);
+
+    private final EtaService etaService;
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    public EtaSnapshotScheduler(EtaService etaService) {
+        this.etaService = etaService;
+    }
+
+    /**
+     * Guarda las franjas de demora que cambiaron (5 min por defecto). Igual que el relay del outbox,
+     * no bloquea el hilo del scheduler y saltea el tick si el snapshot anterior sigue en curso.
+     */
+    @Scheduled(fixedDelayString = "${pedidos.eta.snapshot-interval-ms:300000}")
+    public void guardarSnapshot() {
+        if (!enCurso.compareAndSet(false, true)) {
+            return;
+        }
+        etaService.guardarSnapshot()
+                .doFinally(signal -> enCurso.set(false))
+                .subscribe(
+                        guardadas -> {
+                            if (guardadas > 0) {
+                                logger.debug("Demoras: {} franjas guardadas", guardadas);
+                            }
+                        },
+                        e -> logger.error("Error guardando los histogramas de demora: {}", e.getMessage(), e));
+    }
+}
@@ -0,0 +1,39 @@
+package com.tapalque.msvc_pedidos.scheduled;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.tapalque.msvc_pedidos.config.RetentionProperties;
+import com.tapalque.msvc_pedidos.service.OrderRetentionService;
+
+@Component
+public class OrderRetentionScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderRetentionScheduler.class);
+
+    private final OrderRetentionService retentionService;
+    private final RetentionProperties properties;
+
+    public OrderRetentionScheduler(OrderRetentionService retentionService, RetentionProperties properties) {
+        this.retentionService = retentionService;
+        this.properties = properties;
+    }
+
+    /**
+     * Se ejecuta todos los días a las 3:00 AM (configurable con pedidos.retention.cron)
+     * Aplica las políticas de retención en lotes; se bloquea hasta terminar para no solapar ejecuciones.
+     */
+    @Scheduled(cron = "${pedidos.retention.cron:0 0 3 * * ?}")
+    public void aplicarRetencion() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            retentionService.purgeAll().block();
+        } catch (Exception e) {
+            logger.error("Error en la limpieza programada de pedidos: {}", e.getMessage(), e);
+        }
+    }
+}
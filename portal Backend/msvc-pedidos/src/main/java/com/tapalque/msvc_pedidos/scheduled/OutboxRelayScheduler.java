@@ -0,0 +1,47 @@
+package com.tapalque.msvc_pedidos.scheduled;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.tapalque.msvc_pedidos.config.OutboxProperties;
+import com.tapalque.msvc_pedidos.service.OutboxRelayService;
+
+@Component
+public class OutboxRelayScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelayScheduler.class);
+
+    private final OutboxRelayService relayService;
+    private final OutboxProperties properties;
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    public OutboxRelayScheduler(OutboxRelayService relayService, OutboxProperties properties) {
+        this.relayService = relayService;
+        this.properties = properties;
+    }
+
+    /**
+     * Revisa el outbox cada pedidos.outbox.poll-interval-ms (500 ms por defecto); con el outbox vacío
+     * es una sola consulta indexada. No bloquea el hilo del scheduler (lo comparte el broker STOMP):
+     * si la corrida anterior sigue en curso, este tick se saltea.
+     */
+    @Scheduled(fixedDelayString = "${pedidos.outbox.poll-interval-ms:500}")
+    public void publicarPendientes() {
+        if (!properties.isEnabled() || !enCurso.compareAndSet(false, true)) {
+            return;
+        }
+        relayService.relayPending()
+                .doFinally(signal -> enCurso.set(false))
+                .subscribe(
+                        publicados -> {
+                            if (publicados > 0) {
+                                logger.debug("Outbox: {} mensajes publicados", publicados);
+                            }
+                        },
+                        e -> logger.error("Error publicando el outbox de pedidos: {}", e.getMessage(), e));
+    }
+}
@@ -7,10 +7,20 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.event.OrderCreated;
+import com.tapalque.msvc_pedidos.event.OrderPaymentChanged;
+import com.tapalque.msvc_pedidos.event.OrderStatusChanged;
 
+/**
+ * Pushes STOMP de pedidos. Sólo pedido:nuevo lleva un snapshot (compacto); los cambios
+ * posteriores viajan como deltas con la versión del pedido. El campo "v" es la versión del
+ * esquema de eventos, para que el frontend distinga estos mensajes del documento completo.
+ */
 @Service
 public class AdminNotificationService {
 
+    static final int EVENT_SCHEMA_VERSION = 2;
+
     private final SimpMessagingTemplate messagingTemplate;
 
     public AdminNotificationService(SimpMessagingTemplate messagingTemplate) {
@@ -18,39 +28,30 @@ public class AdminNotificationService {
     }
 
     public void notificarNuevoPedido(Order order) {
-        String restaurantId = order.getRestaurant() != null
-                ? order.getRestaurant().getRestaurantId()
-                : null;
+        String restaurantId = restaurantIdDe(order);
         if (restaurantId == null) return;
 
         messagingTemplate.convertAndSend(
                 "/topic/pedidos/" + restaurantId,
-                Map.of(
-                        "type", "pedido:nuevo",
-                        "payload", order,
-                        "businessId", restaurantId,
-                        "businessType", "GASTRONOMIA",
-                        "timestamp", LocalDateTime.now().toString()
-                )
-        );
+                mensajeNegocio("pedido:nuevo", OrderCreated.from(order), restaurantId));
     }
 
     public void notificarPedidoActualizado(Order order) {
-        String restaurantId = order.getRestaurant() != null
-                ? order.getRestaurant().getRestaurantId()
-                : null;
+        String restaurantId = restaurantIdDe(order);
         if (restaurantId == null) return;
 
         messagingTemplate.convertAndSend(
                 "/topic/pedidos/" + restaurantId,
-                Map.of(
-                        "type", "pedido:actualizado",
-                        "payload", order,
-                        "businessId", restaurantId,
-                        "businessType", "GASTRONOMIA",
-                        "timestamp", LocalDateTime.now().toString()
-                )
-        );
+                mensajeNegocio("pedido:actualizado", OrderStatusChanged.from(order), restaurantId));
+    }
+
+    public void notificarPagoActualizado(Order order) {
+        String restaurantId = restaurantIdDe(order);
+        if (restaurantId == null) return;
+
+        messagingTemplate.convertAndSend(
+                "/topic/pedidos/" + restaurantId,
+                mensajeNegocio("pedido:pago", OrderPaymentChanged.from(order), restaurantId));
     }
 
     public void notificarUsuarioPedidoActualizado(Order order) {
@@ -65,11 +66,29 @@ public class AdminNotificationService {
                 "/topic/pedidos/user/" + userId,
                 Map.of(
                         "type", "pedido:estado",
-                        "payload", order,
+                        "v", EVENT_SCHEMA_VERSION,
+                        "payload", OrderStatusChanged.from(order),
                         "status", order.getStatus().name(),
                         "restaurantName", restaurantName,
                         "timestamp", LocalDateTime.now().toString()
                 )
         );
     }
+
+    static Map<String, Object> mensajeNegocio(String type, Object payload, String restaurantId) {
+        return Map.of(
+                "type", type,
+                "v", EVENT_SCHEMA_VERSION,
+                "payload", payload,
+                "businessId", restaurantId,
+                "businessType", "GASTRONOMIA",
+                "timestamp", LocalDateTime.now().toString()
+        );
+    }
+
+    private static String restaurantIdDe(Order order) {
+        return order.getRestaurant() != null
+                ? order.getRestaurant().getRestaurantId()
+                : null;
+    }
 }
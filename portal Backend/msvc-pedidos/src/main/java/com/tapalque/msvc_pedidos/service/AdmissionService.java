@@ -0,0 +1,308 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.tapalque.msvc_pedidos.config.AdmissionProperties;
+import com.tapalque.msvc_pedidos.config.AdmissionProperties.Modo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Control de admisión de altas por restaurante. Un pedido entra si los que la cocina tiene entre manos
+ * (del tablero en memoria) más las altas en curso no llegan al tope; si no, 429 con Retry-After o, en
+ * modo ESPERAR, una cola corta que se atiende en orden a medida que la cocina despacha.
+ *
+ * El tope es pedidos.admission.max-en-cocina o, en modo adaptativo, lo que la cocina despacha en la
+ * demora objetivo según los despachos recientes (ley de Little), acotado entre min y max. Todo el estado
+ * es por restaurante: un restaurante saturado no frena ni comparte locks con los demás.
+ *
+ * El restaurantId llega del cliente, así que el estado de un restaurante se descarta cuando queda ocioso
+ * (sin altas en curso, sin cola y sin despachos en la ventana); si vuelve a pedir se arma de cero.
+ */
+@Service
+public class AdmissionService {
+
+    private final KitchenBoardService kitchenBoardService;
+    private final AdmissionProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier reloj;
+    private final Map<String, Restaurante> restaurantes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdmissionService(KitchenBoardService kitchenBoardService, AdmissionProperties properties,
+                            MeterRegistry meterRegistry) {
+        this(kitchenBoardService, properties, meterRegistry, System::currentTimeMillis);
+    }
+
+    AdmissionService(KitchenBoardService kitchenBoardService, AdmissionProperties properties,
+                     MeterRegistry meterRegistry, LongSupplier reloj) {
+        this.kitchenBoardService = kitchenBoardService;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.reloj = reloj;
+        kitchenBoardService.alSalirDeCocina(this::despachado);
+    }
+
+    /**
+     * Ejecuta el alta si el restaurante tiene lugar. El lugar queda reservado hasta que el alta termina;
+     * para entonces el pedido ya está en el tablero y cuenta como en cocina.
+     */
+    public <T> Mono<T> admitir(String restaurantId, Supplier<Mono<T>> alta) {
+        if (!properties.isEnabled() || restaurantId == null) {
+            return Mono.defer(alta);
+        }
+        return Mono.defer(() -> {
+                    Reserva reserva = reservarOEncolar(restaurantId);
+                    Restaurante restaurante = reserva.restaurante();
+                    if (reserva.espera() == null) {
+                        meterRegistry.counter("pedidos.admision.admitidos").increment();
+                        return Mono.just(restaurante);
+                    }
+                    if (reserva.espera() == Espera.RECHAZO) {
+                        meterRegistry.counter("pedidos.admision.rechazados").increment();
+                        return Mono.error(new RestauranteSaturadoException(restaurante.retryAfter()));
+                    }
+                    return esperar(restaurante, reserva.espera()).thenReturn(restaurante);
+                })
+                .flatMap(restaurante -> Mono.defer(alta).doFinally(signal -> restaurante.liberar()));
+    }
+
+    private Reserva reservarOEncolar(String restaurantId) {
+        while (true) {
+            Restaurante restaurante = restaurantes.computeIfAbsent(restaurantId, Restaurante::new);
+            Espera espera = restaurante.reservarOEncolar();
+            // Si la limpieza lo descartó entre el get y la reserva, se vuelve a pedir
+            if (espera != Espera.DESCARTADO) {
+                return new Reserva(restaurante, espera);
+            }
+        }
+    }
+
+    private Mono<Boolean> esperar(Restaurante restaurante, Espera espera) {
+        long inicio = System.nanoTime();
+        return Mono.<Boolean>create(sink -> {
+                    sink.onCancel(() -> restaurante.abandonar(espera));
+                    restaurante.listo(espera, sink);
+                })
+                .timeout(properties.getEsperaMaxima())
+                .doOnNext(ok -> meterRegistry.timer("pedidos.admision.espera")
+                        .record(Duration.ofNanos(System.nanoTime() - inicio)))
+                .onErrorMap(TimeoutException.class, e -> {
+                    meterRegistry.counter("pedidos.admision.rechazados").increment();
+                    return new RestauranteSaturadoException(restaurante.retryAfter());
+                });
+    }
+
+    /** Pedidos en cocina más altas reservadas; lo que se compara contra el tope. */
+    public int ocupacion(String restaurantId) {
+        Restaurante restaurante = restaurantes.get(restaurantId);
+        return kitchenBoardService.enCocina(restaurantId) + (restaurante != null ? restaurante.reservados : 0);
+    }
+
+    public int limite(String restaurantId) {
+        Restaurante restaurante = restaurantes.get(restaurantId);
+        return (restaurante != null ? restaurante : new Restaurante(restaurantId)).limite();
+    }
+
+    private void despachado(String restaurantId) {
+        while (!restaurantes.computeIfAbsent(restaurantId, Restaurante::new).despachado()) {
+            // Descartado por la limpieza: el despacho va al que lo reemplaza
+        }
+    }
+
+    /** Descarta los restaurantes ociosos; el mapa no crece con restaurantIds que no vuelven a pedir. */
+    @Scheduled(fixedDelayString = "${pedidos.admission.limpieza:PT1M}")
+    public void limpiar() {
+        restaurantes.values().removeIf(Restaurante::descartarSiOcioso);
+    }
+
+    /** Restaurantes con estado de admisión en memoria. */
+    int restaurantesEnMemoria() {
+        return restaurantes.size();
+    }
+
+    private record Reserva(Restaurante restaurante, Espera espera) {}
+
+    /**
+     * Lugar pedido en la cola; RECHAZO marca que no hay lugar ni en la cola y DESCARTADO que el
+     * restaurante ya no está en el mapa.
+     */
+    private static final class Espera {
+        static final Espera RECHAZO = new Espera();
+        static final Espera DESCARTADO = new Espera();
+        MonoSink<Boolean> sink;
+        boolean admitida;
+        boolean cancelada;
+    }
+
+    private final class Restaurante {
+        private final String restaurantId;
+        private final ArrayDeque<Espera> cola = new ArrayDeque<>();
+        private final Despachos despachos = new Despachos(properties.getVentanaDespacho());
+        private volatile int reservados;
+        private boolean descartado;
+
+        Restaurante(String restaurantId) {
+            this.restaurantId = restaurantId;
+        }
+
+        // null: admitido y con lugar reservado
+        synchronized Espera reservarOEncolar() {
+            if (descartado) {
+                return Espera.DESCARTADO;
+            }
+            if (cola.isEmpty() && hayLugar()) {
+                reservados++;
+                return null;
+            }
+            if (properties.getModo() == Modo.ESPERAR && cola.size() < properties.getColaMaxima()) {
+                Espera espera = new Espera();
+                cola.add(espera);
+                meterRegistry.counter("pedidos.admision.encolados").increment();
+                return espera;
+            }
+            return Espera.RECHAZO;
+        }
+
+        void liberar() {
+            synchronized (this) {
+                reservados--;
+            }
+            atender();
+        }
+
+        boolean despachado() {
+            synchronized (this) {
+                if (descartado) {
+                    return false;
+                }
+                despachos.registrar(reloj.getAsLong());
+            }
+            atender();
+            return true;
+        }
+
+        /** Sin altas en curso, sin cola y sin despachos recientes: no hay nada que perder al descartarlo. */
+        synchronized boolean descartarSiOcioso() {
+            descartado = reservados == 0 && cola.isEmpty() && despachos.total(reloj.getAsLong()) == 0;
+            return descartado;
+        }
+
+        void listo(Espera espera, MonoSink<Boolean> sink) {
+            synchronized (this) {
+                espera.sink = sink;
+            }
+            atender();
+        }
+
+        /** Da lugar, en orden de llegada, a los que esperan y ya tienen su sink listo. */
+        void atender() {
+            List<Espera> admitidas = new ArrayList<>();
+            synchronized (this) {
+                while (!cola.isEmpty() && cola.peek().sink != null && hayLugar()) {
+                    Espera espera = cola.poll();
+                    if (!espera.cancelada) {
+                        espera.admitida = true;
+                        reservados++;
+                        admitidas.add(espera);
+                    }
+                }
+            }
+            // Fuera del lock: el alta puede seguir en este mismo hilo
+            admitidas.forEach(espera -> espera.sink.success(true));
+        }
+
+        void abandonar(Espera espera) {
+            boolean devolver;
+            synchronized (this) {
+                espera.cancelada = true;
+                cola.remove(espera);
+                // Se la admitió justo cuando venció la espera: el lugar vuelve a quedar libre
+                devolver = espera.admitida;
+            }
+            if (devolver) {
+                liberar();
+            }
+        }
+
+        private boolean hayLugar() {
+            return kitchenBoardService.enCocina(restaurantId) + reservados < limite();
+        }
+
+        synchronized int limite() {
+            int maximo = properties.getMaxEnCocina() > 0 ? properties.getMaxEnCocina() : Integer.MAX_VALUE;
+            if (!properties.isAdaptativo()) {
+                return maximo;
+            }
+            long recientes = despachos.total(reloj.getAsLong());
+            if (recientes < properties.getMinDespachos()) {
+                return maximo;
+            }
+            double porMinuto = recientes / (double) despachos.minutos();
+            long tope = (long) Math.ceil(porMinuto * properties.getDemoraObjetivo().toMinutes());
+            return (int) Math.max(properties.getMinEnCocina(), Math.min(maximo, tope));
+        }
+
+        /** Cuánto tarda la cocina en despachar lo que sobra, según el ritmo reciente. */
+        synchronized Duration retryAfter() {
+            long recientes = despachos.total(reloj.getAsLong());
+            if (recientes == 0) {
+                return properties.getRetryAfterPorDefecto();
+            }
+            int exceso = Math.max(1, kitchenBoardService.enCocina(restaurantId) + reservados + cola.size() - limite() + 1);
+            long segundos = (long) Math.ceil(exceso * despachos.minutos() * 60.0 / recientes);
+            return Duration.ofSeconds(Math.max(1, Math.min(segundos, properties.getRetryAfterMaximo().toSeconds())));
+        }
+    }
+
+    /** Despachos por minuto en una ventana corta: un contador por minuto, reciclado en anillo. */
+    static final class Despachos {
+        private final long[] minuto;
+        private final int[] cuenta;
+
+        Despachos(Duration ventana) {
+            int minutos = (int) Math.max(1, ventana.toMinutes());
+            this.minuto = new long[minutos];
+            this.cuenta = new int[minutos];
+        }
+
+        int minutos() {
+            return minuto.length;
+        }
+
+        void registrar(long ahoraMs) {
+            long m = ahoraMs / 60_000;
+            int i = (int) (m % minuto.length);
+            if (minuto[i] != m) {
+                minuto[i] = m;
+                cuenta[i] = 0;
+            }
+            cuenta[i]++;
+        }
+
+        long total(long ahoraMs) {
+            long m = ahoraMs / 60_000;
+            long total = 0;
+            for (int i = 0; i < minuto.length; i++) {
+                if (minuto[i] > m - minuto.length && minuto[i] <= m) {
+                    total += cuenta[i];
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import com.tapalque.msvc_pedidos.dto.VentasResumenDTO;
+import com.tapalque.msvc_pedidos.entity.DailySales;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.VentaAporte;
+import com.tapalque.msvc_pedidos.entity.VentaAporte.Plato;
+import com.tapalque.msvc_pedidos.entity.VentaAporte.Venta;
+import com.tapalque.msvc_pedidos.repository.DailySalesRepository;
+import com.tapalque.msvc_pedidos.repository.OrderRepository;
+
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Rollups diarios de ventas por restaurante (daily_sales).
+ * Cada cambio de un pedido recalcula su venta, la compara con la registrada en ventas_aportes y
+ * aplica sólo la diferencia con $inc sobre el documento del día. El backfill reconstruye ambas
+ * colecciones desde orders con agregaciones, para el historial previo o si los totales se desvían.
+ *
+ * El aporte y el $inc son dos escrituras: el aporte nuevo se guarda primero marcado pendiente y con
+ * la venta anterior, y se desmarca después del $inc. Cada día guarda la última versión de cada pedido
+ * que sumó (aportes.{id del pedido}), así que repetir la diferencia no vuelve a sumarla; la reconciliación
+ * completa los aportes que quedaron pendientes si el proceso se cayó en el medio.
+ */
+@Service
+public class DailySalesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailySalesService.class);
+
+    static final String DAILY_SALES = "daily_sales";
+    static final String VENTAS_APORTES = "ventas_aportes";
+    // El backfill arma éstas y las renombra sobre las reales: las lecturas nunca ven colecciones vacías
+    static final String DAILY_SALES_NUEVO = "daily_sales_backfill";
+    static final String VENTAS_APORTES_NUEVO = "ventas_aportes_backfill";
+    static final String TAREAS = "tareas";
+    static final String BACKFILL_ID = "backfill-ventas";
+
+    private static final int MAX_REINTENTOS = 5;
+    private static final int PLATOS_TOP = 10;
+    private static final Duration BACKFILL_LEASE = Duration.ofMinutes(30);
+    // Pedidos cambiados desde un poco antes del backfill: se vuelven a aplicar sobre las colecciones nuevas
+    private static final Duration BACKFILL_MARGEN = Duration.ofMinutes(1);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final OrderRepository orderRepository;
+    private final DailySalesRepository dailySalesRepository;
+    private final boolean backfillAlIniciar;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public DailySalesService(ReactiveMongoTemplate mongoTemplate, OrderRepository orderRepository,
+                             DailySalesRepository dailySalesRepository,
+                             @Value("${pedidos.ventas.backfill-on-startup:true}") boolean backfillAlIniciar) {
+        this.mongoTemplate = mongoTemplate;
+        this.orderRepository = orderRepository;
+        this.dailySalesRepository = dailySalesRepository;
+        this.backfillAlIniciar = backfillAlIniciar;
+    }
+
+    /**
+     * Aportes de pedidos que salen de orders (archivo o retención): ya no van a cambiar y no hace falta
+     * guardarlos. Los pendientes quedan hasta que la reconciliación aplique su diferencia.
+     */
+    static Query aportesDe(Collection<?> orderIds) {
+        return Query.query(Criteria.where("_id").in(orderIds).and("pendiente").ne(true));
+    }
+
+    // Primera vez con la colección vacía: se arma con el historial existente (una sola réplica, ver backfill)
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSiVacio() {
+        if (!backfillAlIniciar) {
+            return;
+        }
+        dailySalesRepository.count()
+                .filter(cantidad -> cantidad == 0)
+                .flatMap(vacio -> backfill())
+                .subscribe(
+                        dias -> logger.info("daily_sales reconstruido: {} días de ventas", dias),
+                        e -> logger.error("Error en el backfill de daily_sales: {}", e.getMessage(), e));
+    }
+
+    /**
+     * Refleja en los rollups el estado actual del pedido. Los errores se registran y no se propagan:
+     * el pedido ya quedó escrito y un aporte a medias lo completa la reconciliación.
+     */
+    public Mono<Void> registrar(Order order) {
+        if (order == null || order.getId() == null) {
+            return Mono.empty();
+        }
+        return aplicar(order.getId())
+                .onErrorResume(e -> {
+                    logger.error("Error actualizando daily_sales para el pedido {}: {}", order.getId(), e.getMessage(), e);
+                    return Mono.empty();
+                });
+    }
+
+    // Lee el pedido y su aporte actuales; si otro cambio ganó la carrera por el aporte, se vuelve a leer
+    Mono<Void> aplicar(String orderId) {
+        return Mono.defer(() -> Mono.zip(
+                        orderRepository.findById(orderId).map(Optional::of).defaultIfEmpty(Optional.empty()),
+                        mongoTemplate.findById(orderId, VentaAporte.class).map(Optional::of).defaultIfEmpty(Optional.empty()))
+                .flatMap(leido -> {
+                    VentaAporte aporte = leido.getT2().orElse(null);
+                    if (aporte != null && aporte.isPendiente()) {
+                        // La diferencia anterior puede no estar en daily_sales: se completa antes de calcular otra
+                        return completar(aporte).then(Mono.<Void>error(new AporteConcurrente(orderId)));
+                    }
+                    Venta nueva = VentaAporte.ventaDe(leido.getT1().orElse(null));
+                    Venta anterior = aporte != null ? aporte.getVenta() : null;
+                    if (Objects.equals(nueva, anterior)) {
+                        return Mono.<Void>empty();
+                    }
+                    return reemplazarAporte(orderId, aporte, nueva)
+                            .switchIfEmpty(Mono.error(new AporteConcurrente(orderId)))
+                            .flatMap(this::completar);
+                }))
+                .retryWhen(Retry.max(MAX_REINTENTOS).filter(AporteConcurrente.class::isInstance));
+    }
+
+    // Vacío si otro cambio reemplazó el aporte primero
+    private Mono<VentaAporte> reemplazarAporte(String orderId, VentaAporte aporte, Venta nueva) {
+        Venta anterior = aporte != null ? aporte.getVenta() : null;
+        VentaAporte reemplazo = new VentaAporte(orderId, nueva, aporte != null ? aporte.getVersion() + 1 : 1);
+        reemplazo.setAnterior(anterior);
+        reemplazo.setPendiente(true);
+        if (aporte == null) {
+            return mongoTemplate.insert(reemplazo)
+                    .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+        }
+        Query query = Query.query(Criteria.where("_id").is(orderId).and("version").is(aporte.getVersion()));
+        Update update = new Update().set("venta", nueva).set("anterior", anterior).set("pendiente", true).inc("version", 1);
+        return mongoTemplate.updateFirst(query, update, VentaAporte.class)
+                .filter(result -> result.getModifiedCount() == 1)
+                .map(result -> reemplazo);
+    }
+
+    // Aplica la diferencia del aporte pendiente y lo desmarca, salvo que ya lo haya reemplazado otro cambio
+    private Mono<Void> completar(VentaAporte aporte) {
+        Query query = Query.query(Criteria.where("_id").is(aporte.getId()).and("version").is(aporte.getVersion()));
+        return aplicarDiferencia(aporte.getId(), aporte.getVersion(), aporte.getAnterior(), aporte.getVenta())
+                .then(Mono.defer(() -> mongoTemplate.updateFirst(query,
+                        new Update().set("pendiente", false).unset("anterior"), VentaAporte.class)))
+                .then();
+    }
+
+    /** Completa los aportes que quedaron pendientes (caída entre el aporte y el $inc). */
+    @Scheduled(fixedDelayString = "${pedidos.ventas.reconciliacion:PT1M}")
+    public void reconciliar() {
+        reconciliarPendientes().subscribe(
+                completados -> {
+                    if (completados > 0) {
+                        logger.info("daily_sales: {} aportes pendientes completados", completados);
+                    }
+                },
+                e -> logger.error("Error reconciliando daily_sales: {}", e.getMessage(), e));
+    }
+
+    Mono<Long> reconciliarPendientes() {
+        return mongoTemplate.find(Query.query(Criteria.where("pendiente").is(true)), VentaAporte.class)
+                .concatMap(aporte -> completar(aporte).thenReturn(aporte))
+                .count();
+    }
+
+    private Mono<Void> aplicarDiferencia(String orderId, long version, Venta anterior, Venta nueva) {
+        LocalDateTime now = LocalDateTime.now();
+        if (anterior != null && anterior.mismoDia(nueva)) {
+            Map<String, Number> inc = new LinkedHashMap<>();
+            acumular(inc, anterior, -1);
+            acumular(inc, nueva, 1);
+            return upsertDia(orderId, version, nueva, inc, now);
+        }
+        Mono<Void> quitar = Mono.empty();
+        if (anterior != null) {
+            Map<String, Number> inc = new LinkedHashMap<>();
+            acumular(inc, anterior, -1);
+            quitar = upsertDia(orderId, version, anterior, inc, now);
+        }
+        Mono<Void> sumar = Mono.empty();
+        if (nueva != null) {
+            Map<String, Number> inc = new LinkedHashMap<>();
+            acumular(inc, nueva, 1);
+            sumar = upsertDia(orderId, version, nueva, inc, now);
+        }
+        return quitar.then(sumar);
+    }
+
+    private static void acumular(Map<String, Number> inc, Venta venta, int signo) {
+        sumar(inc, "pedidos", signo);
+        sumar(inc, "total", signo * venta.total());
+        sumar(inc, venta.mercadoPago() ? "pedidosMercadoPago" : "pedidosEfectivo", signo);
+        sumar(inc, venta.mercadoPago() ? "totalMercadoPago" : "totalEfectivo", signo * venta.total());
+        if (venta.delivery()) {
+            sumar(inc, "deliveries", signo);
+        }
+        for (Plato plato : venta.platos()) {
+            sumar(inc, "platos." + plato.productId() + ".cantidad", signo * plato.cantidad());
+            sumar(inc, "platos." + plato.productId() + ".total", signo * plato.total());
+        }
+    }
+
+    private static void sumar(Map<String, Number> inc, String campo, int valor) {
+        inc.merge(campo, valor, (a, b) -> a.intValue() + b.intValue());
+    }
+
+    private static void sumar(Map<String, Number> inc, String campo, double valor) {
+        inc.merge(campo, valor, (a, b) -> a.doubleValue() + b.doubleValue());
+    }
+
+    // Sin entidad: las claves de platos son ids de producto y no deben pasar por el mapeo de propiedades.
+    // Sólo suma si el día no tiene ya esta versión del pedido
+    private Mono<Void> upsertDia(String orderId, long version, Venta venta, Map<String, Number> inc, LocalDateTime now) {
+        Update update = new Update()
+                .setOnInsert("restaurantId", venta.restaurantId())
+                .setOnInsert("fecha", venta.fecha())
+                .set("actualizado", now)
+                .set("aportes." + orderId, version);
+        inc.forEach(update::inc);
+        for (Plato plato : venta.platos()) {
+            if (plato.nombre() != null) {
+                update.set("platos." + plato.productId() + ".nombre", plato.nombre());
+            }
+        }
+        Query query = Query.query(Criteria.where("_id").is(DailySales.idDe(venta.restaurantId(), venta.fecha()))
+                .and("aportes." + orderId).not().gte(version));
+        Mono<Void> upsert = Mono.defer(() -> mongoTemplate.upsert(query, update, DAILY_SALES)).then();
+        // Duplicate key: o el día ya tiene esta versión (no matcheó e intentó crearlo) o dos pedidos
+        // crearon el día a la vez. En el segundo intento el día existe y sólo queda el primer caso
+        return upsert.onErrorResume(DuplicateKeyException.class,
+                e -> upsert.onErrorResume(DuplicateKeyException.class, otra -> Mono.empty()));
+    }
+
+    /** Resumen del rango leyendo sólo daily_sales: un documento por día con ventas. */
+    public Mono<VentasResumenDTO> resumen(String restaurantId, LocalDate desde, LocalDate hasta) {
+        return dailySalesRepository.findRango(restaurantId, desde.toString(), hasta.toString())
+                .collectList()
+                .map(dias -> resumir(restaurantId, desde, hasta, dias));
+    }
+
+    static VentasResumenDTO resumir(String restaurantId, LocalDate desde, LocalDate hasta, List<DailySales> dias) {
+        int pedidos = 0, pedidosEfectivo = 0, pedidosMercadoPago = 0, deliveries = 0;
+        double total = 0, totalEfectivo = 0, totalMercadoPago = 0;
+        Map<String, VentasResumenDTO.PlatoTop> platos = new HashMap<>();
+        for (DailySales dia : dias) {
+            pedidos += dia.getPedidos();
+            pedidosEfectivo += dia.getPedidosEfectivo();
+            pedidosMercadoPago += dia.getPedidosMercadoPago();
+            deliveries += dia.getDeliveries();
+            total += dia.getTotal();
+            totalEfectivo += dia.getTotalEfectivo();
+            totalMercadoPago += dia.getTotalMercadoPago();
+            if (dia.getPlatos() != null) {
+                dia.getPlatos().forEach((productId, plato) -> platos.merge(productId,
+                        new VentasResumenDTO.PlatoTop(productId, plato.getNombre(), plato.getCantidad(), plato.getTotal()),
+                        (a, b) -> new VentasResumenDTO.PlatoTop(productId,
+                                b.nombre() != null ? b.nombre() : a.nombre(),
+                                a.cantidad() + b.cantidad(), a.total() + b.total())));
+            }
+        }
+        List<VentasResumenDTO.PlatoTop> top = platos.values().stream()
+                .filter(plato -> plato.cantidad() > 0)
+                .sorted(Comparator.comparingInt(VentasResumenDTO.PlatoTop::cantidad).reversed()
+                        .thenComparing(VentasResumenDTO.PlatoTop::productId))
+                .limit(PLATOS_TOP)
+                .toList();
+        return new VentasResumenDTO(restaurantId, desde, hasta,
+                pedidos, redondear(total),
+                pedidosEfectivo, redondear(totalEfectivo),
+                pedidosMercadoPago, redondear(totalMercadoPago),
+                deliveries, pedidos > 0 ? redondear(total / pedidos) : 0,
+                dias, top);
+    }
+
+    // Los $inc con double acumulan error de redondeo; los montos se devuelven en centavos
+    private static double redondear(double monto) {
+        return Math.round(monto * 100) / 100.0;
+    }
+
+    /**
+     * Reconstruye ventas_aportes y daily_sales desde orders con tres agregaciones del lado del servidor.
+     * Lo corre una sola réplica a la vez (lease en tareas); las demás devuelven vacío. Las agregaciones
+     * escriben en colecciones nuevas que después se renombran sobre las reales, y los pedidos que
+     * cambiaron mientras tanto se vuelven a aplicar. Devuelve la cantidad de días con ventas.
+     */
+    public Mono<Long> backfill() {
+        String zona = ZoneId.systemDefault().getId();
+        return tomarBackfill().flatMap(tomado -> {
+            if (!tomado) {
+                logger.info("Otra réplica está reconstruyendo daily_sales");
+                return Mono.<Long>empty();
+            }
+            LocalDateTime desde = LocalDateTime.now().minus(BACKFILL_MARGEN);
+            return agregar("orders", pipelineAportes(zona))
+                    .then(agregar(VENTAS_APORTES_NUEVO, pipelineTotales()))
+                    .then(agregar(VENTAS_APORTES_NUEVO, pipelinePlatos()))
+                    .then(crearIndices(DAILY_SALES_NUEVO, VENTAS_APORTES_NUEVO))
+                    // daily_sales primero: los cambios en vuelo siguen leyendo los aportes viejos y sus $inc no
+                    // pasan la versión que el día nuevo ya tiene de cada pedido; lo que falte lo corrige la repetición
+                    .then(renombrar(DAILY_SALES_NUEVO, DAILY_SALES))
+                    .then(renombrar(VENTAS_APORTES_NUEVO, VENTAS_APORTES))
+                    .thenMany(mongoTemplate.find(Query.query(Criteria.where("dateUpdated").gte(desde)), Order.class))
+                    .concatMap(order -> registrar(order))
+                    .then(mongoTemplate.count(new Query(), DAILY_SALES))
+                    .doFinally(senal -> soltarBackfill());
+        });
+    }
+
+    private Mono<Boolean> tomarBackfill() {
+        LocalDateTime ahora = LocalDateTime.now();
+        Query libre = Query.query(Criteria.where("_id").is(BACKFILL_ID).orOperator(
+                Criteria.where("hasta").lt(ahora),
+                Criteria.where("hasta").exists(false)));
+        Update tomar = new Update().set("owner", instanceId).set("hasta", ahora.plus(BACKFILL_LEASE));
+        return mongoTemplate.upsert(libre, tomar, TAREAS)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+
+    private void soltarBackfill() {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(BACKFILL_ID).and("owner").is(instanceId)),
+                        new Update().unset("owner").set("hasta", LocalDateTime.now()), TAREAS)
+                .subscribe(null, e -> logger.warn("No se pudo liberar el backfill de daily_sales: {}", e.getMessage()));
+    }
+
+    // También crea las colecciones si las agregaciones no escribieron nada, para poder renombrarlas
+    private Mono<Void> crearIndices(String dailySales, String aportes) {
+        return mongoTemplate.indexOps(dailySales)
+                .createIndex(new Index().on("restaurantId", Sort.Direction.ASC).on("fecha", Sort.Direction.ASC))
+                .then(mongoTemplate.indexOps(aportes).createIndex(new Index().on("pendiente", Sort.Direction.ASC)
+                        .partial(PartialIndexFilter.of(Criteria.where("pendiente").is(true)))))
+                .then();
+    }
+
+    private Mono<Void> renombrar(String desde, String hacia) {
+        return mongoTemplate.getMongoDatabase()
+                .flatMap(db -> Mono.from(db.getCollection(desde).renameCollection(
+                        new MongoNamespace(db.getName(), hacia), new RenameCollectionOptions().dropTarget(true))))
+                .then();
+    }
+
+    private Mono<Void> agregar(String coleccion, List<Document> pipeline) {
+        return mongoTemplate.getCollection(coleccion)
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).toCollection()));
+    }
+
+    // Mismo criterio que VentaAporte.ventaDe: pedidos ENTREGADO, día de creación en la zona del servidor
+    static List<Document> pipelineAportes(String zona) {
+        Document plato = new Document("productId", new Document("$ifNull", List.of("$$i.productId", Plato.SIN_ID)))
+                .append("nombre", "$$i.itemName")
+                .append("cantidad", new Document("$ifNull", List.of("$$i.itemQuantity", 0)))
+                .append("total", new Document("$multiply", List.of(
+                        new Document("$ifNull", List.of("$$i.itemPrice", 0.0)),
+                        new Document("$ifNull", List.of("$$i.itemQuantity", 0)))));
+        Document venta = new Document("restaurantId", "$restaurant.restaurantId")
+                .append("fecha", new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                        .append("date", "$dateCreated").append("timezone", zona)))
+                .append("total", new Document("$ifNull", List.of("$totalPrice", 0.0)))
+                .append("mercadoPago", new Document("$eq", List.of("$paidWithMercadoPago", true)))
+                .append("delivery", new Document("$eq", List.of("$isDelivery", true)))
+                .append("platos", new Document("$map", new Document("input", new Document("$ifNull", List.of("$items", List.of())))
+                        .append("as", "i")
+                        .append("in", plato)));
+        // La versión sigue a la del aporte actual: un $inc en vuelo con la versión vieja no vuelve a sumar
+        Document version = new Document("$add", List.of(
+                new Document("$ifNull", List.of(new Document("$arrayElemAt", List.of("$previo.version", 0)), 0L)), 1L));
+        return List.of(
+                new Document("$match", new Document("status", "ENTREGADO")
+                        .append("restaurant.restaurantId", new Document("$ne", null))
+                        .append("dateCreated", new Document("$ne", null))),
+                new Document("$lookup", new Document("from", VENTAS_APORTES)
+                        .append("localField", "_id").append("foreignField", "_id").append("as", "previo")),
+                new Document("$project", new Document("venta", venta).append("version", version)
+                        .append("pendiente", new Document("$literal", false))),
+                new Document("$out", VENTAS_APORTES_NUEVO));
+    }
+
+    static List<Document> pipelineTotales() {
+        Document esMercadoPago = new Document("$eq", List.of("$venta.mercadoPago", true));
+        return List.of(
+                new Document("$match", new Document("venta", new Document("$ne", null))),
+                new Document("$group", new Document("_id", new Document("r", "$venta.restaurantId").append("f", "$venta.fecha"))
+                        .append("pedidos", new Document("$sum", 1))
+                        .append("total", new Document("$sum", "$venta.total"))
+                        .append("pedidosMercadoPago", new Document("$sum", new Document("$cond", List.of(esMercadoPago, 1, 0))))
+                        .append("totalMercadoPago", new Document("$sum", new Document("$cond", List.of(esMercadoPago, "$venta.total", 0))))
+                        .append("deliveries", new Document("$sum", new Document("$cond", List.of(
+                                new Document("$eq", List.of("$venta.delivery", true)), 1, 0))))
+                        .append("aportes", new Document("$push", new Document("k", new Document("$toString", "$_id"))
+                                .append("v", "$version")))),
+                new Document("$project", new Document("_id", new Document("$concat", List.of("$_id.r", ":", "$_id.f")))
+                        .append("restaurantId", "$_id.r")
+                        .append("fecha", "$_id.f")
+                        .append("pedidos", 1)
+                        .append("total", 1)
+                        .append("pedidosEfectivo", new Document("$subtract", List.of("$pedidos", "$pedidosMercadoPago")))
+                        .append("totalEfectivo", new Document("$subtract", List.of("$total", "$totalMercadoPago")))
+                        .append("pedidosMercadoPago", 1)
+                        .append("totalMercadoPago", 1)
+                        .append("deliveries", 1)
+                        .append("platos", new Document("$literal", new Document()))
+                        .append("aportes", new Document("$arrayToObject", "$aportes"))
+                        .append("actualizado", "$$NOW")),
+                new Document("$out", DAILY_SALES_NUEVO));
+    }
+
+    static List<Document> pipelinePlatos() {
+        return List.of(
+                new Document("$match", new Document("venta", new Document("$ne", null))),
+                new Document("$unwind", "$venta.platos"),
+                new Document("$group", new Document("_id", new Document("r", "$venta.restaurantId")
+                                .append("f", "$venta.fecha").append("p", "$venta.platos.productId"))
+                        .append("nombre", new Document("$last", "$venta.platos.nombre"))
+                        .append("cantidad", new Document("$sum", "$venta.platos.cantidad"))
+                        .append("total", new Document("$sum", "$venta.platos.total"))),
+                new Document("$group", new Document("_id", new Document("$concat", List.of("$_id.r", ":", "$_id.f")))
+                        .append("platos", new Document("$push", new Document("k", "$_id.p")
+                                .append("v", new Document("nombre", "$nombre").append("cantidad", "$cantidad").append("total", "$total"))))),
+                new Document("$project", new Document("platos", new Document("$arrayToObject", "$platos"))),
+                new Document("$merge", new Document("into", DAILY_SALES_NUEVO)
+                        .append("whenMatched", "merge").append("whenNotMatched", "discard")));
+    }
+
+    static final class AporteConcurrente extends RuntimeException {
+        AporteConcurrente(String orderId) {
+            super("El aporte del pedido " + orderId + " cambió mientras se actualizaba");
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.IntCountsHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.tapalque.msvc_pedidos.config.EtaProperties;
+import com.tapalque.msvc_pedidos.dto.EtaDTO;
+import com.tapalque.msvc_pedidos.entity.EtaHistograma;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.Order.OrderStatus;
+
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+
+/**
+ * Demora estimada por restaurante a partir de los tiempos reales de los pedidos. Por restaurante y
+ * tramo (preparación: RECIBIDO/PAID a LISTO; entrega: LISTO a ENTREGADO en pedidos con delivery) hay
+ * un histograma por hora de la semana, más uno con todas las horas para cuando la franja tiene pocas
+ * muestras. Cada franja guarda dos mitades de la ventana (actual y anterior) que rotan con el tiempo.
+ *
+ * Los percentiles se recalculan al registrar una muestra, así que estimar es una búsqueda en un mapa
+ * y una lectura volátil. Las muestras llegan desde OrderChangeStreamPublisher; los histogramas se
+ * guardan en eta_histogramas cada pedidos.eta.snapshot-interval-ms y al apagar, y se cargan al arrancar.
+ */
+@Service
+public class EtaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EtaService.class);
+
+    public enum Tramo { PREPARACION, ENTREGA }
+
+    static final int HORAS_SEMANA = 168;
+    static final int TODAS_LAS_HORAS = HORAS_SEMANA;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final EtaProperties properties;
+    private final Map<String, Curva> curvas = new ConcurrentHashMap<>();
+
+    public EtaService(ReactiveMongoTemplate mongoTemplate, EtaProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+    }
+
+    // --- Lectura ---
+
+    public EtaDTO estimar(String restaurantId, boolean delivery) {
+        return estimar(restaurantId, delivery, LocalDateTime.now());
+    }
+
+    EtaDTO estimar(String restaurantId, boolean delivery, LocalDateTime ahora) {
+        int hora = horaDeLaSemana(ahora);
+        long periodo = periodo(ahora);
+        Lectura preparacion = leer(restaurantId, Tramo.PREPARACION, hora, periodo);
+        if (preparacion == null) {
+            return EtaDTO.sinDatos(restaurantId, delivery);
+        }
+        if (!delivery) {
+            return new EtaDTO(restaurantId, false, preparacion.p50(), preparacion.p90(),
+                    preparacion.muestras(), preparacion.base());
+        }
+        Lectura entrega = leer(restaurantId, Tramo.ENTREGA, hora, periodo);
+        if (entrega == null) {
+            return EtaDTO.sinDatos(restaurantId, true);
+        }
+        // Sumar percentiles no da el percentil de la suma, pero acota bien para mostrar un rango
+        String base = preparacion.base().equals(EtaDTO.BASE_FRANJA) && entrega.base().equals(EtaDTO.BASE_FRANJA)
+                ? EtaDTO.BASE_FRANJA
+                : EtaDTO.BASE_RESTAURANTE;
+        return new EtaDTO(restaurantId, true, preparacion.p50() + entrega.p50(), preparacion.p90() + entrega.p90(),
+                Math.min(preparacion.muestras(), entrega.muestras()), base);
+    }
+
+    private Lectura leer(String restaurantId, Tramo tramo, int hora, long periodo) {
+        Curva curva = curvas.get(Curva.clave(restaurantId, tramo));
+        if (curva == null) {
+            return null;
+        }
+        Estimacion franja = curva.vigente(hora, periodo);
+        if (franja != null && franja.muestras() >= properties.getMinMuestras()) {
+            return new Lectura(franja.p50(), franja.p90(), franja.muestras(), EtaDTO.BASE_FRANJA);
+        }
+        Estimacion todas = curva.vigente(TODAS_LAS_HORAS, periodo);
+        if (todas != null && todas.muestras() >= properties.getMinMuestras()) {
+            return new Lectura(todas.p50(), todas.p90(), todas.muestras(), EtaDTO.BASE_RESTAURANTE);
+        }
+        return null;
+    }
+
+    // --- Registro ---
+
+    /** Toma la muestra que cierra el pedido al llegar a LISTO (preparación) o a ENTREGADO (entrega). */
+    public void registrar(Order order) {
+        if (order == null || order.getRestaurant() == null || order.getRestaurant().getRestaurantId() == null
+                || order.getStatusTimestamps() == null) {
+            return;
+        }
+        String restaurantId = order.getRestaurant().getRestaurantId();
+        Map<OrderStatus, LocalDateTime> tiempos = order.getStatusTimestamps();
+        LocalDateTime listo = tiempos.get(OrderStatus.LISTO);
+        if (order.getStatus() == OrderStatus.LISTO && listo != null) {
+            LocalDateTime inicio = inicioCocina(order, listo);
+            if (inicio != null) {
+                registrar(restaurantId, Tramo.PREPARACION, inicio, listo);
+            }
+        } else if (order.getStatus() == OrderStatus.ENTREGADO && Boolean.TRUE.equals(order.getIsDelivery())
+                && listo != null && tiempos.get(OrderStatus.ENTREGADO) != null) {
+            registrar(restaurantId, Tramo.ENTREGA, listo, tiempos.get(OrderStatus.ENTREGADO));
+        }
+    }
+
+    void registrar(String restaurantId, Tramo tramo, LocalDateTime desde, LocalDateTime hasta) {
+        long segundos = Duration.between(desde, hasta).getSeconds();
+        if (segundos < 0) {
+            return;
+        }
+        long minutos = Math.min((segundos + 59) / 60, properties.getMaxMinutos());
+        long periodo = periodo(desde);
+        Curva curva = curvas.computeIfAbsent(Curva.clave(restaurantId, tramo), k -> new Curva(restaurantId, tramo));
+        curva.franja(horaDeLaSemana(desde), () -> nuevaFranja(periodo)).registrar(minutos, periodo);
+        curva.franja(TODAS_LAS_HORAS, () -> nuevaFranja(periodo)).registrar(minutos, periodo);
+    }
+
+    // La cocina arranca con el último ingreso a RECIBIDO o PAID (un pago con Mercado Pago vuelve a RECIBIDO)
+    private static LocalDateTime inicioCocina(Order order, LocalDateTime listo) {
+        LocalDateTime inicio = null;
+        for (OrderStatus status : List.of(OrderStatus.RECIBIDO, OrderStatus.PAID)) {
+            LocalDateTime t = order.getStatusTimestamps().get(status);
+            if (t != null && !t.isAfter(listo) && (inicio == null || t.isAfter(inicio))) {
+                inicio = t;
+            }
+        }
+        return inicio != null ? inicio : order.getDateCreated();
+    }
+
+    private Franja nuevaFranja(long periodo) {
+        return new Franja(properties.getMaxMinutos(), periodo);
+    }
+
+    static int horaDeLaSemana(LocalDateTime t) {
+        return (t.getDayOfWeek().getValue() - 1) * 24 + t.getHour();
+    }
+
+    long periodo(LocalDateTime t) {
+        return t.toLocalDate().toEpochDay() / properties.diasPorPeriodo();
+    }
+
+    // --- Snapshots ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restaurarAlIniciar() {
+        restaurar().subscribe(
+                cargadas -> logger.info("Estimación de demoras: {} franjas restauradas", cargadas),
+                e -> logger.error("Error restaurando los histogramas de demora: {}", e.getMessage(), e));
+    }
+
+    Mono<Long> restaurar() {
+        return mongoTemplate.findAll(EtaHistograma.class)
+                .doOnNext(this::restaurar)
+                .count();
+    }
+
+    private void restaurar(EtaHistograma snapshot) {
+        Tramo tramo;
+        try {
+            tramo = Tramo.valueOf(snapshot.getTramo());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return;
+        }
+        if (snapshot.getHora() < 0 || snapshot.getHora() > TODAS_LAS_HORAS) {
+            return;
+        }
+        try {
+            Curva curva = curvas.computeIfAbsent(Curva.clave(snapshot.getRestaurantId(), tramo),
+                    k -> new Curva(snapshot.getRestaurantId(), tramo));
+            curva.franja(snapshot.getHora(), () -> nuevaFranja(snapshot.getPeriodo())).combinar(snapshot);
+        } catch (DataFormatException e) {
+            logger.warn("Snapshot de demora ilegible {}: {}", snapshot.getId(), e.getMessage());
+        }
+    }
+
+    /** Guarda en un solo bulk las franjas que cambiaron desde el último snapshot. */
+    public Mono<Integer> guardarSnapshot() {
+        List<Franja> franjas = new ArrayList<>();
+        List<EtaHistograma> documentos = new ArrayList<>();
+        LocalDateTime ahora = LocalDateTime.now();
+        curvas.values().forEach(curva -> curva.forEach((franja, hora) -> {
+            EtaHistograma documento = franja.snapshotSiCambio(curva.restaurantId, curva.tramo, hora, ahora);
+            if (documento != null) {
+                franjas.add(franja);
+                documentos.add(documento);
+            }
+        }));
+        if (documentos.isEmpty()) {
+            return Mono.just(0);
+        }
+        ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, EtaHistograma.class);
+        for (EtaHistograma documento : documentos) {
+            bulk.replaceOne(Query.query(Criteria.where("_id").is(documento.getId())), documento,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        return bulk.execute()
+                .thenReturn(documentos.size())
+                // Si falla, quedan pendientes para el próximo snapshot
+                .doOnError(e -> franjas.forEach(Franja::marcarCambio));
+    }
+
+    @PreDestroy
+    public void guardarAlDetener() {
+        try {
+            guardarSnapshot().block(Duration.ofSeconds(5));
+        } catch (RuntimeException e) {
+            logger.warn("No se pudieron guardar los histogramas de demora al detener: {}", e.getMessage());
+        }
+    }
+
+    // --- Estructuras ---
+
+    private record Lectura(int p50, int p90, long muestras, String base) {}
+
+    /** Percentiles precalculados de una franja; periodo es la mitad de la ventana en que se calcularon. */
+    record Estimacion(int p50, int p90, long muestras, long periodo) {
+
+        static Estimacion de(AbstractHistogram histograma, long periodo) {
+            long muestras = histograma.getTotalCount();
+            if (muestras == 0) {
+                return null;
+            }
+            return new Estimacion((int) histograma.getValueAtPercentile(50), (int) histograma.getValueAtPercentile(90),
+                    muestras, periodo);
+        }
+    }
+
+    /** Franjas de un restaurante y tramo: 168 horas de la semana más el total. */
+    private static final class Curva {
+        private final String restaurantId;
+        private final Tramo tramo;
+        private final AtomicReferenceArray<Franja> franjas = new AtomicReferenceArray<>(HORAS_SEMANA + 1);
+
+        Curva(String restaurantId, Tramo tramo) {
+            this.restaurantId = restaurantId;
+            this.tramo = tramo;
+        }
+
+        static String clave(String restaurantId, Tramo tramo) {
+            return restaurantId + ":" + tramo.name();
+        }
+
+        Franja franja(int hora, Supplier<Franja> nueva) {
+            Franja franja = franjas.get(hora);
+            if (franja == null) {
+                franjas.compareAndSet(hora, null, nueva.get());
+                franja = franjas.get(hora);
+            }
+            return franja;
+        }
+
+        Estimacion vigente(int hora, long periodo) {
+            Franja franja = franjas.get(hora);
+            return franja != null ? franja.vigente(periodo) : null;
+        }
+
+        void forEach(ObjIntConsumer<Franja> accion) {
+            for (int hora = 0; hora < franjas.length(); hora++) {
+                Franja franja = franjas.get(hora);
+                if (franja != null) {
+                    accion.accept(franja, hora);
+                }
+            }
+        }
+    }
+
+    /**
+     * Histogramas de una hora de la semana en minutos, con un dígito significativo (error menor al 10%,
+     * unos cientos de bytes por franja). "actual" junta la mitad de la ventana en curso y "anterior" la previa.
+     */
+    static final class Franja {
+        private final int maxMinutos;
+        private long periodo;
+        private AbstractHistogram actual;
+        private AbstractHistogram anterior;
+        private boolean cambio;
+        // Total de la ventana, y sólo "actual" para cuando el periodo ya avanzó y nadie registró todavía
+        private volatile Estimacion total;
+        private volatile Estimacion soloActual;
+
+        Franja(int maxMinutos, long periodo) {
+            this.maxMinutos = maxMinutos;
+            this.periodo = periodo;
+            this.actual = nuevo();
+            this.anterior = nuevo();
+        }
+
+        private AbstractHistogram nuevo() {
+            return new IntCountsHistogram(maxMinutos, 1);
+        }
+
+        Estimacion vigente(long periodoActual) {
+            Estimacion t = total;
+            if (t != null && t.periodo() == periodoActual) {
+                return t;
+            }
+            Estimacion s = soloActual;
+            return s != null && s.periodo() == periodoActual - 1 ? s : null;
+        }
+
+        synchronized void registrar(long minutos, long periodoMuestra) {
+            rotar(periodoMuestra);
+            AbstractHistogram destino = histogramaDe(periodoMuestra);
+            if (destino == null) {
+                return;
+            }
+            destino.recordValue(Math.min(minutos, maxMinutos));
+            recalcular();
+            cambio = true;
+        }
+
+        synchronized void combinar(EtaHistograma snapshot) throws DataFormatException {
+            rotar(snapshot.getPeriodo());
+            agregar(histogramaDe(snapshot.getPeriodo()), snapshot.getActual());
+            agregar(histogramaDe(snapshot.getPeriodo() - 1), snapshot.getAnterior());
+            recalcular();
+        }
+
+        synchronized EtaHistograma snapshotSiCambio(String restaurantId, Tramo tramo, int hora, LocalDateTime ahora) {
+            if (!cambio) {
+                return null;
+            }
+            cambio = false;
+            EtaHistograma snapshot = new EtaHistograma();
+            snapshot.setId(EtaHistograma.idDe(restaurantId, tramo.name(), hora));
+            snapshot.setRestaurantId(restaurantId);
+            snapshot.setTramo(tramo.name());
+            snapshot.setHora(hora);
+            snapshot.setPeriodo(periodo);
+            snapshot.setActual(comprimir(actual));
+            snapshot.setAnterior(comprimir(anterior));
+            snapshot.setActualizado(ahora);
+            return snapshot;
+        }
+
+        synchronized void marcarCambio() {
+            cambio = true;
+        }
+
+        private void rotar(long nuevoPeriodo) {
+            if (nuevoPeriodo <= periodo) {
+                return;
+            }
+            anterior = nuevoPeriodo == periodo + 1 ? actual : nuevo();
+            actual = nuevo();
+            periodo = nuevoPeriodo;
+            recalcular();
+            cambio = true;
+        }
+
+        // Una muestra o snapshot de hace más de una ventana no entra
+        private AbstractHistogram histogramaDe(long p) {
+            if (p == periodo) {
+                return actual;
+            }
+            return p == periodo - 1 ? anterior : null;
+        }
+
+        private void recalcular() {
+            AbstractHistogram ventana = actual.copy();
+            ventana.add(anterior);
+            total = Estimacion.de(ventana, periodo);
+            soloActual = Estimacion.de(actual, periodo);
+        }
+
+        private void agregar(AbstractHistogram destino, byte[] datos) throws DataFormatException {
+            if (destino == null || datos == null || datos.length == 0) {
+                return;
+            }
+            destino.add(IntCountsHistogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(datos), 0));
+        }
+
+        private static byte[] comprimir(AbstractHistogram histograma) {
+            ByteBuffer buffer = ByteBuffer.allocate(histograma.getNeededByteBufferCapacity());
+            int largo = histograma.encodeIntoCompressedByteBuffer(buffer);
+            byte[] datos = new byte[largo];
+            buffer.flip();
+            buffer.get(datos);
+            return datos;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tapalque.msvc_pedidos.dto.OrderDTO;
+import com.tapalque.msvc_pedidos.entity.IdempotencyRecord;
+import com.tapalque.msvc_pedidos.repository.IdempotencyRepository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Idempotency-Key para el alta de pedidos.
+ * Dentro de una instancia, las solicitudes repetidas en vuelo comparten el mismo Mono; entre
+ * instancias, el _id único de idempotency_keys decide quién ejecuta y el resto consulta el registro
+ * hasta que queda COMPLETADO para devolver la respuesta guardada.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final int CLAVE_MAX = 128;
+
+    private final IdempotencyRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Duration lockDuration;
+    private final Duration waitTimeout;
+    private final Duration pollInterval;
+    private final Map<String, EnVuelo> enVuelo = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyRepository repository, ObjectMapper objectMapper,
+                              @Value("${pedidos.idempotency.lock-duration:30s}") Duration lockDuration,
+                              @Value("${pedidos.idempotency.wait-timeout:10s}") Duration waitTimeout,
+                              @Value("${pedidos.idempotency.poll-interval:100ms}") Duration pollInterval) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.lockDuration = lockDuration;
+        this.waitTimeout = waitTimeout;
+        this.pollInterval = pollInterval;
+    }
+
+    public Mono<OrderDTO> ejecutar(String clave, OrderDTO request, Supplier<Mono<OrderDTO>> alta) {
+        if (clave.length() > CLAVE_MAX) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key demasiado larga"));
+        }
+        // La huella se calcula antes del alta, que completa precios y nombres sobre el mismo DTO
+        String huella = huella(request);
+        String id = (request.getUserId() != null ? request.getUserId() : "anonimo") + ":" + clave;
+
+        EnVuelo nuevo = new EnVuelo(huella, Mono.defer(() -> reclamarOEsperar(id, huella, alta)
+                .doFinally(signal -> enVuelo.remove(id)))
+                .cache());
+        EnVuelo actual = enVuelo.putIfAbsent(id, nuevo);
+        EnVuelo elegido = actual != null ? actual : nuevo;
+        if (!elegido.huella().equals(huella)) {
+            return Mono.error(claveReutilizada());
+        }
+        return elegido.resultado();
+    }
+
+    private Mono<OrderDTO> reclamarOEsperar(String id, String huella, Supplier<Mono<OrderDTO>> alta) {
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord registro = new IdempotencyRecord(id, huella, now, now.plus(lockDuration));
+        return repository.insert(registro)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false))
+                .flatMap(reclamada -> reclamada
+                        ? ejecutarYGuardar(registro, alta)
+                        : esperar(id, huella, alta, now.plus(waitTimeout)));
+    }
+
+    private Mono<OrderDTO> ejecutarYGuardar(IdempotencyRecord registro, Supplier<Mono<OrderDTO>> alta) {
+        return Mono.defer(alta)
+                .flatMap(respuesta -> {
+                    registro.completar(respuesta);
+                    return repository.save(registro).thenReturn(respuesta);
+                })
+                // Si el alta falla se libera la clave para que el cliente pueda reintentar
+                .onErrorResume(e -> repository.deleteById(registro.getId()).then(Mono.error(e)));
+    }
+
+    private Mono<OrderDTO> esperar(String id, String huella, Supplier<Mono<OrderDTO>> alta, LocalDateTime limite) {
+        return repository.findById(id)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(encontrado -> {
+                    if (encontrado.isEmpty()) {
+                        // La primera solicitud falló y liberó la clave: se vuelve a intentar
+                        return reclamarOEsperar(id, huella, alta);
+                    }
+                    IdempotencyRecord registro = encontrado.get();
+                    if (!registro.getFingerprint().equals(huella)) {
+                        return Mono.error(claveReutilizada());
+                    }
+                    if (registro.getEstado() == IdempotencyRecord.Estado.COMPLETADO) {
+                        return Mono.just(registro.getResponse());
+                    }
+                    LocalDateTime now = LocalDateTime.now();
+                    if (registro.getLockedUntil().isBefore(now)) {
+                        return repository.deleteByIdAndLockedUntilBefore(id, now)
+                                .then(Mono.defer(() -> reclamarOEsperar(id, huella, alta)));
+                    }
+                    if (now.isAfter(limite)) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                "La solicitud original con esta Idempotency-Key sigue en proceso"));
+                    }
+                    return Mono.delay(pollInterval).then(Mono.defer(() -> esperar(id, huella, alta, limite)));
+                });
+    }
+
+    private String huella(OrderDTO request) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(hash);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo calcular la huella del pedido", e);
+        }
+    }
+
+    private static ResponseStatusException claveReutilizada() {
+        return new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                "La Idempotency-Key ya se usó con un pedido distinto");
+    }
+
+    private record EnVuelo(String huella, Mono<OrderDTO> resultado) {}
+}
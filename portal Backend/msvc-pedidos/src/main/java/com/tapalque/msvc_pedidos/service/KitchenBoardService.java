@@ -0,0 +1,249 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+
+import com.tapalque.msvc_pedidos.dto.KitchenBoardDTO;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.Order.OrderStatus;
+import com.tapalque.msvc_pedidos.event.OrderCreated;
+import com.tapalque.msvc_pedidos.repository.OrderRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Tablero de cocina en memoria: por restaurante, sólo los pedidos activos del día agrupados por estado.
+ * Lo actualizan los caminos que modifican pedidos (alta, PUT, PATCH de estado y pagos) y el change stream
+ * de orders, así cada réplica ve también lo que se escribió en las otras; se reconstruye desde Mongo al
+ * arrancar. Leerlo cuesta O(pedidos activos) en lugar de una consulta sobre todo el historial, y la
+ * cantidad en cocina que usa AdmissionService es O(1).
+ *
+ * Sólo actualizar() crea tableros: leer el de un restaurantId sin pedidos no reserva memoria.
+ */
+@Service
+public class KitchenBoardService {
+
+    private static final Logger logger = LoggerFactory.getLogger(KitchenBoardService.class);
+
+    static final Set<OrderStatus> ACTIVOS = EnumSet.of(
+            OrderStatus.RECIBIDO, OrderStatus.PAID, OrderStatus.EN_PREPARACION,
+            OrderStatus.LISTO, OrderStatus.EN_DELIVERY);
+
+    // Lo que todavía ocupa a la cocina; LISTO y EN_DELIVERY ya salieron de ella
+    static final Set<OrderStatus> EN_COCINA = EnumSet.of(
+            OrderStatus.RECIBIDO, OrderStatus.PAID, OrderStatus.EN_PREPARACION);
+
+    private static final Duration HEARTBEAT = Duration.ofSeconds(15);
+
+    private final OrderRepository orderRepository;
+    private final Map<String, Board> boards = new ConcurrentHashMap<>();
+    // Aviso de tablero nuevo, para los streams abiertos antes del primer pedido del restaurante
+    private final Sinks.Many<String> creados = Sinks.many().multicast().directBestEffort();
+    private volatile Consumer<String> alSalirDeCocina = restaurantId -> { };
+
+    public KitchenBoardService(OrderRepository orderRepository) {
+        this.orderRepository = orderRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruirAlIniciar() {
+        reconstruir().subscribe(
+                cargados -> logger.info("Tablero de cocina reconstruido con {} pedidos activos", cargados),
+                e -> logger.error("Error reconstruyendo el tablero de cocina: {}", e.getMessage(), e));
+    }
+
+    Mono<Long> reconstruir() {
+        return orderRepository.findByStatusInAndDateCreatedGreaterThanEqual(ACTIVOS, LocalDate.now().atStartOfDay())
+                .doOnNext(this::actualizar)
+                .count();
+    }
+
+    /** Refleja el estado persistido de un pedido: lo agrega, lo mueve de columna o lo saca del tablero. */
+    public void actualizar(Order order) {
+        if (order == null || order.getId() == null || order.getRestaurant() == null
+                || order.getRestaurant().getRestaurantId() == null) {
+            return;
+        }
+        String restaurantId = order.getRestaurant().getRestaurantId();
+        if (board(restaurantId).apply(order)) {
+            alSalirDeCocina.accept(restaurantId);
+        }
+    }
+
+    // Se avisa antes del primer apply: quien espera el tablero se suscribe a tiempo para su primer evento
+    private Board board(String restaurantId) {
+        Board board = boards.get(restaurantId);
+        if (board != null) {
+            return board;
+        }
+        Board nuevo = new Board(restaurantId);
+        board = boards.putIfAbsent(restaurantId, nuevo);
+        if (board != null) {
+            return board;
+        }
+        synchronized (creados) {
+            creados.tryEmitNext(restaurantId);
+        }
+        return nuevo;
+    }
+
+    /** Pedidos del restaurante que la cocina tiene entre manos (recibidos, pagos y en preparación). */
+    public int enCocina(String restaurantId) {
+        Board board = boards.get(restaurantId);
+        return board != null ? board.pedidosEnCocina() : 0;
+    }
+
+    /** Restaurantes con tablero en memoria. */
+    int tableros() {
+        return boards.size();
+    }
+
+    /** Aviso, fuera del lock del tablero, cada vez que un pedido deja la cocina. */
+    public void alSalirDeCocina(Consumer<String> listener) {
+        this.alSalirDeCocina = listener;
+    }
+
+    public KitchenBoardDTO snapshot(String restaurantId) {
+        Board board = boards.get(restaurantId);
+        return board != null ? board.snapshot() : armar(restaurantId, LocalDate.now(), 0, List.of());
+    }
+
+    /**
+     * Cambios del tablero como SSE: evento "pedido" (alta o cambio de columna) o "pedido:fuera"
+     * (entregado, cancelado). El id de cada evento es la revisión del tablero; si un cliente lento
+     * pierde eventos ve el salto y vuelve a pedir el snapshot.
+     */
+    public Flux<ServerSentEvent<OrderCreated>> stream(String restaurantId) {
+        Flux<ServerSentEvent<OrderCreated>> heartbeat = Flux.interval(HEARTBEAT)
+                .map(i -> ServerSentEvent.<OrderCreated>builder().comment("keep-alive").build());
+        return Flux.merge(cambios(restaurantId), heartbeat);
+    }
+
+    private Flux<ServerSentEvent<OrderCreated>> cambios(String restaurantId) {
+        Board board = boards.get(restaurantId);
+        if (board != null) {
+            return board.sink.asFlux();
+        }
+        // Sin tablero todavía: se engancha al primer pedido. Se escucha el aviso antes de volver a mirar
+        // el mapa, así un tablero creado en el medio tampoco se pierde
+        Mono<String> yaCreado = Mono.fromCallable(() -> boards.containsKey(restaurantId) ? restaurantId : null);
+        return Flux.merge(creados.asFlux().filter(restaurantId::equals), yaCreado)
+                .next()
+                .flatMapMany(id -> boards.get(id).sink.asFlux());
+    }
+
+    private static KitchenBoardDTO armar(String restaurantId, LocalDate fecha, long revision,
+                                         Collection<OrderCreated> pedidos) {
+        Map<OrderStatus, List<OrderCreated>> columnas = new EnumMap<>(OrderStatus.class);
+        Map<OrderStatus, Integer> contadores = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : ACTIVOS) {
+            columnas.put(status, new ArrayList<>());
+            contadores.put(status, 0);
+        }
+        for (OrderCreated pedido : pedidos) {
+            OrderStatus status = OrderStatus.valueOf(pedido.status());
+            columnas.get(status).add(pedido);
+            contadores.merge(status, 1, Integer::sum);
+        }
+        columnas.values().forEach(lista -> lista.sort(Comparator.comparing(OrderCreated::dateCreated)));
+        return new KitchenBoardDTO(restaurantId, fecha, revision, columnas, contadores);
+    }
+
+    // Pedidos de Mercado Pago sin pago confirmado todavía no llegan a cocina
+    private static boolean enCocina(Order order) {
+        return ACTIVOS.contains(order.getStatus())
+                && order.getDateCreated() != null
+                && order.getDateCreated().toLocalDate().equals(LocalDate.now())
+                && (Boolean.TRUE.equals(order.getPaidWithCash()) || Boolean.TRUE.equals(order.getPaidWithMercadoPago()));
+    }
+
+    private static final class Board {
+        private final String restaurantId;
+        private final Map<String, OrderCreated> pedidos = new HashMap<>();
+        // Versión con la que salió cada pedido: un evento repetido o viejo no lo vuelve a meter
+        private final Map<String, Long> fuera = new HashMap<>();
+        private final Sinks.Many<ServerSentEvent<OrderCreated>> sink = Sinks.many().multicast().directBestEffort();
+        private LocalDate fecha = LocalDate.now();
+        private long revision;
+        private volatile int enCocina;
+
+        Board(String restaurantId) {
+            this.restaurantId = restaurantId;
+        }
+
+        /** Devuelve true si con este cambio el pedido dejó la cocina. */
+        synchronized boolean apply(Order order) {
+            rotarDia();
+            OrderCreated actual = pedidos.get(order.getId());
+            if (actual != null && actual.version() >= order.getVersion()) {
+                return false; // llegó tarde un cambio más viejo, o el mismo por el change stream
+            }
+            Long salida = fuera.get(order.getId());
+            if (salida != null && salida >= order.getVersion()) {
+                return false;
+            }
+            OrderCreated pedido = OrderCreated.from(order);
+            String evento;
+            if (enCocina(order)) {
+                pedidos.put(order.getId(), pedido);
+                evento = "pedido";
+            } else if (pedidos.remove(order.getId()) != null) {
+                fuera.put(order.getId(), order.getVersion());
+                evento = "pedido:fuera";
+            } else {
+                return false;
+            }
+            boolean antes = actual != null && EN_COCINA.contains(OrderStatus.valueOf(actual.status()));
+            boolean despues = evento.equals("pedido") && EN_COCINA.contains(order.getStatus());
+            if (antes != despues) {
+                enCocina += despues ? 1 : -1;
+            }
+            revision++;
+            sink.tryEmitNext(ServerSentEvent.builder(pedido)
+                    .id(Long.toString(revision))
+                    .event(evento)
+                    .build());
+            return antes && !despues;
+        }
+
+        int pedidosEnCocina() {
+            return enCocina;
+        }
+
+        synchronized KitchenBoardDTO snapshot() {
+            rotarDia();
+            return armar(restaurantId, fecha, revision, pedidos.values());
+        }
+
+        // El tablero es del día: al cambiar de fecha se descartan los pedidos de ayer
+        private void rotarDia() {
+            LocalDate hoy = LocalDate.now();
+            if (!hoy.equals(fecha)) {
+                pedidos.clear();
+                fuera.clear();
+                enCocina = 0;
+                fecha = hoy;
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.client.result.DeleteResult;
+import com.tapalque.msvc_pedidos.entity.OrderArchive;
+import com.tapalque.msvc_pedidos.entity.VentaAporte;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Archivo frío de pedidos (colección orders_archive). La retención mueve acá los pedidos viejos en
+ * lugar de borrarlos: cada lote leído de orders se agrupa por restaurante y mes, se guarda como un
+ * bloque de NDJSON comprimido con gzip y recién después se borra de orders, junto con su aporte a
+ * daily_sales en ventas_aportes.
+ *
+ * La exportación lee los bloques de a uno (cursor con lotes chicos) y los descomprime línea a línea,
+ * así que la memoria depende del tamaño de un bloque y no de la cantidad de meses pedidos.
+ */
+@Service
+public class OrderArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderArchiveService.class);
+
+    static final String COLECCION_PEDIDOS = "orders";
+    static final String SIN_RESTAURANTE = "-";
+
+    private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+
+    // El outbox ya se publicó hace meses: no vale la pena archivarlo
+    private static final String[] CAMPOS_DESCARTADOS = {"outbox", "outboxLease", "outboxLeaseUntil"};
+
+    static final String CSV_ENCABEZADO = "id,fecha,estado,restaurante,cliente,telefono,delivery,direccion,total,envio,pago,fechaPago,items\n";
+
+    public enum Formato {
+        NDJSON, CSV;
+
+        public static Formato de(String valor) {
+            try {
+                return valueOf(valor.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("formato debe ser ndjson o csv");
+            }
+        }
+    }
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public OrderArchiveService(ReactiveMongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Archiva hasta batchSize pedidos que cumplen el criterio (los más viejos según campoFecha) y
+     * los borra de orders. Devuelve cuántos pedidos salieron de orders.
+     */
+    public Mono<Long> archivarLote(Criteria criteria, String campoFecha, int batchSize) {
+        Query query = new Query(criteria).with(Sort.by(campoFecha)).limit(batchSize);
+        query.fields().exclude(CAMPOS_DESCARTADOS);
+
+        return mongoTemplate.find(query, Document.class, COLECCION_PEDIDOS)
+                .collectList()
+                .flatMap(documentos -> Flux.fromIterable(agrupar(documentos).entrySet())
+                        .concatMap(grupo -> archivarGrupo(grupo.getKey(), grupo.getValue()))
+                        .reduce(0L, Long::sum));
+    }
+
+    private Mono<Long> archivarGrupo(Grupo grupo, List<Document> documentos) {
+        LocalDateTime desde = documentos.stream().map(OrderArchiveService::fechaCreacion).min(Comparator.naturalOrder()).orElseThrow();
+        LocalDateTime hasta = documentos.stream().map(OrderArchiveService::fechaCreacion).max(Comparator.naturalOrder()).orElseThrow();
+        List<Object> ids = documentos.stream().map(d -> d.get("_id")).toList();
+
+        return idsArchivados(grupo, desde, hasta)
+                .flatMap(archivados -> {
+                    List<Document> nuevos = documentos.stream()
+                            .filter(d -> !archivados.contains(String.valueOf(d.get("_id"))))
+                            .toList();
+                    Mono<?> guardar = nuevos.isEmpty()
+                            ? Mono.empty()
+                            : mongoTemplate.insert(bloque(grupo, nuevos, desde, hasta));
+                    return guardar.then(mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)), COLECCION_PEDIDOS));
+                })
+                // Recién con los pedidos fuera de orders: un aporte borrado antes se volvería a sumar
+                .flatMap(resultado -> mongoTemplate.remove(DailySalesService.aportesDe(ids), VentaAporte.class)
+                        .thenReturn(resultado))
+                .map(DeleteResult::getDeletedCount)
+                .doOnNext(borrados -> logger.debug("Archivo: {} pedidos de {} en {}", borrados, grupo.restaurantId(), grupo.mes()));
+    }
+
+    // _id ya guardados en bloques del mismo mes que se superponen con el lote (reintento tras un corte)
+    private Mono<Set<String>> idsArchivados(Grupo grupo, LocalDateTime desde, LocalDateTime hasta) {
+        Query query = Query.query(Criteria.where("restaurantId").is(grupo.restaurantId())
+                .and("mes").is(grupo.mes())
+                .and("desde").lte(hasta)
+                .and("hasta").gte(desde));
+        query.fields().include("pedidos");
+        return mongoTemplate.find(query, OrderArchive.class)
+                .flatMapIterable(OrderArchive::getPedidos)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    OrderArchive bloque(Grupo grupo, List<Document> documentos, LocalDateTime desde, LocalDateTime hasta) {
+        ByteArrayOutputStream comprimido = new ByteArrayOutputStream();
+        long bytesOriginales = 0;
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(comprimido), StandardCharsets.UTF_8)) {
+            for (Document documento : documentos) {
+                String linea = documento.toJson(JSON);
+                bytesOriginales += linea.length() + 1;
+                writer.write(linea);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        OrderArchive archivo = new OrderArchive();
+        archivo.setRestaurantId(grupo.restaurantId());
+        archivo.setMes(grupo.mes());
+        archivo.setDesde(desde);
+        archivo.setHasta(hasta);
+        archivo.setCantidad(documentos.size());
+        archivo.setBytesOriginales(bytesOriginales);
+        archivo.setPedidos(documentos.stream().map(d -> String.valueOf(d.get("_id"))).toList());
+        archivo.setDatos(comprimido.toByteArray());
+        archivo.setArchivado(LocalDateTime.now());
+
+        meterRegistry.counter("pedidos.archivo.pedidos").increment(documentos.size());
+        meterRegistry.counter("pedidos.archivo.bytes", "tipo", "json").increment(bytesOriginales);
+        meterRegistry.counter("pedidos.archivo.bytes", "tipo", "gzip").increment(archivo.getDatos().length);
+        return archivo;
+    }
+
+    /**
+     * Exporta los pedidos archivados de un restaurante entre dos meses (inclusive), en orden de fecha.
+     * Cada elemento es un fragmento de texto terminado en salto de línea, listo para escribir en la respuesta.
+     */
+    public Flux<String> exportar(String restaurantId, YearMonth desde, YearMonth hasta, Formato formato) {
+        Query query = Query.query(Criteria.where("restaurantId").is(restaurantId)
+                        .and("mes").gte(desde.toString()).lte(hasta.toString()))
+                .with(Sort.by("mes", "desde"))
+                .cursorBatchSize(2);
+
+        // prefetch 1: no se trae el bloque siguiente hasta terminar de escribir el actual
+        Flux<String> lineas = mongoTemplate.find(query, OrderArchive.class)
+                .concatMap(OrderArchiveService::lineas, 1);
+
+        return switch (formato) {
+            case NDJSON -> lineas.map(linea -> linea + "\n");
+            case CSV -> Flux.just(CSV_ENCABEZADO).concatWith(lineas.map(linea -> filaCsv(Document.parse(linea))));
+        };
+    }
+
+    static Flux<String> lineas(OrderArchive archivo) {
+        return Flux.using(
+                () -> new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(new ByteArrayInputStream(archivo.getDatos())), StandardCharsets.UTF_8)),
+                reader -> Flux.fromStream(reader.lines()),
+                reader -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        logger.warn("No se pudo cerrar el bloque {}: {}", archivo.getId(), e.getMessage());
+                    }
+                });
+    }
+
+    static String filaCsv(Document pedido) {
+        Document restaurante = pedido.get("restaurant", Document.class);
+        List<Document> items = pedido.getList("items", Document.class, List.of());
+        String detalle = items.stream()
+                .map(item -> item.get("itemQuantity") + "x " + item.getString("itemName"))
+                .collect(Collectors.joining("; "));
+        String pago = Boolean.TRUE.equals(pedido.getBoolean("paidWithMercadoPago")) ? "MERCADO_PAGO"
+                : Boolean.TRUE.equals(pedido.getBoolean("paidWithCash")) ? "EFECTIVO" : "";
+
+        List<Object> columnas = new ArrayList<>(13);
+        columnas.add(pedido.get("_id"));
+        columnas.add(fecha(pedido.get("dateCreated")));
+        columnas.add(pedido.get("status"));
+        columnas.add(restaurante != null ? restaurante.get("restaurantName") : null);
+        columnas.add(pedido.get("userName"));
+        columnas.add(pedido.get("userPhone"));
+        columnas.add(Boolean.TRUE.equals(pedido.getBoolean("isDelivery")) ? "si" : "no");
+        columnas.add(pedido.get("deliveryAddress"));
+        columnas.add(pedido.get("totalPrice"));
+        columnas.add(pedido.get("deliveryPrice"));
+        columnas.add(pago);
+        columnas.add(fecha(pedido.get("fechaPago")));
+        columnas.add(detalle);
+        return columnas.stream().map(OrderArchiveService::campoCsv).collect(Collectors.joining(",", "", "\n"));
+    }
+
+    private static String campoCsv(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0 && texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0) {
+            return texto;
+        }
+        return '"' + texto.replace("\"", "\"\"") + '"';
+    }
+
+    private static Object fecha(Object valor) {
+        return valor instanceof Date date ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()) : valor;
+    }
+
+    private static Map<Grupo, List<Document>> agrupar(List<Document> documentos) {
+        Map<Grupo, List<Document>> grupos = new LinkedHashMap<>();
+        for (Document documento : documentos) {
+            Document restaurante = documento.get("restaurant", Document.class);
+            String restaurantId = restaurante != null && restaurante.getString("restaurantId") != null
+                    ? restaurante.getString("restaurantId")
+                    : SIN_RESTAURANTE;
+            String mes = YearMonth.from(fechaCreacion(documento)).toString();
+            grupos.computeIfAbsent(new Grupo(restaurantId, mes), g -> new ArrayList<>()).add(documento);
+        }
+        return grupos;
+    }
+
+    // Mongo devuelve Date; Spring guarda LocalDateTime en la zona del sistema, igual que acá
+    private static LocalDateTime fechaCreacion(Document documento) {
+        return documento.get("dateCreated") instanceof Date date
+                ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault())
+                : LocalDateTime.MIN;
+    }
+
+    record Grupo(String restaurantId, String mes) {}
+}
@@ -0,0 +1,417 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.tapalque.msvc_pedidos.config.ChangeStreamProperties;
+import com.tapalque.msvc_pedidos.entity.Order;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+/**
+ * Única fuente de los pushes STOMP de pedidos: escucha el change stream de orders y reparte cada
+ * cambio confirmado por AdminNotificationService. Los caminos de escritura (alta, PATCH, PUT, pagos y
+ * cualquier otro proceso que toque la colección) sólo escriben en Mongo.
+ *
+ * Cada réplica abre dos lecturas del stream:
+ * - local, en todas: refleja los cambios en el tablero de cocina de la réplica y alimenta EtaService.
+ *   Su resume token se guarda con el id de la réplica (orders-local:instanceId).
+ * - notificaciones, sólo en la réplica que tiene el lease orders-notificaciones: hace los pushes. Con el
+ *   broker relay todas las réplicas publican en el mismo RabbitMQ, así que si publicara cada una el
+ *   suscriptor recibiría cada evento una vez por réplica. El token de esta lectura vive en el documento
+ *   del lease y sólo lo escribe quien lo tiene; la réplica que toma el lease sigue desde ahí.
+ *
+ * Los eventos se procesan de a uno en un hilo propio por lectura; el cursor pide a Mongo a lo sumo
+ * prefetch eventos por adelantado, así que un broker lento frena la lectura en lugar de llenar la
+ * memoria. Requiere que Mongo corra como replica set.
+ */
+@Service
+public class OrderChangeStreamPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderChangeStreamPublisher.class);
+
+    static final String COLECCION_TOKENS = "change_stream_tokens";
+    static final String STREAM_ID = "orders-notificaciones";
+    static final String PREFIJO_LOCAL = "orders-local:";
+
+    // Los tokens locales de réplicas que no vuelven (otro HOSTNAME) se borran solos
+    private static final Duration VIDA_TOKEN_LOCAL = Duration.ofDays(7);
+
+    private static final Set<String> CAMPOS_PAGO = Set.of("paidWithMercadoPago", "transaccionId", "mercadoPagoId", "fechaPago");
+
+    // Token fuera del oplog (286), inválido (260) o stream no reanudable (280): se arranca desde ahora
+    private static final Set<Integer> TOKEN_PERDIDO = Set.of(260, 280, 286);
+
+    // Sólo altas, reemplazos y updates de estado o pago: el outbox y la retención no generan pushes
+    static final Document FILTRO = new Document("$match", new Document("$or", List.of(
+            new Document("operationType", new Document("$in", List.of("insert", "replace"))),
+            modificado("status"),
+            modificado("paidWithMercadoPago"),
+            modificado("transaccionId"),
+            modificado("mercadoPagoId"),
+            modificado("fechaPago"))));
+
+    /** Otra réplica tomó el lease: esta deja de publicar sin reintentar. */
+    static final class LeasePerdido extends RuntimeException {
+        LeasePerdido() {
+            super("Lease de notificaciones perdido", null, false, false);
+        }
+    }
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final AdminNotificationService adminNotificationService;
+    private final EtaService etaService;
+    private final KitchenBoardService kitchenBoardService;
+    private final ChangeStreamProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final String instanceId;
+    private final Lectura local;
+    private final Lectura notificaciones;
+    private final AtomicReference<Disposable> publicando = new AtomicReference<>();
+    private volatile Disposable suscripcion;
+    private volatile Disposable renovacion;
+
+    public OrderChangeStreamPublisher(ReactiveMongoTemplate mongoTemplate,
+                                      AdminNotificationService adminNotificationService,
+                                      EtaService etaService,
+                                      KitchenBoardService kitchenBoardService,
+                                      ChangeStreamProperties properties,
+                                      MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.adminNotificationService = adminNotificationService;
+        this.etaService = etaService;
+        this.kitchenBoardService = kitchenBoardService;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.instanceId = properties.getInstanceId() != null && !properties.getInstanceId().isBlank()
+                ? properties.getInstanceId()
+                : UUID.randomUUID().toString();
+        this.local = new Lectura(PREFIJO_LOCAL + instanceId, "pedidos-tablero", this::aplicar, this::guardarTokenLocal);
+        this.notificaciones = new Lectura(STREAM_ID, "pedidos-notificaciones", this::publicar, this::guardarTokenLider);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!properties.isEnabled()) {
+            logger.warn("Change stream de pedidos deshabilitado: no se enviarán notificaciones de pedidos");
+            return;
+        }
+        suscripcion = iniciar(local);
+        renovacion = Flux.interval(Duration.ZERO, properties.getLease().dividedBy(3))
+                .onBackpressureDrop()
+                .concatMap(tick -> renovarLease())
+                .subscribe(this::alRenovar,
+                        e -> logger.error("Renovación del lease de notificaciones detenida: {}", e.getMessage(), e));
+    }
+
+    @PreDestroy
+    public void detener() {
+        disponer(renovacion);
+        disponer(suscripcion);
+        boolean eraLider = disponer(publicando.getAndSet(null));
+        try {
+            guardarAlDetener(local);
+            if (eraLider) {
+                guardarAlDetener(notificaciones);
+                // Sin esperar a que venza: otra réplica puede tomar el lease enseguida
+                mongoTemplate.updateFirst(delLider(), new Update().unset("owner").set("leaseHasta", LocalDateTime.now()),
+                        COLECCION_TOKENS).block(Duration.ofSeconds(5));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("No se pudo guardar el estado del change stream al detener: {}", e.getMessage());
+        }
+        local.scheduler.dispose();
+        notificaciones.scheduler.dispose();
+    }
+
+    private Disposable iniciar(Lectura lectura) {
+        return leerToken(lectura.id)
+                .doOnNext(lectura.ultimoToken::set)
+                .thenMany(escuchar(lectura))
+                .subscribe(null, e -> {
+                    if (e instanceof LeasePerdido) {
+                        logger.warn("Otra réplica tomó el lease de notificaciones de pedidos");
+                    } else {
+                        logger.error("Change stream de pedidos ({}) detenido: {}", lectura.id, e.getMessage(), e);
+                    }
+                });
+    }
+
+    /**
+     * Toma o renueva el lease de notificaciones. El upsert sólo matchea si el lease es de esta réplica
+     * o ya venció; si lo tiene otra, el insert del upsert choca con su _id y no se toma.
+     */
+    Mono<Boolean> renovarLease() {
+        LocalDateTime ahora = LocalDateTime.now();
+        Query libre = Query.query(Criteria.where("_id").is(STREAM_ID).orOperator(
+                Criteria.where("owner").is(instanceId),
+                Criteria.where("leaseHasta").lt(ahora),
+                Criteria.where("leaseHasta").exists(false)));
+        Update tomar = new Update().set("owner", instanceId).set("leaseHasta", ahora.plus(properties.getLease()));
+        return mongoTemplate.upsert(libre, tomar, COLECCION_TOKENS)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false))
+                .onErrorResume(e -> {
+                    // Sin poder renovar no sabemos si sigue siendo nuestro: se deja de publicar
+                    logger.warn("No se pudo renovar el lease de notificaciones: {}", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    private void alRenovar(boolean lider) {
+        Disposable actual = publicando.get();
+        if (lider && (actual == null || actual.isDisposed())) {
+            logger.info("Esta réplica ({}) publica las notificaciones de pedidos", instanceId);
+            notificaciones.ultimoToken.set(null);
+            publicando.set(iniciar(notificaciones));
+        } else if (!lider && actual != null) {
+            publicando.set(null);
+            if (disponer(actual)) {
+                logger.info("Esta réplica ({}) dejó de publicar las notificaciones de pedidos", instanceId);
+            }
+        }
+    }
+
+    boolean esLider() {
+        Disposable actual = publicando.get();
+        return actual != null && !actual.isDisposed();
+    }
+
+    /**
+     * Procesa los cambios y emite cada resume token que quedó guardado. Ante un error se reconecta
+     * con backoff desde el último evento procesado; si el stream termina (p. ej. invalidate) se reabre.
+     */
+    private Flux<BsonValue> escuchar(Lectura lectura) {
+        return Flux.defer(() -> abrir(lectura.ultimoToken.get()))
+                .publishOn(lectura.scheduler, properties.getPrefetch())
+                .doOnNext(lectura.accion)
+                .map(ChangeStreamEvent::getResumeToken)
+                .doOnNext(lectura.ultimoToken::set)
+                .sample(properties.getTokenFlushInterval())
+                .concatMap(token -> lectura.guardar.apply(token).thenReturn(token))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, properties.getInitialBackoff())
+                        .maxBackoff(properties.getMaxBackoff())
+                        .transientErrors(true)
+                        .filter(e -> !(e instanceof LeasePerdido))
+                        .doBeforeRetry(signal -> reconectando(lectura, signal.failure())))
+                .repeatWhen(fin -> fin.delayElements(properties.getInitialBackoff()));
+    }
+
+    private Flux<ChangeStreamEvent<Order>> abrir(BsonValue token) {
+        ChangeStreamOptions.ChangeStreamOptionsBuilder opciones = ChangeStreamOptions.builder()
+                .filter(FILTRO)
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+        if (token != null) {
+            // startAfter (y no resumeAfter) para poder seguir también después de un invalidate
+            opciones.startAfter(token);
+        }
+        return mongoTemplate.changeStream("orders", opciones.build(), Order.class);
+    }
+
+    private void reconectando(Lectura lectura, Throwable e) {
+        MongoServerException mongo = errorDeMongo(e);
+        if (mongo != null && TOKEN_PERDIDO.contains(mongo.getCode())) {
+            logger.warn("Resume token de pedidos ({}) perdido ({}): se retoma desde ahora", lectura.id, mongo.getCode());
+            lectura.ultimoToken.set(null);
+        } else {
+            logger.warn("Change stream de pedidos ({}) interrumpido, reconectando: {}", lectura.id, e.getMessage());
+        }
+        meterRegistry.counter("pedidos.notificaciones.reconexiones").increment();
+    }
+
+    /** Estado local de la réplica: lo escrito por otra réplica llega al tablero y a la demora estimada. */
+    void aplicar(ChangeStreamEvent<Order> evento) {
+        Order order = evento.getBody();
+        // Borrado entre el cambio y el lookup del documento: no hay nada que mostrar
+        if (order == null || evento.getOperationType() == null) {
+            return;
+        }
+        try {
+            kitchenBoardService.actualizar(order);
+            // Cada cambio de estado confirmado es una muestra de demora (todas las réplicas ven los mismos)
+            boolean cambioDeEstado = switch (evento.getOperationType()) {
+                case REPLACE -> true;
+                case UPDATE -> camposModificados(evento).containsKey("status");
+                default -> false;
+            };
+            if (cambioDeEstado) {
+                etaService.registrar(order);
+            }
+        } catch (Exception e) {
+            meterRegistry.counter("pedidos.notificaciones.errores").increment();
+            logger.error("Error aplicando el cambio del pedido {}: {}", order.getId(), e.getMessage(), e);
+        }
+    }
+
+    /** Traduce un cambio confirmado a los mismos pushes que antes hacía cada camino de escritura. */
+    void publicar(ChangeStreamEvent<Order> evento) {
+        Order order = evento.getBody();
+        if (order == null || evento.getOperationType() == null) {
+            return;
+        }
+        try {
+            switch (evento.getOperationType()) {
+                // Los pedidos con Mercado Pago se anuncian cuando se confirma el pago
+                case INSERT -> {
+                    if (Boolean.TRUE.equals(order.getPaidWithCash())) {
+                        adminNotificationService.notificarNuevoPedido(order);
+                    }
+                }
+                case REPLACE -> notificarEstado(order);
+                case UPDATE -> publicarUpdate(order, camposModificados(evento));
+                default -> { }
+            }
+            meterRegistry.counter("pedidos.notificaciones.publicadas").increment();
+            Instant confirmado = evento.getTimestamp();
+            if (confirmado != null) {
+                meterRegistry.timer("pedidos.notificaciones.lag")
+                        .record(Duration.between(confirmado, Instant.now()));
+            }
+        } catch (Exception e) {
+            // Un push fallido no debe trabar el stream ni repetirse en cada reconexión
+            meterRegistry.counter("pedidos.notificaciones.errores").increment();
+            logger.error("Error notificando el cambio del pedido {}: {}", order.getId(), e.getMessage(), e);
+        }
+    }
+
+    private void publicarUpdate(Order order, BsonDocument campos) {
+        boolean pagoAprobado = campos.containsKey("fechaPago")
+                && campos.isBoolean("paidWithMercadoPago") && campos.getBoolean("paidWithMercadoPago").getValue();
+        if (pagoAprobado) {
+            adminNotificationService.notificarNuevoPedido(order);
+        } else if (campos.keySet().stream().anyMatch(CAMPOS_PAGO::contains)) {
+            adminNotificationService.notificarPagoActualizado(order);
+        } else if (campos.containsKey("status")) {
+            notificarEstado(order);
+        }
+    }
+
+    private void notificarEstado(Order order) {
+        adminNotificationService.notificarPedidoActualizado(order);
+        adminNotificationService.notificarUsuarioPedidoActualizado(order);
+    }
+
+    private static BsonDocument camposModificados(ChangeStreamEvent<Order> evento) {
+        UpdateDescription descripcion = evento.getRaw() != null ? evento.getRaw().getUpdateDescription() : null;
+        return descripcion != null && descripcion.getUpdatedFields() != null
+                ? descripcion.getUpdatedFields()
+                : new BsonDocument();
+    }
+
+    private Mono<BsonDocument> leerToken(String id) {
+        return mongoTemplate.findById(id, Document.class, COLECCION_TOKENS)
+                .mapNotNull(documento -> documento.getString("token"))
+                .map(BsonDocument::parse)
+                .onErrorResume(e -> {
+                    logger.warn("No se pudo leer el resume token {}, se arranca desde ahora: {}", id, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> guardarTokenLocal(BsonValue token) {
+        LocalDateTime ahora = LocalDateTime.now();
+        return mongoTemplate.upsert(Query.query(Criteria.where("_id").is(local.id)),
+                        new Update().set("token", token.asDocument().toJson())
+                                .set("dateUpdated", ahora)
+                                .set("caduca", ahora.plus(VIDA_TOKEN_LOCAL)),
+                        COLECCION_TOKENS)
+                .then()
+                .onErrorResume(e -> {
+                    logger.warn("No se pudo guardar el resume token local: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    // Sólo mientras el lease sea de esta réplica; si no, otra ya sigue desde su propio token
+    private Mono<Void> guardarTokenLider(BsonValue token) {
+        return mongoTemplate.updateFirst(delLider(),
+                        new Update().set("token", token.asDocument().toJson()).set("dateUpdated", LocalDateTime.now()),
+                        COLECCION_TOKENS)
+                .onErrorResume(e -> {
+                    logger.warn("No se pudo guardar el resume token de notificaciones: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .flatMap(resultado -> resultado.getMatchedCount() == 0 ? Mono.<Void>error(new LeasePerdido()) : Mono.empty());
+    }
+
+    private Query delLider() {
+        return Query.query(Criteria.where("_id").is(STREAM_ID).and("owner").is(instanceId));
+    }
+
+    private static void guardarAlDetener(Lectura lectura) {
+        BsonValue token = lectura.ultimoToken.get();
+        if (token != null) {
+            lectura.guardar.apply(token).onErrorResume(e -> Mono.empty()).block(Duration.ofSeconds(5));
+        }
+    }
+
+    private static boolean disponer(Disposable disposable) {
+        if (disposable == null || disposable.isDisposed()) {
+            return false;
+        }
+        disposable.dispose();
+        return true;
+    }
+
+    /** Una lectura del stream: dónde guarda su token, qué hace con cada evento y en qué hilo. */
+    private static final class Lectura {
+        final String id;
+        final Scheduler scheduler;
+        final Consumer<ChangeStreamEvent<Order>> accion;
+        final Function<BsonValue, Mono<Void>> guardar;
+        final AtomicReference<BsonValue> ultimoToken = new AtomicReference<>();
+
+        Lectura(String id, String hilo, Consumer<ChangeStreamEvent<Order>> accion, Function<BsonValue, Mono<Void>> guardar) {
+            this.id = id;
+            this.scheduler = Schedulers.newSingle(hilo);
+            this.accion = accion;
+            this.guardar = guardar;
+        }
+    }
+
+    private static Document modificado(String campo) {
+        return new Document("updateDescription.updatedFields." + campo, new Document("$exists", true));
+    }
+
+    private static MongoServerException errorDeMongo(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof MongoServerException mongo) {
+                return mongo;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,129 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.client.result.DeleteResult;
+import com.tapalque.msvc_pedidos.config.RetentionProperties;
+import com.tapalque.msvc_pedidos.config.RetentionProperties.Policy;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.VentaAporte;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Purga de pedidos según las políticas de {@link RetentionProperties}.
+ * Cada política se resuelve con un rango indexado (status + fecha) y se borra en lotes acotados:
+ * sólo se leen los _id de los documentos que se van a borrar, nunca la colección completa.
+ * Las políticas con archive=true pasan los pedidos por {@link OrderArchiveService} antes de borrarlos.
+ */
+@Service
+public class OrderRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderRetentionService.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final RetentionProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final OrderArchiveService archiveService;
+
+    public OrderRetentionService(ReactiveMongoTemplate mongoTemplate, RetentionProperties properties,
+                                 MeterRegistry meterRegistry, OrderArchiveService archiveService) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.archiveService = archiveService;
+    }
+
+    /**
+     * Aplica todas las políticas configuradas, una detrás de otra.
+     * Devuelve la cantidad de pedidos borrados por política.
+     */
+    public Mono<Map<String, Long>> purgeAll() {
+        return Flux.fromIterable(properties.getPolicies().entrySet())
+                .concatMap(entry -> purge(entry.getKey(), entry.getValue())
+                        .map(deleted -> Map.entry(entry.getKey(), deleted)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    public Mono<Long> purge(String name, Policy policy) {
+        if (policy.getMaxAge() == null || policy.getStatuses() == null || policy.getStatuses().isEmpty()) {
+            logger.warn("Política de retención '{}' incompleta, se ignora", name);
+            return Mono.just(0L);
+        }
+
+        Criteria criteria = buildCriteria(policy, cutoff(policy, LocalDateTime.now()));
+        int batchSize = properties.getBatchSize();
+        AtomicInteger batches = new AtomicInteger(1);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Mono<Long> batch = policy.isArchive()
+                ? Mono.defer(() -> archiveService.archivarLote(criteria, policy.getDateField(), batchSize))
+                : Mono.defer(() -> deleteBatch(criteria, batchSize));
+
+        return batch
+                .expand(deleted -> deleted == batchSize && batches.getAndIncrement() < properties.getMaxBatchesPerRun()
+                        ? batch
+                        : Mono.empty())
+                .reduce(0L, Long::sum)
+                .doOnSuccess(total -> {
+                    long nanos = sample.stop(meterRegistry.timer("pedidos.retention.duration", "policy", name));
+                    meterRegistry.counter("pedidos.retention.purged", "policy", name).increment(total);
+                    logger.info("Retención '{}': {} pedidos {} en {} ms", name, total,
+                            policy.isArchive() ? "archivados" : "eliminados", TimeUnit.NANOSECONDS.toMillis(nanos));
+                })
+                .doOnError(e -> logger.error("Error aplicando retención '{}': {}", name, e.getMessage(), e));
+    }
+
+    /** Al archivar el corte baja al inicio del mes: sólo se archivan meses completos. */
+    LocalDateTime cutoff(Policy policy, LocalDateTime now) {
+        LocalDateTime cutoff = now.minus(policy.getMaxAge());
+        return policy.isArchive() ? cutoff.toLocalDate().withDayOfMonth(1).atStartOfDay() : cutoff;
+    }
+
+    Criteria buildCriteria(Policy policy, LocalDateTime cutoff) {
+        Criteria criteria = Criteria.where("status").in(policy.getStatuses())
+                .and(policy.getDateField()).lt(cutoff);
+        if (Boolean.TRUE.equals(policy.getPaid())) {
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where("paidWithMercadoPago").is(true),
+                    Criteria.where("paidWithCash").is(true)));
+        } else if (Boolean.FALSE.equals(policy.getPaid())) {
+            criteria = criteria.and("paidWithMercadoPago").ne(true)
+                    .and("paidWithCash").ne(true);
+        }
+        return criteria;
+    }
+
+    private Mono<Long> deleteBatch(Criteria criteria, int batchSize) {
+        Query idsQuery = new Query(criteria).limit(batchSize);
+        idsQuery.fields().include("_id");
+
+        return mongoTemplate.find(idsQuery, Order.class)
+                .map(Order::getId)
+                .collectList()
+                .flatMap(ids -> ids.isEmpty()
+                        ? Mono.just(0L)
+                        : deleteByIds(ids));
+    }
+
+    // Con los pedidos se van sus aportes en ventas_aportes (los totales de daily_sales quedan)
+    private Mono<Long> deleteByIds(List<String> ids) {
+        return mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), Order.class)
+                .flatMap(resultado -> mongoTemplate.remove(DailySalesService.aportesDe(ids), VentaAporte.class)
+                        .thenReturn(resultado))
+                .map(DeleteResult::getDeletedCount);
+    }
+}
@@ -5,8 +5,9 @@ import java.time.LocalDateTime;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 
+import com.tapalque.msvc_pedidos.dto.CursorPageDTO;
 import com.tapalque.msvc_pedidos.dto.OrderDTO;
-import com.tapalque.msvc_pedidos.dto.PagoEventoDTO;
+import com.tapalque.msvc_pedidos.dto.OrderSummaryDTO;
 import com.tapalque.msvc_pedidos.entity.Order;
 
 import reactor.core.publisher.Flux;
@@ -36,22 +37,49 @@ public interface OrderService {
             @NonNull LocalDateTime desde,
             @NonNull LocalDateTime hasta);
 
-    Mono<Void> deleteOrder(@NonNull String id);
+    // Paginación por cursor (desde/hasta y cursor opcionales)
+    Mono<CursorPageDTO<Order>> getOrdersPageByRestaurant(
+            @NonNull String restaurantId,
+            LocalDateTime desde,
+            LocalDateTime hasta,
+            String cursor,
+            int limit);
 
-    // Actualizar solo el estado del pedido
-    Mono<Order> updateOrderStatus(@NonNull String id, @NonNull String status);
+    Mono<CursorPageDTO<Order>> getOrdersPageByUser(
+            @NonNull String userId,
+            LocalDateTime desde,
+            LocalDateTime hasta,
+            String cursor,
+            int limit);
 
-    // limpieza de pedidos no pagados
-    void cleanUnpaidOrders();
+    // Listados livianos (?view=summary), más recientes primero; desde/hasta opcionales
+    Flux<OrderSummaryDTO> getOrderSummariesByRestaurant(
+            @NonNull String restaurantId,
+            LocalDateTime desde,
+            LocalDateTime hasta);
 
-    // limpieza de pedidos pagados con más de 3 meses
-    void cleanOldPaidOrders();
+    Flux<OrderSummaryDTO> getOrderSummariesByUser(
+            @NonNull String userId,
+            LocalDateTime desde,
+            LocalDateTime hasta);
 
-    // Métodos para RabbitMQ - confirmación de pagos
-    void confirmarPagoPedido(@NonNull String pedidoId, @NonNull PagoEventoDTO evento);
+    Mono<CursorPageDTO<OrderSummaryDTO>> getOrderSummariesPageByRestaurant(
+            @NonNull String restaurantId,
+            LocalDateTime desde,
+            LocalDateTime hasta,
+            String cursor,
+            int limit);
+
+    Mono<CursorPageDTO<OrderSummaryDTO>> getOrderSummariesPageByUser(
+            @NonNull String userId,
+            LocalDateTime desde,
+            LocalDateTime hasta,
+            String cursor,
+            int limit);
 
-    void rechazarPagoPedido(@NonNull String pedidoId, @NonNull PagoEventoDTO evento);
+    Mono<Void> deleteOrder(@NonNull String id);
 
-    void marcarPagoPendientePedido(@NonNull String pedidoId, @NonNull PagoEventoDTO evento);
+    // Actualizar solo el estado del pedido, validando la transición (versión esperada opcional)
+    Mono<Order> updateOrderStatus(@NonNull String id, @NonNull String status, Long expectedVersion);
 
 }
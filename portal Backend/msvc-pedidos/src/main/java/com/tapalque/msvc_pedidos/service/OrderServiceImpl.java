@@ -1,37 +1,54 @@
 package com.tapalque.msvc_pedidos.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
 
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.lang.NonNull;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import com.tapalque.msvc_pedidos.client.GastronomiaClient;
+import com.tapalque.msvc_pedidos.client.DishPriceCache;
 import com.tapalque.msvc_pedidos.client.MercadoPagoClient;
+import com.tapalque.msvc_pedidos.dto.CursorPageDTO;
+import com.tapalque.msvc_pedidos.dto.DishPriceDTO;
 import com.tapalque.msvc_pedidos.dto.ItemDTO;
+import com.tapalque.msvc_pedidos.dto.OrderCursor;
 import com.tapalque.msvc_pedidos.dto.OrderDTO;
-import com.tapalque.msvc_pedidos.dto.PagoEventoDTO;
+import com.tapalque.msvc_pedidos.dto.OrderSummaryDTO;
 import com.tapalque.msvc_pedidos.dto.RestaurantDTO;
 import com.tapalque.msvc_pedidos.entity.Order;
 import com.tapalque.msvc_pedidos.repository.OrderRepository;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 
 @Service
 public class OrderServiceImpl implements OrderService {
 
+    private static final int PAGE_SIZE_DEFAULT = 20;
+    private static final int PAGE_SIZE_MAX = 100;
+    private static final LocalDateTime FECHA_MIN = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime FECHA_MAX = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
     private final OrderRepository orderRepository;
-    private final RabbitTemplate rabbitTemplate;
-    private final AdminNotificationService adminNotificationService;
-    private final GastronomiaClient gastronomiaClient;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final DishPriceCache dishPriceCache;
     private final MercadoPagoClient mercadoPagoClient;
+    private final KitchenBoardService kitchenBoardService;
+    private final DailySalesService dailySalesService;
+    private final AdmissionService admissionService;
 
 
     @Value("${rabbitmq.exchange}")
@@ -40,15 +57,20 @@ public class OrderServiceImpl implements OrderService {
     @Value("${rabbitmq.routingKey.mercado.pago}")
     private String routingKeyMercadoPago;
 
-    public OrderServiceImpl(OrderRepository orderRepository, RabbitTemplate rabbitTemplate,
-                            AdminNotificationService adminNotificationService,
-                            GastronomiaClient gastronomiaClient,
-                            MercadoPagoClient mercadoPagoClient) {
+    public OrderServiceImpl(OrderRepository orderRepository,
+                            ReactiveMongoTemplate mongoTemplate,
+                            DishPriceCache dishPriceCache,
+                            MercadoPagoClient mercadoPagoClient,
+                            KitchenBoardService kitchenBoardService,
+                            DailySalesService dailySalesService,
+                            AdmissionService admissionService) {
         this.orderRepository = orderRepository;
-        this.rabbitTemplate = rabbitTemplate;
-        this.adminNotificationService = adminNotificationService;
-        this.gastronomiaClient = gastronomiaClient;
+        this.mongoTemplate = mongoTemplate;
+        this.dishPriceCache = dishPriceCache;
         this.mercadoPagoClient = mercadoPagoClient;
+        this.kitchenBoardService = kitchenBoardService;
+        this.dailySalesService = dailySalesService;
+        this.admissionService = admissionService;
     }
 
     @Override
@@ -59,28 +81,44 @@ public class OrderServiceImpl implements OrderService {
 
         // Validar y recalcular precio de cada ítem desde msvc-gastronomia
         List<ItemDTO> items = orderDto.getItems();
-        return Flux.fromIterable(items)
-            .flatMap(item -> {
-                if (item.getProductId() == null) {
-                    return Mono.error(new IllegalArgumentException("Ítem sin productId"));
-                }
-                Long dishId;
-                try {
-                    dishId = Long.parseLong(item.getProductId());
-                } catch (NumberFormatException e) {
-                    return Mono.error(new IllegalArgumentException("productId inválido: " + item.getProductId()));
+        List<Long> dishIds = new ArrayList<>(items.size());
+        for (ItemDTO item : items) {
+            if (item.getProductId() == null) {
+                return Mono.error(new IllegalArgumentException("Ítem sin productId"));
+            }
+            try {
+                dishIds.add(Long.parseLong(item.getProductId()));
+            } catch (NumberFormatException e) {
+                return Mono.error(new IllegalArgumentException("productId inválido: " + item.getProductId()));
+            }
+        }
+
+        // Si la cocina está al tope se corta acá (429), antes de resolver precios o escribir en Mongo
+        String restaurantId = orderDto.getRestaurant() != null ? orderDto.getRestaurant().getRestaurantId() : null;
+        return admissionService.admitir(restaurantId, () -> altaValidada(orderDto, items, dishIds));
+    }
+
+    private Mono<OrderDTO> altaValidada(OrderDTO orderDto, List<ItemDTO> items, List<Long> dishIds) {
+        // Una sola resolución para todos los platos (snapshot local + a lo sumo una llamada remota)
+        return dishPriceCache.getDishes(dishIds)
+            .map(dishes -> {
+                for (int i = 0; i < items.size(); i++) {
+                    ItemDTO item = items.get(i);
+                    DishPriceDTO dish = dishes.get(dishIds.get(i));
+                    if (dish == null) {
+                        throw new IllegalArgumentException("Plato no encontrado en gastronomía: " + dishIds.get(i));
+                    }
+                    if (item.getItemName() == null) {
+                        item.setItemName(dish.getName());
+                    }
+                    if (Boolean.FALSE.equals(dish.getAvailable())) {
+                        throw new IllegalArgumentException("Plato no disponible: " + item.getItemName());
+                    }
+                    // Sobreescribir precio con el valor real de la BD
+                    item.setItemPrice(dish.getPrice());
                 }
-                return gastronomiaClient.getDishById(dishId)
-                    .map(dish -> {
-                        if (Boolean.FALSE.equals(dish.getAvailable())) {
-                            throw new IllegalArgumentException("Plato no disponible: " + item.getItemName());
-                        }
-                        // Sobreescribir precio con el valor real de la BD
-                        item.setItemPrice(dish.getPrice());
-                        return item;
-                    });
+                return items;
             })
-            .collectList()
             .flatMap(validatedItems -> {
                 // Recalcular total desde precios verificados
                 double realTotal = validatedItems.stream()
@@ -88,42 +126,80 @@ public class OrderServiceImpl implements OrderService {
                     .sum();
 
                 Order order = mapToEntity(orderDto);
+                LocalDateTime now = LocalDateTime.now();
+                // El id se genera acá para que el mensaje de pago viaje en la misma escritura que el pedido
+                order.setId(new ObjectId().toHexString());
                 order.setTotalPrice(realTotal);
-                order.setDateCreated(LocalDateTime.now());
-                order.setDateUpdated(LocalDateTime.now());
-
+                order.setDateCreated(now);
+                order.setDateUpdated(now);
+                order.setVersion(1);
+                order.setStatusTimestamps(new HashMap<>(Map.of(order.getStatus(), now)));
+                order.setOutbox(new ArrayList<>(List.of(new Order.OutboxMessage(
+                    UUID.randomUUID().toString(),
+                    1,
+                    orderExchange,
+                    routingKeyMercadoPago,
+                    Map.of(
+                        "idPedido", order.getId(),
+                        "monto", order.getTotalPrice(),
+                        "fecha", order.getDateCreated().toString()
+                    ),
+                    now
+                ))));
+
+                // La publicación en RabbitMQ la hace OutboxRelayService y el aviso al restaurante
+                // OrderChangeStreamPublisher, ambos fuera del request
                 return orderRepository.save(order)
-                    .flatMap(savedOrder ->
-                        Mono.fromCallable(() -> {
-                            rabbitTemplate.convertAndSend(
-                                orderExchange,
-                                routingKeyMercadoPago,
-                                Map.of(
-                                    "idPedido", savedOrder.getId(),
-                                    "monto", savedOrder.getTotalPrice(),
-                                    "fecha", savedOrder.getDateCreated().toString()
-                                )
-                            );
-
-                            // Solo notificar al admin si paga en efectivo (al recibir).
-                            // Los pagos con MercadoPago se notifican cuando el pago es confirmado
-                            // (ver confirmarPagoPedido).
-                            if (Boolean.TRUE.equals(savedOrder.getPaidWithCash())) {
-                                adminNotificationService.notificarNuevoPedido(savedOrder);
-                            }
-
-                            return mapToDTO(savedOrder);
-                        })
-                        .subscribeOn(Schedulers.boundedElastic())
-                    );
+                    .map(savedOrder -> {
+                        kitchenBoardService.actualizar(savedOrder);
+                        return mapToDTO(savedOrder);
+                    });
             });
     }
 
     @Override
     public Mono<Order> updateOrder(@NonNull OrderDTO orderDto) {
-        Order order = mapToEntity(orderDto);
-        order.setDateUpdated(LocalDateTime.now());
-        return orderRepository.save(order);
+        if (orderDto.getId() == null) {
+            return Mono.error(new IllegalArgumentException("El pedido a actualizar no tiene id"));
+        }
+        Order order;
+        try {
+            order = mapToEntity(orderDto);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        // Se escriben sólo los campos editables: outbox, fechas y datos de pago quedan como están.
+        // Si cambia el estado se valida la transición y, si viene la versión leída, que nadie escribió antes
+        Criteria criteria = Criteria.where("_id").is(order.getId());
+        if (orderDto.getStatus() != null) {
+            List<Order.OrderStatus> permitidos = new ArrayList<>(order.getStatus().origenes());
+            permitidos.add(order.getStatus());
+            criteria = criteria.and("status").in(permitidos);
+        }
+        if (orderDto.getVersion() != null) {
+            criteria = criteria.and("version").is(orderDto.getVersion());
+        }
+        Update update = OrderStatusTransitions.nuevaVersion(LocalDateTime.now())
+                .set("userId", order.getUserId())
+                .set("userName", order.getUserName())
+                .set("userPhone", order.getUserPhone())
+                .set("totalPrice", order.getTotalPrice())
+                .set("paidWithMercadoPago", order.getPaidWithMercadoPago())
+                .set("paidWithCash", order.getPaidWithCash())
+                .set("isDelivery", order.getIsDelivery())
+                .set("deliveryAddress", order.getDeliveryAddress())
+                .set("items", order.getItems())
+                .set("restaurant", order.getRestaurant());
+        if (orderDto.getStatus() != null) {
+            // Sin timestamp: la guarda admite el mismo estado y pisaría la hora de ingreso real
+            update.set("status", order.getStatus());
+        }
+        return mongoTemplate.findAndModify(Query.query(criteria), update, OrderStatusTransitions.DOCUMENTO_NUEVO, Order.class)
+                .doOnNext(kitchenBoardService::actualizar)
+                .flatMap(saved -> dailySalesService.registrar(saved).thenReturn(saved))
+                .switchIfEmpty(Mono.defer(() -> orderRepository.findById(order.getId())
+                        .flatMap(actual -> Mono.error(OrderStatusTransitions.conflicto(
+                                actual, order.getStatus(), orderDto.getVersion())))));
     }
 
     @Override
@@ -159,121 +235,178 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
-    public Mono<Void> deleteOrder(@NonNull String id) {
-        return orderRepository.findById(id)
-                .flatMap(order -> {
-                    order.setStatus(Order.OrderStatus.FAILED);
-                    order.setDateUpdated(LocalDateTime.now());
-                    return orderRepository.save(order);
-                })
-                .doOnSuccess(order -> {
-                    if (order != null) {
-                        // Notificar al admin del restaurante y al usuario que hizo el pedido
-                        adminNotificationService.notificarPedidoActualizado(order);
-                        adminNotificationService.notificarUsuarioPedidoActualizado(order);
-                        // Si pagó con Mercado Pago, iniciar reembolso automático
-                        if (Boolean.TRUE.equals(order.getPaidWithMercadoPago()) && order.getMercadoPagoId() != null) {
-                            mercadoPagoClient.reembolsar(order.getMercadoPagoId())
-                                    .doOnSuccess(v -> System.out.println("Reembolso automático iniciado para pedido " + order.getId()))
-                                    .doOnError(e -> System.err.println("Error al reembolsar pedido " + order.getId() + ": " + e.getMessage()))
-                                    .subscribe();
-                        }
-                    }
-                })
-                .then();
+    public Mono<CursorPageDTO<Order>> getOrdersPageByRestaurant(
+            @NonNull String restaurantId,
+            LocalDateTime desde,
+            LocalDateTime hasta,
+            String cursor,
+            int limit) {
+        int size = normalizarLimite(limit);
+        LocalDateTime from = desde != null ? desde : FECHA_MIN;
+        LocalDateTime to = hasta != null ? hasta : FECHA_MAX;
+        return Mono.defer(() -> {
+            if (cursor == null || cursor.isBlank()) {
+                return toPage(orderRepository.findRestaurantPage(restaurantId, from, to, Limit.of(size + 1)), size);
+            }
+            OrderCursor after = OrderCursor.decode(cursor);
+            return toPage(orderRepository.findRestaurantPageAfter(
+                    restaurantId, from, to, after.dateCreated(), after.id(), Limit.of(size + 1)), size);
+        });
     }
 
     @Override
-    public Mono<Order> updateOrderStatus(@NonNull String id, @NonNull String status) {
-        return orderRepository.findById(id)
-            .flatMap(order -> {
-                order.setStatus(Order.OrderStatus.valueOf(status.toUpperCase()));
-                order.setDateUpdated(LocalDateTime.now());
-                return orderRepository.save(order);
-            })
-            .doOnSuccess(order -> {
-                if (order != null) {
-                    adminNotificationService.notificarPedidoActualizado(order);
-                    adminNotificationService.notificarUsuarioPedidoActualizado(order);
-                }
-            });
+    public Mono<CursorPageDTO<Order>> getOrdersPageByUser(
+            @NonNull String userId,
+            LocalDateTime desde,
+            LocalDateTime hasta,
+            String cursor,
+            int limit) {
+        int size = normalizarLimite(limit);
+        LocalDateTime from = desde != null ? desde : FECHA_MIN;
+        LocalDateTime to = hasta != null ? hasta : FECHA_MAX;
+        return Mono.defer(() -> {
+            if (cursor == null || cursor.isBlank()) {
+                return toPage(orderRepository.findUserPage(userId, from, to, Limit.of(size + 1)), size);
+            }
+            OrderCursor after = OrderCursor.decode(cursor);
+            return toPage(orderRepository.findUserPageAfter(
+                    userId, from, to, after.dateCreated(), after.id(), Limit.of(size + 1)), size);
+        });
     }
 
     @Override
-    @Scheduled(cron = "0 0 3 * * ?") // limpieza automática a las 3AM
-    public void cleanUnpaidOrders() {
-        // Solo borrar pedidos de MercadoPago que nunca se pagaron (no tocar pedidos de efectivo)
-        orderRepository.findAll()
-            .filter(order -> Boolean.TRUE.equals(order.getPaidWithMercadoPago()) == false
-                    && Boolean.TRUE.equals(order.getPaidWithCash()) == false
-                    && order.getStatus() == Order.OrderStatus.RECIBIDO
-                    && order.getDateCreated().plusHours(24).isBefore(LocalDateTime.now()))
-            .flatMap(order -> orderRepository.deleteById(order.getId()))
-            .subscribe();
+    public Flux<OrderSummaryDTO> getOrderSummariesByRestaurant(
+            @NonNull String restaurantId,
+            LocalDateTime desde,
+            LocalDateTime hasta) {
+        return orderRepository.findRestaurantSummaryPage(restaurantId,
+                desde != null ? desde : FECHA_MIN, hasta != null ? hasta : FECHA_MAX, Limit.unlimited());
     }
 
     @Override
-    @Scheduled(cron = "0 0 3 * * ?") // limpieza de pedidos pagados con más de 3 meses, 3AM diario
-    public void cleanOldPaidOrders() {
-        LocalDateTime tresMesesAtras = LocalDateTime.now().minusMonths(3);
-        orderRepository.findAll()
-            .filter(order -> (Boolean.TRUE.equals(order.getPaidWithMercadoPago())
-                              || Boolean.TRUE.equals(order.getPaidWithCash()))
-                             && order.getDateCreated().isBefore(tresMesesAtras))
-            .flatMap(order -> orderRepository.deleteById(order.getId()))
-            .subscribe();
+    public Flux<OrderSummaryDTO> getOrderSummariesByUser(
+            @NonNull String userId,
+            LocalDateTime desde,
+            LocalDateTime hasta) {
+        return orderRepository.findUserSummaryPage(userId,
+                desde != null ? desde : FECHA_MIN, hasta != null ? hasta : FECHA_MAX, Limit.unlimited());
     }
 
     @Override
-    public void confirmarPagoPedido(@NonNull String pedidoId, @NonNull PagoEventoDTO evento) {
-        orderRepository.findById(pedidoId)
-            .flatMap(order -> {
-                order.setStatus(Order.OrderStatus.RECIBIDO);
-                order.setPaidWithMercadoPago(true);
-                order.setTransaccionId(evento.getTransaccionId());
-                order.setMercadoPagoId(evento.getMercadoPagoId());
-                order.setFechaPago(evento.getFechaPago());
-                order.setDateUpdated(LocalDateTime.now());
-                return orderRepository.save(order);
-            })
-            .doOnSuccess(order -> {
-                System.out.println("Pedido " + pedidoId + " confirmado como PAGADO");
-                if (order != null) {
-                    adminNotificationService.notificarNuevoPedido(order);
-                }
-            })
-            .doOnError(error -> System.err.println("Error al confirmar pago del pedido " + pedidoId + ": " + error.getMessage()))
-            .subscribe();
+    public Mono<CursorPageDTO<OrderSummaryDTO>> getOrderSummariesPageByRestaurant(
+            @NonNull String restaurantId,
+            LocalDateTime desde,
+            LocalDateTime hasta,
+            String cursor,
+            int limit) {
+        int size = normalizarLimite(limit);
+        LocalDateTime from = desde != null ? desde : FECHA_MIN;
+        LocalDateTime to = hasta != null ? hasta : FECHA_MAX;
+        return Mono.defer(() -> {
+            if (cursor == null || cursor.isBlank()) {
+                return toSummaryPage(orderRepository.findRestaurantSummaryPage(restaurantId, from, to, Limit.of(size + 1)), size);
+            }
+            OrderCursor after = OrderCursor.decode(cursor);
+            return toSummaryPage(orderRepository.findRestaurantSummaryPageAfter(
+                    restaurantId, from, to, after.dateCreated(), after.id(), Limit.of(size + 1)), size);
+        });
     }
 
     @Override
-    public void rechazarPagoPedido(@NonNull String pedidoId, @NonNull PagoEventoDTO evento) {
-        orderRepository.findById(pedidoId)
-            .flatMap(order -> {
-                order.setStatus(Order.OrderStatus.RECIBIDO); // Mantener como recibido para reintentar pago
-                order.setPaidWithMercadoPago(false);
-                order.setTransaccionId(evento.getTransaccionId());
-                order.setMercadoPagoId(evento.getMercadoPagoId());
-                order.setDateUpdated(LocalDateTime.now());
-                return orderRepository.save(order);
-            })
-            .doOnSuccess(order -> System.out.println("Pago rechazado para pedido " + pedidoId))
-            .doOnError(error -> System.err.println("Error al procesar rechazo de pago del pedido " + pedidoId + ": " + error.getMessage()))
-            .subscribe();
+    public Mono<CursorPageDTO<OrderSummaryDTO>> getOrderSummariesPageByUser(
+            @NonNull String userId,
+            LocalDateTime desde,
+            LocalDateTime hasta,
+            String cursor,
+            int limit) {
+        int size = normalizarLimite(limit);
+        LocalDateTime from = desde != null ? desde : FECHA_MIN;
+        LocalDateTime to = hasta != null ? hasta : FECHA_MAX;
+        return Mono.defer(() -> {
+            if (cursor == null || cursor.isBlank()) {
+                return toSummaryPage(orderRepository.findUserSummaryPage(userId, from, to, Limit.of(size + 1)), size);
+            }
+            OrderCursor after = OrderCursor.decode(cursor);
+            return toSummaryPage(orderRepository.findUserSummaryPageAfter(
+                    userId, from, to, after.dateCreated(), after.id(), Limit.of(size + 1)), size);
+        });
+    }
+
+    private Mono<CursorPageDTO<Order>> toPage(Flux<Order> orders, int size) {
+        return toPage(orders, size, Order::getDateCreated, Order::getId);
+    }
+
+    private Mono<CursorPageDTO<OrderSummaryDTO>> toSummaryPage(Flux<OrderSummaryDTO> orders, int size) {
+        return toPage(orders, size, OrderSummaryDTO::dateCreated, OrderSummaryDTO::id);
+    }
+
+    // Se pide un elemento de más para saber si hay otra página
+    private static <T> Mono<CursorPageDTO<T>> toPage(Flux<T> orders, int size,
+                                                     Function<T, LocalDateTime> fecha, Function<T, String> id) {
+        return orders.collectList().map(list -> {
+            if (list.size() <= size) {
+                return new CursorPageDTO<>(list, null);
+            }
+            List<T> items = list.subList(0, size);
+            T last = items.get(size - 1);
+            String next = new OrderCursor(fecha.apply(last), new ObjectId(id.apply(last))).encode();
+            return new CursorPageDTO<>(items, next);
+        });
+    }
+
+    private int normalizarLimite(int limit) {
+        if (limit <= 0) {
+            return PAGE_SIZE_DEFAULT;
+        }
+        return Math.min(limit, PAGE_SIZE_MAX);
     }
 
     @Override
-    public void marcarPagoPendientePedido(@NonNull String pedidoId, @NonNull PagoEventoDTO evento) {
-        orderRepository.findById(pedidoId)
-            .flatMap(order -> {
-                order.setTransaccionId(evento.getTransaccionId());
-                order.setMercadoPagoId(evento.getMercadoPagoId());
-                order.setDateUpdated(LocalDateTime.now());
-                return orderRepository.save(order);
-            })
-            .doOnSuccess(order -> System.out.println("Pago pendiente para pedido " + pedidoId))
-            .doOnError(error -> System.err.println("Error al procesar pago pendiente del pedido " + pedidoId + ": " + error.getMessage()))
-            .subscribe();
+    public Mono<Void> deleteOrder(@NonNull String id) {
+        // Un pedido ya cancelado (o inexistente) no matchea la guarda: el borrado es idempotente
+        return mongoTemplate.findAndModify(
+                        OrderStatusTransitions.guarda(id, Order.OrderStatus.FAILED, null),
+                        OrderStatusTransitions.cambio(Order.OrderStatus.FAILED, LocalDateTime.now()),
+                        OrderStatusTransitions.DOCUMENTO_NUEVO, Order.class)
+                .flatMap(order -> dailySalesService.registrar(order).thenReturn(order))
+                .doOnSuccess(order -> {
+                    if (order != null) {
+                        kitchenBoardService.actualizar(order);
+                        // Si pagó con Mercado Pago, iniciar reembolso automático
+                        if (Boolean.TRUE.equals(order.getPaidWithMercadoPago()) && order.getMercadoPagoId() != null) {
+                            mercadoPagoClient.reembolsar(order.getMercadoPagoId())
+                                    .doOnSuccess(v -> System.out.println("Reembolso automático iniciado para pedido " + order.getId()))
+                                    .doOnError(e -> System.err.println("Error al reembolsar pedido " + order.getId() + ": " + e.getMessage()))
+                                    .subscribe();
+                        }
+                    }
+                })
+                .then();
+    }
+
+    @Override
+    public Mono<Order> updateOrderStatus(@NonNull String id, @NonNull String status, Long expectedVersion) {
+        Order.OrderStatus destino;
+        try {
+            destino = OrderStatusTransitions.parsear(status);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        return mongoTemplate.findAndModify(
+                        OrderStatusTransitions.guarda(id, destino, expectedVersion),
+                        OrderStatusTransitions.cambio(destino, LocalDateTime.now()),
+                        OrderStatusTransitions.DOCUMENTO_NUEVO, Order.class)
+                .doOnNext(kitchenBoardService::actualizar)
+                .flatMap(order -> dailySalesService.registrar(order).thenReturn(order))
+                .switchIfEmpty(Mono.defer(() -> sinTransicion(id, destino, expectedVersion)));
+    }
+
+    // La guarda no matcheó: si el pedido ya está en el destino (doble click, reintento) se devuelve
+    // tal cual sin escribir; si no, la transición no es válida o la ganó otro cambio
+    private Mono<Order> sinTransicion(String id, Order.OrderStatus destino, Long expectedVersion) {
+        return orderRepository.findById(id).flatMap(actual -> actual.getStatus() == destino
+                ? Mono.just(actual)
+                : Mono.error(OrderStatusTransitions.conflicto(actual, destino, expectedVersion)));
     }
 
     // mapeos
@@ -332,6 +465,7 @@ public class OrderServiceImpl implements OrderService {
         dto.setStatus(order.getStatus().name());
         dto.setDateCreated(order.getDateCreated());
         dto.setDateUpdated(order.getDateUpdated());
+        dto.setVersion(order.getVersion());
 
         // Delivery
         dto.setIsDelivery(order.getIsDelivery());
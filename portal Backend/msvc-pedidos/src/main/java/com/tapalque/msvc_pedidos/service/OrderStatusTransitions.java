@@ -0,0 +1,73 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.Order.OrderStatus;
+
+/**
+ * Cambios de estado condicionales sobre orders. La query exige que el estado actual sea un origen
+ * válido del destino (ver OrderStatus.siguientes) y, si el cliente la manda, la versión que leyó;
+ * el update cambia el estado y avanza la versión. Con findAndModify Mongo evalúa la guarda y
+ * devuelve el documento nuevo en el mismo viaje: si no matchea, la transición no es válida
+ * o la ganó otro cambio (cocina y pagos escriben el mismo pedido en paralelo).
+ */
+final class OrderStatusTransitions {
+
+    static final FindAndModifyOptions DOCUMENTO_NUEVO = FindAndModifyOptions.options().returnNew(true);
+
+    private OrderStatusTransitions() {
+    }
+
+    static Query guarda(String id, OrderStatus destino, Long versionEsperada) {
+        Criteria criteria = Criteria.where("_id").is(id).and("status").in(destino.origenes());
+        if (versionEsperada != null) {
+            criteria = criteria.and("version").is(versionEsperada);
+        }
+        // Sólo los pedidos con envío salen a delivery
+        if (destino == OrderStatus.EN_DELIVERY) {
+            criteria = criteria.and("isDelivery").is(true);
+        }
+        return Query.query(criteria);
+    }
+
+    static Update cambio(OrderStatus destino, LocalDateTime now) {
+        return nuevaVersion(now).set("status", destino).set(campoTimestamp(destino), now);
+    }
+
+    /** Campo con la hora de ingreso al estado, en el mismo update que el cambio. */
+    static String campoTimestamp(OrderStatus status) {
+        return "statusTimestamps." + status.name();
+    }
+
+    static Update nuevaVersion(LocalDateTime now) {
+        return new Update().inc("version", 1).set("dateUpdated", now);
+    }
+
+    static OrderStatus parsear(String status) {
+        try {
+            return OrderStatus.valueOf(status.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Estado de pedido inválido: " + status);
+        }
+    }
+
+    static ResponseStatusException conflicto(Order actual, OrderStatus destino, Long versionEsperada) {
+        if (versionEsperada != null && versionEsperada != actual.getVersion()) {
+            return new ResponseStatusException(HttpStatus.CONFLICT,
+                    "El pedido cambió (versión " + actual.getVersion() + ", se esperaba " + versionEsperada + ")");
+        }
+        if (destino == OrderStatus.EN_DELIVERY && !Boolean.TRUE.equals(actual.getIsDelivery())) {
+            return new ResponseStatusException(HttpStatus.CONFLICT, "El pedido no es con delivery");
+        }
+        return new ResponseStatusException(HttpStatus.CONFLICT,
+                "El pedido está " + actual.getStatus() + " y no puede pasar a " + destino);
+    }
+}
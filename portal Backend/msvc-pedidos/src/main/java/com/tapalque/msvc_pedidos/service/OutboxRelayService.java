@@ -0,0 +1,191 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.tapalque.msvc_pedidos.config.OutboxProperties;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.Order.OutboxMessage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Publica en RabbitMQ los mensajes del outbox embebido en los pedidos.
+ * Cada lote: toma un lease sobre los pedidos con mensajes vencidos, publica todos sus mensajes
+ * (en orden de secuencia dentro de cada pedido) en un solo canal con publisher confirms y,
+ * si el broker confirma, los quita del outbox. Si falla, el lote completo se reprograma con
+ * backoff exponencial; la entrega es al menos una vez (messageId permite deduplicar).
+ */
+@Service
+public class OutboxRelayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelayService.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final OutboxProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public OutboxRelayService(ReactiveMongoTemplate mongoTemplate, RabbitTemplate rabbitTemplate,
+                              OutboxProperties properties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.rabbitTemplate = rabbitTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Procesa lotes mientras vengan llenos, hasta maxBatchesPerRun.
+     * Devuelve la cantidad de mensajes publicados.
+     */
+    public Mono<Long> relayPending() {
+        int batchSize = properties.getBatchSize();
+        AtomicInteger batches = new AtomicInteger(1);
+        return relayBatch()
+                .expand(result -> result.orders() == batchSize && batches.getAndIncrement() < properties.getMaxBatchesPerRun()
+                        ? relayBatch()
+                        : Mono.empty())
+                .map(BatchResult::published)
+                .reduce(0L, Long::sum);
+    }
+
+    Mono<BatchResult> relayBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        String lease = instanceId + ":" + UUID.randomUUID();
+
+        Query candidatos = new Query(Criteria.where("outbox.nextAttemptAt").lte(now)
+                .orOperator(Criteria.where("outboxLeaseUntil").is(null), Criteria.where("outboxLeaseUntil").lt(now)))
+                .limit(properties.getBatchSize());
+        candidatos.fields().include("_id");
+
+        return mongoTemplate.find(candidatos, Order.class)
+                .map(Order::getId)
+                .collectList()
+                .flatMap(ids -> ids.isEmpty()
+                        ? Mono.just(BatchResult.EMPTY)
+                        : claim(ids, lease, now).flatMap(orders -> publish(orders, now)));
+    }
+
+    // El updateMulti sólo toma los pedidos cuyo lease sigue libre; otra réplica pudo ganarlos
+    private Mono<List<Order>> claim(List<String> ids, String lease, LocalDateTime now) {
+        Query libres = new Query(Criteria.where("_id").in(ids)
+                .orOperator(Criteria.where("outboxLeaseUntil").is(null), Criteria.where("outboxLeaseUntil").lt(now)));
+        Update tomar = new Update().set("outboxLease", lease).set("outboxLeaseUntil", now.plus(properties.getLease()));
+
+        Query tomados = new Query(Criteria.where("outboxLease").is(lease));
+        tomados.fields().include("_id").include("outbox");
+
+        return mongoTemplate.updateMulti(libres, tomar, Order.class)
+                .then(mongoTemplate.find(tomados, Order.class).collectList());
+    }
+
+    private Mono<BatchResult> publish(List<Order> orders, LocalDateTime now) {
+        List<OutboxMessage> messages = orders.stream()
+                .flatMap(order -> pending(order, now).stream())
+                .toList();
+        if (messages.isEmpty()) {
+            return release(orders).thenReturn(new BatchResult(orders.size(), 0));
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return Mono.fromRunnable(() -> sendWithConfirms(messages))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Mono.defer(() -> markPublished(orders, messages)))
+                .doOnSuccess(v -> {
+                    sample.stop(meterRegistry.timer("pedidos.outbox.batch.duration", "result", "published"));
+                    meterRegistry.counter("pedidos.outbox.published").increment(messages.size());
+                })
+                .thenReturn(new BatchResult(orders.size(), messages.size()))
+                .onErrorResume(e -> {
+                    sample.stop(meterRegistry.timer("pedidos.outbox.batch.duration", "result", "failed"));
+                    meterRegistry.counter("pedidos.outbox.failed").increment(messages.size());
+                    logger.warn("Outbox: falló la publicación de {} mensajes, se reintenta con backoff: {}",
+                            messages.size(), e.getMessage());
+                    return scheduleRetry(orders, e).thenReturn(new BatchResult(orders.size(), 0));
+                });
+    }
+
+    private List<OutboxMessage> pending(Order order, LocalDateTime now) {
+        if (order.getOutbox() == null) {
+            return List.of();
+        }
+        List<OutboxMessage> sorted = order.getOutbox().stream()
+                .sorted(Comparator.comparingInt(OutboxMessage::getSequence))
+                .toList();
+        // Orden por pedido: si el primero todavía está en backoff no se adelanta ninguno de los siguientes
+        if (sorted.isEmpty() || sorted.get(0).getNextAttemptAt().isAfter(now)) {
+            return List.of();
+        }
+        return sorted;
+    }
+
+    private void sendWithConfirms(List<OutboxMessage> messages) {
+        rabbitTemplate.invoke(operations -> {
+            for (OutboxMessage message : messages) {
+                operations.convertAndSend(message.getExchange(), message.getRoutingKey(), message.getPayload(), m -> {
+                    m.getMessageProperties().setMessageId(message.getMessageId());
+                    return m;
+                });
+            }
+            operations.waitForConfirmsOrDie(properties.getConfirmTimeout().toMillis());
+            return null;
+        });
+    }
+
+    private Mono<Void> markPublished(List<Order> orders, List<OutboxMessage> messages) {
+        Query query = new Query(Criteria.where("_id").in(orders.stream().map(Order::getId).toList()));
+        Update update = new Update()
+                .pull("outbox", new Document("messageId", new Document("$in",
+                        messages.stream().map(OutboxMessage::getMessageId).toList())))
+                .unset("outboxLease")
+                .unset("outboxLeaseUntil");
+        return mongoTemplate.updateMulti(query, update, Order.class).then();
+    }
+
+    private Mono<Void> release(List<Order> orders) {
+        Query query = new Query(Criteria.where("_id").in(orders.stream().map(Order::getId).toList()));
+        return mongoTemplate.updateMulti(query, new Update().unset("outboxLease").unset("outboxLeaseUntil"), Order.class)
+                .then();
+    }
+
+    private Mono<Void> scheduleRetry(List<Order> orders, Throwable error) {
+        LocalDateTime now = LocalDateTime.now();
+        String lastError = Objects.toString(error.getMessage(), error.getClass().getSimpleName());
+        ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Order.class);
+        for (Order order : orders) {
+            int attempts = order.getOutbox() == null ? 1 : order.getOutbox().stream()
+                    .mapToInt(OutboxMessage::getAttempts).max().orElse(0) + 1;
+            bulk.updateOne(Query.query(Criteria.where("_id").is(order.getId())), new Update()
+                    .set("outbox.$[].attempts", attempts)
+                    .set("outbox.$[].nextAttemptAt", now.plus(properties.backoff(attempts)))
+                    .set("outbox.$[].lastError", lastError)
+                    .unset("outboxLease")
+                    .unset("outboxLeaseUntil"));
+        }
+        return bulk.execute().then();
+    }
+
+    record BatchResult(int orders, long published) {
+        static final BatchResult EMPTY = new BatchResult(0, 0);
+    }
+}
@@ -0,0 +1,131 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.tapalque.msvc_pedidos.dto.PagoEventoDTO;
+import com.tapalque.msvc_pedidos.entity.Order;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Aplica en Mongo un lote de resultados de pago de msvc-mercado-pago.
+ * Los eventos se agrupan por pedido (en orden de llegada, el último valor de cada campo gana)
+ * y se escriben con una sola operación bulk; después se leen los pedidos afectados en una
+ * consulta para actualizar el tablero de cocina y los rollups de ventas. El aviso al restaurante
+ * sale del change stream de orders (ver OrderChangeStreamPublisher).
+ */
+@Service
+public class PagoPedidoBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PagoPedidoBatchService.class);
+
+    public static final Set<String> ESTADOS = Set.of("APROBADO", "RECHAZADO", "PENDIENTE");
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final KitchenBoardService kitchenBoardService;
+    private final DailySalesService dailySalesService;
+    private final MeterRegistry meterRegistry;
+
+    public PagoPedidoBatchService(ReactiveMongoTemplate mongoTemplate, KitchenBoardService kitchenBoardService,
+                                  DailySalesService dailySalesService, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.kitchenBoardService = kitchenBoardService;
+        this.dailySalesService = dailySalesService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Escribe el lote y devuelve los ids de pedido que existían. Los eventos de pedidos
+     * que no están en Mongo quedan fuera del resultado para que el listener los mande a la DLQ.
+     */
+    public Mono<Set<String>> aplicar(List<PagoEventoDTO> eventos) {
+        Map<String, Cambio> cambios = new LinkedHashMap<>();
+        for (PagoEventoDTO evento : eventos) {
+            cambios.computeIfAbsent(evento.getReferenciaId(), id -> new Cambio()).agregar(evento);
+        }
+        if (cambios.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Order.class);
+        cambios.forEach((id, cambio) -> {
+            bulk.updateOne(Query.query(Criteria.where("_id").is(id)), cambio.update(now));
+            // El estado va aparte y con guarda: si la cocina ya avanzó el pedido, el pago no lo retrocede.
+            // Avanza la versión otra vez: cada estado escrito tiene la suya y el tablero no lo descarta
+            if (cambio.estado != null) {
+                bulk.updateOne(OrderStatusTransitions.guarda(id, cambio.estado, null),
+                        OrderStatusTransitions.cambio(cambio.estado, now));
+            }
+        });
+
+        return bulk.execute()
+                .then(Mono.defer(() -> mongoTemplate.find(
+                        Query.query(Criteria.where("_id").in(cambios.keySet())), Order.class).collectList()))
+                .flatMap(orders -> Flux.fromIterable(orders)
+                        .concatMap(this::reflejar)
+                        .then(Mono.fromSupplier(() -> {
+                            meterRegistry.counter("pedidos.pagos.aplicados").increment(eventos.size());
+                            return orders.stream().map(Order::getId).collect(Collectors.toSet());
+                        })));
+    }
+
+    // Los errores del tablero o los rollups no deben devolver a la cola un lote que ya quedó escrito
+    // (registrar ya no propaga los suyos)
+    private Mono<Void> reflejar(Order order) {
+        try {
+            kitchenBoardService.actualizar(order);
+        } catch (Exception e) {
+            logger.error("Error reflejando el pago del pedido {}: {}", order.getId(), e.getMessage(), e);
+        }
+        return dailySalesService.registrar(order);
+    }
+
+    /** Campos a escribir en un pedido tras aplicar en orden todos sus eventos del lote. */
+    private static final class Cambio {
+        private final Map<String, Object> campos = new LinkedHashMap<>();
+        private Order.OrderStatus estado;
+
+        void agregar(PagoEventoDTO evento) {
+            switch (evento.getEstado()) {
+                case "APROBADO" -> {
+                    estado = Order.OrderStatus.RECIBIDO;
+                    campos.put("paidWithMercadoPago", true);
+                    campos.put("fechaPago", evento.getFechaPago());
+                }
+                // Se mantiene como recibido para reintentar el pago
+                case "RECHAZADO" -> {
+                    estado = Order.OrderStatus.RECIBIDO;
+                    campos.put("paidWithMercadoPago", false);
+                }
+                default -> { }
+            }
+            campos.put("transaccionId", evento.getTransaccionId());
+            campos.put("mercadoPagoId", evento.getMercadoPagoId());
+        }
+
+        // Una sola versión nueva por lote para los datos del pago (más la del estado, si cambia)
+        Update update(LocalDateTime now) {
+            Update update = OrderStatusTransitions.nuevaVersion(now);
+            campos.forEach(update::set);
+            return update;
+        }
+    }
+}
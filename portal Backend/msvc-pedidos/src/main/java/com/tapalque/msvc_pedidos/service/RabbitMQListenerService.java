@@ -1,27 +1,40 @@
 package com.tapalque.msvc_pedidos.service;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import com.tapalque.msvc_pedidos.entity.Order;
 import com.tapalque.msvc_pedidos.entity.Order.OrderStatus;
-import com.tapalque.msvc_pedidos.repository.OrderRepository;
+
+import reactor.core.publisher.Mono;
 
 @Service
 public class RabbitMQListenerService {
 
     private static final Logger logger = LoggerFactory.getLogger(RabbitMQListenerService.class);
 
-    private final OrderRepository orderRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
     private final NotificationService notificacionService;
+    private final KitchenBoardService kitchenBoardService;
+    private final DailySalesService dailySalesService;
 
-    public RabbitMQListenerService(OrderRepository orderRepository, NotificationService notificacionService) {
-        this.orderRepository = orderRepository;
+    public RabbitMQListenerService(ReactiveMongoTemplate mongoTemplate, NotificationService notificacionService,
+                                   KitchenBoardService kitchenBoardService,
+                                   DailySalesService dailySalesService) {
+        this.mongoTemplate = mongoTemplate;
         this.notificacionService = notificacionService; 
+        this.kitchenBoardService = kitchenBoardService;
+        this.dailySalesService = dailySalesService;
     }
 
     @RabbitListener(queues = "pagos-gastronomia-queue")
@@ -78,27 +91,45 @@ public class RabbitMQListenerService {
             return;
         }
 
-        orderRepository.findById(idTransaccion)
-            .flatMap(order -> {
-                switch (estado.toUpperCase()) {
-                    case "APROBADO" -> {
-                        order.setStatus(OrderStatus.PAID);
-                        order.setPaidWithMercadoPago(true);
-                }
-                    case "RECHAZADO" -> order.setStatus(OrderStatus.FAILED);
-                    default -> logger.warn("Estado desconocido en webhook: {}", estado);
-                }
-                order.setDateUpdated(LocalDateTime.now());
+        OrderStatus destino = null;
+        Map<String, Object> campos = new HashMap<>();
+        switch (estado.toUpperCase()) {
+            case "APROBADO" -> {
+                destino = OrderStatus.PAID;
+                campos.put("paidWithMercadoPago", true);
+            }
+            case "RECHAZADO" -> destino = OrderStatus.FAILED;
+            default -> logger.warn("Estado desconocido en webhook: {}", estado);
+        }
 
+        // El estado se cambia sólo si la transición es válida: un pago que llega tarde no debe
+        // devolver a PAID un pedido que la cocina ya avanzó. Los datos del pago se escriben igual.
+        LocalDateTime now = LocalDateTime.now();
+        Mono<Order> conEstado = Mono.empty();
+        if (destino != null) {
+            Update update = OrderStatusTransitions.cambio(destino, now);
+            campos.forEach(update::set);
+            conEstado = mongoTemplate.findAndModify(OrderStatusTransitions.guarda(idTransaccion, destino, null),
+                    update, OrderStatusTransitions.DOCUMENTO_NUEVO, Order.class);
+        }
+        Mono<Order> soloCampos = Mono.defer(() -> {
+            Update update = OrderStatusTransitions.nuevaVersion(now);
+            campos.forEach(update::set);
+            return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(idTransaccion)),
+                    update, OrderStatusTransitions.DOCUMENTO_NUEVO, Order.class);
+        });
+
+        conEstado.switchIfEmpty(soloCampos)
+            .doOnNext(o -> {
+                logger.info("Orden actualizada: {}", o.getId());
                 try {
                     notificacionService.notificarEstadoPagoAlUsuario(clientId, estado);
                 } catch (Exception e) {
                     logger.error("Error notificando estado de pago al usuario {}: {}", clientId, e.getMessage(), e);
                 }
-
-                return orderRepository.save(order)
-                        .doOnSuccess(o -> logger.info("Orden actualizada: {}", o.getId()));
+                kitchenBoardService.actualizar(o);
             })
+            .flatMap(o -> dailySalesService.registrar(o))
             .doOnError(e -> logger.error("Error actualizando orden: {}", e.getMessage(), e))
             .subscribe();
     }
@@ -0,0 +1,29 @@
+package com.tapalque.msvc_pedidos.service;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/** 429 con Retry-After: la cocina del restaurante está al tope y conviene volver a intentar más tarde. */
+public class RestauranteSaturadoException extends ResponseStatusException {
+
+    private final Duration retryAfter;
+
+    public RestauranteSaturadoException(Duration retryAfter) {
+        super(HttpStatus.TOO_MANY_REQUESTS, "El restaurante está recibiendo demasiados pedidos, reintentar en unos minutos");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter.toSeconds()));
+        return headers;
+    }
+}
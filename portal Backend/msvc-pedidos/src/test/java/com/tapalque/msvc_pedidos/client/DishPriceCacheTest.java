@@ -0,0 +1,84 @@
+package com.tapalque.msvc_pedidos.client;
+
+import com.tapalque.msvc_pedidos.dto.DishPriceDTO;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DishPriceCache Tests")
+class DishPriceCacheTest {
+
+    @Mock
+    private GastronomiaClient gastronomiaClient;
+
+    private DishPriceCache dishPriceCache;
+
+    @BeforeEach
+    void setUp() {
+        dishPriceCache = new DishPriceCache(gastronomiaClient, 60, 100);
+    }
+
+    private DishPriceDTO dish(long id, double price) {
+        DishPriceDTO dto = new DishPriceDTO();
+        dto.setIdDish(id);
+        dto.setName("Plato " + id);
+        dto.setPrice(price);
+        dto.setAvailable(true);
+        return dto;
+    }
+
+    @Test
+    @DisplayName("Snapshot frío: una sola llamada remota para todos los platos")
+    void getDishes_SnapshotFrio_UnaSolaLlamada() {
+        when(gastronomiaClient.getDishesByIds(List.of(1L, 2L, 3L)))
+                .thenReturn(Mono.just(List.of(dish(1, 100), dish(2, 200), dish(3, 300))));
+
+        StepVerifier.create(dishPriceCache.getDishes(List.of(1L, 2L, 3L, 1L)))
+                .expectNextMatches(map -> map.size() == 3 && map.get(2L).getPrice() == 200)
+                .verifyComplete();
+
+        verify(gastronomiaClient, times(1)).getDishesByIds(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Snapshot caliente: ninguna llamada remota")
+    void getDishes_SnapshotCaliente_SinLlamadas() {
+        when(gastronomiaClient.getDishesByIds(List.of(1L, 2L)))
+                .thenReturn(Mono.just(List.of(dish(1, 100), dish(2, 200))));
+        dishPriceCache.getDishes(List.of(1L, 2L)).block();
+
+        StepVerifier.create(dishPriceCache.getDishes(List.of(2L, 1L)))
+                .expectNextMatches(map -> map.size() == 2)
+                .verifyComplete();
+
+        verify(gastronomiaClient, times(1)).getDishesByIds(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Snapshot parcial: sólo se piden los platos faltantes")
+    void getDishes_SnapshotParcial_PideSoloFaltantes() {
+        when(gastronomiaClient.getDishesByIds(List.of(1L)))
+                .thenReturn(Mono.just(List.of(dish(1, 100))));
+        when(gastronomiaClient.getDishesByIds(List.of(2L)))
+                .thenReturn(Mono.just(List.of()));
+        dishPriceCache.getDishes(List.of(1L)).block();
+
+        StepVerifier.create(dishPriceCache.getDishes(List.of(1L, 2L)))
+                .expectNextMatches(map -> map.containsKey(1L) && !map.containsKey(2L))
+                .verifyComplete();
+
+        verify(gastronomiaClient).getDishesByIds(List.of(2L));
+    }
+}
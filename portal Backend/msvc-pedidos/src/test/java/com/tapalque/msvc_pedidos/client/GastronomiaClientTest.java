@@ -0,0 +1,208 @@
+package com.tapalque.msvc_pedidos.client;
+
+import com.tapalque.msvc_pedidos.config.AdmissionProperties;
+import com.tapalque.msvc_pedidos.config.GastronomiaClientProperties;
+import com.tapalque.msvc_pedidos.dto.ItemDTO;
+import com.tapalque.msvc_pedidos.dto.OrderDTO;
+import com.tapalque.msvc_pedidos.dto.RestaurantDTO;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.repository.OrderRepository;
+import com.tapalque.msvc_pedidos.service.AdmissionService;
+import com.tapalque.msvc_pedidos.service.DailySalesService;
+import com.tapalque.msvc_pedidos.service.KitchenBoardService;
+import com.tapalque.msvc_pedidos.service.OrderServiceImpl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * msvc-gastronomia simulado con un servidor Reactor Netty local (en lugar de WireMock, que no está
+ * entre las dependencias del módulo): cada test decide la demora o el estado de cada request.
+ */
+@DisplayName("GastronomiaClient Tests")
+class GastronomiaClientTest {
+
+    private static final String PLATOS = "[{\"idDish\":101,\"name\":\"Pizza\",\"price\":1500.0,\"available\":true}]";
+    private static final String PLATO = "{\"idDish\":101,\"name\":\"Pizza\",\"price\":1500.0,\"available\":true}";
+
+    private final AtomicInteger requests = new AtomicInteger();
+    // Demora y estado de la request número n (1, 2, 3...)
+    private volatile IntFunction<Duration> demora = n -> Duration.ZERO;
+    private volatile IntFunction<HttpResponseStatus> estado = n -> HttpResponseStatus.OK;
+
+    private DisposableServer server;
+    private SimpleMeterRegistry meterRegistry;
+    private GastronomiaClientProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/gastronomia/menu/dishes", (req, res) -> responder(res, PLATOS))
+                        .get("/gastronomia/menu/dish/{id}", (req, res) -> responder(res, PLATO)))
+                .bindNow();
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new GastronomiaClientProperties();
+        properties.setBaseUrl("http://localhost:" + server.port());
+        properties.setResponseTimeout(Duration.ofMillis(300));
+        // Holgado: la primera conexión de reactor-netty puede tardar con toda la suite corriendo
+        properties.setTimeout(Duration.ofSeconds(5));
+        properties.setRetryBackoff(Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.disposeNow();
+    }
+
+    private org.reactivestreams.Publisher<Void> responder(reactor.netty.http.server.HttpServerResponse res, String body) {
+        int n = requests.incrementAndGet();
+        HttpResponseStatus status = estado.apply(n);
+        return Mono.delay(demora.apply(n))
+                .then(res.status(status)
+                        .header("Content-Type", "application/json")
+                        .sendString(Mono.just(status == HttpResponseStatus.OK ? body : "{}"))
+                        .then());
+    }
+
+    private GastronomiaClient client() {
+        WebClient webClient = GastronomiaClient.webClientBuilder(WebClient.builder(), properties).build();
+        return new GastronomiaClient(webClient, properties, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Trae varios platos en una llamada y registra la latencia")
+    void getDishesByIds_Ok() {
+        StepVerifier.create(client().getDishesByIds(List.of(101L)))
+                .expectNextMatches(platos -> platos.size() == 1 && platos.get(0).getPrice() == 1500.0)
+                .verifyComplete();
+
+        Timer timer = meterRegistry.find("pedidos.gastronomia.client").tag("resultado", "ok").timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+    }
+
+    @Test
+    @DisplayName("Un 503 se reintenta y la llamada termina bien")
+    void getDishesByIds_5xx_Reintenta() {
+        estado = n -> n == 1 ? HttpResponseStatus.SERVICE_UNAVAILABLE : HttpResponseStatus.OK;
+
+        StepVerifier.create(client().getDishesByIds(List.of(101L)))
+                .expectNextMatches(platos -> platos.size() == 1)
+                .verifyComplete();
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    @DisplayName("Un 404 no se reintenta: el plato no existe")
+    void getDishById_404_NoReintenta() {
+        estado = n -> HttpResponseStatus.NOT_FOUND;
+
+        StepVerifier.create(client().getDishById(999L))
+                .expectError(IllegalArgumentException.class)
+                .verify(Duration.ofSeconds(5));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    @DisplayName("Una instancia colgada corta por timeout de respuesta y se reintenta")
+    void getDishesByIds_Colgado_TimeoutYReintento() {
+        demora = n -> n == 1 ? Duration.ofSeconds(10) : Duration.ZERO;
+
+        StepVerifier.create(client().getDishesByIds(List.of(101L)))
+                .expectNextMatches(platos -> platos.size() == 1)
+                .verifyComplete();
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    @DisplayName("Con una instancia colgada el hedge lanza una segunda request y gana la que responde")
+    void getDishesByIds_Colgado_Hedge() {
+        demora = n -> n == 1 ? Duration.ofSeconds(5) : Duration.ZERO;
+        properties.setHedgeEnabled(true);
+        properties.setHedgeDelay(Duration.ofMillis(100));
+
+        StepVerifier.create(client().getDishesByIds(List.of(101L)))
+                .expectNextMatches(platos -> platos.size() == 1)
+                .verifyComplete();
+        assertEquals(2, requests.get());
+        assertEquals(1.0, meterRegistry.find("pedidos.gastronomia.client.hedged").counter().count());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Con 5% de requests colgadas, el p99 del alta de pedidos queda acotado por el hedge")
+    void createOrder_P99Acotado() {
+        // Una de cada 20 requests tarda 5 s; el hedge lanza otra a los 100 ms
+        demora = n -> n % 20 == 0 ? Duration.ofSeconds(5) : Duration.ofMillis(5);
+        properties.setHedgeEnabled(true);
+        properties.setHedgeDelay(Duration.ofMillis(100));
+
+        OrderRepository orderRepository = mock(OrderRepository.class);
+        when(orderRepository.save(any(Order.class))).thenAnswer(inv -> Mono.just(inv.<Order>getArgument(0)));
+        // Sin snapshot: cada alta consulta a gastronomía
+        DishPriceCache dishPriceCache = new DishPriceCache(client(), 0, 0);
+        // 200 altas simultáneas del mismo restaurante: acá se mide el cliente, no la admisión
+        AdmissionProperties sinAdmision = new AdmissionProperties();
+        sinAdmision.setEnabled(false);
+        OrderServiceImpl orderService = new OrderServiceImpl(orderRepository, mock(ReactiveMongoTemplate.class),
+                dishPriceCache, null,
+                mock(KitchenBoardService.class), mock(DailySalesService.class),
+                new AdmissionService(mock(KitchenBoardService.class), sinAdmision, meterRegistry));
+
+        List<Long> latencias = Flux.range(0, 200)
+                .flatMap(i -> Mono.defer(() -> {
+                    long inicio = System.nanoTime();
+                    return orderService.createOrder(pedido())
+                            .map(dto -> Duration.ofNanos(System.nanoTime() - inicio).toMillis());
+                }), 10)
+                .collectSortedList()
+                .block(Duration.ofSeconds(60));
+
+        assertNotNull(latencias);
+        assertEquals(200, latencias.size());
+        long p99 = latencias.get(197);
+        assertTrue(p99 < 1000, "p99 debe quedar lejos de los 5 s de la instancia colgada: " + p99);
+        assertTrue(meterRegistry.find("pedidos.gastronomia.client.hedged").counter().count() >= 10);
+    }
+
+    private OrderDTO pedido() {
+        ItemDTO item = new ItemDTO();
+        item.setProductId("101");
+        item.setItemQuantity(1);
+        RestaurantDTO restaurant = new RestaurantDTO();
+        restaurant.setRestaurantId("rest1");
+        restaurant.setRestaurantName("Pizzería Test");
+        OrderDTO dto = new OrderDTO();
+        dto.setUserId("user-1");
+        dto.setPaidWithCash(true);
+        dto.setPaidWithMercadoPago(false);
+        dto.setItems(List.of(item));
+        dto.setRestaurant(restaurant);
+        return dto;
+    }
+}
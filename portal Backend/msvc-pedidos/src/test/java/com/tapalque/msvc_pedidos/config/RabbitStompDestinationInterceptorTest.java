@@ -0,0 +1,43 @@
+package com.tapalque.msvc_pedidos.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("RabbitStompDestinationInterceptor Tests")
+class RabbitStompDestinationInterceptorTest {
+
+    private final RabbitStompDestinationInterceptor interceptor = new RabbitStompDestinationInterceptor();
+
+    private Message<byte[]> frame(StompCommand command, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    @Test
+    @DisplayName("Debe traducir los destinos de pedidos a claves con puntos")
+    void preSend_DestinoConBarras_TraduceAPuntos() {
+        Message<?> result = interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/pedidos/user/42"), null);
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(result);
+        assertEquals("/topic/pedidos.user.42", accessor.getDestination());
+        assertEquals("/topic/pedidos.user.42",
+                accessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_DESTINATION_HEADER));
+    }
+
+    @Test
+    @DisplayName("No debe modificar destinos que RabbitMQ ya acepta")
+    void preSend_DestinoSimple_NoModifica() {
+        Message<byte[]> message = frame(StompCommand.SUBSCRIBE, "/queue/pagos-user123");
+
+        assertSame(message, interceptor.preSend(message, null));
+        assertEquals("/topic/pedidos.7", RabbitStompDestinationInterceptor.toRabbitDestination("/topic/pedidos/7"));
+        assertNull(RabbitStompDestinationInterceptor.toRabbitDestination(null));
+    }
+}
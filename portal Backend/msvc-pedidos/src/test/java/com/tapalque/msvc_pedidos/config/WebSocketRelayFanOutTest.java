@@ -0,0 +1,113 @@
+package com.tapalque.msvc_pedidos.config;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import com.tapalque.msvc_pedidos.MsvcPedidosApplication;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.service.AdminNotificationService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Levanta dos instancias de msvc-pedidos en modo relay contra un RabbitMQ local con el plugin STOMP
+ * y verifica que un único evento de pedido llega a los sockets conectados a ambas.
+ * Requiere STOMP_RELAY_HOST (por ejemplo: docker run -p 5672:5672 -p 61613:61613 rabbitmq
+ * con rabbitmq_stomp habilitado).
+ */
+@EnabledIfEnvironmentVariable(named = "STOMP_RELAY_HOST", matches = ".+")
+@DisplayName("Fan-out de notificaciones entre réplicas vía STOMP relay")
+class WebSocketRelayFanOutTest {
+
+    private ConfigurableApplicationContext instanceA;
+    private ConfigurableApplicationContext instanceB;
+
+    @AfterEach
+    void tearDown() {
+        if (instanceA != null) instanceA.close();
+        if (instanceB != null) instanceB.close();
+    }
+
+    private ConfigurableApplicationContext startInstance() {
+        String host = System.getenv("STOMP_RELAY_HOST");
+        return new SpringApplicationBuilder(MsvcPedidosApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.profiles.active=test",
+                        "eureka.client.enabled=false",
+                        "spring.cloud.discovery.enabled=false",
+                        "spring.rabbitmq.host=" + host,
+                        "pedidos.websocket.broker=relay",
+                        "pedidos.websocket.relay.host=" + host)
+                .run();
+    }
+
+    private BlockingQueue<Map<?, ?>> subscribe(ConfigurableApplicationContext context, String topic) throws Exception {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new MappingJackson2MessageConverter());
+
+        StompSession session = client
+                .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {})
+                .get(10, TimeUnit.SECONDS);
+
+        BlockingQueue<Map<?, ?>> received = new LinkedBlockingQueue<>();
+        session.subscribe(topic, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((Map<?, ?>) payload);
+            }
+        });
+        return received;
+    }
+
+    @Test
+    @DisplayName("Un evento publicado en una instancia llega a los sockets de ambas")
+    void notificarNuevoPedido_DosInstancias_AmbosSocketsReciben() throws Exception {
+        instanceA = startInstance();
+        instanceB = startInstance();
+
+        BlockingQueue<Map<?, ?>> socketEnA = subscribe(instanceA, "/topic/pedidos/rest-fanout");
+        BlockingQueue<Map<?, ?>> socketEnB = subscribe(instanceB, "/topic/pedidos/rest-fanout");
+        Thread.sleep(1000); // dar tiempo a que RabbitMQ registre ambas suscripciones
+
+        Order order = new Order();
+        order.setId("fanout-1");
+        order.setItems(List.of());
+        order.setRestaurant(new Order.Restaurant("rest-fanout", "Test"));
+        instanceA.getBean(AdminNotificationService.class).notificarNuevoPedido(order);
+
+        Map<?, ?> enA = socketEnA.poll(10, TimeUnit.SECONDS);
+        Map<?, ?> enB = socketEnB.poll(10, TimeUnit.SECONDS);
+        assertNotNull(enA, "El socket conectado a la instancia A no recibió el evento");
+        assertNotNull(enB, "El socket conectado a la instancia B no recibió el evento");
+        assertEquals("pedido:nuevo", enB.get("type"));
+    }
+}
@@ -0,0 +1,335 @@
+package com.tapalque.msvc_pedidos.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mongodb.bulk.BulkWriteResult;
+import com.rabbitmq.client.Channel;
+import com.tapalque.msvc_pedidos.config.PagoBatchProperties;
+import com.tapalque.msvc_pedidos.config.RabbitMQConfig;
+import com.tapalque.msvc_pedidos.dto.KitchenBoardDTO;
+import com.tapalque.msvc_pedidos.dto.PagoEventoDTO;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.repository.OrderRepository;
+import com.tapalque.msvc_pedidos.service.DailySalesService;
+import com.tapalque.msvc_pedidos.service.KitchenBoardService;
+import com.tapalque.msvc_pedidos.service.PagoPedidoBatchService;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("PedidoRabbitListener Tests")
+class PedidoRabbitListenerTest {
+
+    // Latencia simulada de un viaje a Mongo
+    private static final Duration ROUND_TRIP = Duration.ofMillis(5);
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private ReactiveBulkOperations bulk;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private Channel channel;
+
+    @Mock
+    private KitchenBoardService kitchenBoardService;
+
+    @Mock
+    private DailySalesService dailySalesService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final Map<String, Order> pedidos = new ConcurrentHashMap<>();
+    private final AtomicInteger viajes = new AtomicInteger();
+    private PagoBatchProperties properties;
+    private PedidoRabbitListener listener;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(dailySalesService.registrar(any())).thenReturn(Mono.empty());
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, Order.class)).thenReturn(bulk);
+        when(bulk.updateOne(any(Query.class), any(UpdateDefinition.class))).thenReturn(bulk);
+        when(bulk.execute()).thenAnswer(inv -> Mono.delay(ROUND_TRIP)
+                .doOnNext(t -> viajes.incrementAndGet())
+                .thenReturn(BulkWriteResult.unacknowledged()));
+        when(mongoTemplate.find(any(Query.class), eq(Order.class))).thenAnswer(inv -> {
+            Query query = inv.getArgument(0);
+            Document in = (Document) query.getQueryObject().get("_id");
+            Collection<?> ids = (Collection<?>) in.get("$in");
+            return Flux.fromIterable(ids).mapNotNull(pedidos::get).delaySubscription(ROUND_TRIP);
+        });
+
+        properties = new PagoBatchProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PagoPedidoBatchService batchService = new PagoPedidoBatchService(
+                mongoTemplate, kitchenBoardService, dailySalesService, meterRegistry);
+        listener = new PedidoRabbitListener(batchService, rabbitTemplate, objectMapper, properties, meterRegistry);
+    }
+
+    private Order pedido(String id) {
+        Order order = new Order();
+        order.setId(id);
+        order.setStatus(Order.OrderStatus.RECIBIDO);
+        order.setPaidWithMercadoPago(true);
+        pedidos.put(id, order);
+        return order;
+    }
+
+    private Message mensaje(long tag, String referenciaId, String estado) throws Exception {
+        PagoEventoDTO evento = new PagoEventoDTO(tag, referenciaId, "PEDIDO", estado,
+                BigDecimal.TEN, "mp-" + tag, 1L, LocalDateTime.now());
+        return mensaje(tag, objectMapper.writeValueAsBytes(evento));
+    }
+
+    private Message mensaje(long tag, byte[] body) {
+        MessageProperties props = new MessageProperties();
+        props.setDeliveryTag(tag);
+        return new Message(body, props);
+    }
+
+    @Test
+    @DisplayName("Un lote se escribe con un solo bulk agrupado por pedido y se confirma con ack múltiple")
+    void recibir_LoteAgrupaPorPedido() throws Exception {
+        pedido("o1");
+        pedido("o2");
+
+        listener.recibirPagosPedidos(List.of(
+                mensaje(1, "o1", "PENDIENTE"),
+                mensaje(2, "o2", "RECHAZADO"),
+                mensaje(3, "o1", "APROBADO")), channel);
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        // Por pedido: los datos del pago y, aparte, el cambio de estado con guarda
+        verify(bulk, times(4)).updateOne(queries.capture(), updates.capture());
+        verify(bulk, times(1)).execute();
+
+        Document o1 = ((Update) updates.getAllValues().get(0)).getUpdateObject();
+        Document set = (Document) o1.get("$set");
+        assertEquals("o1", queries.getAllValues().get(0).getQueryObject().get("_id"));
+        assertEquals(true, set.get("paidWithMercadoPago"));
+        assertEquals(3L, set.get("transaccionId"), "El último evento del pedido gana");
+        assertEquals(1, ((Document) o1.get("$inc")).get("version"));
+        assertFalse(set.containsKey("status"));
+
+        Document guarda = queries.getAllValues().get(1).getQueryObject();
+        assertEquals(List.of(Order.OrderStatus.PAID, Order.OrderStatus.FAILED), ((Document) guarda.get("status")).get("$in"));
+        Document estado = ((Update) updates.getAllValues().get(1)).getUpdateObject();
+        assertEquals(Order.OrderStatus.RECIBIDO, ((Document) estado.get("$set")).get("status"));
+        assertEquals(1, ((Document) estado.get("$inc")).get("version"));
+
+        verify(channel).basicAck(3L, true);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        verify(kitchenBoardService).actualizar(pedidos.get("o1"));
+        verify(kitchenBoardService).actualizar(pedidos.get("o2"));
+        verify(rabbitTemplate, never()).send(anyString(), anyString(), any(Message.class));
+    }
+
+    @Test
+    @DisplayName("El tablero ve el estado que deja el pago aunque ya haya visto la escritura de los datos del pago")
+    void recibir_TableroVeNuevoEstado() throws Exception {
+        KitchenBoardService tablero = new KitchenBoardService(mock(OrderRepository.class));
+        listener = new PedidoRabbitListener(
+                new PagoPedidoBatchService(mongoTemplate, tablero, dailySalesService, new SimpleMeterRegistry()),
+                rabbitTemplate, objectMapper, properties, new SimpleMeterRegistry());
+        Order order = pedido("o1");
+        order.setStatus(Order.OrderStatus.PAID);
+        order.setVersion(4);
+        order.setDateCreated(LocalDateTime.now());
+        order.setRestaurant(new Order.Restaurant("rest1", "Pizzería Test"));
+        order.setItems(List.of());
+        tablero.actualizar(copia(order));
+
+        // Mongo aplica cada update del bulk en orden y el change stream lleva cada versión al tablero
+        List<Query> guardas = new ArrayList<>();
+        List<Update> cambios = new ArrayList<>();
+        when(bulk.updateOne(any(Query.class), any(UpdateDefinition.class))).thenAnswer(inv -> {
+            guardas.add(inv.getArgument(0));
+            cambios.add(inv.getArgument(1));
+            return bulk;
+        });
+        when(bulk.execute()).thenAnswer(inv -> Mono.fromCallable(() -> {
+            for (int i = 0; i < cambios.size(); i++) {
+                if (aplicar(order, guardas.get(i).getQueryObject(), cambios.get(i).getUpdateObject())) {
+                    tablero.actualizar(copia(order));
+                }
+            }
+            return BulkWriteResult.unacknowledged();
+        }));
+
+        listener.recibirPagosPedidos(List.of(mensaje(1, "o1", "APROBADO")), channel);
+
+        assertEquals(Order.OrderStatus.RECIBIDO, order.getStatus());
+        assertEquals(6, order.getVersion(), "Los datos del pago y el estado avanzan una versión cada uno");
+        KitchenBoardDTO snapshot = tablero.snapshot("rest1");
+        assertEquals(1, snapshot.columnas().get(Order.OrderStatus.RECIBIDO).size());
+        assertTrue(snapshot.columnas().get(Order.OrderStatus.PAID).isEmpty());
+        verify(channel).basicAck(1L, true);
+    }
+
+    // Lo mínimo de un update de Mongo para estos tests: guarda por _id y status, $set de status y pago, $inc de version
+    private static boolean aplicar(Order order, Document filtro, Document update) {
+        if (filtro.get("status") instanceof Document estados
+                && !((Collection<?>) estados.get("$in")).contains(order.getStatus())) {
+            return false;
+        }
+        Document set = (Document) update.get("$set");
+        if (set.get("status") instanceof Order.OrderStatus status) {
+            order.setStatus(status);
+        }
+        if (set.get("paidWithMercadoPago") instanceof Boolean pagado) {
+            order.setPaidWithMercadoPago(pagado);
+        }
+        Document inc = (Document) update.get("$inc");
+        if (inc != null) {
+            order.setVersion(order.getVersion() + ((Number) inc.get("version")).longValue());
+        }
+        return true;
+    }
+
+    private static Order copia(Order order) {
+        Order copia = new Order();
+        copia.setId(order.getId());
+        copia.setStatus(order.getStatus());
+        copia.setVersion(order.getVersion());
+        copia.setPaidWithMercadoPago(order.getPaidWithMercadoPago());
+        copia.setDateCreated(order.getDateCreated());
+        copia.setRestaurant(order.getRestaurant());
+        copia.setItems(order.getItems());
+        return copia;
+    }
+
+    @Test
+    @DisplayName("Mensajes malformados, con estado desconocido o de pedidos inexistentes van a la DLQ")
+    void recibir_MensajesVenenoAlDeadLetter() throws Exception {
+        pedido("o1");
+
+        listener.recibirPagosPedidos(List.of(
+                mensaje(1, "o1", "APROBADO"),
+                mensaje(2, "{no es json".getBytes()),
+                mensaje(3, "o1", "REEMBOLSADO"),
+                mensaje(4, "no-existe", "APROBADO")), channel);
+
+        ArgumentCaptor<Message> dlq = ArgumentCaptor.forClass(Message.class);
+        verify(rabbitTemplate, times(3)).send(eq(""), eq(RabbitMQConfig.QUEUE_PEDIDOS_DLQ), dlq.capture());
+        assertTrue(dlq.getAllValues().stream().allMatch(m ->
+                m.getMessageProperties().getHeader(PedidoRabbitListener.HEADER_MOTIVO) != null));
+        assertEquals("Pedido inexistente",
+                dlq.getAllValues().get(2).getMessageProperties().getHeader(PedidoRabbitListener.HEADER_MOTIVO));
+        verify(channel).basicAck(4L, true);
+    }
+
+    @Test
+    @DisplayName("Si falla el bulk el lote entero vuelve a la cola sin ack ni DLQ")
+    void recibir_BulkFalla_NackConRequeue() throws Exception {
+        pedido("o1");
+        when(bulk.execute()).thenReturn(Mono.error(new IllegalStateException("Mongo caído")));
+
+        listener.recibirPagosPedidos(List.of(
+                mensaje(7, "o1", "APROBADO"),
+                mensaje(8, "{".getBytes())), channel);
+
+        verify(channel).basicNack(8L, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+        verify(rabbitTemplate, never()).send(anyString(), anyString(), any(Message.class));
+    }
+
+    @Test
+    @DisplayName("En lotes, la cola se vacía con un bulk por lote en lugar de uno por mensaje")
+    void recibir_LotesUnBulkPorLote() throws Exception {
+        List<Message> cola = cola(60);
+
+        vaciar(cola, 1);
+        assertEquals(60, viajes.getAndSet(0));
+        vaciar(cola, 20);
+        assertEquals(3, viajes.get());
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Throughput: vaciar 300 pagos en lotes de 50 contra uno por uno")
+    void throughput_LotesContraUnoPorUno() throws Exception {
+        List<Message> cola = cola(300);
+
+        long unoPorUno = vaciar(cola, 1);
+        long enLotes = vaciar(cola, 50);
+
+        assertTrue(enLotes * 5 < unoPorUno,
+                "Los lotes deben drenar la cola al menos 5 veces más rápido: " + enLotes + " ms vs " + unoPorUno + " ms");
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    private List<Message> cola(int total) throws Exception {
+        List<Message> cola = new ArrayList<>();
+        for (int i = 1; i <= total; i++) {
+            String id = "o" + (i % 120);
+            pedido(id);
+            cola.add(mensaje(i, id, "APROBADO"));
+        }
+        return cola;
+    }
+
+    // Simula al contenedor: entrega la cola al listener en lotes del tamaño configurado
+    private long vaciar(List<Message> cola, int batchSize) throws Exception {
+        properties.setBatchSize(batchSize);
+        long inicio = System.nanoTime();
+        for (int desde = 0; desde < cola.size(); desde += batchSize) {
+            listener.recibirPagosPedidos(cola.subList(desde, Math.min(desde + batchSize, cola.size())), channel);
+        }
+        return Duration.ofNanos(System.nanoTime() - inicio).toMillis();
+    }
+
+    @Test
+    @DisplayName("Un lote sólo con mensajes inválidos no escribe en Mongo")
+    void recibir_SoloInvalidos_NoEscribe() throws Exception {
+        listener.recibirPagosPedidos(List.of(mensaje(1, null, "APROBADO")), channel);
+
+        verify(mongoTemplate, never()).bulkOps(any(BulkMode.class), eq(Order.class));
+        verify(rabbitTemplate).send(eq(""), eq(RabbitMQConfig.QUEUE_PEDIDOS_DLQ), any(Message.class));
+        verify(channel).basicAck(1L, true);
+        assertEquals(Set.of(), Set.copyOf(pedidos.keySet()));
+    }
+}
@@ -0,0 +1,221 @@
+package com.tapalque.msvc_pedidos.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tapalque.msvc_pedidos.dto.OrderSummaryDTO;
+import com.tapalque.msvc_pedidos.entity.Order;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Proyección de los listados livianos. Sin Mongo en los tests, la medición usa el mismo conversor
+ * que el driver de Spring Data sobre pedidos sembrados: bytes BSON que Mongo mandaría con y sin
+ * proyección, costo de decodificarlos y tamaño del JSON de la respuesta. La corrida con 100k
+ * pedidos es un benchmark y sólo corre con -Pbenchmark.
+ */
+@DisplayName("Proyección OrderSummaryDTO")
+class OrderSummaryProjectionTest {
+
+    private MappingMongoConverter converter;
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @BeforeEach
+    void setUp() {
+        // Mismas conversiones por defecto que arma Spring Boot (fechas java.time como tipos simples)
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+    }
+
+    @Test
+    @DisplayName("CAMPOS_RESUMEN trae exactamente los componentes del DTO y todas las consultas de resumen lo usan")
+    void camposResumen_CoincidenConElDTO() throws Exception {
+        Set<String> campos = new HashSet<>(Document.parse(OrderRepository.CAMPOS_RESUMEN).keySet());
+        campos.add("id");
+        Set<String> componentes = Arrays.stream(OrderSummaryDTO.class.getRecordComponents())
+                .map(RecordComponent::getName)
+                .collect(Collectors.toSet());
+        assertEquals(componentes, campos);
+
+        int consultas = 0;
+        for (Method method : OrderRepository.class.getDeclaredMethods()) {
+            if (method.getGenericReturnType() instanceof ParameterizedType tipo
+                    && tipo.getActualTypeArguments()[0] == OrderSummaryDTO.class) {
+                assertEquals(OrderRepository.CAMPOS_RESUMEN, method.getAnnotation(Query.class).fields(), method.getName());
+                consultas++;
+            }
+        }
+        assertEquals(4, consultas);
+    }
+
+    @Test
+    @DisplayName("El resumen se decodifica completo desde el documento proyectado")
+    void resumen_DesdeDocumentoProyectado() throws Exception {
+        Order order = pedido(new Random(1), 0);
+        OrderSummaryDTO resumen = converter.read(OrderSummaryDTO.class, proyectar(documento(order)));
+
+        assertEquals(order.getId(), resumen.id());
+        assertEquals(order.getStatus(), resumen.status());
+        assertEquals(order.getTotalPrice(), resumen.totalPrice());
+        assertEquals("Restaurante 0", resumen.restaurant().getRestaurantName());
+        assertEquals(order.getVersion(), resumen.version());
+
+        String json = objectMapper.writeValueAsString(resumen);
+        assertTrue(json.contains("\"isDelivery\""), json);
+        assertFalse(json.contains("items"), json);
+    }
+
+    @Test
+    @DisplayName("El resumen lee y responde menos de la mitad de los bytes")
+    void resumen_MenosBytes() throws Exception {
+        Medicion medicion = medir(1_000);
+
+        assertEquals(1_000, medicion.resumenes());
+        assertTrue(medicion.bsonResumen() < medicion.bsonCompleto() / 2, "La proyección debe leer menos de la mitad de los bytes");
+        assertTrue(medicion.jsonResumen() < medicion.jsonCompleto() / 2, "La respuesta resumida debe pesar menos de la mitad");
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Con 100k pedidos el resumen lee, decodifica y responde una fracción de los bytes")
+    void resumen_MenosBytesYDecodeMasBarato() throws Exception {
+        Medicion medicion = medir(100_000);
+
+        assertEquals(100_000, medicion.resumenes());
+        assertTrue(medicion.bsonResumen() < medicion.bsonCompleto() / 2, "La proyección debe leer menos de la mitad de los bytes");
+        assertTrue(medicion.jsonResumen() < medicion.jsonCompleto() / 2, "La respuesta resumida debe pesar menos de la mitad");
+        assertTrue(medicion.decodeResumenNanos() < medicion.decodeCompletoNanos(),
+                "Decodificar el resumen debe costar menos: " + medicion);
+    }
+
+    private record Medicion(int resumenes, long bsonCompleto, long bsonResumen, long decodeCompletoNanos,
+                            long decodeResumenNanos, long jsonCompleto, long jsonResumen) {}
+
+    private Medicion medir(int pedidos) throws Exception {
+        Random random = new Random(42);
+        List<Document> completos = new ArrayList<>(pedidos);
+        List<Document> proyectados = new ArrayList<>(pedidos);
+        long bytesCompletos = 0;
+        long bytesProyectados = 0;
+        for (int i = 0; i < pedidos; i++) {
+            Document documento = documento(pedido(random, i));
+            Document proyectado = proyectar(documento);
+            bytesCompletos += bson(documento);
+            bytesProyectados += bson(proyectado);
+            completos.add(documento);
+            proyectados.add(proyectado);
+        }
+
+        // Una pasada de calentamiento para que el JIT no cargue la primera medición
+        int calentamiento = Math.min(pedidos, 10_000);
+        decodificar(completos.subList(0, calentamiento), Order.class);
+        decodificar(proyectados.subList(0, calentamiento), OrderSummaryDTO.class);
+
+        long inicio = System.nanoTime();
+        List<Order> orders = decodificar(completos, Order.class);
+        long decodeCompleto = System.nanoTime() - inicio;
+        inicio = System.nanoTime();
+        List<OrderSummaryDTO> resumenes = decodificar(proyectados, OrderSummaryDTO.class);
+        long decodeResumen = System.nanoTime() - inicio;
+
+        long jsonCompleto = 0;
+        long jsonResumen = 0;
+        for (int i = 0; i < pedidos; i++) {
+            jsonCompleto += objectMapper.writeValueAsBytes(orders.get(i)).length;
+            jsonResumen += objectMapper.writeValueAsBytes(resumenes.get(i)).length;
+        }
+        return new Medicion(resumenes.size(), bytesCompletos, bytesProyectados, decodeCompleto, decodeResumen,
+                jsonCompleto, jsonResumen);
+    }
+
+    private <T> List<T> decodificar(List<Document> documentos, Class<T> tipo) {
+        List<T> resultado = new ArrayList<>(documentos.size());
+        for (Document documento : documentos) {
+            resultado.add(converter.read(tipo, documento));
+        }
+        return resultado;
+    }
+
+    // Lo que Mongo devuelve con fields = CAMPOS_RESUMEN (_id siempre viaja)
+    private static Document proyectar(Document documento) {
+        Document proyectado = new Document("_id", documento.get("_id"));
+        for (String campo : Document.parse(OrderRepository.CAMPOS_RESUMEN).keySet()) {
+            if (documento.containsKey(campo)) {
+                proyectado.put(campo, documento.get(campo));
+            }
+        }
+        return proyectado;
+    }
+
+    private Document documento(Order order) {
+        Document documento = new Document();
+        converter.write(order, documento);
+        return documento;
+    }
+
+    private static int bson(Document documento) {
+        return new RawBsonDocument(documento, new DocumentCodec()).getByteBuffer().remaining();
+    }
+
+    // Pedido típico: 1 a 6 platos, notas y delivery en parte de los casos, datos de Mercado Pago en la mitad
+    private static Order pedido(Random random, int n) {
+        List<Order.Item> items = new ArrayList<>();
+        int platos = 1 + random.nextInt(6);
+        double total = 0;
+        for (int i = 0; i < platos; i++) {
+            double precio = 1000 + random.nextInt(9000);
+            int cantidad = 1 + random.nextInt(3);
+            items.add(new Order.Item(String.valueOf(100 + random.nextInt(400)), "Plato del menú " + random.nextInt(400),
+                    precio, cantidad, random.nextInt(10) < 3 ? "Sin cebolla, bien cocido y con salsa aparte" : null));
+            total += precio * cantidad;
+        }
+        boolean delivery = random.nextBoolean();
+        boolean mercadoPago = random.nextBoolean();
+        Order order = new Order(new ObjectId().toHexString(), total, mercadoPago, !mercadoPago, items,
+                new Order.Restaurant("rest" + (n % 50), "Restaurante " + (n % 50)),
+                random.nextInt(10) < 2 ? "/comprobantes/2025/03/" + new ObjectId().toHexString() + ".jpg" : null,
+                delivery, delivery ? "Av. San Martín " + random.nextInt(2000) + ", Tapalqué, Buenos Aires" : null,
+                delivery ? 1500 : 0, "Cliente Número " + n, "+54 9 2283 " + (400000 + random.nextInt(99999)));
+        order.setUserId(String.valueOf(random.nextInt(20_000)));
+        order.setStatus(Order.OrderStatus.values()[random.nextInt(5)]);
+        order.setDateCreated(LocalDateTime.of(2025, 1, 1, 12, 0).plusMinutes(n));
+        order.setDateUpdated(order.getDateCreated().plusMinutes(30));
+        order.setVersion(1 + random.nextInt(6));
+        order.setOutbox(List.of());
+        if (mercadoPago) {
+            order.setTransaccionId((long) random.nextInt(1_000_000));
+            order.setMercadoPagoId(String.valueOf(100_000_000_000L + random.nextInt(1_000_000)));
+            order.setFechaPago(order.getDateCreated().plusMinutes(2));
+        }
+        return order;
+    }
+}
@@ -0,0 +1,186 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.event.OrderCreated;
+import com.tapalque.msvc_pedidos.event.OrderStatusChanged;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AdminNotificationService Tests")
+class AdminNotificationServiceTest {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    private AdminNotificationService notificationService;
+    private Order order;
+
+    @BeforeEach
+    void setUp() {
+        notificationService = new AdminNotificationService(messagingTemplate);
+
+        order = new Order();
+        order.setId("65f1c0ffee65f1c0ffee0001");
+        order.setUserId("user-42");
+        order.setUserName("Juan Pérez");
+        order.setUserPhone("2283-123456");
+        order.setTotalPrice(12500.0);
+        order.setPaidWithCash(true);
+        order.setPaidWithMercadoPago(false);
+        order.setIsDelivery(true);
+        order.setDeliveryAddress("Av. San Martín 1234, Tapalqué");
+        order.setDeliveryPrice(800);
+        order.setPaymentReceiptPath("/comprobantes/2026/10/65f1c0ffee65f1c0ffee0001.pdf");
+        order.setRestaurant(new Order.Restaurant("rest1", "Pizzería Test"));
+        order.setItems(List.of(
+                new Order.Item("101", "Pizza muzzarella grande", 6500.0, 1, "Sin aceitunas"),
+                new Order.Item("102", "Empanadas de carne (docena)", 4500.0, 1, null),
+                new Order.Item("103", "Gaseosa 1.5L", 1500.0, 1, null)));
+        order.setStatus(Order.OrderStatus.EN_PREPARACION);
+        order.setVersion(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> enviadoA(String destino) {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSend(eq(destino), captor.capture());
+        return (Map<String, Object>) captor.getValue();
+    }
+
+    @Nested
+    @DisplayName("Formato de eventos")
+    class FormatoTests {
+
+        @Test
+        @DisplayName("pedido:nuevo lleva el snapshot compacto con versión")
+        void notificarNuevoPedido_EnviaSnapshotCompacto() {
+            notificationService.notificarNuevoPedido(order);
+
+            Map<String, Object> mensaje = enviadoA("/topic/pedidos/rest1");
+            assertEquals("pedido:nuevo", mensaje.get("type"));
+            assertEquals(AdminNotificationService.EVENT_SCHEMA_VERSION, mensaje.get("v"));
+            OrderCreated payload = assertInstanceOf(OrderCreated.class, mensaje.get("payload"));
+            assertEquals(3, payload.version());
+            assertEquals(3, payload.items().size());
+        }
+
+        @Test
+        @DisplayName("pedido:actualizado lleva sólo id, estado y versión")
+        void notificarPedidoActualizado_EnviaDelta() {
+            notificationService.notificarPedidoActualizado(order);
+
+            Map<String, Object> mensaje = enviadoA("/topic/pedidos/rest1");
+            assertEquals("pedido:actualizado", mensaje.get("type"));
+            assertEquals(new OrderStatusChanged(order.getId(), "EN_PREPARACION", 3), mensaje.get("payload"));
+        }
+
+        @Test
+        @DisplayName("pedido:estado al usuario lleva el delta y el nombre del restaurante")
+        void notificarUsuario_EnviaDelta() {
+            notificationService.notificarUsuarioPedidoActualizado(order);
+
+            Map<String, Object> mensaje = enviadoA("/topic/pedidos/user/user-42");
+            assertEquals("pedido:estado", mensaje.get("type"));
+            assertEquals("Pizzería Test", mensaje.get("restaurantName"));
+            assertInstanceOf(OrderStatusChanged.class, mensaje.get("payload"));
+        }
+
+        @Test
+        @DisplayName("Sin restaurante no se envía nada")
+        void notificarPagoActualizado_SinRestaurante_NoEnvia() {
+            order.setRestaurant(null);
+
+            notificationService.notificarPagoActualizado(order);
+
+            verifyNoInteractions(messagingTemplate);
+        }
+    }
+
+    @Nested
+    @DisplayName("Benchmark de payload: documento completo vs delta")
+    class BenchmarkTests {
+
+        private static final int ITERACIONES = 20_000;
+
+        private final ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        // Formato anterior: el documento Order completo dentro del sobre
+        private Map<String, Object> mensajeDocumentoCompleto() {
+            return Map.of(
+                    "type", "pedido:actualizado",
+                    "payload", order,
+                    "businessId", "rest1",
+                    "businessType", "GASTRONOMIA",
+                    "timestamp", LocalDateTime.now().toString());
+        }
+
+        private Map<String, Object> mensajeDelta() {
+            return AdminNotificationService.mensajeNegocio(
+                    "pedido:actualizado", OrderStatusChanged.from(order), "rest1");
+        }
+
+        private long bytesAsignados(Supplier<Map<String, Object>> mensaje) throws Exception {
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+            for (int i = 0; i < ITERACIONES; i++) { // calentamiento
+                mapper.writeValueAsBytes(mensaje.get());
+            }
+            long antes = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < ITERACIONES; i++) {
+                mapper.writeValueAsBytes(mensaje.get());
+            }
+            return (threads.getThreadAllocatedBytes(threadId) - antes) / ITERACIONES;
+        }
+
+        @Test
+        @DisplayName("El delta pesa en el cable menos de un tercio que el documento completo")
+        void deltaVsDocumentoCompleto_Bytes() throws Exception {
+            int bytesCompleto = mapper.writeValueAsBytes(mensajeDocumentoCompleto()).length;
+            int bytesDelta = mapper.writeValueAsBytes(mensajeDelta()).length;
+
+            assertTrue(bytesDelta * 3 < bytesCompleto,
+                    "El delta debería ser al menos 3 veces más chico: " + bytesDelta + " vs " + bytesCompleto);
+        }
+
+        // Depende del JIT y del GC de la JVM que corre: sólo con -Pbenchmark
+        @Test
+        @Tag("benchmark")
+        @DisplayName("El delta asigna menos memoria por notificación que el documento completo")
+        void deltaVsDocumentoCompleto_Asignaciones() throws Exception {
+            assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+
+            long asignadoCompleto = bytesAsignados(this::mensajeDocumentoCompleto);
+            long asignadoDelta = bytesAsignados(this::mensajeDelta);
+
+            assertTrue(asignadoDelta < asignadoCompleto,
+                    "El delta debería asignar menos memoria: " + asignadoDelta + " vs " + asignadoCompleto);
+        }
+    }
+}
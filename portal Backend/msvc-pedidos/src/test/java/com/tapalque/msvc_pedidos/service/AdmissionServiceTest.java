@@ -0,0 +1,306 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.tapalque.msvc_pedidos.config.AdmissionProperties;
+import com.tapalque.msvc_pedidos.config.AdmissionProperties.Modo;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.Order.OrderStatus;
+import com.tapalque.msvc_pedidos.repository.OrderRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * El control de admisión sobre un tablero de cocina real (sin Mongo): los pedidos en cocina se cargan
+ * con actualizar() y los despachos se simulan pasándolos a LISTO.
+ */
+@DisplayName("AdmissionService Tests")
+class AdmissionServiceTest {
+
+    private KitchenBoardService boardService;
+    private AdmissionProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private final AtomicLong ahora = new AtomicLong(1_700_000_000_000L);
+    private AdmissionService admissionService;
+
+    @BeforeEach
+    void setUp() {
+        boardService = new KitchenBoardService(mock(OrderRepository.class));
+        properties = new AdmissionProperties();
+        properties.setMaxEnCocina(10);
+        meterRegistry = new SimpleMeterRegistry();
+        admissionService = new AdmissionService(boardService, properties, meterRegistry, ahora::get);
+    }
+
+    private Order order(String restaurantId, String id, OrderStatus status, long version) {
+        Order order = new Order();
+        order.setId(id);
+        order.setStatus(status);
+        order.setVersion(version);
+        order.setPaidWithCash(true);
+        order.setPaidWithMercadoPago(false);
+        order.setDateCreated(LocalDateTime.now());
+        order.setRestaurant(new Order.Restaurant(restaurantId, "Restaurante " + restaurantId));
+        order.setItems(List.of());
+        return order;
+    }
+
+    private void enCocina(String restaurantId, int cantidad) {
+        for (int i = 0; i < cantidad; i++) {
+            boardService.actualizar(order(restaurantId, restaurantId + "-" + i, OrderStatus.RECIBIDO, 1));
+        }
+    }
+
+    private void despachar(String restaurantId, int desde, int cantidad) {
+        for (int i = desde; i < desde + cantidad; i++) {
+            boardService.actualizar(order(restaurantId, restaurantId + "-" + i, OrderStatus.LISTO, 2));
+        }
+    }
+
+    // Alta que deja el pedido en el tablero, como createOrder
+    private Mono<String> alta(String restaurantId, String id) {
+        return Mono.fromCallable(() -> {
+            boardService.actualizar(order(restaurantId, id, OrderStatus.RECIBIDO, 1));
+            return id;
+        });
+    }
+
+    private static void esperarRechazo(Mono<?> alta, String retryAfter) {
+        StepVerifier.create(alta)
+                .expectErrorSatisfies(e -> {
+                    RestauranteSaturadoException saturado = assertInstanceOf(RestauranteSaturadoException.class, e);
+                    assertEquals(429, saturado.getStatusCode().value());
+                    assertEquals(retryAfter, saturado.getHeaders().getFirst("Retry-After"));
+                })
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Cuenta los pedidos en cocina y las altas en curso; al tope rechaza rápido con Retry-After")
+    void tope_RechazaConRetryAfter() {
+        enCocina("rest1", 9);
+        Sinks.One<String> altaEnCurso = Sinks.one();
+        StepVerifier.create(admissionService.admitir("rest1", altaEnCurso::asMono))
+                .then(() -> {
+                    assertEquals(10, admissionService.ocupacion("rest1"));
+                    // Sin historia de despachos, el Retry-After por defecto
+                    esperarRechazo(admissionService.admitir("rest1", () -> Mono.just("x")), "30");
+                    altaEnCurso.tryEmitValue("ok");
+                })
+                .expectNext("ok")
+                .verifyComplete();
+
+        // El alta terminó pero el pedido no llegó al tablero (p. ej. falló): el lugar se libera igual
+        assertEquals(9, admissionService.ocupacion("rest1"));
+        StepVerifier.create(admissionService.admitir("rest1", () -> Mono.just("nuevo"))).expectNext("nuevo").verifyComplete();
+        // LISTO ya no ocupa a la cocina
+        despachar("rest1", 0, 1);
+        assertEquals(8, admissionService.ocupacion("rest1"));
+        assertEquals(1, meterRegistry.counter("pedidos.admision.rechazados").count());
+    }
+
+    @Test
+    @DisplayName("El Retry-After sale del ritmo de despacho reciente")
+    void retryAfter_SegunDespachos() {
+        enCocina("rest1", 20);
+        despachar("rest1", 10, 10);
+        // 10 despachos en 15 minutos: liberar un lugar lleva 90 segundos
+        esperarRechazo(admissionService.admitir("rest1", () -> Mono.just("x")), "90");
+
+        // Fuera de la ventana los despachos viejos ya no cuentan
+        ahora.addAndGet(Duration.ofMinutes(16).toMillis());
+        esperarRechazo(admissionService.admitir("rest1", () -> Mono.just("x")), "30");
+    }
+
+    @Test
+    @DisplayName("En modo adaptativo el tope es lo que la cocina despacha en la demora objetivo")
+    void adaptativo_SigueAlDespacho() {
+        properties.setAdaptativo(true);
+        properties.setMaxEnCocina(40);
+        assertEquals(40, admissionService.limite("rest1"), "Sin despachos suficientes se usa el tope fijo");
+
+        enCocina("rest1", 6);
+        despachar("rest1", 0, 6);
+        // 6 en 15 minutos = 0,4 por minuto; en 45 minutos de demora objetivo entran 18
+        assertEquals(18, admissionService.limite("rest1"));
+
+        enCocina("rest1", 60);
+        despachar("rest1", 6, 54);
+        assertEquals(40, admissionService.limite("rest1"), "Nunca por encima del tope fijo");
+
+        // Un cuarto de hora después sólo cuenta un despacho nuevo: 3 en la demora objetivo, sube al mínimo
+        properties.setMinDespachos(1);
+        ahora.addAndGet(Duration.ofMinutes(16).toMillis());
+        enCocina("rest1", 61);
+        despachar("rest1", 60, 1);
+        assertEquals(5, admissionService.limite("rest1"), "Nunca por debajo del mínimo");
+    }
+
+    @Test
+    @DisplayName("En modo ESPERAR los pedidos esperan en orden y entran a medida que la cocina despacha")
+    void esperar_ColaEnOrden() {
+        properties.setModo(Modo.ESPERAR);
+        properties.setColaMaxima(2);
+        properties.setEsperaMaxima(Duration.ofSeconds(5));
+        enCocina("rest1", 10);
+
+        List<String> orden = Collections.synchronizedList(new ArrayList<>());
+        Mono<String> primero = admissionService.admitir("rest1", () -> alta("rest1", "primero")).doOnNext(orden::add);
+        Mono<String> segundo = admissionService.admitir("rest1", () -> alta("rest1", "segundo")).doOnNext(orden::add);
+        primero.subscribe();
+        segundo.subscribe();
+        assertTrue(orden.isEmpty());
+
+        // Cola llena: rechazo inmediato
+        esperarRechazo(admissionService.admitir("rest1", () -> Mono.just("tercero")), "30");
+
+        despachar("rest1", 0, 1);
+        assertEquals(List.of("primero"), orden);
+        despachar("rest1", 1, 1);
+        assertEquals(List.of("primero", "segundo"), orden);
+        assertEquals(2, meterRegistry.counter("pedidos.admision.encolados").count());
+    }
+
+    @Test
+    @DisplayName("Si la espera vence responde 429 y deja la cola limpia")
+    void esperar_Vence() {
+        properties.setModo(Modo.ESPERAR);
+        properties.setEsperaMaxima(Duration.ofMillis(50));
+        enCocina("rest1", 10);
+
+        esperarRechazo(admissionService.admitir("rest1", () -> Mono.just("x")), "30");
+
+        despachar("rest1", 0, 1);
+        assertEquals(9, admissionService.ocupacion("rest1"), "La espera vencida no se quedó con el lugar");
+        StepVerifier.create(admissionService.admitir("rest1", () -> Mono.just("ok"))).expectNext("ok").verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Los restaurantes ociosos se descartan; los que tienen altas o despachos recientes no")
+    void limpiar_DescartaOciosos() {
+        // restaurantIds inventados: el alta falla y no vuelven
+        for (int i = 0; i < 1_000; i++) {
+            StepVerifier.create(admissionService.admitir("falso" + i, () -> Mono.error(new IllegalArgumentException("no existe"))))
+                    .expectError(IllegalArgumentException.class)
+                    .verify();
+        }
+        Sinks.One<String> enCurso = Sinks.one();
+        admissionService.admitir("rest1", enCurso::asMono).subscribe();
+        enCocina("rest2", 1);
+        despachar("rest2", 0, 1);
+
+        admissionService.limpiar();
+        assertEquals(2, admissionService.restaurantesEnMemoria(), "Quedan el alta en curso y el despacho reciente");
+        assertEquals(1, admissionService.ocupacion("rest1"));
+
+        enCurso.tryEmitValue("ok");
+        ahora.addAndGet(Duration.ofMinutes(16).toMillis());
+        admissionService.limpiar();
+        assertEquals(0, admissionService.restaurantesEnMemoria());
+
+        // Vuelve a pedir: se arma de cero y cuenta igual
+        enCocina("rest1", 10);
+        esperarRechazo(admissionService.admitir("rest1", () -> Mono.just("x")), "30");
+        assertEquals(10, admissionService.ocupacion("rest1"));
+    }
+
+    @Test
+    @DisplayName("Un restaurante saturado no ocupa lugares de los demás")
+    void saturado_OtrosRestaurantesEntran() {
+        properties.setMaxEnCocina(40);
+        enCocina("rest0", 40);
+        esperarRechazo(admissionService.admitir("rest0", () -> Mono.just("x")), "30");
+
+        List<String> altas = Flux.range(0, 120)
+                .flatMap(i -> admissionService.admitir("rest" + (1 + i % 3), () -> Mono.just("ok")), 32)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(120, altas.size(), "Todas las altas de los otros restaurantes entraron");
+        assertEquals(40, admissionService.ocupacion("rest0"), "El rechazo no deja lugares reservados");
+        assertEquals(0, admissionService.ocupacion("rest1"));
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Un restaurante saturado no afecta el throughput ni la latencia de los demás")
+    void carga_OtrosRestaurantesNoSeAfectan() {
+        properties.setMaxEnCocina(40);
+        // Alta simulada de 2 ms (precios + escritura en Mongo)
+        Mono<String> alta = Mono.delay(Duration.ofMillis(2)).thenReturn("ok");
+        int pedidos = 400;
+
+        List<Long> base = latencias(Flux.range(0, pedidos).map(i -> "rest" + (i % 4)), alta);
+
+        // rest0 con la cocina llena y un hilo que lo inunda de intentos mientras los demás piden
+        enCocina("rest0", 40);
+        AtomicLong rechazos = new AtomicLong();
+        Scheduler hilo = Schedulers.newSingle("inundacion");
+        Disposable inundacion = Flux.range(0, 256)
+                .flatMap(i -> admissionService.admitir("rest0", () -> alta)
+                        .doOnError(e -> rechazos.incrementAndGet())
+                        .onErrorResume(e -> Mono.empty()))
+                .repeat()
+                .subscribeOn(hilo)
+                .subscribe();
+        List<Long> otros;
+        long antes;
+        try {
+            while ((antes = rechazos.get()) == 0) {
+                Thread.onSpinWait();
+            }
+            otros = latencias(Flux.range(0, pedidos).map(i -> "rest" + (1 + i % 3)), alta);
+        } finally {
+            inundacion.dispose();
+            hilo.dispose();
+        }
+
+        assertEquals(pedidos, otros.size(), "Todas las altas de los otros restaurantes entraron");
+        assertTrue(rechazos.get() > antes, "rest0 se siguió rechazando durante la medición");
+        assertEquals(40, admissionService.ocupacion("rest0"), "Los rechazos no dejan lugares reservados");
+        long p99Base = percentil(base, 0.99);
+        long p99Otros = percentil(otros, 0.99);
+        assertTrue(p99Otros <= p99Base + 50,
+                "La latencia de los demás no debe depender del restaurante saturado: p99 " + p99Otros + " ms vs " + p99Base + " ms");
+    }
+
+    private List<Long> latencias(Flux<String> restaurantes, Mono<String> alta) {
+        return restaurantes
+                .flatMap(r -> medir(admissionService.admitir(r, () -> alta)), 32)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+    }
+
+    private static Mono<Long> medir(Mono<String> alta) {
+        return Mono.defer(() -> {
+            long inicio = System.nanoTime();
+            return alta.map(r -> (System.nanoTime() - inicio) / 1_000_000);
+        });
+    }
+
+    private static long percentil(List<Long> valores, double p) {
+        List<Long> ordenados = new ArrayList<>(valores);
+        Collections.sort(ordenados);
+        return ordenados.get((int) Math.min(ordenados.size() - 1, Math.floor(p * ordenados.size())));
+    }
+}
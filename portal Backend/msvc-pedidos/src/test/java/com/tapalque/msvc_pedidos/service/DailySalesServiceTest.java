@@ -0,0 +1,303 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.tapalque.msvc_pedidos.dto.VentasResumenDTO;
+import com.tapalque.msvc_pedidos.entity.DailySales;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.VentaAporte;
+import com.tapalque.msvc_pedidos.repository.DailySalesRepository;
+import com.tapalque.msvc_pedidos.repository.OrderRepository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DailySalesService Tests")
+class DailySalesServiceTest {
+
+    private static final LocalDateTime CREADO = LocalDateTime.of(2025, 3, 14, 21, 30);
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private DailySalesRepository dailySalesRepository;
+
+    private DailySalesService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DailySalesService(mongoTemplate, orderRepository, dailySalesRepository, false);
+    }
+
+    private Order order(Order.OrderStatus status, boolean mercadoPago) {
+        Order order = new Order();
+        order.setId("o1");
+        order.setStatus(status);
+        order.setDateCreated(CREADO);
+        order.setTotalPrice(3500.0);
+        order.setPaidWithCash(!mercadoPago);
+        order.setPaidWithMercadoPago(mercadoPago);
+        order.setIsDelivery(true);
+        order.setRestaurant(new Order.Restaurant("rest1", "Pizzería Test"));
+        order.setItems(List.of(
+                new Order.Item("101", "Pizza", 1500.0, 2, null),
+                new Order.Item("102", "Empanada", 500.0, 1, null)));
+        return order;
+    }
+
+    private Document updateDelUpsert() {
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).upsert(any(Query.class), update.capture(), eq(DailySalesService.DAILY_SALES));
+        return ((Update) update.getValue()).getUpdateObject();
+    }
+
+    @Test
+    @DisplayName("Sólo los pedidos entregados cuentan como venta")
+    void ventaDe_SoloEntregados() {
+        assertNull(VentaAporte.ventaDe(order(Order.OrderStatus.LISTO, false)));
+        assertNull(VentaAporte.ventaDe(order(Order.OrderStatus.FAILED, true)));
+
+        VentaAporte.Venta venta = VentaAporte.ventaDe(order(Order.OrderStatus.ENTREGADO, true));
+        assertNotNull(venta);
+        assertEquals("2025-03-14", venta.fecha());
+        assertTrue(venta.mercadoPago());
+        assertEquals(3000.0, venta.platos().get(0).total());
+    }
+
+    @Test
+    @DisplayName("Un pedido que pasa a ENTREGADO suma al día con un $inc")
+    void aplicar_PedidoEntregado_SumaAlDia() {
+        when(orderRepository.findById("o1")).thenReturn(Mono.just(order(Order.OrderStatus.ENTREGADO, false)));
+        when(mongoTemplate.findById("o1", VentaAporte.class)).thenReturn(Mono.empty());
+        when(mongoTemplate.insert(any(VentaAporte.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), anyString()))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(VentaAporte.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(service.aplicar("o1")).verifyComplete();
+
+        // El aporte se guarda pendiente y se desmarca después del $inc
+        verify(mongoTemplate).insert(argThat((VentaAporte aporte) -> aporte.isPendiente() && aporte.getVersion() == 1));
+        ArgumentCaptor<UpdateDefinition> desmarcar = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), desmarcar.capture(), eq(VentaAporte.class));
+        assertEquals(false, ((Document) desmarcar.getValue().getUpdateObject().get("$set")).get("pendiente"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).upsert(query.capture(), any(UpdateDefinition.class), eq(DailySalesService.DAILY_SALES));
+        assertEquals("rest1:2025-03-14", query.getValue().getQueryObject().get("_id"));
+        assertEquals(new Document("$not", new Document("$gte", 1L)), query.getValue().getQueryObject().get("aportes.o1"));
+        assertEquals(1L, ((Document) updateDelUpsert().get("$set")).get("aportes.o1"));
+
+        Document inc = (Document) updateDelUpsert().get("$inc");
+        assertEquals(1, inc.get("pedidos"));
+        assertEquals(3500.0, inc.get("total"));
+        assertEquals(1, inc.get("pedidosEfectivo"));
+        assertEquals(3500.0, inc.get("totalEfectivo"));
+        assertEquals(1, inc.get("deliveries"));
+        assertEquals(2, inc.get("platos.101.cantidad"));
+        assertFalse(inc.containsKey("pedidosMercadoPago"));
+    }
+
+    @Test
+    @DisplayName("Un pedido entregado que se cancela descuenta su aporte con control de versión")
+    void aplicar_PedidoCancelado_RestaDelDia() {
+        VentaAporte.Venta registrada = VentaAporte.ventaDe(order(Order.OrderStatus.ENTREGADO, true));
+        when(orderRepository.findById("o1")).thenReturn(Mono.just(order(Order.OrderStatus.FAILED, true)));
+        when(mongoTemplate.findById("o1", VentaAporte.class)).thenReturn(Mono.just(new VentaAporte("o1", registrada, 3)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(VentaAporte.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), anyString()))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(service.aplicar("o1")).verifyComplete();
+
+        ArgumentCaptor<Query> guard = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> reemplazo = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).updateFirst(guard.capture(), reemplazo.capture(), eq(VentaAporte.class));
+        assertEquals(3L, guard.getAllValues().get(0).getQueryObject().get("version"));
+        Document set = (Document) reemplazo.getAllValues().get(0).getUpdateObject().get("$set");
+        assertEquals(true, set.get("pendiente"));
+        assertEquals(registrada, set.get("anterior"));
+        // Se desmarca sólo si nadie lo reemplazó mientras tanto
+        assertEquals(4L, guard.getAllValues().get(1).getQueryObject().get("version"));
+
+        Document inc = (Document) updateDelUpsert().get("$inc");
+        assertEquals(-1, inc.get("pedidos"));
+        assertEquals(-3500.0, inc.get("totalMercadoPago"));
+        assertEquals(-2, inc.get("platos.101.cantidad"));
+    }
+
+    @Test
+    @DisplayName("Si la venta no cambió no se escribe nada")
+    void aplicar_SinCambios_NoEscribe() {
+        Order entregado = order(Order.OrderStatus.ENTREGADO, false);
+        when(orderRepository.findById("o1")).thenReturn(Mono.just(entregado));
+        when(mongoTemplate.findById("o1", VentaAporte.class))
+                .thenReturn(Mono.just(new VentaAporte("o1", VentaAporte.ventaDe(entregado), 1)));
+
+        StepVerifier.create(service.aplicar("o1")).verifyComplete();
+
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(UpdateDefinition.class), anyString());
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(VentaAporte.class));
+    }
+
+    @Test
+    @DisplayName("Si otro cambio ganó la carrera por el aporte se vuelve a leer y se aplica una sola vez")
+    void aplicar_Conflicto_Reintenta() {
+        VentaAporte.Venta registrada = VentaAporte.ventaDe(order(Order.OrderStatus.ENTREGADO, false));
+        when(orderRepository.findById("o1")).thenReturn(Mono.just(order(Order.OrderStatus.ENTREGADO, true)));
+        when(mongoTemplate.findById("o1", VentaAporte.class)).thenReturn(Mono.just(new VentaAporte("o1", registrada, 1)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(VentaAporte.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), anyString()))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(service.aplicar("o1")).verifyComplete();
+
+        // Reemplazo perdido, reemplazo ganado y desmarcado
+        verify(mongoTemplate, times(3)).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(VentaAporte.class));
+        // Mismo día: pasar de efectivo a Mercado Pago es un solo upsert que mueve el monto
+        Document inc = (Document) updateDelUpsert().get("$inc");
+        assertEquals(0, inc.get("pedidos"));
+        assertEquals(-3500.0, inc.get("totalEfectivo"));
+        assertEquals(3500.0, inc.get("totalMercadoPago"));
+    }
+
+    @Test
+    @DisplayName("Un aporte pendiente se completa antes de aplicar el cambio siguiente")
+    void aplicar_AportePendiente_SeCompletaPrimero() {
+        VentaAporte.Venta anterior = VentaAporte.ventaDe(order(Order.OrderStatus.ENTREGADO, false));
+        VentaAporte pendiente = new VentaAporte("o1", null, 2);
+        pendiente.setAnterior(anterior);
+        pendiente.setPendiente(true);
+        when(orderRepository.findById("o1")).thenReturn(Mono.just(order(Order.OrderStatus.FAILED, false)));
+        when(mongoTemplate.findById("o1", VentaAporte.class))
+                .thenReturn(Mono.just(pendiente))
+                .thenReturn(Mono.just(new VentaAporte("o1", null, 2)));
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), anyString()))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(VentaAporte.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(service.aplicar("o1")).verifyComplete();
+
+        // La cancelación que había quedado a medias resta con su versión; la relectura ya no cambia nada
+        Document inc = (Document) updateDelUpsert().get("$inc");
+        assertEquals(-1, inc.get("pedidos"));
+        assertEquals(2L, ((Document) updateDelUpsert().get("$set")).get("aportes.o1"));
+        verify(mongoTemplate, times(1)).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(VentaAporte.class));
+    }
+
+    @Test
+    @DisplayName("Repetir una diferencia que el día ya tiene no vuelve a sumarla")
+    void reconciliar_DiferenciaYaAplicada_NoSumaDosVeces() {
+        VentaAporte pendiente = new VentaAporte("o1", VentaAporte.ventaDe(order(Order.OrderStatus.ENTREGADO, false)), 1);
+        pendiente.setPendiente(true);
+        when(mongoTemplate.find(any(Query.class), eq(VentaAporte.class))).thenReturn(Flux.just(pendiente));
+        // El día ya tiene aportes.o1 = 1: el filtro no matchea y el upsert intenta crear un _id existente
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), anyString()))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(VentaAporte.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(service.reconciliarPendientes()).expectNext(1L).verifyComplete();
+
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), any(UpdateDefinition.class), eq(DailySalesService.DAILY_SALES));
+        verify(mongoTemplate).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(VentaAporte.class));
+    }
+
+    @Test
+    @DisplayName("Si otra réplica tiene el backfill, éste no toca las colecciones")
+    void backfill_OtraReplica_NoHaceNada() {
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), eq(DailySalesService.TAREAS)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+
+        StepVerifier.create(service.backfill()).verifyComplete();
+
+        verify(mongoTemplate, never()).getCollection(anyString());
+        verify(mongoTemplate, never()).remove(any(Query.class), anyString());
+    }
+
+    @Test
+    @DisplayName("El resumen suma los días y ordena los platos más vendidos")
+    void resumir_SumaDiasYPlatosTop() {
+        DailySales lunes = dia("2025-03-10", 3, 4500.10, 1,
+                Map.of("101", new DailySales.PlatoVendido("Pizza", 4, 6000), "102", new DailySales.PlatoVendido("Empanada", 2, 1000)));
+        DailySales martes = dia("2025-03-11", 2, 3000.20, 2,
+                Map.of("102", new DailySales.PlatoVendido("Empanada", 5, 2500)));
+
+        VentasResumenDTO resumen = DailySalesService.resumir("rest1",
+                LocalDate.of(2025, 3, 10), LocalDate.of(2025, 3, 11), List.of(lunes, martes));
+
+        assertEquals(5, resumen.pedidos());
+        assertEquals(7500.30, resumen.total());
+        assertEquals(1500.06, resumen.ticketPromedio());
+        assertEquals(2, resumen.dias().size());
+        assertEquals("102", resumen.platosTop().get(0).productId());
+        assertEquals(7, resumen.platosTop().get(0).cantidad());
+        assertEquals("101", resumen.platosTop().get(1).productId());
+    }
+
+    @Test
+    @DisplayName("El backfill usa el mismo criterio de venta y escribe en colecciones aparte")
+    void pipelines_CriterioYColeccionesNuevas() {
+        List<Document> aportes = DailySalesService.pipelineAportes("America/Argentina/Buenos_Aires");
+        Document match = (Document) aportes.get(0).get("$match");
+        assertEquals("ENTREGADO", match.get("status"));
+        assertEquals(DailySalesService.VENTAS_APORTES_NUEVO, aportes.get(aportes.size() - 1).get("$out"));
+
+        List<Document> totales = DailySalesService.pipelineTotales();
+        assertEquals(DailySalesService.DAILY_SALES_NUEVO, totales.get(totales.size() - 1).get("$out"));
+        List<Document> platos = DailySalesService.pipelinePlatos();
+        Document merge = (Document) platos.get(platos.size() - 1).get("$merge");
+        assertEquals(DailySalesService.DAILY_SALES_NUEVO, merge.get("into"));
+        assertEquals("merge", merge.get("whenMatched"));
+    }
+
+    private DailySales dia(String fecha, int pedidos, double total, int deliveries, Map<String, DailySales.PlatoVendido> platos) {
+        DailySales dia = new DailySales();
+        dia.setId(DailySales.idDe("rest1", fecha));
+        dia.setRestaurantId("rest1");
+        dia.setFecha(fecha);
+        dia.setPedidos(pedidos);
+        dia.setTotal(total);
+        dia.setPedidosEfectivo(pedidos);
+        dia.setTotalEfectivo(total);
+        dia.setDeliveries(deliveries);
+        dia.setPlatos(platos);
+        return dia;
+    }
+}
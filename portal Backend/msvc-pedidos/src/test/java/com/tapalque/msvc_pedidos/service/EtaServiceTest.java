@@ -0,0 +1,207 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.tapalque.msvc_pedidos.config.EtaProperties;
+import com.tapalque.msvc_pedidos.dto.EtaDTO;
+import com.tapalque.msvc_pedidos.entity.EtaHistograma;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.Order.OrderStatus;
+import com.tapalque.msvc_pedidos.service.EtaService.Tramo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("EtaService Tests")
+class EtaServiceTest {
+
+    // Lunes 3 de marzo de 2025. Los minutos de los tests quedan bajo 32, donde el histograma es exacto
+    private static final LocalDateTime LUNES = LocalDateTime.of(2025, 3, 3, 0, 0);
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private EtaProperties properties;
+    private EtaService etaService;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        properties = new EtaProperties();
+        etaService = new EtaService(mongoTemplate, properties);
+    }
+
+    private void muestras(EtaService servicio, Tramo tramo, LocalDateTime desde, int minutos, int cantidad) {
+        for (int i = 0; i < cantidad; i++) {
+            servicio.registrar("rest1", tramo, desde, desde.plusMinutes(minutos));
+        }
+    }
+
+    @Test
+    @DisplayName("Usa la franja de la hora de la semana y, si tiene pocas muestras, el total del restaurante")
+    void estimar_FranjaYTotal() {
+        muestras(etaService, Tramo.PREPARACION, LUNES.withHour(21), 28, 12);
+        muestras(etaService, Tramo.PREPARACION, LUNES.withHour(12), 10, 12);
+        muestras(etaService, Tramo.PREPARACION, LUNES.withHour(15), 20, 3);
+
+        EtaDTO cena = etaService.estimar("rest1", false, LUNES.withHour(21).withMinute(30));
+        assertEquals(EtaDTO.BASE_FRANJA, cena.base());
+        assertEquals(28, cena.p50Minutos());
+        assertEquals(12, cena.muestras());
+
+        EtaDTO almuerzo = etaService.estimar("rest1", false, LUNES.withHour(12));
+        assertEquals(10, almuerzo.p50Minutos());
+
+        // El martes a la misma hora no hay historia: cae al total (27 muestras)
+        EtaDTO martes = etaService.estimar("rest1", false, LUNES.plusDays(1).withHour(21));
+        assertEquals(EtaDTO.BASE_RESTAURANTE, martes.base());
+        assertEquals(27, martes.muestras());
+        assertEquals(28, martes.p90Minutos());
+
+        // A las 15 hay 3 muestras: no alcanzan para la franja
+        assertEquals(EtaDTO.BASE_RESTAURANTE, etaService.estimar("rest1", false, LUNES.withHour(15)).base());
+    }
+
+    @Test
+    @DisplayName("Sin muestras suficientes no estima y el frontend usa el tiempo cargado")
+    void estimar_SinDatos() {
+        muestras(etaService, Tramo.PREPARACION, LUNES.withHour(21), 30, 5);
+
+        EtaDTO eta = etaService.estimar("rest1", false, LUNES.withHour(21));
+        assertEquals(EtaDTO.BASE_SIN_DATOS, eta.base());
+        assertNull(eta.p50Minutos());
+        assertEquals(EtaDTO.BASE_SIN_DATOS, etaService.estimar("otro", false, LUNES).base());
+    }
+
+    @Test
+    @DisplayName("Con delivery suma preparación y entrega; sin historia de entregas no estima")
+    void estimar_Delivery() {
+        muestras(etaService, Tramo.PREPARACION, LUNES.withHour(21), 20, 10);
+        assertEquals(EtaDTO.BASE_SIN_DATOS, etaService.estimar("rest1", true, LUNES.withHour(21)).base());
+
+        muestras(etaService, Tramo.ENTREGA, LUNES.withHour(21), 15, 10);
+        EtaDTO eta = etaService.estimar("rest1", true, LUNES.withHour(21));
+        assertTrue(eta.delivery());
+        assertEquals(35, eta.p50Minutos());
+        assertEquals(35, eta.p90Minutos());
+        assertEquals(20, etaService.estimar("rest1", false, LUNES.withHour(21)).p50Minutos());
+    }
+
+    @Test
+    @DisplayName("Las muestras salen de statusTimestamps al llegar a LISTO y a ENTREGADO con delivery")
+    void registrar_DesdeTimestamps() {
+        LocalDateTime recibido = LUNES.withHour(21);
+        for (int i = 0; i < 10; i++) {
+            Order listo = pedido(OrderStatus.LISTO, true, Map.of(
+                    OrderStatus.RECIBIDO, recibido,
+                    OrderStatus.EN_PREPARACION, recibido.plusMinutes(5),
+                    OrderStatus.LISTO, recibido.plusMinutes(25)));
+            etaService.registrar(listo);
+
+            Order entregado = pedido(OrderStatus.ENTREGADO, true, Map.of(
+                    OrderStatus.RECIBIDO, recibido,
+                    OrderStatus.LISTO, recibido.plusMinutes(25),
+                    OrderStatus.ENTREGADO, recibido.plusMinutes(37)));
+            etaService.registrar(entregado);
+            // Retirado en el local: no es una muestra de entrega
+            etaService.registrar(pedido(OrderStatus.ENTREGADO, false, entregado.getStatusTimestamps()));
+        }
+
+        EtaDTO local = etaService.estimar("rest1", false, recibido);
+        assertEquals(25, local.p50Minutos());
+        assertEquals(10, local.muestras());
+        assertEquals(37, etaService.estimar("rest1", true, recibido).p50Minutos());
+    }
+
+    @Test
+    @DisplayName("La ventana rota por mitades: la historia vieja se descarta")
+    void estimar_VentanaRota() {
+        muestras(etaService, Tramo.PREPARACION, LUNES.withHour(21), 30, 10);
+
+        // Dos semanas después sigue dentro de la ventana, aunque nadie haya registrado nada
+        assertEquals(30, etaService.estimar("rest1", false, LUNES.plusDays(14).withHour(21)).p50Minutos());
+
+        // Muestras nuevas rotan la franja y se suman a la mitad anterior
+        muestras(etaService, Tramo.PREPARACION, LUNES.plusDays(14).withHour(21), 18, 10);
+        EtaDTO eta = etaService.estimar("rest1", false, LUNES.plusDays(14).withHour(21));
+        assertEquals(20, eta.muestras());
+        assertEquals(18, eta.p50Minutos());
+        assertEquals(30, eta.p90Minutos());
+
+        // Cuatro semanas después de las primeras sólo quedan las nuevas; seis después, nada
+        assertEquals(10, etaService.estimar("rest1", false, LUNES.plusDays(28).withHour(21)).muestras());
+        assertEquals(EtaDTO.BASE_SIN_DATOS, etaService.estimar("rest1", false, LUNES.plusDays(42).withHour(21)).base());
+    }
+
+    @Test
+    @DisplayName("El snapshot guarda sólo las franjas que cambiaron y al arrancar se restauran igual")
+    void snapshot_IdaYVuelta() {
+        ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+        List<EtaHistograma> guardados = new ArrayList<>();
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, EtaHistograma.class)).thenReturn(bulk);
+        when(bulk.replaceOne(any(Query.class), any(EtaHistograma.class), any(FindAndReplaceOptions.class)))
+                .thenAnswer(inv -> {
+                    guardados.add(inv.getArgument(1));
+                    return bulk;
+                });
+        when(bulk.execute()).thenReturn(Mono.just(mock(BulkWriteResult.class)));
+
+        muestras(etaService, Tramo.PREPARACION, LUNES.withHour(21), 30, 12);
+        muestras(etaService, Tramo.ENTREGA, LUNES.withHour(21), 15, 12);
+
+        // Franja de las 21 y total, por cada tramo
+        assertEquals(4, etaService.guardarSnapshot().block());
+        assertEquals(0, etaService.guardarSnapshot().block());
+        assertTrue(guardados.stream().allMatch(h -> h.getActual().length < 200), "Los histogramas comprimidos deben ser chicos");
+
+        EtaService reiniciado = new EtaService(mongoTemplate, properties);
+        when(mongoTemplate.findAll(EtaHistograma.class)).thenReturn(Flux.fromIterable(guardados));
+        assertEquals(4, reiniciado.restaurar().block());
+
+        LocalDateTime ahora = LUNES.withHour(21);
+        assertEquals(etaService.estimar("rest1", true, ahora), reiniciado.estimar("rest1", true, ahora));
+        assertEquals(etaService.estimar("rest1", false, LUNES.plusDays(3)), reiniciado.estimar("rest1", false, LUNES.plusDays(3)));
+    }
+
+    @Test
+    @DisplayName("Si el bulk falla, las franjas quedan pendientes para el próximo snapshot")
+    void snapshot_FallaReintenta() {
+        ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(eq(BulkMode.UNORDERED), eq(EtaHistograma.class))).thenReturn(bulk);
+        when(bulk.execute())
+                .thenReturn(Mono.error(new IllegalStateException("mongo caído")))
+                .thenReturn(Mono.just(mock(BulkWriteResult.class)));
+
+        muestras(etaService, Tramo.PREPARACION, LUNES.withHour(21), 30, 1);
+
+        assertThrows(IllegalStateException.class, () -> etaService.guardarSnapshot().block());
+        assertEquals(2, etaService.guardarSnapshot().block());
+    }
+
+    private static Order pedido(OrderStatus status, boolean delivery, Map<OrderStatus, LocalDateTime> tiempos) {
+        Order order = new Order();
+        order.setId("o1");
+        order.setStatus(status);
+        order.setIsDelivery(delivery);
+        order.setRestaurant(new Order.Restaurant("rest1", "Pizzería Test"));
+        order.setDateCreated(tiempos.get(OrderStatus.RECIBIDO));
+        order.setStatusTimestamps(tiempos);
+        return order;
+    }
+}
@@ -0,0 +1,230 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tapalque.msvc_pedidos.client.DishPriceCache;
+import com.tapalque.msvc_pedidos.config.AdmissionProperties;
+import com.tapalque.msvc_pedidos.dto.DishPriceDTO;
+import com.tapalque.msvc_pedidos.dto.ItemDTO;
+import com.tapalque.msvc_pedidos.dto.OrderDTO;
+import com.tapalque.msvc_pedidos.dto.RestaurantDTO;
+import com.tapalque.msvc_pedidos.entity.IdempotencyRecord;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.repository.IdempotencyRepository;
+import com.tapalque.msvc_pedidos.repository.OrderRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("IdempotencyService Tests")
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRepository idempotencyRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private DishPriceCache dishPriceCache;
+
+    @Mock
+    private KitchenBoardService kitchenBoardService;
+
+    @Mock
+    private DailySalesService dailySalesService;
+
+    // Colección idempotency_keys simulada: el _id único se respeta con putIfAbsent
+    private final Map<String, IdempotencyRecord> coleccion = new ConcurrentHashMap<>();
+    private final List<Order> pedidosGuardados = new CopyOnWriteArrayList<>();
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        when(idempotencyRepository.insert(any(IdempotencyRecord.class))).thenAnswer(inv -> {
+            IdempotencyRecord registro = inv.getArgument(0);
+            return Mono.defer(() -> coleccion.putIfAbsent(registro.getId(), registro) == null
+                    ? Mono.just(registro)
+                    : Mono.error(new DuplicateKeyException("E11000 duplicate key " + registro.getId())));
+        });
+        when(idempotencyRepository.save(any(IdempotencyRecord.class))).thenAnswer(inv -> {
+            IdempotencyRecord registro = inv.getArgument(0);
+            return Mono.fromCallable(() -> {
+                coleccion.put(registro.getId(), registro);
+                return registro;
+            });
+        });
+        when(idempotencyRepository.findById(anyString()))
+                .thenAnswer(inv -> Mono.defer(() -> Mono.justOrEmpty(coleccion.get(inv.<String>getArgument(0)))));
+        when(idempotencyRepository.deleteById(anyString()))
+                .thenAnswer(inv -> Mono.fromRunnable(() -> coleccion.remove(inv.<String>getArgument(0))));
+
+        DishPriceDTO dish = new DishPriceDTO();
+        dish.setIdDish(101L);
+        dish.setName("Pizza");
+        dish.setPrice(1500.0);
+        dish.setAvailable(true);
+        when(dishPriceCache.getDishes(any())).thenReturn(Mono.just(Map.of(101L, dish)));
+        // Un alta lenta: deja en vuelo a las solicitudes repetidas mientras se guarda la primera
+        when(orderRepository.save(any(Order.class))).thenAnswer(inv -> {
+            Order order = inv.getArgument(0);
+            return Mono.delay(Duration.ofMillis(200)).map(t -> {
+                pedidosGuardados.add(order);
+                return order;
+            });
+        });
+
+        orderService = new OrderServiceImpl(orderRepository, mock(ReactiveMongoTemplate.class), dishPriceCache,
+                null, kitchenBoardService, dailySalesService,
+                new AdmissionService(kitchenBoardService, new AdmissionProperties(), new SimpleMeterRegistry()));
+    }
+
+    private IdempotencyService instancia() {
+        return new IdempotencyService(idempotencyRepository, objectMapper,
+                Duration.ofSeconds(30), Duration.ofSeconds(10), Duration.ofMillis(20));
+    }
+
+    private OrderDTO pedido(int cantidad) {
+        ItemDTO item = new ItemDTO();
+        item.setProductId("101");
+        item.setItemQuantity(cantidad);
+        RestaurantDTO restaurant = new RestaurantDTO();
+        restaurant.setRestaurantId("rest1");
+        restaurant.setRestaurantName("Pizzería Test");
+        OrderDTO dto = new OrderDTO();
+        dto.setUserId("user-1");
+        dto.setPaidWithCash(true);
+        dto.setPaidWithMercadoPago(false);
+        dto.setItems(List.of(item));
+        dto.setRestaurant(restaurant);
+        return dto;
+    }
+
+    @Test
+    @DisplayName("50 envíos idénticos en paralelo (dos réplicas) crean un solo pedido y un solo mensaje")
+    void ejecutar_50EnviosParalelos_UnSoloPedido() {
+        List<IdempotencyService> replicas = List.of(instancia(), instancia());
+
+        List<OrderDTO> respuestas = Flux.range(0, 50)
+                .flatMap(i -> Mono.defer(() -> {
+                    OrderDTO body = pedido(2); // cada reintento llega con su propio cuerpo deserializado
+                    return replicas.get(i % 2).ejecutar("clave-1", body, () -> orderService.createOrder(body));
+                }).subscribeOn(Schedulers.parallel()), 50)
+                .collectList()
+                .block(Duration.ofSeconds(15));
+
+        assertNotNull(respuestas);
+        assertEquals(50, respuestas.size());
+        Set<String> ids = respuestas.stream().map(OrderDTO::getId).collect(Collectors.toSet());
+        assertEquals(1, ids.size(), "Todas las respuestas deben ser el mismo pedido");
+
+        assertEquals(1, pedidosGuardados.size());
+        long mensajes = pedidosGuardados.stream().mapToLong(o -> o.getOutbox().size()).sum();
+        assertEquals(1, mensajes, "Un solo mensaje de pago en el outbox");
+        verify(kitchenBoardService, times(1)).actualizar(any(Order.class));
+    }
+
+    @Test
+    @DisplayName("Un reintento posterior devuelve la respuesta guardada sin ejecutar el alta")
+    void ejecutar_ReintentoPosterior_RepiteRespuesta() {
+        IdempotencyService service = instancia();
+        AtomicInteger altas = new AtomicInteger();
+        OrderDTO guardado = pedido(1);
+        guardado.setId("o1");
+
+        service.ejecutar("clave-2", pedido(1), () -> {
+            altas.incrementAndGet();
+            return Mono.just(guardado);
+        }).block();
+
+        StepVerifier.create(service.ejecutar("clave-2", pedido(1), () -> {
+                    altas.incrementAndGet();
+                    return Mono.just(new OrderDTO());
+                }))
+                .expectNextMatches(dto -> "o1".equals(dto.getId()))
+                .verifyComplete();
+        assertEquals(1, altas.get());
+    }
+
+    @Test
+    @DisplayName("La misma clave con otro pedido se rechaza con 422")
+    void ejecutar_MismaClaveOtroPedido_Rechaza() {
+        IdempotencyService service = instancia();
+        service.ejecutar("clave-3", pedido(1), () -> Mono.just(pedido(1))).block();
+
+        StepVerifier.create(service.ejecutar("clave-3", pedido(5), () -> Mono.just(pedido(5))))
+                .expectErrorMatches(e -> e instanceof ResponseStatusException rse
+                        && rse.getStatusCode().value() == 422)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Si el alta falla se libera la clave y el reintento vuelve a ejecutar")
+    void ejecutar_AltaFalla_LiberaClave() {
+        IdempotencyService service = instancia();
+
+        StepVerifier.create(service.ejecutar("clave-4", pedido(1),
+                        () -> Mono.error(new IllegalArgumentException("Plato no disponible"))))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        assertFalse(coleccion.containsKey("user-1:clave-4"));
+
+        StepVerifier.create(service.ejecutar("clave-4", pedido(1), () -> Mono.just(pedido(1))))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Una clave tomada por una instancia caída se recupera al vencer el lock")
+    void ejecutar_LockVencido_TomaLaClave() {
+        IdempotencyRecord huerfano = new IdempotencyRecord("user-1:clave-5", "otra-huella",
+                LocalDateTime.now().minusMinutes(1), LocalDateTime.now().minusSeconds(1));
+        IdempotencyService service = instancia();
+        OrderDTO body = pedido(1);
+        // misma huella que el cuerpo que se va a enviar
+        service.ejecutar("clave-x", body, () -> Mono.just(body)).block();
+        huerfano.setFingerprint(coleccion.get("user-1:clave-x").getFingerprint());
+        coleccion.put(huerfano.getId(), huerfano);
+        when(idempotencyRepository.deleteByIdAndLockedUntilBefore(anyString(), any(LocalDateTime.class)))
+                .thenAnswer(inv -> Mono.fromCallable(() -> coleccion.remove(inv.<String>getArgument(0)) != null ? 1L : 0L));
+
+        StepVerifier.create(service.ejecutar("clave-5", pedido(1), () -> Mono.just(body)))
+                .expectNext(body)
+                .verifyComplete();
+        assertEquals(IdempotencyRecord.Estado.COMPLETADO, coleccion.get("user-1:clave-5").getEstado());
+    }
+}
@@ -0,0 +1,174 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.tapalque.msvc_pedidos.dto.KitchenBoardDTO;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.Order.OrderStatus;
+import com.tapalque.msvc_pedidos.repository.OrderRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("KitchenBoardService Tests")
+class KitchenBoardServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    private KitchenBoardService boardService;
+
+    @BeforeEach
+    void setUp() {
+        boardService = new KitchenBoardService(orderRepository);
+    }
+
+    private Order order(String id, OrderStatus status, long version) {
+        Order order = new Order();
+        order.setId(id);
+        order.setStatus(status);
+        order.setVersion(version);
+        order.setPaidWithCash(true);
+        order.setPaidWithMercadoPago(false);
+        order.setDateCreated(LocalDateTime.now());
+        order.setRestaurant(new Order.Restaurant("rest1", "Pizzería Test"));
+        order.setItems(List.of(new Order.Item("101", "Pizza", 1500.0, 1, null)));
+        return order;
+    }
+
+    @Test
+    @DisplayName("Agrupa los pedidos activos por estado y mantiene los contadores")
+    void actualizar_MueveEntreColumnas() {
+        boardService.actualizar(order("o1", OrderStatus.RECIBIDO, 1));
+        boardService.actualizar(order("o2", OrderStatus.RECIBIDO, 1));
+        boardService.actualizar(order("o1", OrderStatus.EN_PREPARACION, 2));
+
+        KitchenBoardDTO board = boardService.snapshot("rest1");
+
+        assertEquals(1, board.contadores().get(OrderStatus.RECIBIDO));
+        assertEquals(1, board.contadores().get(OrderStatus.EN_PREPARACION));
+        assertEquals(0, board.contadores().get(OrderStatus.LISTO));
+        assertEquals("o1", board.columnas().get(OrderStatus.EN_PREPARACION).get(0).id());
+        assertEquals(3, board.revision());
+    }
+
+    @Test
+    @DisplayName("Los pedidos entregados o cancelados salen del tablero")
+    void actualizar_EstadoFinal_SaleDelTablero() {
+        boardService.actualizar(order("o1", OrderStatus.LISTO, 3));
+        boardService.actualizar(order("o1", OrderStatus.ENTREGADO, 4));
+
+        KitchenBoardDTO board = boardService.snapshot("rest1");
+
+        assertTrue(board.columnas().values().stream().allMatch(List::isEmpty));
+        assertFalse(board.contadores().containsKey(OrderStatus.ENTREGADO));
+    }
+
+    @Test
+    @DisplayName("Un cambio con versión vieja no pisa al más nuevo")
+    void actualizar_VersionVieja_SeIgnora() {
+        boardService.actualizar(order("o1", OrderStatus.LISTO, 3));
+        boardService.actualizar(order("o1", OrderStatus.EN_PREPARACION, 2));
+
+        assertEquals(1, boardService.snapshot("rest1").contadores().get(OrderStatus.LISTO));
+    }
+
+    @Test
+    @DisplayName("Pedidos de Mercado Pago sin pagar no llegan a cocina hasta confirmar el pago")
+    void actualizar_MercadoPagoSinPagar_NoEntra() {
+        Order order = order("o1", OrderStatus.RECIBIDO, 1);
+        order.setPaidWithCash(false);
+        boardService.actualizar(order);
+        assertEquals(0, boardService.snapshot("rest1").contadores().get(OrderStatus.RECIBIDO));
+
+        order.setPaidWithMercadoPago(true);
+        order.setVersion(2);
+        boardService.actualizar(order);
+        assertEquals(1, boardService.snapshot("rest1").contadores().get(OrderStatus.RECIBIDO));
+    }
+
+    @Test
+    @DisplayName("Pedidos de días anteriores no se muestran")
+    void actualizar_PedidoDeAyer_NoEntra() {
+        Order order = order("o1", OrderStatus.RECIBIDO, 1);
+        order.setDateCreated(LocalDateTime.now().minusDays(1));
+
+        boardService.actualizar(order);
+
+        assertEquals(0, boardService.snapshot("rest1").contadores().get(OrderStatus.RECIBIDO));
+    }
+
+    @Test
+    @DisplayName("El stream SSE emite los cambios con la revisión como id")
+    void stream_EmiteCambios() {
+        StepVerifier.create(boardService.stream("rest1").take(2))
+                .then(() -> {
+                    boardService.actualizar(order("o1", OrderStatus.RECIBIDO, 1));
+                    boardService.actualizar(order("o1", OrderStatus.ENTREGADO, 2));
+                })
+                .expectNextMatches(e -> "pedido".equals(e.event()) && "1".equals(e.id()))
+                .expectNextMatches(e -> "pedido:fuera".equals(e.event()) && "2".equals(e.id())
+                        && "ENTREGADO".equals(e.data().status()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Leer el tablero de un restaurante sin pedidos no lo crea")
+    void snapshot_SinPedidos_VacioSinCrearTablero() {
+        KitchenBoardDTO board = boardService.snapshot("inventado");
+
+        assertEquals("inventado", board.restaurantId());
+        assertEquals(0, board.revision());
+        assertTrue(board.columnas().values().stream().allMatch(List::isEmpty));
+        StepVerifier.create(boardService.stream("inventado"))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenCancel()
+                .verify();
+        assertEquals(0, boardService.tableros());
+    }
+
+    @Test
+    @DisplayName("Un stream abierto antes del primer pedido se engancha al tablero cuando se crea")
+    void stream_AntesDelPrimerPedido_RecibeLosSiguientes() {
+        StepVerifier.create(boardService.stream("rest1").take(1))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(50))
+                .then(() -> boardService.actualizar(order("o1", OrderStatus.RECIBIDO, 1)))
+                .expectNextMatches(e -> "pedido".equals(e.event()) && "1".equals(e.id()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(1, boardService.tableros());
+    }
+
+    @Test
+    @DisplayName("Se reconstruye desde Mongo con los pedidos activos del día")
+    void reconstruir_CargaPedidosActivos() {
+        when(orderRepository.findByStatusInAndDateCreatedGreaterThanEqual(anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(Flux.just(order("o1", OrderStatus.RECIBIDO, 1), order("o2", OrderStatus.LISTO, 4)));
+
+        StepVerifier.create(boardService.reconstruir())
+                .expectNext(2L)
+                .verifyComplete();
+
+        KitchenBoardDTO board = boardService.snapshot("rest1");
+        assertEquals(1, board.contadores().get(OrderStatus.RECIBIDO));
+        assertEquals(1, board.contadores().get(OrderStatus.LISTO));
+    }
+}
@@ -0,0 +1,206 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.mongodb.client.result.DeleteResult;
+import com.tapalque.msvc_pedidos.entity.OrderArchive;
+import com.tapalque.msvc_pedidos.entity.VentaAporte;
+import com.tapalque.msvc_pedidos.service.OrderArchiveService.Formato;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("OrderArchiveService Tests")
+class OrderArchiveServiceTest {
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private OrderArchiveService archiveService;
+    private final List<OrderArchive> insertados = new ArrayList<>();
+    private final List<Integer> borrados = new ArrayList<>();
+    private final List<Query> aportesBorrados = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        archiveService = new OrderArchiveService(mongoTemplate, meterRegistry);
+
+        when(mongoTemplate.insert(any(OrderArchive.class))).thenAnswer(inv -> {
+            insertados.add(inv.getArgument(0));
+            return Mono.just(inv.getArgument(0));
+        });
+        when(mongoTemplate.remove(any(Query.class), eq(OrderArchiveService.COLECCION_PEDIDOS))).thenAnswer(inv -> {
+            Query query = inv.getArgument(0);
+            int cantidad = ((Document) query.getQueryObject().get("_id")).getList("$in", Object.class).size();
+            borrados.add(cantidad);
+            return Mono.just(DeleteResult.acknowledged(cantidad));
+        });
+        when(mongoTemplate.find(any(Query.class), eq(OrderArchive.class))).thenReturn(Flux.empty());
+        when(mongoTemplate.remove(any(Query.class), eq(VentaAporte.class))).thenAnswer(inv -> {
+            aportesBorrados.add(inv.getArgument(0));
+            return Mono.just(DeleteResult.acknowledged(0));
+        });
+    }
+
+    private static Document pedido(String restaurantId, LocalDateTime fecha, String cliente) {
+        return new Document("_id", new ObjectId())
+                .append("userId", "u1")
+                .append("totalPrice", 1500.0)
+                .append("paidWithMercadoPago", false)
+                .append("paidWithCash", true)
+                .append("status", "ENTREGADO")
+                .append("dateCreated", Date.from(fecha.atZone(ZoneId.systemDefault()).toInstant()))
+                .append("items", List.of(
+                        new Document("productId", "p1").append("itemName", "Pizza muzzarella").append("itemPrice", 1000.0).append("itemQuantity", 1),
+                        new Document("productId", "p2").append("itemName", "Coca").append("itemPrice", 500.0).append("itemQuantity", 2)))
+                .append("restaurant", new Document("restaurantId", restaurantId).append("restaurantName", "Pizzería " + restaurantId))
+                .append("isDelivery", false)
+                .append("deliveryPrice", 0.0)
+                .append("userName", cliente)
+                .append("userPhone", "2281000000");
+    }
+
+    private void candidatos(List<Document> pedidos) {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(OrderArchiveService.COLECCION_PEDIDOS)))
+                .thenReturn(Flux.fromIterable(pedidos));
+    }
+
+    private List<Document> lineas(Flux<String> exportacion) {
+        return exportacion.map(linea -> {
+            assertTrue(linea.endsWith("\n"));
+            return Document.parse(linea);
+        }).collectList().block();
+    }
+
+    @Test
+    @DisplayName("Agrupa el lote por restaurante y mes, comprime cada bloque y después borra de orders")
+    void archivarLote_AgrupaComprimeYBorra() {
+        LocalDateTime enero = LocalDateTime.of(2025, 1, 10, 21, 0);
+        List<Document> pedidos = List.of(
+                pedido("rest1", enero, "Ana"),
+                pedido("rest2", enero.plusDays(1), "Beto"),
+                pedido("rest1", enero.plusDays(2), "Carla"),
+                pedido("rest1", enero.plusMonths(1), "Dani"));
+        candidatos(pedidos);
+
+        StepVerifier.create(archiveService.archivarLote(new Criteria(), "dateCreated", 500))
+                .expectNext(4L)
+                .verifyComplete();
+
+        assertEquals(3, insertados.size());
+        OrderArchive rest1Enero = insertados.get(0);
+        assertEquals("rest1", rest1Enero.getRestaurantId());
+        assertEquals("2025-01", rest1Enero.getMes());
+        assertEquals(2, rest1Enero.getCantidad());
+        assertEquals(enero, rest1Enero.getDesde());
+        assertEquals(enero.plusDays(2), rest1Enero.getHasta());
+        assertEquals(List.of(pedidos.get(0).get("_id").toString(), pedidos.get(2).get("_id").toString()), rest1Enero.getPedidos());
+        assertEquals("2025-02", insertados.get(2).getMes());
+        assertEquals(List.of(2, 1, 1), borrados);
+        // Con cada grupo se van sus aportes a daily_sales, salvo los que esperan la reconciliación
+        assertEquals(3, aportesBorrados.size());
+        Document filtro = aportesBorrados.get(0).getQueryObject();
+        assertEquals(List.of(pedidos.get(0).get("_id"), pedidos.get(2).get("_id")),
+                filtro.get("_id", Document.class).getList("$in", Object.class));
+        assertEquals(new Document("$ne", true), filtro.get("pendiente"));
+
+        // Ida y vuelta: el NDJSON del bloque son los documentos originales
+        assertEquals(List.of(pedidos.get(0), pedidos.get(2)), lineas(OrderArchiveService.lineas(rest1Enero).map(l -> l + "\n")));
+        assertEquals(4.0, meterRegistry.counter("pedidos.archivo.pedidos").count());
+    }
+
+    @Test
+    @DisplayName("Si un archivado anterior se cortó antes del borrado, no duplica los pedidos ya archivados")
+    void archivarLote_Reintento_NoDuplica() {
+        LocalDateTime enero = LocalDateTime.of(2025, 1, 10, 21, 0);
+        List<Document> pedidos = List.of(pedido("rest1", enero, "Ana"), pedido("rest1", enero.plusDays(1), "Beto"));
+        candidatos(pedidos);
+        OrderArchive previo = new OrderArchive();
+        previo.setPedidos(List.of(pedidos.get(0).get("_id").toString()));
+        when(mongoTemplate.find(any(Query.class), eq(OrderArchive.class))).thenReturn(Flux.just(previo));
+
+        StepVerifier.create(archiveService.archivarLote(new Criteria(), "dateCreated", 500))
+                .expectNext(2L)
+                .verifyComplete();
+
+        assertEquals(1, insertados.size());
+        assertEquals(List.of(pedidos.get(1).get("_id").toString()), insertados.get(0).getPedidos());
+        assertEquals(List.of(2), borrados, "Se borran de orders los dos, también el que ya estaba archivado");
+    }
+
+    @Test
+    @DisplayName("Exporta NDJSON y CSV de los bloques en orden, con los campos escapados")
+    void exportar_NdjsonYCsv() {
+        LocalDateTime enero = LocalDateTime.of(2025, 1, 10, 21, 0);
+        List<Document> pedidos = List.of(pedido("rest1", enero, "Pérez, Ana"), pedido("rest1", enero.plusMonths(1), "Beto \"el rápido\""));
+        candidatos(pedidos);
+        archiveService.archivarLote(new Criteria(), "dateCreated", 500).block();
+        when(mongoTemplate.find(any(Query.class), eq(OrderArchive.class))).thenReturn(Flux.fromIterable(insertados));
+
+        assertEquals(pedidos, lineas(archiveService.exportar("rest1", YearMonth.of(2025, 1), YearMonth.of(2025, 2), Formato.NDJSON)));
+
+        List<String> csv = archiveService.exportar("rest1", YearMonth.of(2025, 1), YearMonth.of(2025, 2), Formato.CSV)
+                .collectList().block();
+        assertEquals(OrderArchiveService.CSV_ENCABEZADO, csv.get(0));
+        assertEquals(pedidos.get(0).get("_id") + ",2025-01-10T21:00,ENTREGADO,Pizzería rest1,\"Pérez, Ana\",2281000000,no,,1500.0,0.0,EFECTIVO,,1x Pizza muzzarella; 2x Coca\n",
+                csv.get(1));
+        assertTrue(csv.get(2).contains(",\"Beto \"\"el rápido\"\"\","));
+        assertEquals(3, csv.size());
+    }
+
+    @Test
+    @DisplayName("La exportación descomprime los bloques a medida que se consumen, no el rango completo")
+    void exportar_Streaming() {
+        LocalDateTime enero = LocalDateTime.of(2025, 1, 1, 12, 0);
+        List<Document> pedidos = IntStream.range(0, 1000)
+                .mapToObj(i -> pedido("rest1", enero.plusMinutes(i), "Cliente " + i))
+                .toList();
+        OrderArchive bloque = archiveService.bloque(new OrderArchiveService.Grupo("rest1", "2025-01"), pedidos,
+                enero, enero.plusMinutes(999));
+        assertTrue(bloque.getDatos().length * 5 < bloque.getBytesOriginales(),
+                "gzip debería reducir al menos 5 veces pedidos parecidos: " + bloque.getDatos().length + " de " + bloque.getBytesOriginales());
+
+        // 36 meses de bloques; sólo se leen los necesarios para las primeras líneas
+        AtomicInteger leidos = new AtomicInteger();
+        when(mongoTemplate.find(any(Query.class), eq(OrderArchive.class)))
+                .thenReturn(Flux.range(0, 36).map(i -> bloque).doOnNext(b -> leidos.incrementAndGet()));
+
+        StepVerifier.create(archiveService.exportar("rest1", YearMonth.of(2023, 1), YearMonth.of(2025, 12), Formato.NDJSON), 0)
+                .thenRequest(1500)
+                .expectNextCount(1500)
+                .thenCancel()
+                .verify();
+        assertTrue(leidos.get() <= 3, "Bloques leídos: " + leidos.get());
+    }
+
+    @Test
+    @DisplayName("El formato se valida")
+    void formato_Invalido() {
+        assertEquals(Formato.CSV, Formato.de("csv"));
+        assertThrows(IllegalArgumentException.class, () -> Formato.de("xml"));
+    }
+}
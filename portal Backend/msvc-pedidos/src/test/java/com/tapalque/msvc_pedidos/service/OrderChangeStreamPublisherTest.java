@@ -0,0 +1,468 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.mongodb.client.result.UpdateResult;
+import com.tapalque.msvc_pedidos.config.ChangeStreamProperties;
+import com.tapalque.msvc_pedidos.entity.Order;
+
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * El change stream se simula con un oplog en memoria y eventos armados como los devuelve el driver (sin
+ * replica set en los tests); el documento completo se convierte con el mismo MappingMongoConverter que usa
+ * Spring Data. change_stream_tokens es un mapa compartido por las réplicas del test.
+ */
+@DisplayName("OrderChangeStreamPublisher Tests")
+class OrderChangeStreamPublisherTest {
+
+    private static final String TOKENS = OrderChangeStreamPublisher.COLECCION_TOKENS;
+
+    private MappingMongoConverter converter;
+    private ChangeStreamProperties properties;
+
+    private final Map<String, Document> tokens = new ConcurrentHashMap<>();
+    private final Sinks.Many<ChangeStreamEvent<Order>> oplog = Sinks.many().replay().all();
+    private final AtomicInteger ultimaSecuencia = new AtomicInteger();
+    private final List<ChangeStreamOptions> aperturas = new CopyOnWriteArrayList<>();
+    private final List<Replica> replicas = new ArrayList<>();
+
+    // Eventos más viejos que éste ya no están en el oplog
+    private volatile int primerRetenido = 1;
+    // La primera lectura que entregue este evento se corta justo después (0 = nunca)
+    private volatile int cortarDespuesDe;
+    private final AtomicBoolean cortado = new AtomicBoolean();
+    // Eventos pedidos al cursor y todavía no entregados, máximo visto en cualquier apertura
+    private final AtomicLong maxPendientes = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        properties = new ChangeStreamProperties();
+        properties.setTokenFlushInterval(Duration.ofMillis(20));
+        properties.setInitialBackoff(Duration.ofMillis(10));
+        properties.setMaxBackoff(Duration.ofMillis(50));
+        properties.setLease(Duration.ofMillis(300));
+    }
+
+    @AfterEach
+    void tearDown() {
+        replicas.forEach(r -> r.publisher.detener());
+    }
+
+    // --- Réplicas de msvc-pedidos sobre el mismo Mongo ---
+
+    private final class Replica {
+        final String id;
+        final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        final AdminNotificationService adminNotificationService = mock(AdminNotificationService.class);
+        final EtaService etaService = mock(EtaService.class);
+        final KitchenBoardService kitchenBoardService = mock(KitchenBoardService.class);
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final OrderChangeStreamPublisher publisher;
+
+        Replica(String id) {
+            this.id = id;
+            when(mongoTemplate.findById(anyString(), eq(Document.class), eq(TOKENS)))
+                    .thenAnswer(inv -> Mono.justOrEmpty(tokens.get(inv.<String>getArgument(0))).map(Document::new));
+            when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), eq(TOKENS)))
+                    .thenAnswer(inv -> Mono.fromCallable(() -> upsert(inv.getArgument(0), inv.getArgument(1))));
+            when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(TOKENS)))
+                    .thenAnswer(inv -> Mono.fromCallable(() -> updateFirst(inv.getArgument(0), inv.getArgument(1))));
+            when(mongoTemplate.changeStream(eq("orders"), any(ChangeStreamOptions.class), eq(Order.class)))
+                    .thenAnswer(inv -> abrir(inv.getArgument(1)));
+
+            ChangeStreamProperties propias = new ChangeStreamProperties();
+            propias.setTokenFlushInterval(properties.getTokenFlushInterval());
+            propias.setInitialBackoff(properties.getInitialBackoff());
+            propias.setMaxBackoff(properties.getMaxBackoff());
+            propias.setLease(properties.getLease());
+            propias.setPrefetch(properties.getPrefetch());
+            propias.setInstanceId(id);
+            publisher = new OrderChangeStreamPublisher(mongoTemplate, adminNotificationService, etaService,
+                    kitchenBoardService, propias, meterRegistry);
+            replicas.add(this);
+        }
+
+        double publicados() {
+            return meterRegistry.counter("pedidos.notificaciones.publicadas").count();
+        }
+    }
+
+    // Las réplicas leen todo el oplog desde el principio (token del evento 0)
+    private void sembrarTokens(String... ids) {
+        tokens.put(OrderChangeStreamPublisher.STREAM_ID, new Document("_id", OrderChangeStreamPublisher.STREAM_ID)
+                .append("token", token(0).toJson()));
+        for (String id : ids) {
+            String clave = OrderChangeStreamPublisher.PREFIJO_LOCAL + id;
+            tokens.put(clave, new Document("_id", clave).append("token", token(0).toJson()));
+        }
+    }
+
+    // --- change_stream_tokens ---
+
+    private synchronized UpdateResult upsert(Query query, UpdateDefinition update) {
+        String id = query.getQueryObject().getString("_id");
+        Document set = update.getUpdateObject().get("$set", Document.class);
+        Document actual = tokens.get(id);
+        if (set.containsKey("owner") && actual != null) {
+            // El filtro del lease: es de quien lo pide, o no tiene dueño, o venció
+            LocalDateTime hasta = (LocalDateTime) actual.get("leaseHasta");
+            boolean libre = actual.getString("owner") == null
+                    || actual.getString("owner").equals(set.getString("owner"))
+                    || hasta == null || hasta.isBefore(LocalDateTime.now());
+            if (!libre) {
+                throw new DuplicateKeyException("E11000 duplicate key error collection: " + TOKENS);
+            }
+        }
+        Document documento = actual != null ? actual : new Document("_id", id);
+        documento.putAll(set);
+        tokens.put(id, documento);
+        return UpdateResult.acknowledged(1, 1L, null);
+    }
+
+    private synchronized UpdateResult updateFirst(Query query, UpdateDefinition update) {
+        Document filtro = query.getQueryObject();
+        Document actual = tokens.get(filtro.getString("_id"));
+        if (actual == null || !Objects.equals(filtro.getString("owner"), actual.getString("owner"))) {
+            return UpdateResult.acknowledged(0, 0L, null);
+        }
+        Document set = update.getUpdateObject().get("$set", Document.class);
+        Document unset = update.getUpdateObject().get("$unset", Document.class);
+        if (set != null) {
+            actual.putAll(set);
+        }
+        if (unset != null) {
+            unset.keySet().forEach(actual::remove);
+        }
+        return UpdateResult.acknowledged(1, 1L, null);
+    }
+
+    private String tokenGuardado(String id) {
+        Document documento = tokens.get(id);
+        return documento != null ? documento.getString("token") : null;
+    }
+
+    // --- Oplog ---
+
+    private void escribir(String tipo, Order order, BsonDocument modificados) {
+        oplog.tryEmitNext(evento(tipo, ultimaSecuencia.incrementAndGet(), order, modificados));
+    }
+
+    private Flux<ChangeStreamEvent<Order>> abrir(ChangeStreamOptions opciones) {
+        aperturas.add(opciones);
+        int desde = opciones.getResumeToken().map(OrderChangeStreamPublisherTest::secuencia).orElse(ultimaSecuencia.get());
+        if (desde < primerRetenido - 1) {
+            return Flux.error(new MongoCommandException(
+                    new BsonDocument("ok", new BsonInt32(0)).append("code", new BsonInt32(286))
+                            .append("errmsg", new BsonString("ChangeStreamHistoryLost")),
+                    new ServerAddress()));
+        }
+        AtomicLong pedidos = new AtomicLong();
+        AtomicLong entregados = new AtomicLong();
+        return oplog.asFlux()
+                .filter(e -> secuencia(e.getResumeToken()) > desde)
+                .<ChangeStreamEvent<Order>>handle((e, sink) -> {
+                    sink.next(e);
+                    if (secuencia(e.getResumeToken()) == cortarDespuesDe && cortado.compareAndSet(false, true)) {
+                        sink.error(new IllegalStateException("primario caído"));
+                    }
+                })
+                .doOnRequest(pedidos::addAndGet)
+                .doOnNext(e -> maxPendientes.accumulateAndGet(pedidos.get() - entregados.incrementAndGet() + 1, Math::max));
+    }
+
+    private ChangeStreamEvent<Order> evento(String tipo, int secuencia, Order order, BsonDocument modificados) {
+        Document documento = new Document();
+        converter.write(order, documento);
+        UpdateDescription descripcion = modificados != null ? new UpdateDescription(List.of(), modificados) : null;
+        ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(tipo, token(secuencia),
+                new BsonDocument("db", new BsonString("pedidos")).append("coll", new BsonString("orders")), null,
+                documento, null, new BsonDocument("_id", new BsonString(order.getId())),
+                new BsonTimestamp((int) Instant.now().getEpochSecond(), secuencia), descripcion,
+                null, null, null, null, null);
+        return new ChangeStreamEvent<>(raw, Order.class, converter);
+    }
+
+    private static BsonDocument token(int secuencia) {
+        return new BsonDocument("_data", new BsonString(String.format("8265%012d", secuencia)));
+    }
+
+    private static int secuencia(BsonValue token) {
+        return Integer.parseInt(token.asDocument().getString("_data").getValue().substring(4));
+    }
+
+    private static Order pedido(String id, Order.OrderStatus status, boolean efectivo) {
+        Order order = new Order();
+        order.setId(id);
+        order.setStatus(status);
+        order.setPaidWithCash(efectivo);
+        order.setPaidWithMercadoPago(!efectivo);
+        order.setRestaurant(new Order.Restaurant("rest1", "Pizzería Test"));
+        order.setItems(List.of());
+        order.setVersion(1);
+        return order;
+    }
+
+    private static BsonDocument campos(String... nombres) {
+        BsonDocument campos = new BsonDocument();
+        for (String nombre : nombres) {
+            campos.append(nombre, nombre.equals("paidWithMercadoPago") ? BsonBoolean.TRUE : new BsonInt64(1));
+        }
+        return campos;
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.nanoTime() < limite, "Timeout esperando la condición");
+            Thread.sleep(5);
+        }
+    }
+
+    // --- Tests ---
+
+    @Test
+    @DisplayName("Cada tipo de cambio produce el mismo push que hacía su camino de escritura")
+    void publicar_SegunCambio() {
+        Replica replica = new Replica("a");
+        OrderChangeStreamPublisher publisher = replica.publisher;
+        Order efectivo = pedido("o1", Order.OrderStatus.RECIBIDO, true);
+        Order mercadoPago = pedido("o2", Order.OrderStatus.RECIBIDO, false);
+        List<ChangeStreamEvent<Order>> eventos = List.of(
+                evento("insert", 1, efectivo, null),
+                evento("insert", 2, mercadoPago, null),
+                evento("update", 3, mercadoPago, campos("paidWithMercadoPago", "fechaPago", "transaccionId", "version")),
+                evento("update", 4, mercadoPago, campos("transaccionId", "mercadoPagoId", "version")),
+                evento("update", 5, pedido("o1", Order.OrderStatus.EN_PREPARACION, true), campos("status", "version")));
+
+        eventos.forEach(publisher::publicar);
+        verify(replica.adminNotificationService, times(2)).notificarNuevoPedido(any(Order.class));
+        verify(replica.adminNotificationService).notificarPagoActualizado(any(Order.class));
+        verify(replica.adminNotificationService).notificarPedidoActualizado(argThat(o -> o.getStatus() == Order.OrderStatus.EN_PREPARACION));
+        verify(replica.adminNotificationService).notificarUsuarioPedidoActualizado(any(Order.class));
+        verifyNoMoreInteractions(replica.adminNotificationService);
+
+        eventos.forEach(publisher::aplicar);
+        // Sólo el cambio de estado es una muestra de demora; los de pago no
+        verify(replica.etaService).registrar(argThat(o -> o.getStatus() == Order.OrderStatus.EN_PREPARACION));
+        verifyNoMoreInteractions(replica.etaService);
+        // Todos los cambios llegan al tablero, también los que escribió otra réplica
+        verify(replica.kitchenBoardService, times(5)).actualizar(any(Order.class));
+
+        // Un push que falla se cuenta y no corta el stream
+        doThrow(new IllegalStateException("broker caído")).when(replica.adminNotificationService).notificarPedidoActualizado(any(Order.class));
+        assertDoesNotThrow(() -> publisher.publicar(evento("replace", 6, efectivo, null)));
+        assertEquals(1, replica.meterRegistry.counter("pedidos.notificaciones.errores").count());
+    }
+
+    @Test
+    @DisplayName("El filtro del stream deja afuera el outbox y los borrados de la retención")
+    void filtro_SoloEstadoYPago() {
+        String filtro = OrderChangeStreamPublisher.FILTRO.toJson();
+        assertTrue(filtro.contains("updateDescription.updatedFields.status"));
+        assertTrue(filtro.contains("updateDescription.updatedFields.fechaPago"));
+        assertFalse(filtro.contains("outbox"));
+        assertFalse(filtro.contains("delete"));
+    }
+
+    @Test
+    @DisplayName("Con varias réplicas todas actualizan su tablero pero cada push sale una sola vez")
+    void variasReplicas_UnSoloPublicador() throws InterruptedException {
+        sembrarTokens("a", "b", "c");
+        List<Replica> todas = List.of(new Replica("a"), new Replica("b"), new Replica("c"));
+        todas.forEach(r -> r.publisher.iniciar());
+        esperar(() -> todas.stream().filter(r -> r.publisher.esLider()).count() == 1);
+
+        Order order = pedido("o1", Order.OrderStatus.RECIBIDO, true);
+        escribir("insert", order, null);
+        escribir("update", pedido("o1", Order.OrderStatus.EN_PREPARACION, true), campos("status", "version"));
+
+        for (Replica replica : todas) {
+            verify(replica.kitchenBoardService, timeout(5_000).times(2)).actualizar(any(Order.class));
+            verify(replica.etaService, timeout(5_000)).registrar(any(Order.class));
+        }
+        esperar(() -> todas.stream().mapToDouble(Replica::publicados).sum() == 2);
+        Thread.sleep(100);
+        assertEquals(2, todas.stream().mapToDouble(Replica::publicados).sum());
+        long publicadores = todas.stream()
+                .filter(r -> mockingDetails(r.adminNotificationService).getInvocations().size() > 0)
+                .count();
+        assertEquals(1, publicadores);
+
+        // Cada réplica guarda su propio token local; el compartido lo escribe sólo quien publica
+        esperar(() -> todas.stream().allMatch(r ->
+                Objects.equals(token(2).toJson(), tokenGuardado(OrderChangeStreamPublisher.PREFIJO_LOCAL + r.id))));
+        esperar(() -> token(2).toJson().equals(tokenGuardado(OrderChangeStreamPublisher.STREAM_ID)));
+    }
+
+    @Test
+    @DisplayName("Si la réplica que publica se detiene, otra toma el lease y sigue desde su token sin repetir ni saltear")
+    void relevo_SigueDesdeTokenCompartido() throws InterruptedException {
+        sembrarTokens("a", "b");
+        Replica a = new Replica("a");
+        a.publisher.iniciar();
+        esperar(a.publisher::esLider);
+        Replica b = new Replica("b");
+        b.publisher.iniciar();
+
+        escribir("insert", pedido("o1", Order.OrderStatus.RECIBIDO, true), null);
+        escribir("insert", pedido("o2", Order.OrderStatus.RECIBIDO, true), null);
+        esperar(() -> a.publicados() == 2);
+        assertFalse(b.publisher.esLider());
+
+        a.publisher.detener();
+        replicas.remove(a);
+        escribir("insert", pedido("o3", Order.OrderStatus.RECIBIDO, true), null);
+        esperar(() -> b.publicados() == 1);
+
+        verify(a.adminNotificationService, times(2)).notificarNuevoPedido(any(Order.class));
+        verify(b.adminNotificationService).notificarNuevoPedido(argThat(o -> o.getId().equals("o3")));
+        verify(b.adminNotificationService, times(1)).notificarNuevoPedido(any(Order.class));
+    }
+
+    @Test
+    @DisplayName("Tras un corte reconecta desde el último evento procesado y no publica nada dos veces")
+    void corte_ReanudaDesdeUltimoToken() throws InterruptedException {
+        sembrarTokens("a");
+        Replica replica = new Replica("a");
+        cortarDespuesDe = 3;
+        Order order = pedido("o1", Order.OrderStatus.RECIBIDO, true);
+        escribir("insert", order, null);
+        escribir("update", order, campos("status"));
+        escribir("update", order, campos("status"));
+        escribir("update", order, campos("status"));
+
+        replica.publisher.iniciar();
+        esperar(() -> token(4).toJson().equals(tokenGuardado(OrderChangeStreamPublisher.STREAM_ID))
+                && token(4).toJson().equals(tokenGuardado(OrderChangeStreamPublisher.PREFIJO_LOCAL + "a")));
+
+        assertTrue(aperturas.stream().anyMatch(o -> token(3).equals(o.getResumeToken().orElse(null)) && o.isStartAfter()),
+                "La lectura cortada se reabre después del evento 3");
+        // Nada se publica ni se aplica dos veces: 1 alta y 3 cambios de estado
+        verify(replica.adminNotificationService, times(1)).notificarNuevoPedido(any(Order.class));
+        verify(replica.adminNotificationService, times(3)).notificarPedidoActualizado(any(Order.class));
+        verify(replica.kitchenBoardService, times(4)).actualizar(any(Order.class));
+        assertEquals(1, replica.meterRegistry.counter("pedidos.notificaciones.reconexiones").count());
+    }
+
+    @Test
+    @DisplayName("Al reiniciar toma el token guardado; si Mongo ya no lo tiene arranca desde ahora")
+    void reinicio_UsaTokenGuardado() throws InterruptedException {
+        tokens.put(OrderChangeStreamPublisher.STREAM_ID, new Document("_id", OrderChangeStreamPublisher.STREAM_ID)
+                .append("token", token(41).toJson()));
+        ultimaSecuencia.set(100);
+        primerRetenido = 90;
+        Replica replica = new Replica("a");
+
+        replica.publisher.iniciar();
+        esperar(() -> aperturas.size() >= 3);
+
+        assertTrue(aperturas.stream().anyMatch(o -> token(41).equals(o.getResumeToken().orElse(null))));
+        // La local (sin token propio) y la de notificaciones tras perder el token arrancan desde ahora
+        assertEquals(2, aperturas.stream().filter(o -> o.getResumeToken().isEmpty()).count());
+    }
+
+    @Test
+    @DisplayName("Un broker lento frena la lectura del cursor: nunca hay más de prefetch eventos pedidos")
+    void brokerLento_BackPressure() throws InterruptedException {
+        int eventos = 2_000;
+        properties.setPrefetch(64);
+        sembrarTokens("a");
+        Replica replica = new Replica("a");
+        Order order = pedido("o1", Order.OrderStatus.EN_PREPARACION, true);
+        for (int i = 0; i < eventos; i++) {
+            escribir("update", order, campos("status"));
+        }
+        AtomicInteger publicados = new AtomicInteger();
+        doAnswer(inv -> {
+            // Sesiones STOMP lentas: cada push tarda
+            if (publicados.incrementAndGet() % 100 == 0) {
+                Thread.sleep(20);
+            }
+            return null;
+        }).when(replica.adminNotificationService).notificarPedidoActualizado(any(Order.class));
+
+        replica.publisher.iniciar();
+        esperar(() -> publicados.get() == eventos);
+
+        assertTrue(maxPendientes.get() <= 64, "Eventos pedidos sin publicar: " + maxPendientes.get());
+        esperar(() -> token(eventos).toJson().equals(tokenGuardado(OrderChangeStreamPublisher.STREAM_ID)));
+    }
+
+    @Test
+    @DisplayName("Al detener guarda los tokens de lo último procesado y libera el lease")
+    void detener_GuardaTokenYLiberaLease() throws InterruptedException {
+        properties.setTokenFlushInterval(Duration.ofHours(1));
+        sembrarTokens("a");
+        Replica replica = new Replica("a");
+        replica.publisher.iniciar();
+        esperar(replica.publisher::esLider);
+        escribir("insert", pedido("o1", Order.OrderStatus.RECIBIDO, true), null);
+        esperar(() -> replica.publicados() == 1);
+        verify(replica.kitchenBoardService, timeout(5_000)).actualizar(any(Order.class));
+        assertEquals(token(0).toJson(), tokenGuardado(OrderChangeStreamPublisher.STREAM_ID));
+
+        replica.publisher.detener();
+        replicas.remove(replica);
+
+        assertEquals(token(1), BsonDocument.parse(tokenGuardado(OrderChangeStreamPublisher.STREAM_ID)));
+        assertEquals(token(1), BsonDocument.parse(tokenGuardado(OrderChangeStreamPublisher.PREFIJO_LOCAL + "a")));
+        assertNull(tokens.get(OrderChangeStreamPublisher.STREAM_ID).getString("owner"));
+    }
+}
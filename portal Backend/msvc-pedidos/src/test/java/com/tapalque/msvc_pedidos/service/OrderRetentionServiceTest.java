@@ -0,0 +1,168 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.mongodb.client.result.DeleteResult;
+import com.tapalque.msvc_pedidos.config.RetentionProperties;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.VentaAporte;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OrderRetentionService Tests")
+class OrderRetentionServiceTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private OrderArchiveService archiveService;
+
+    private RetentionProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private OrderRetentionService retentionService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RetentionProperties();
+        properties.setBatchSize(2);
+        meterRegistry = new SimpleMeterRegistry();
+        retentionService = new OrderRetentionService(mongoTemplate, properties, meterRegistry, archiveService);
+        lenient().when(mongoTemplate.remove(any(Query.class), eq(VentaAporte.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(0)));
+    }
+
+    private RetentionProperties.Policy policy(Boolean paid, Duration maxAge) {
+        RetentionProperties.Policy policy = new RetentionProperties.Policy();
+        policy.setStatuses(EnumSet.of(Order.OrderStatus.RECIBIDO));
+        policy.setPaid(paid);
+        policy.setMaxAge(maxAge);
+        return policy;
+    }
+
+    private Flux<Order> orders(int count) {
+        return Flux.fromStream(IntStream.range(0, count).mapToObj(i -> {
+            Order order = new Order();
+            order.setId("o" + i);
+            return order;
+        }));
+    }
+
+    @Test
+    @DisplayName("Debe borrar en lotes hasta agotar los candidatos y registrar métricas")
+    void purge_VariosLotes_BorraYRegistraMetricas() {
+        // Given: 2 + 2 + 1 candidatos
+        when(mongoTemplate.find(any(Query.class), eq(Order.class)))
+                .thenReturn(orders(2), orders(2), orders(1));
+        when(mongoTemplate.remove(any(Query.class), eq(Order.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(2)),
+                        Mono.just(DeleteResult.acknowledged(2)),
+                        Mono.just(DeleteResult.acknowledged(1)));
+
+        // When & Then
+        StepVerifier.create(retentionService.purge("impagos", policy(false, Duration.ofHours(24))))
+                .expectNext(5L)
+                .verifyComplete();
+
+        verify(mongoTemplate, times(3)).remove(any(Query.class), eq(Order.class));
+        // Cada lote borra también los aportes de sus pedidos a daily_sales
+        ArgumentCaptor<Query> aportes = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(3)).remove(aportes.capture(), eq(VentaAporte.class));
+        assertEquals(List.of("o0", "o1"), aportes.getAllValues().get(0).getQueryObject()
+                .get("_id", Document.class).getList("$in", Object.class));
+        assertEquals(5.0, meterRegistry.counter("pedidos.retention.purged", "policy", "impagos").count());
+        assertEquals(1, meterRegistry.timer("pedidos.retention.duration", "policy", "impagos").count());
+    }
+
+    @Test
+    @DisplayName("No debe borrar nada cuando no hay candidatos")
+    void purge_SinCandidatos_NoBorra() {
+        when(mongoTemplate.find(any(Query.class), eq(Order.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(retentionService.purge("impagos", policy(false, Duration.ofHours(24))))
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(Order.class));
+    }
+
+    @Test
+    @DisplayName("Debe respetar el máximo de lotes por ejecución")
+    void purge_LimiteDeLotes_SeDetiene() {
+        properties.setMaxBatchesPerRun(2);
+        when(mongoTemplate.find(any(Query.class), eq(Order.class))).thenAnswer(inv -> orders(2));
+        when(mongoTemplate.remove(any(Query.class), eq(Order.class)))
+                .thenAnswer(inv -> Mono.just(DeleteResult.acknowledged(2)));
+
+        StepVerifier.create(retentionService.purge("pagados", policy(true, Duration.ofDays(90))))
+                .expectNext(4L)
+                .verifyComplete();
+
+        verify(mongoTemplate, times(2)).remove(any(Query.class), eq(Order.class));
+    }
+
+    @Test
+    @DisplayName("Con archive=true los lotes pasan por el archivo en lugar de borrarse directamente")
+    void purge_PoliticaConArchivo_Archiva() {
+        RetentionProperties.Policy policy = policy(true, Duration.ofDays(90));
+        policy.setArchive(true);
+        when(archiveService.archivarLote(any(), eq("dateCreated"), eq(2)))
+                .thenReturn(Mono.just(2L), Mono.just(1L));
+
+        StepVerifier.create(retentionService.purge("pagados", policy))
+                .expectNext(3L)
+                .verifyComplete();
+
+        verify(archiveService, times(2)).archivarLote(any(), eq("dateCreated"), eq(2));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(Order.class));
+        assertEquals(3.0, meterRegistry.counter("pedidos.retention.purged", "policy", "pagados").count());
+    }
+
+    @Test
+    @DisplayName("Al archivar el corte baja al inicio del mes")
+    void cutoff_ConArchivo_MesCompleto() {
+        RetentionProperties.Policy policy = policy(true, Duration.ofDays(90));
+        LocalDateTime now = LocalDateTime.of(2025, 6, 15, 10, 30);
+
+        assertEquals(LocalDateTime.of(2025, 3, 17, 10, 30), retentionService.cutoff(policy, now));
+        policy.setArchive(true);
+        assertEquals(LocalDateTime.of(2025, 3, 1, 0, 0), retentionService.cutoff(policy, now));
+    }
+
+    @Test
+    @DisplayName("El filtro usa rango sobre la fecha y condición de pago")
+    void buildCriteria_NoPagados_FiltraPorFechaYPago() {
+        LocalDateTime cutoff = LocalDateTime.now();
+        Document filter = retentionService.buildCriteria(policy(false, Duration.ofHours(24)), cutoff)
+                .getCriteriaObject();
+
+        assertEquals(cutoff, ((Document) filter.get("dateCreated")).get("$lt"));
+        assertEquals(true, ((Document) filter.get("paidWithMercadoPago")).get("$ne"));
+        assertEquals(true, ((Document) filter.get("paidWithCash")).get("$ne"));
+        assertTrue(filter.containsKey("status"));
+    }
+}
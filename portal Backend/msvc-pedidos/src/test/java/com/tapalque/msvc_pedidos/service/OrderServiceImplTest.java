@@ -1,28 +1,47 @@
 package com.tapalque.msvc_pedidos.service;
 
+import com.tapalque.msvc_pedidos.client.DishPriceCache;
+import com.tapalque.msvc_pedidos.config.AdmissionProperties;
+import com.tapalque.msvc_pedidos.dto.DishPriceDTO;
 import com.tapalque.msvc_pedidos.dto.ItemDTO;
+import com.tapalque.msvc_pedidos.dto.OrderCursor;
 import com.tapalque.msvc_pedidos.dto.OrderDTO;
 import com.tapalque.msvc_pedidos.dto.RestaurantDTO;
 import com.tapalque.msvc_pedidos.entity.Order;
 import com.tapalque.msvc_pedidos.repository.OrderRepository;
 
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,10 +52,20 @@ class OrderServiceImplTest {
     private OrderRepository orderRepository;
 
     @Mock
-    private org.springframework.amqp.rabbit.core.RabbitTemplate rabbitTemplate;
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private DishPriceCache dishPriceCache;
+
+    @Mock
+    private KitchenBoardService kitchenBoardService;
 
     @Mock
-    private AdminNotificationService adminNotificationService;
+    private DailySalesService dailySalesService;
+
+    @Spy
+    private AdmissionService admissionService =
+            new AdmissionService(mock(KitchenBoardService.class), new AdmissionProperties(), new SimpleMeterRegistry());
 
     @InjectMocks
     private OrderServiceImpl orderService;
@@ -46,7 +75,8 @@ class OrderServiceImplTest {
 
     @BeforeEach
     void setUp() {
-        Order.Item item = new Order.Item("prod1", "Pizza", 1500.0, 2, null);
+        lenient().when(dailySalesService.registrar(any())).thenReturn(Mono.empty());
+        Order.Item item = new Order.Item("101", "Pizza", 1500.0, 2, null);
         Order.Restaurant restaurant = new Order.Restaurant("rest1", "Pizzería Test");
 
         testOrder = new Order();
@@ -61,7 +91,7 @@ class OrderServiceImplTest {
         testOrder.setDateUpdated(LocalDateTime.now());
 
         ItemDTO itemDTO = new ItemDTO();
-        itemDTO.setProductId("prod1");
+        itemDTO.setProductId("101");
         itemDTO.setItemName("Pizza");
         itemDTO.setItemPrice(1500.0);
         itemDTO.setItemQuantity(2);
@@ -88,7 +118,13 @@ class OrderServiceImplTest {
         @DisplayName("Debe crear pedido exitosamente")
         void createOrder_ConDatosValidos_RetornaOrderDTO() {
             // Given
-            when(orderRepository.save(any(Order.class))).thenReturn(Mono.just(testOrder));
+            DishPriceDTO dish = new DishPriceDTO();
+            dish.setIdDish(101L);
+            dish.setName("Pizza");
+            dish.setPrice(1500.0);
+            dish.setAvailable(true);
+            when(dishPriceCache.getDishes(any())).thenReturn(Mono.just(Map.of(101L, dish)));
+            when(orderRepository.save(any(Order.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
 
             // When & Then
             StepVerifier.create(orderService.createOrder(testOrderDTO))
@@ -97,7 +133,46 @@ class OrderServiceImplTest {
                         result.getStatus().equals("RECIBIDO"))
                     .verifyComplete();
 
-            verify(orderRepository).save(any(Order.class));
+            // El mensaje de pago se guarda en el outbox del mismo documento, no se publica en el request
+            ArgumentCaptor<Order> saved = ArgumentCaptor.forClass(Order.class);
+            verify(orderRepository).save(saved.capture());
+            Order order = saved.getValue();
+            assertNotNull(order.getId());
+            assertEquals(1, order.getOutbox().size());
+            Order.OutboxMessage message = order.getOutbox().get(0);
+            assertEquals(order.getId(), message.getPayload().get("idPedido"));
+            assertEquals(3000.0, message.getPayload().get("monto"));
+            assertEquals(order.getDateCreated(), message.getNextAttemptAt());
+        }
+
+        @Test
+        @DisplayName("Debe rechazar pedido con plato inexistente sin guardar")
+        void createOrder_ConPlatoInexistente_RetornaError() {
+            // Given
+            when(dishPriceCache.getDishes(any())).thenReturn(Mono.just(Map.of()));
+
+            // When & Then
+            StepVerifier.create(orderService.createOrder(testOrderDTO))
+                    .expectError(IllegalArgumentException.class)
+                    .verify();
+
+            verify(orderRepository, never()).save(any(Order.class));
+        }
+
+        @Test
+        @DisplayName("Con la cocina al tope responde 429 sin resolver precios ni guardar")
+        void createOrder_RestauranteSaturado_Rechaza() {
+            doReturn(Mono.error(new RestauranteSaturadoException(Duration.ofSeconds(90))))
+                    .when(admissionService).admitir(eq("rest1"), any());
+
+            StepVerifier.create(orderService.createOrder(testOrderDTO))
+                    .expectErrorSatisfies(e -> {
+                        assertEquals(429, ((ResponseStatusException) e).getStatusCode().value());
+                        assertEquals("90", ((ResponseStatusException) e).getHeaders().getFirst("Retry-After"));
+                    })
+                    .verify();
+
+            verifyNoInteractions(dishPriceCache, orderRepository);
         }
     }
 
@@ -188,14 +263,66 @@ class OrderServiceImplTest {
         @DisplayName("Debe actualizar pedido exitosamente")
         void updateOrder_ConDatosValidos_RetornaOrderActualizado() {
             // Given
-            when(orderRepository.save(any(Order.class))).thenReturn(Mono.just(testOrder));
+            testOrder.setVersion(4);
+            testOrderDTO.setVersion(3L);
+            when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                    any(FindAndModifyOptions.class), eq(Order.class))).thenReturn(Mono.just(testOrder));
 
             // When & Then
             StepVerifier.create(orderService.updateOrder(testOrderDTO))
-                    .expectNextMatches(result -> result.getId().equals("order123"))
+                    .expectNextMatches(result -> result.getId().equals("order123") && result.getVersion() == 4)
+                    .verifyComplete();
+
+            // Una sola escritura condicionada a la versión leída, sin pisar el outbox
+            ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+            ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+            verify(mongoTemplate).findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class), eq(Order.class));
+            assertEquals(3L, query.getValue().getQueryObject().get("version"));
+            org.bson.Document set = (org.bson.Document) ((Update) update.getValue()).getUpdateObject().get("$set");
+            assertFalse(set.containsKey("outbox"));
+            assertFalse(set.containsKey("dateCreated"));
+            verify(orderRepository, never()).save(any(Order.class));
+        }
+
+        @Test
+        @DisplayName("Con una versión vieja responde conflicto")
+        void updateOrder_VersionVieja_Conflicto() {
+            // Given
+            testOrder.setVersion(5);
+            testOrderDTO.setVersion(3L);
+            when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                    any(FindAndModifyOptions.class), eq(Order.class))).thenReturn(Mono.empty());
+            when(orderRepository.findById("order123")).thenReturn(Mono.just(testOrder));
+
+            // When & Then
+            StepVerifier.create(orderService.updateOrder(testOrderDTO))
+                    .expectErrorMatches(e -> e instanceof ResponseStatusException r && r.getStatusCode().value() == 409)
+                    .verify();
+        }
+    }
+
+    @Nested
+    @DisplayName("Tests de updateOrderStatus")
+    class UpdateOrderStatusTests {
+
+        @Test
+        @DisplayName("Debe avanzar la versión y reflejarla en el tablero")
+        void updateOrderStatus_ConIdExistente_AvanzaVersionYActualizaTablero() {
+            // Given
+            testOrder.setVersion(2);
+            testOrder.setStatus(Order.OrderStatus.EN_PREPARACION);
+            when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                    any(FindAndModifyOptions.class), eq(Order.class))).thenReturn(Mono.just(testOrder));
+
+            // When & Then
+            StepVerifier.create(orderService.updateOrderStatus("order123", "en_preparacion", null))
+                    .expectNextMatches(result ->
+                        result.getStatus() == Order.OrderStatus.EN_PREPARACION && result.getVersion() == 2)
                     .verifyComplete();
 
-            verify(orderRepository).save(any(Order.class));
+            // El push al panel lo hace OrderChangeStreamPublisher a partir del cambio en Mongo
+            verify(kitchenBoardService).actualizar(testOrder);
+            verify(dailySalesService).registrar(testOrder);
         }
     }
 
@@ -206,14 +333,18 @@ class OrderServiceImplTest {
         @Test
         @DisplayName("Debe eliminar pedido exitosamente")
         void deleteOrder_ConIdExistente_RetornaVoid() {
-            // Given
-            when(orderRepository.deleteById("order123")).thenReturn(Mono.empty());
+            // Given: el borrado es lógico, el pedido pasa a FAILED con una escritura condicional
+            testOrder.setStatus(Order.OrderStatus.FAILED);
+            when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                    any(FindAndModifyOptions.class), eq(Order.class))).thenReturn(Mono.just(testOrder));
 
             // When & Then
             StepVerifier.create(orderService.deleteOrder("order123"))
                     .verifyComplete();
 
-            verify(orderRepository).deleteById("order123");
+            verify(orderRepository, never()).deleteById("order123");
+            verify(kitchenBoardService).actualizar(testOrder);
+            verify(dailySalesService).registrar(testOrder);
         }
     }
 
@@ -236,4 +367,67 @@ class OrderServiceImplTest {
                     .verifyComplete();
         }
     }
+
+    @Nested
+    @DisplayName("Tests de paginación por cursor")
+    class PaginationTests {
+
+        private Order orderAt(LocalDateTime date) {
+            Order order = new Order();
+            order.setId(new ObjectId().toHexString());
+            order.setDateCreated(date);
+            return order;
+        }
+
+        @Test
+        @DisplayName("Debe devolver cursor cuando hay más resultados que el límite")
+        void getOrdersPageByRestaurant_ConMasResultados_RetornaCursor() {
+            // Given: se piden 2, el repositorio devuelve 3 (límite + 1)
+            LocalDateTime now = LocalDateTime.now();
+            Order o1 = orderAt(now);
+            Order o2 = orderAt(now.minusMinutes(1));
+            Order o3 = orderAt(now.minusMinutes(2));
+            when(orderRepository.findRestaurantPage(eq("rest1"), any(), any(), eq(Limit.of(3))))
+                    .thenReturn(Flux.just(o1, o2, o3));
+
+            // When & Then
+            StepVerifier.create(orderService.getOrdersPageByRestaurant("rest1", null, null, null, 2))
+                    .assertNext(page -> {
+                        assertEquals(2, page.getItems().size());
+                        assertTrue(page.isHasMore());
+                        OrderCursor cursor = OrderCursor.decode(page.getNextCursor());
+                        assertEquals(o2.getId(), cursor.id().toHexString());
+                        assertEquals(o2.getDateCreated(), cursor.dateCreated());
+                    })
+                    .verifyComplete();
+        }
+
+        @Test
+        @DisplayName("Debe continuar desde el cursor y terminar sin cursor en la última página")
+        void getOrdersPageByUser_ConCursor_UltimaPagina() {
+            // Given
+            LocalDateTime now = LocalDateTime.now();
+            OrderCursor cursor = new OrderCursor(now, new ObjectId());
+            when(orderRepository.findUserPageAfter(eq("user1"), any(), any(),
+                    eq(cursor.dateCreated()), eq(cursor.id()), eq(Limit.of(21))))
+                    .thenReturn(Flux.just(orderAt(now.minusMinutes(1))));
+
+            // When & Then
+            StepVerifier.create(orderService.getOrdersPageByUser("user1", null, null, cursor.encode(), 0))
+                    .assertNext(page -> {
+                        assertEquals(1, page.getItems().size());
+                        assertFalse(page.isHasMore());
+                        assertNull(page.getNextCursor());
+                    })
+                    .verifyComplete();
+        }
+
+        @Test
+        @DisplayName("Debe rechazar un cursor inválido")
+        void getOrdersPageByUser_CursorInvalido_RetornaError() {
+            StepVerifier.create(orderService.getOrdersPageByUser("user1", null, null, "no-es-un-cursor", 10))
+                    .expectError(IllegalArgumentException.class)
+                    .verify();
+        }
+    }
 }
@@ -0,0 +1,287 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.tapalque.msvc_pedidos.client.DishPriceCache;
+import com.tapalque.msvc_pedidos.config.AdmissionProperties;
+import com.tapalque.msvc_pedidos.entity.Order;
+import com.tapalque.msvc_pedidos.entity.Order.OrderStatus;
+import com.tapalque.msvc_pedidos.repository.OrderRepository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Transiciones de estado contra una colección en memoria que aplica findAndModify de forma atómica
+ * (guarda + update bajo un lock, como hace Mongo con un documento) y en otro hilo, para que las
+ * escrituras de cocina y de pagos se intercalen de verdad.
+ */
+@DisplayName("Transiciones de estado de pedidos")
+class OrderStatusTransitionsTest {
+
+    private final Map<String, Order> coleccion = new ConcurrentHashMap<>();
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private OrderRepository orderRepository;
+    private KitchenBoardService kitchenBoardPagos;
+    private OrderServiceImpl orderService;
+    private RabbitMQListenerService rabbitListener;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        orderRepository = mock(OrderRepository.class);
+        kitchenBoardPagos = mock(KitchenBoardService.class);
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Order.class)))
+                .thenAnswer(inv -> Mono.fromCallable(() -> findAndModify(inv.getArgument(0), inv.getArgument(1)))
+                        .subscribeOn(Schedulers.parallel()));
+        when(orderRepository.findById(anyString()))
+                .thenAnswer(inv -> Mono.justOrEmpty(leer(inv.getArgument(0))));
+
+        orderService = new OrderServiceImpl(orderRepository, mongoTemplate,
+                mock(DishPriceCache.class), null, mock(KitchenBoardService.class), sinRollups(),
+                new AdmissionService(mock(KitchenBoardService.class), new AdmissionProperties(), new SimpleMeterRegistry()));
+        rabbitListener = new RabbitMQListenerService(mongoTemplate, mock(NotificationService.class),
+                kitchenBoardPagos, sinRollups());
+    }
+
+    private static DailySalesService sinRollups() {
+        DailySalesService dailySalesService = mock(DailySalesService.class);
+        when(dailySalesService.registrar(any())).thenReturn(Mono.empty());
+        return dailySalesService;
+    }
+
+    // --- findAndModify en memoria: sólo lo que usan las guardas y los updates de estado ---
+
+    private Order findAndModify(Query query, UpdateDefinition update) {
+        Document filtro = query.getQueryObject();
+        Order order = coleccion.get((String) filtro.get("_id"));
+        if (order == null) {
+            return null;
+        }
+        synchronized (order) {
+            if (!coincide(order, filtro)) {
+                return null;
+            }
+            Document set = update.getUpdateObject().get("$set", Document.class);
+            Document inc = update.getUpdateObject().get("$inc", Document.class);
+            if (set != null) {
+                set.forEach((campo, valor) -> {
+                    switch (campo) {
+                        case "status" -> order.setStatus((OrderStatus) valor);
+                        case "paidWithMercadoPago" -> order.setPaidWithMercadoPago((Boolean) valor);
+                        default -> { }
+                    }
+                });
+            }
+            if (inc != null && inc.get("version") != null) {
+                order.setVersion(order.getVersion() + ((Number) inc.get("version")).longValue());
+            }
+            return copia(order);
+        }
+    }
+
+    private static boolean coincide(Order order, Document filtro) {
+        for (Map.Entry<String, Object> condicion : filtro.entrySet()) {
+            Object valor = condicion.getValue();
+            boolean ok = switch (condicion.getKey()) {
+                case "_id" -> true;
+                case "status" -> ((Collection<?>) ((Document) valor).get("$in")).contains(order.getStatus());
+                case "version" -> ((Number) valor).longValue() == order.getVersion();
+                case "isDelivery" -> valor.equals(order.getIsDelivery());
+                default -> throw new IllegalArgumentException("Condición no soportada: " + condicion.getKey());
+            };
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Order leer(String id) {
+        Order order = coleccion.get(id);
+        if (order == null) {
+            return null;
+        }
+        synchronized (order) {
+            return copia(order);
+        }
+    }
+
+    private static Order copia(Order order) {
+        Order copia = new Order();
+        copia.setId(order.getId());
+        copia.setStatus(order.getStatus());
+        copia.setVersion(order.getVersion());
+        copia.setIsDelivery(order.getIsDelivery());
+        copia.setPaidWithMercadoPago(order.getPaidWithMercadoPago());
+        copia.setPaidWithCash(order.getPaidWithCash());
+        copia.setRestaurant(new Order.Restaurant("rest1", "Pizzería Test"));
+        copia.setItems(List.of());
+        return copia;
+    }
+
+    private void guardar(String id, OrderStatus status, long version, boolean delivery) {
+        Order order = new Order();
+        order.setId(id);
+        order.setStatus(status);
+        order.setVersion(version);
+        order.setIsDelivery(delivery);
+        order.setPaidWithMercadoPago(false);
+        order.setPaidWithCash(false);
+        coleccion.put(id, order);
+    }
+
+    private static boolean esConflicto(Throwable e) {
+        return e instanceof ResponseStatusException r && r.getStatusCode().value() == 409;
+    }
+
+    // --- Tests ---
+
+    @Test
+    @DisplayName("La máquina de estados sólo avanza en el orden de cocina y permite cancelar")
+    void maquinaDeEstados() {
+        assertEquals(List.of(OrderStatus.RECIBIDO, OrderStatus.PAID), OrderStatus.EN_PREPARACION.origenes());
+        assertEquals(List.of(OrderStatus.LISTO, OrderStatus.EN_DELIVERY), OrderStatus.ENTREGADO.origenes());
+        assertFalse(OrderStatus.RECIBIDO.puedePasarA(OrderStatus.ENTREGADO));
+        assertFalse(OrderStatus.EN_PREPARACION.puedePasarA(OrderStatus.PAID));
+        assertFalse(OrderStatus.ENTREGADO.puedePasarA(OrderStatus.RECIBIDO));
+        for (OrderStatus status : OrderStatus.values()) {
+            assertEquals(status != OrderStatus.FAILED, status.puedePasarA(OrderStatus.FAILED), status.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Una transición inválida se rechaza con 409 sin escribir")
+    void transicionInvalida_Conflicto() {
+        guardar("o1", OrderStatus.RECIBIDO, 1, false);
+
+        StepVerifier.create(orderService.updateOrderStatus("o1", "ENTREGADO", null))
+                .expectErrorMatches(OrderStatusTransitionsTest::esConflicto)
+                .verify();
+        StepVerifier.create(orderService.updateOrderStatus("o1", "EN_PREPARACION", null))
+                .expectNextMatches(o -> o.getStatus() == OrderStatus.EN_PREPARACION && o.getVersion() == 2)
+                .verifyComplete();
+        StepVerifier.create(orderService.updateOrderStatus("o1", "LISTO", null))
+                .expectNextCount(1)
+                .verifyComplete();
+        // Retiro en el local: no puede salir a delivery
+        StepVerifier.create(orderService.updateOrderStatus("o1", "EN_DELIVERY", null))
+                .expectErrorMatches(OrderStatusTransitionsTest::esConflicto)
+                .verify();
+        StepVerifier.create(orderService.updateOrderStatus("o1", "VOLANDO", null))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        assertEquals(OrderStatus.LISTO, coleccion.get("o1").getStatus());
+        assertEquals(3, coleccion.get("o1").getVersion());
+    }
+
+    @Test
+    @DisplayName("Repetir el mismo cambio (doble click) devuelve el pedido sin escribir")
+    void mismoEstado_Idempotente() {
+        guardar("o1", OrderStatus.RECIBIDO, 1, false);
+
+        orderService.updateOrderStatus("o1", "EN_PREPARACION", 1L).block();
+        StepVerifier.create(orderService.updateOrderStatus("o1", "EN_PREPARACION", 1L))
+                .expectNextMatches(o -> o.getVersion() == 2)
+                .verifyComplete();
+
+        // Una sola escritura: el change stream emite un único evento y el panel recibe un solo push
+        assertEquals(2, coleccion.get("o1").getVersion());
+    }
+
+    @Test
+    @DisplayName("Cocina y pagos en paralelo: el pago llega tarde y no retrocede el pedido")
+    void cocinaYPagoEnParalelo() throws InterruptedException {
+        int pedidos = 200;
+        for (int i = 0; i < pedidos; i++) {
+            guardar("o" + i, OrderStatus.RECIBIDO, 1, false);
+        }
+        CountDownLatch pagosAplicados = new CountDownLatch(pedidos);
+        doAnswer(inv -> {
+            pagosAplicados.countDown();
+            return null;
+        }).when(kitchenBoardPagos).actualizar(any(Order.class));
+
+        AtomicInteger errores = new AtomicInteger();
+        Flux.range(0, pedidos)
+                .flatMap(i -> {
+                    String id = "o" + i;
+                    Mono<Void> pago = Mono.fromRunnable(() -> rabbitListener.handlePaymentMessages(Map.of(
+                            "messageType", "WEBHOOK", "idTransaccion", id, "estado", "APROBADO", "idComprador", "u1")))
+                            .subscribeOn(Schedulers.parallel()).then();
+                    Mono<Void> cocina = orderService.updateOrderStatus(id, "EN_PREPARACION", null)
+                            .doOnError(e -> errores.incrementAndGet())
+                            .onErrorResume(e -> Mono.empty())
+                            .then();
+                    return Mono.when(pago, cocina);
+                }, 32)
+                .blockLast(Duration.ofSeconds(30));
+        assertTrue(pagosAplicados.await(10, TimeUnit.SECONDS));
+
+        // Gane quien gane, el pedido queda en preparación, pagado y con exactamente dos escrituras
+        assertEquals(0, errores.get());
+        for (int i = 0; i < pedidos; i++) {
+            Order order = coleccion.get("o" + i);
+            assertEquals(OrderStatus.EN_PREPARACION, order.getStatus(), order.getId());
+            assertTrue(order.getPaidWithMercadoPago(), order.getId());
+            assertEquals(3, order.getVersion(), order.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("Dos cambios con la misma versión: gana uno y el otro recibe 409")
+    void mismaVersionEnParalelo_UnoGana() {
+        int pedidos = 200;
+        for (int i = 0; i < pedidos; i++) {
+            guardar("o" + i, OrderStatus.LISTO, 5, true);
+        }
+
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger conflictos = new AtomicInteger();
+        Flux.range(0, pedidos)
+                .flatMap(i -> Flux.just("EN_DELIVERY", "ENTREGADO")
+                        .flatMap(destino -> orderService.updateOrderStatus("o" + i, destino, 5L)
+                                .doOnNext(o -> ok.incrementAndGet())
+                                .onErrorResume(e -> {
+                                    assertTrue(esConflicto(e), e.toString());
+                                    conflictos.incrementAndGet();
+                                    return Mono.empty();
+                                })), 32)
+                .blockLast(Duration.ofSeconds(30));
+
+        assertEquals(pedidos, ok.get());
+        assertEquals(pedidos, conflictos.get());
+        for (int i = 0; i < pedidos; i++) {
+            assertEquals(6, coleccion.get("o" + i).getVersion());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.tapalque.msvc_pedidos.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.tapalque.msvc_pedidos.config.OutboxProperties;
+import com.tapalque.msvc_pedidos.entity.Order;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OutboxRelayService Tests")
+class OutboxRelayServiceTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private RabbitOperations channel;
+
+    private OutboxProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxRelayService relayService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new OutboxProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        relayService = new OutboxRelayService(mongoTemplate, rabbitTemplate, properties, meterRegistry);
+    }
+
+    private Order order(String id, Order.OutboxMessage... messages) {
+        Order order = new Order();
+        order.setId(id);
+        order.setOutbox(new ArrayList<>(List.of(messages)));
+        return order;
+    }
+
+    private Order.OutboxMessage message(String messageId, int sequence, LocalDateTime due) {
+        return new Order.OutboxMessage(messageId, sequence, "pedido-exchange", "mercado-pago",
+                Map.of("idPedido", messageId), due);
+    }
+
+    private void givenClaimed(Order... claimed) {
+        Flux<Order> candidates = Flux.fromArray(claimed).map(o -> order(o.getId()));
+        when(mongoTemplate.find(any(Query.class), eq(Order.class)))
+                .thenReturn(candidates, Flux.fromArray(claimed));
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Order.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(claimed.length, (long) claimed.length, null)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenBrokerChannel() {
+        when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class)))
+                .thenAnswer(inv -> ((RabbitOperations.OperationsCallback<Object>) inv.getArgument(0)).doInRabbit(channel));
+    }
+
+    @Test
+    @DisplayName("Publica en orden de secuencia por pedido, espera confirms y limpia el outbox")
+    void relayBatch_BrokerConfirma_PublicaEnOrdenYLimpia() {
+        LocalDateTime due = LocalDateTime.now().minusSeconds(1);
+        givenClaimed(
+                order("o1", message("m2", 2, due), message("m1", 1, due)),
+                order("o2", message("m3", 1, due)));
+        givenBrokerChannel();
+
+        StepVerifier.create(relayService.relayBatch())
+                .expectNextMatches(result -> result.orders() == 2 && result.published() == 3)
+                .verifyComplete();
+
+        InOrder inOrder = inOrder(channel);
+        inOrder.verify(channel).convertAndSend(eq("pedido-exchange"), eq("mercado-pago"),
+                eq(Map.of("idPedido", "m1")), any(MessagePostProcessor.class));
+        inOrder.verify(channel).convertAndSend(eq("pedido-exchange"), eq("mercado-pago"),
+                eq(Map.of("idPedido", "m2")), any(MessagePostProcessor.class));
+        inOrder.verify(channel).convertAndSend(eq("pedido-exchange"), eq("mercado-pago"),
+                eq(Map.of("idPedido", "m3")), any(MessagePostProcessor.class));
+        inOrder.verify(channel).waitForConfirmsOrDie(5000L);
+
+        // claim + limpieza de los mensajes confirmados
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).updateMulti(any(Query.class), updates.capture(), eq(Order.class));
+        Document pull = (Document) ((Update) updates.getAllValues().get(1)).getUpdateObject().get("$pull");
+        assertNotNull(pull);
+        assertEquals(3.0, meterRegistry.counter("pedidos.outbox.published").count());
+        verify(mongoTemplate, never()).bulkOps(any(BulkMode.class), eq(Order.class));
+    }
+
+    @Test
+    @DisplayName("Si el broker no confirma, reprograma el lote con backoff y no borra nada")
+    void relayBatch_BrokerNoConfirma_ReprogramaConBackoff() {
+        LocalDateTime due = LocalDateTime.now().minusSeconds(1);
+        Order.OutboxMessage reintentado = message("m1", 1, due);
+        reintentado.setAttempts(2);
+        givenClaimed(order("o1", reintentado), order("o2", message("m2", 1, due)));
+        givenBrokerChannel();
+        doThrow(new AmqpTimeoutException("sin confirms")).when(channel).waitForConfirmsOrDie(anyLong());
+
+        ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, Order.class)).thenReturn(bulk);
+        when(bulk.updateOne(any(Query.class), any(UpdateDefinition.class))).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+
+        StepVerifier.create(relayService.relayBatch())
+                .expectNextMatches(result -> result.published() == 0)
+                .verifyComplete();
+
+        ArgumentCaptor<UpdateDefinition> retries = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(bulk, times(2)).updateOne(any(Query.class), retries.capture());
+        Document set = (Document) ((Update) retries.getAllValues().get(0)).getUpdateObject().get("$set");
+        assertEquals(3, set.get("outbox.$[].attempts"));
+        assertEquals(1, ((Document) ((Update) retries.getAllValues().get(1)).getUpdateObject().get("$set"))
+                .get("outbox.$[].attempts"));
+        // sólo el claim: nunca se hizo el $pull
+        verify(mongoTemplate, times(1)).updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Order.class));
+        assertEquals(2.0, meterRegistry.counter("pedidos.outbox.failed").count());
+    }
+
+    @Test
+    @DisplayName("Un pedido en backoff no se publica y se libera el lease")
+    void relayBatch_MensajeEnBackoff_NoPublica() {
+        givenClaimed(order("o1", message("m1", 1, LocalDateTime.now().plusMinutes(1))));
+
+        StepVerifier.create(relayService.relayBatch())
+                .expectNextMatches(result -> result.published() == 0)
+                .verifyComplete();
+
+        verify(rabbitTemplate, never()).invoke(any(RabbitOperations.OperationsCallback.class));
+        verify(channel, never()).convertAndSend(anyString(), anyString(), any(Object.class), any(MessagePostProcessor.class));
+    }
+
+    @Test
+    @DisplayName("Sin mensajes pendientes no toma leases ni usa el broker")
+    void relayPending_OutboxVacio_NoHaceNada() {
+        when(mongoTemplate.find(any(Query.class), eq(Order.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(relayService.relayPending())
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Order.class));
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    @DisplayName("El backoff crece exponencialmente hasta el tope")
+    void backoff_Exponencial_ConTope() {
+        properties.setInitialBackoff(Duration.ofSeconds(1));
+        properties.setMaxBackoff(Duration.ofSeconds(30));
+
+        assertEquals(Duration.ofSeconds(1), properties.backoff(1));
+        assertEquals(Duration.ofSeconds(2), properties.backoff(2));
+        assertEquals(Duration.ofSeconds(16), properties.backoff(5));
+        assertEquals(Duration.ofSeconds(30), properties.backoff(6));
+        assertEquals(Duration.ofSeconds(30), properties.backoff(60));
+    }
+}
@@ -1,43 +1,69 @@
 package com.tapalque.msvc_reservas.client;
 
+import java.time.Duration;
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import com.tapalque.msvc_reservas.dto.HabitacionDTO;
+import com.tapalque.msvc_reservas.service.CacheReactiva;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.publisher.Mono;
 
 @Service
 public class HospedajeClient {
 
     private final WebClient webClient;
+    private final CacheReactiva<List<HabitacionDTO>> habitaciones;
 
-    public HospedajeClient(WebClient.Builder builder) {
+    public HospedajeClient(WebClient.Builder builder, MeterRegistry meterRegistry,
+                           @Value("${reservas.cache.refresco:5m}") Duration refresco,
+                           @Value("${reservas.cache.vencimiento:1h}") Duration vencimiento) {
         this.webClient = builder.baseUrl("lb://msvc-hosteleria").build();
+        this.habitaciones = new CacheReactiva<>("reservas.habitaciones", this::pedirHabitaciones,
+                refresco, vencimiento, 1000, meterRegistry);
     }
 
     public record HospedajeInfoDTO(String emailNotificacion, String titulo) {}
 
     /**
-     * Trae el email de notificación del hospedaje.
-     * GET /hospedajes/{id}
+     * Email de notificación del hospedaje; vacío si no tiene uno cargado.
+     * GET /hospedajes/{id}. Los errores se propagan: quien lo usa (el outbox de emails) reintenta.
      */
-    public Mono<HospedajeInfoDTO> fetchEmailNotificacion(String hospedajeId) {
+    public Mono<String> fetchEmailNotificacion(String hospedajeId) {
         return webClient.get()
                 .uri("/hospedajes/{id}", hospedajeId)
                 .retrieve()
                 .bodyToMono(HospedajeInfoDTO.class)
-                .onErrorResume(e -> Mono.empty());
+                .mapNotNull(HospedajeInfoDTO::emailNotificacion)
+                .filter(email -> !email.isBlank());
+    }
+
+    /**
+     * Habitaciones de un hospedaje, desde la cache local. msvc-hosteleria avisa por
+     * hospedajes.catalogo cuando cambian (ver CatalogoRabbitListener).
+     */
+    public Mono<List<HabitacionDTO>> fetchHabitaciones(String hospedajeId) {
+        return habitaciones.get(hospedajeId);
+    }
+
+    public void invalidarHabitaciones(String hospedajeId) {
+        if (hospedajeId == null) {
+            habitaciones.invalidarTodo();
+        } else {
+            habitaciones.invalidar(hospedajeId);
+        }
     }
 
     /**
      * Trae todas las habitaciones de un hospedaje desde msvc-hosteleria.
      * GET /habitaciones/hospedajes/{hospedajeId}
      */
-    public Mono<List<HabitacionDTO>> fetchHabitaciones(String hospedajeId) {
+    private Mono<List<HabitacionDTO>> pedirHabitaciones(String hospedajeId) {
         return webClient.get()
                 .uri("/habitaciones/hospedajes/{id}", hospedajeId)
                 .retrieve()
@@ -46,6 +72,7 @@ public class HospedajeClient {
                 .onStatus(status -> status.is5xxServerError(),
                         resp -> Mono.error(new RuntimeException("msvc-hosteleria error interno")))
                 .bodyToMono(new ParameterizedTypeReference<List<HabitacionDTO>>() {})
+                .map(List::copyOf)
                 .defaultIfEmpty(List.of());
     }
 }
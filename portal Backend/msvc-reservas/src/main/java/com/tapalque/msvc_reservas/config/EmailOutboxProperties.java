@@ -0,0 +1,51 @@
+package com.tapalque.msvc_reservas.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Outbox de emails (prefijo reservas.email): mensajes por corrida, mensajes por conexión SMTP,
+ * hilos de envío, intentos antes de darlo por fallido, bloqueo del lote y espera entre reintentos.
+ */
+@Component
+@ConfigurationProperties(prefix = "reservas.email")
+public class EmailOutboxProperties {
+
+    private int lote = 50;
+    private int porConexion = 20;
+    private int trabajadores = 2;
+    private int maxIntentos = 8;
+    private Duration bloqueo = Duration.ofMinutes(2);
+    private Duration esperaInicial = Duration.ofSeconds(30);
+    private Duration esperaMaxima = Duration.ofHours(1);
+
+    public int getLote() { return lote; }
+    public void setLote(int lote) { this.lote = lote; }
+
+    public int getPorConexion() { return porConexion; }
+    public void setPorConexion(int porConexion) { this.porConexion = porConexion; }
+
+    public int getTrabajadores() { return trabajadores; }
+    public void setTrabajadores(int trabajadores) { this.trabajadores = trabajadores; }
+
+    public int getMaxIntentos() { return maxIntentos; }
+    public void setMaxIntentos(int maxIntentos) { this.maxIntentos = maxIntentos; }
+
+    public Duration getBloqueo() { return bloqueo; }
+    public void setBloqueo(Duration bloqueo) { this.bloqueo = bloqueo; }
+
+    public Duration getEsperaInicial() { return esperaInicial; }
+    public void setEsperaInicial(Duration esperaInicial) { this.esperaInicial = esperaInicial; }
+
+    public Duration getEsperaMaxima() { return esperaMaxima; }
+    public void setEsperaMaxima(Duration esperaMaxima) { this.esperaMaxima = esperaMaxima; }
+
+    /** Espera después del intento fallido número {@code intentos} (1, 2, 4, 8... veces la inicial, con tope). */
+    public Duration espera(int intentos) {
+        int exponente = Math.max(0, Math.min(intentos - 1, 20));
+        Duration espera = esperaInicial.multipliedBy(1L << exponente);
+        return espera.compareTo(esperaMaxima) > 0 ? esperaMaxima : espera;
+    }
+}
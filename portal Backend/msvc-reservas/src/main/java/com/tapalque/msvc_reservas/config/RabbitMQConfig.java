@@ -1,23 +1,94 @@
 package com.tapalque.msvc_reservas.config;
 
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.tapalque.msvc_reservas.service.OcupacionService;
+
 @Configuration
 @EnableRabbit
 public class RabbitMQConfig {
 
     public static final String QUEUE_RESERVAS = "pagos.reservas";
 
+    // Retenciones de reservas online: cada una espera en RETENCIONES (sin consumidores) hasta que
+    // vence el TTL y RabbitMQ la pasa a RETENCIONES_VENCIDAS. Con un TTL único por cola los mensajes
+    // vencen en el orden en que entraron. Cambiar el TTL exige borrar la cola (los argumentos no se
+    // pueden redeclarar distintos).
+    public static final String QUEUE_RETENCIONES = "reservas.retenciones";
+    public static final String QUEUE_RETENCIONES_VENCIDAS = "reservas.retenciones.vencidas";
+    // Avisos cuyo vencimiento falló MAX_INTENTOS veces (sin consumidores, se revisan a mano)
+    public static final String QUEUE_RETENCIONES_FALLIDAS = "reservas.retenciones.fallidas";
+
+    // Cambios de políticas y habitaciones: fanout con una cola anónima por réplica
+    public static final String EXCHANGE_CATALOGO = "hospedajes.catalogo";
+
+    // Escrituras del libro de ocupación, para el índice de disponibilidad de las demás réplicas
+    public static final String EXCHANGE_OCUPACION = "reservas.ocupacion";
+
     @Bean
     public Queue reservasQueue() {
         return new Queue(QUEUE_RESERVAS, true); // durable
     }
 
+    @Bean
+    public Queue retencionesQueue() {
+        return QueueBuilder.durable(QUEUE_RETENCIONES)
+                .ttl((int) OcupacionService.RETENCION_PENDIENTE.toMillis())
+                .deadLetterExchange("")
+                .deadLetterRoutingKey(QUEUE_RETENCIONES_VENCIDAS)
+                .build();
+    }
+
+    @Bean
+    public Queue retencionesVencidasQueue() {
+        return new Queue(QUEUE_RETENCIONES_VENCIDAS, true);
+    }
+
+    @Bean
+    public Queue retencionesFallidasQueue() {
+        return new Queue(QUEUE_RETENCIONES_FALLIDAS, true);
+    }
+
+    @Bean
+    public FanoutExchange catalogoExchange() {
+        return new FanoutExchange(EXCHANGE_CATALOGO);
+    }
+
+    @Bean
+    public Queue catalogoQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding bindingCatalogo() {
+        return BindingBuilder.bind(catalogoQueue()).to(catalogoExchange());
+    }
+
+    @Bean
+    public FanoutExchange ocupacionExchange() {
+        return new FanoutExchange(EXCHANGE_OCUPACION);
+    }
+
+    @Bean
+    public Queue ocupacionQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding bindingOcupacion() {
+        return BindingBuilder.bind(ocupacionQueue()).to(ocupacionExchange());
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
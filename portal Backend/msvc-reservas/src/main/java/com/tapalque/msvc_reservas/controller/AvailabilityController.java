@@ -2,6 +2,7 @@ package com.tapalque.msvc_reservas.controller;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -15,6 +16,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.tapalque.msvc_reservas.client.HospedajeClient;
 import com.tapalque.msvc_reservas.dto.HabitacionDTO;
+import com.tapalque.msvc_reservas.service.DisponibilidadService;
 import com.tapalque.msvc_reservas.service.ReservationService;
 
 import reactor.core.publisher.Mono;
@@ -27,17 +29,20 @@ public class AvailabilityController {
 
     private final HospedajeClient hospedajeClient;
     private final ReservationService reservationService;
+    private final DisponibilidadService disponibilidadService;
 
-    public AvailabilityController(HospedajeClient hospedajeClient, ReservationService reservationService) {
+    public AvailabilityController(HospedajeClient hospedajeClient, ReservationService reservationService,
+                                  DisponibilidadService disponibilidadService) {
         this.hospedajeClient = hospedajeClient;
         this.reservationService = reservationService;
+        this.disponibilidadService = disponibilidadService;
     }
 
     /**
      * Retorna las habitaciones libres de un hospedaje para un rango de fechas.
      * Combina reactivamente:
      *   - habitaciones desde msvc-hosteleria (WebClient)
-     *   - números de habitación ocupados desde MongoDB (por reservas solapadas)
+     *   - números de habitación ocupados, del índice en memoria (o de MongoDB si no puede responder)
      * Una habitación está libre si su número no coincide con ninguna reserva activa/pendiente.
      */
     @GetMapping("/{hotelId}")
@@ -53,11 +58,11 @@ public class AvailabilityController {
         Mono<List<HabitacionDTO>> habitacionesMono = hospedajeClient.fetchHabitaciones(hotelId);
         // Incluye reservas activas + pendientes de pago (bloqueo temporal de 5 min)
         // Obtiene los números de habitación ocupados para filtrar por habitación específica
-        Mono<List<Integer>> numerosOcupadosMono = reservationService
-                .getReservationsByHotelAndStayOverlapIncludingPending(hotelId, desdeDateTime, hastaDateTime)
-                .filter(r -> r.getRoomNumber() != null)
-                .map(r -> r.getRoomNumber())
-                .collectList();
+        Mono<List<Integer>> numerosOcupadosMono = disponibilidadService.ocupadas(hotelId, desde, hasta)
+                .map(ocupadas -> Mono.just(List.copyOf(ocupadas)))
+                .orElseGet(() -> reservationService
+                        .getOccupiedRoomNumbers(hotelId, desdeDateTime, hastaDateTime)
+                        .collectList());
 
         return Mono.zip(habitacionesMono, numerosOcupadosMono)
                 .map(tuple -> {
@@ -76,4 +81,28 @@ public class AvailabilityController {
                     return Mono.just(List.of());
                 });
     }
+
+    /**
+     * Noches del mes (yyyy-MM) en las que no queda ninguna habitación libre, para marcarlas
+     * en el selector de fechas sin consultar la disponibilidad día por día.
+     */
+    @GetMapping("/{hotelId}/calendario")
+    public Mono<List<LocalDate>> getCalendario(@PathVariable String hotelId, @RequestParam YearMonth mes) {
+        return hospedajeClient.fetchHabitaciones(hotelId)
+                .flatMap(habitaciones -> {
+                    List<HabitacionDTO> disponibles = habitaciones.stream()
+                            .filter(h -> Boolean.TRUE.equals(h.getDisponible()))
+                            .toList();
+                    // Una habitación sin número nunca figura ocupada: el hospedaje no se llena
+                    if (disponibles.stream().anyMatch(h -> h.getNumero() == null)) {
+                        return Mono.just(List.<LocalDate>of());
+                    }
+                    return disponibilidadService.nochesCompletas(hotelId, mes,
+                            disponibles.stream().map(HabitacionDTO::getNumero).toList());
+                })
+                .onErrorResume(e -> {
+                    logger.log(System.Logger.Level.ERROR, () -> "Error en calendario para hotel " + hotelId + ": " + e.getMessage());
+                    return Mono.just(List.of());
+                });
+    }
 }
@@ -17,9 +17,14 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import com.mongodb.lang.NonNull;
+import com.tapalque.msvc_reservas.dto.CierreCajaDTO;
+import com.tapalque.msvc_reservas.dto.PaginaReservasDTO;
 import com.tapalque.msvc_reservas.dto.ReservationDTO;
+import com.tapalque.msvc_reservas.enums.EstadoReserva;
+import com.tapalque.msvc_reservas.service.ListadoReservasService;
 import com.tapalque.msvc_reservas.service.ReservationService;
 
 import reactor.core.publisher.Flux;
@@ -31,9 +36,11 @@ public class ReservationController {
 
     private static final System.Logger logger = System.getLogger(ReservationController.class.getName());
     private final ReservationService reservationService;
+    private final ListadoReservasService listadoReservasService;
 
-    public ReservationController(ReservationService reservationService) {
+    public ReservationController(ReservationService reservationService, ListadoReservasService listadoReservasService) {
         this.reservationService = reservationService;
+        this.listadoReservasService = listadoReservasService;
     }
 
     @PostMapping("/new")
@@ -119,6 +126,48 @@ public class ReservationController {
             });
     }
 
+    @GetMapping("/cierre/{hotelId}/resumen")
+    public Mono<CierreCajaDTO> getResumenCierre(
+            @PathVariable String hotelId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta) {
+        Objects.requireNonNull(hotelId, "Hotel ID cannot be null");
+        return reservationService.getCierreCaja(hotelId, desde, hasta)
+            .doOnError(e -> logger.log(System.Logger.Level.ERROR, () -> "Error computing cierre totals: " + e.getMessage()));
+    }
+
+    // Listado paginado para el panel del hotel. "despues" es el cursor "siguiente" de la página anterior.
+    @GetMapping("/by-hotel/{hotelId}/pagina")
+    public Mono<PaginaReservasDTO> getPaginaByHotel(
+            @PathVariable String hotelId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkInDesde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkInHasta,
+            @RequestParam(required = false) EstadoReserva estado,
+            @RequestParam(required = false) Integer habitacion,
+            @RequestParam(required = false) String despues,
+            @RequestParam(required = false) Integer limite) {
+        Objects.requireNonNull(hotelId, "Hotel ID cannot be null");
+        var filtro = new ListadoReservasService.Filtro(checkInDesde, checkInHasta, estado, habitacion);
+        return listadoReservasService.porHotel(hotelId, filtro, despues, limite)
+            .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+            .doOnError(e -> logger.log(System.Logger.Level.ERROR, () -> "Error fetching reservations page by hotel: " + e.getMessage()));
+    }
+
+    @GetMapping("/by-customer/{customerId}/pagina")
+    public Mono<PaginaReservasDTO> getPaginaByCustomer(
+            @PathVariable String customerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkInDesde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkInHasta,
+            @RequestParam(required = false) EstadoReserva estado,
+            @RequestParam(required = false) String despues,
+            @RequestParam(required = false) Integer limite) {
+        Objects.requireNonNull(customerId, "Customer ID cannot be null");
+        var filtro = new ListadoReservasService.Filtro(checkInDesde, checkInHasta, estado, null);
+        return listadoReservasService.porCliente(customerId, filtro, despues, limite)
+            .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+            .doOnError(e -> logger.log(System.Logger.Level.ERROR, () -> "Error fetching reservations page by customer: " + e.getMessage()));
+    }
+
     @GetMapping("/by-customer/{customerId}")
     public Flux<ReservationDTO> getReservationsByCustomer(
             @PathVariable String customerId,
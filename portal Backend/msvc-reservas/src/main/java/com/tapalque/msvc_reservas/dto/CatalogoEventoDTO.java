@@ -0,0 +1,31 @@
+package com.tapalque.msvc_reservas.dto;
+
+import java.io.Serializable;
+
+/**
+ * Aviso de que cambió la política de reservas o las habitaciones de un hospedaje.
+ * Lo publican msvc-reservas y msvc-hosteleria en el exchange fanout hospedajes.catalogo
+ * y cada réplica de msvc-reservas invalida su cache.
+ */
+public class CatalogoEventoDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String POLITICA = "POLITICA";
+    public static final String HABITACIONES = "HABITACIONES";
+
+    private String tipo; // "POLITICA" o "HABITACIONES"
+    private String hospedajeId; // null = todos
+
+    public CatalogoEventoDTO() {}
+
+    public CatalogoEventoDTO(String tipo, String hospedajeId) {
+        this.tipo = tipo;
+        this.hospedajeId = hospedajeId;
+    }
+
+    public String getTipo() { return tipo; }
+    public void setTipo(String tipo) { this.tipo = tipo; }
+
+    public String getHospedajeId() { return hospedajeId; }
+    public void setHospedajeId(String hospedajeId) { this.hospedajeId = hospedajeId; }
+}
@@ -0,0 +1,74 @@
+package com.tapalque.msvc_reservas.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/** Totales del cierre de caja de un hospedaje para un período, por medio de pago. */
+public class CierreCajaDTO {
+    private LocalDateTime desde;
+    private LocalDateTime hasta;
+    private Double totalIngresado;
+    private Integer totalReservas;   // reservas distintas con algún pago en el período
+    private Integer totalPagos;
+    private Map<String, Double> porMedioDePago;
+
+    public CierreCajaDTO() {}
+
+    public CierreCajaDTO(LocalDateTime desde, LocalDateTime hasta, Double totalIngresado, Integer totalReservas,
+                         Integer totalPagos, Map<String, Double> porMedioDePago) {
+        this.desde = desde;
+        this.hasta = hasta;
+        this.totalIngresado = totalIngresado;
+        this.totalReservas = totalReservas;
+        this.totalPagos = totalPagos;
+        this.porMedioDePago = porMedioDePago;
+    }
+
+    public LocalDateTime getDesde() {
+        return desde;
+    }
+
+    public void setDesde(LocalDateTime desde) {
+        this.desde = desde;
+    }
+
+    public LocalDateTime getHasta() {
+        return hasta;
+    }
+
+    public void setHasta(LocalDateTime hasta) {
+        this.hasta = hasta;
+    }
+
+    public Double getTotalIngresado() {
+        return totalIngresado;
+    }
+
+    public void setTotalIngresado(Double totalIngresado) {
+        this.totalIngresado = totalIngresado;
+    }
+
+    public Integer getTotalReservas() {
+        return totalReservas;
+    }
+
+    public void setTotalReservas(Integer totalReservas) {
+        this.totalReservas = totalReservas;
+    }
+
+    public Integer getTotalPagos() {
+        return totalPagos;
+    }
+
+    public void setTotalPagos(Integer totalPagos) {
+        this.totalPagos = totalPagos;
+    }
+
+    public Map<String, Double> getPorMedioDePago() {
+        return porMedioDePago;
+    }
+
+    public void setPorMedioDePago(Map<String, Double> porMedioDePago) {
+        this.porMedioDePago = porMedioDePago;
+    }
+}
@@ -0,0 +1,60 @@
+package com.tapalque.msvc_reservas.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Escritura confirmada en el libro de ocupación. La publica la réplica que la hizo en el exchange
+ * fanout reservas.ocupacion y las demás réplicas la aplican a su índice de disponibilidad.
+ */
+public class OcupacionEventoDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String OCUPAR = "OCUPAR";
+    public static final String SOLTAR = "SOLTAR";
+    public static final String CONFIRMAR = "CONFIRMAR";
+
+    private String tipo; // "OCUPAR", "SOLTAR" o "CONFIRMAR"
+    private String origen; // réplica que hizo la escritura: la ignora al recibirla
+    private String reservaId;
+    private String hotelId;
+    private Integer roomNumber;
+    private List<LocalDate> noches; // SOLTAR sin noches = todas las de la reserva
+    private LocalDateTime expiraEn; // null = ocupación firme
+
+    public OcupacionEventoDTO() {}
+
+    public OcupacionEventoDTO(String tipo, String origen, String reservaId, String hotelId, Integer roomNumber,
+                              List<LocalDate> noches, LocalDateTime expiraEn) {
+        this.tipo = tipo;
+        this.origen = origen;
+        this.reservaId = reservaId;
+        this.hotelId = hotelId;
+        this.roomNumber = roomNumber;
+        this.noches = noches;
+        this.expiraEn = expiraEn;
+    }
+
+    public String getTipo() { return tipo; }
+    public void setTipo(String tipo) { this.tipo = tipo; }
+
+    public String getOrigen() { return origen; }
+    public void setOrigen(String origen) { this.origen = origen; }
+
+    public String getReservaId() { return reservaId; }
+    public void setReservaId(String reservaId) { this.reservaId = reservaId; }
+
+    public String getHotelId() { return hotelId; }
+    public void setHotelId(String hotelId) { this.hotelId = hotelId; }
+
+    public Integer getRoomNumber() { return roomNumber; }
+    public void setRoomNumber(Integer roomNumber) { this.roomNumber = roomNumber; }
+
+    public List<LocalDate> getNoches() { return noches; }
+    public void setNoches(List<LocalDate> noches) { this.noches = noches; }
+
+    public LocalDateTime getExpiraEn() { return expiraEn; }
+    public void setExpiraEn(LocalDateTime expiraEn) { this.expiraEn = expiraEn; }
+}
@@ -0,0 +1,25 @@
+package com.tapalque.msvc_reservas.dto;
+
+import java.util.List;
+
+/**
+ * Una página de un listado de reservas. {@code siguiente} es el cursor para pedir la próxima
+ * página (parámetro {@code despues}); es null en la última.
+ */
+public class PaginaReservasDTO {
+    private List<ReservaResumenDTO> reservas;
+    private String siguiente;
+
+    public PaginaReservasDTO() {}
+
+    public PaginaReservasDTO(List<ReservaResumenDTO> reservas, String siguiente) {
+        this.reservas = reservas;
+        this.siguiente = siguiente;
+    }
+
+    public List<ReservaResumenDTO> getReservas() { return reservas; }
+    public void setReservas(List<ReservaResumenDTO> reservas) { this.reservas = reservas; }
+
+    public String getSiguiente() { return siguiente; }
+    public void setSiguiente(String siguiente) { this.siguiente = siguiente; }
+}
@@ -0,0 +1,79 @@
+package com.tapalque.msvc_reservas.dto;
+
+import java.time.LocalDateTime;
+
+import com.tapalque.msvc_reservas.enums.PaymentType;
+
+/** Fila de los listados paginados: sin historial de pagos, facturación ni datos de contacto. */
+public class ReservaResumenDTO {
+    private String id;
+    private String customerId;
+    private String customerName;
+    private String hotelId;
+    private String hotelName;
+    private Integer roomNumber;
+    private LocalDateTime checkInDate;
+    private LocalDateTime checkOutDate;
+    private Integer cantidadHuespedes;
+    private Double totalPrice;
+    private Double amountPaid;
+    private Double remainingAmount;
+    private Boolean isPaid;
+    private PaymentType paymentType;
+    private Boolean isActive;
+    private Boolean isCancelled;
+    private LocalDateTime dateCreated;
+
+    public ReservaResumenDTO() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getCustomerId() { return customerId; }
+    public void setCustomerId(String customerId) { this.customerId = customerId; }
+
+    public String getCustomerName() { return customerName; }
+    public void setCustomerName(String customerName) { this.customerName = customerName; }
+
+    public String getHotelId() { return hotelId; }
+    public void setHotelId(String hotelId) { this.hotelId = hotelId; }
+
+    public String getHotelName() { return hotelName; }
+    public void setHotelName(String hotelName) { this.hotelName = hotelName; }
+
+    public Integer getRoomNumber() { return roomNumber; }
+    public void setRoomNumber(Integer roomNumber) { this.roomNumber = roomNumber; }
+
+    public LocalDateTime getCheckInDate() { return checkInDate; }
+    public void setCheckInDate(LocalDateTime checkInDate) { this.checkInDate = checkInDate; }
+
+    public LocalDateTime getCheckOutDate() { return checkOutDate; }
+    public void setCheckOutDate(LocalDateTime checkOutDate) { this.checkOutDate = checkOutDate; }
+
+    public Integer getCantidadHuespedes() { return cantidadHuespedes; }
+    public void setCantidadHuespedes(Integer cantidadHuespedes) { this.cantidadHuespedes = cantidadHuespedes; }
+
+    public Double getTotalPrice() { return totalPrice; }
+    public void setTotalPrice(Double totalPrice) { this.totalPrice = totalPrice; }
+
+    public Double getAmountPaid() { return amountPaid; }
+    public void setAmountPaid(Double amountPaid) { this.amountPaid = amountPaid; }
+
+    public Double getRemainingAmount() { return remainingAmount; }
+    public void setRemainingAmount(Double remainingAmount) { this.remainingAmount = remainingAmount; }
+
+    public Boolean getIsPaid() { return isPaid; }
+    public void setIsPaid(Boolean isPaid) { this.isPaid = isPaid; }
+
+    public PaymentType getPaymentType() { return paymentType; }
+    public void setPaymentType(PaymentType paymentType) { this.paymentType = paymentType; }
+
+    public Boolean getIsActive() { return isActive; }
+    public void setIsActive(Boolean isActive) { this.isActive = isActive; }
+
+    public Boolean getIsCancelled() { return isCancelled; }
+    public void setIsCancelled(Boolean isCancelled) { this.isCancelled = isCancelled; }
+
+    public LocalDateTime getDateCreated() { return dateCreated; }
+    public void setDateCreated(LocalDateTime dateCreated) { this.dateCreated = dateCreated; }
+}
@@ -0,0 +1,97 @@
+package com.tapalque.msvc_reservas.entity;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Email pendiente de envío (colección emails_salientes). Se guarda ya armado antes de intentar
+ * mandarlo; EmailOutboxService lo envía en segundo plano. El id identifica el aviso
+ * (tipo y reserva), así un evento repetido no lo encola dos veces. Si al encolar todavía no se
+ * conoce el destinatario (el email del hospedaje) se guarda hospedajeId y el outbox lo resuelve al
+ * enviarlo, con los mismos reintentos que el envío.
+ * FALLIDO es el estado final cuando se agotan los intentos: queda guardado para revisarlo.
+ */
+@Document(collection = "emails_salientes")
+public class EmailSaliente {
+
+    public enum Estado { PENDIENTE, ENVIADO, FALLIDO }
+
+    @Id
+    private String id;
+
+    private String destinatario;
+    private String hospedajeId;         // destinatario a resolver: email de notificación del hospedaje
+    private String asunto;
+    private String cuerpo;
+
+    private Estado estado;
+    private int intentos;
+    private LocalDateTime proximoIntento;
+    private String ultimoError;
+
+    private String bloqueo;             // lote que lo está enviando
+    private LocalDateTime bloqueoHasta;
+
+    private LocalDateTime creado;
+    private LocalDateTime enviado;      // el índice TTL borra los enviados a los 30 días
+
+    public EmailSaliente() {}
+
+    public EmailSaliente(String id, String destinatario, String asunto, String cuerpo) {
+        this.id = id;
+        this.destinatario = destinatario;
+        this.asunto = asunto;
+        this.cuerpo = cuerpo;
+        this.estado = Estado.PENDIENTE;
+        this.creado = LocalDateTime.now();
+        this.proximoIntento = this.creado;
+    }
+
+    /** Aviso al hospedaje: el destinatario se busca al enviarlo. */
+    public static EmailSaliente paraHospedaje(String id, String hospedajeId, String asunto, String cuerpo) {
+        EmailSaliente email = new EmailSaliente(id, null, asunto, cuerpo);
+        email.setHospedajeId(hospedajeId);
+        return email;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getDestinatario() { return destinatario; }
+    public void setDestinatario(String destinatario) { this.destinatario = destinatario; }
+
+    public String getHospedajeId() { return hospedajeId; }
+    public void setHospedajeId(String hospedajeId) { this.hospedajeId = hospedajeId; }
+
+    public String getAsunto() { return asunto; }
+    public void setAsunto(String asunto) { this.asunto = asunto; }
+
+    public String getCuerpo() { return cuerpo; }
+    public void setCuerpo(String cuerpo) { this.cuerpo = cuerpo; }
+
+    public Estado getEstado() { return estado; }
+    public void setEstado(Estado estado) { this.estado = estado; }
+
+    public int getIntentos() { return intentos; }
+    public void setIntentos(int intentos) { this.intentos = intentos; }
+
+    public LocalDateTime getProximoIntento() { return proximoIntento; }
+    public void setProximoIntento(LocalDateTime proximoIntento) { this.proximoIntento = proximoIntento; }
+
+    public String getUltimoError() { return ultimoError; }
+    public void setUltimoError(String ultimoError) { this.ultimoError = ultimoError; }
+
+    public String getBloqueo() { return bloqueo; }
+    public void setBloqueo(String bloqueo) { this.bloqueo = bloqueo; }
+
+    public LocalDateTime getBloqueoHasta() { return bloqueoHasta; }
+    public void setBloqueoHasta(LocalDateTime bloqueoHasta) { this.bloqueoHasta = bloqueoHasta; }
+
+    public LocalDateTime getCreado() { return creado; }
+    public void setCreado(LocalDateTime creado) { this.creado = creado; }
+
+    public LocalDateTime getEnviado() { return enviado; }
+    public void setEnviado(LocalDateTime enviado) { this.enviado = enviado; }
+}
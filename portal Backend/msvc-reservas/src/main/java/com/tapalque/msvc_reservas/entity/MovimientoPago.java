@@ -0,0 +1,67 @@
+package com.tapalque.msvc_reservas.entity;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.tapalque.msvc_reservas.enums.PaymentType;
+
+/**
+ * Un pago del historial de una reserva, copiado aparte para el cierre de caja del hospedaje.
+ * El id es reservaId + posición en paymentHistory, así volver a registrar la reserva no duplica.
+ * El índice (hotelId, fecha) hace que el cierre de un período sea una sola lectura por rango.
+ */
+@Document(collection = "movimientos_pago")
+@CompoundIndex(name = "hotel_fecha", def = "{ 'hotelId': 1, 'fecha': 1 }")
+public class MovimientoPago {
+
+    @Id
+    private String id;
+
+    private String hotelId;
+    private String reservaId;
+    private Integer posicion;        // índice en paymentHistory
+    private LocalDateTime fecha;
+    private Double monto;
+    private PaymentType paymentType;
+    private String descripcion;
+
+    public MovimientoPago() {}
+
+    public MovimientoPago(String hotelId, String reservaId, int posicion, Reservation.PaymentRecord pago) {
+        this.id = reservaId + "-" + posicion;
+        this.hotelId = hotelId;
+        this.reservaId = reservaId;
+        this.posicion = posicion;
+        this.fecha = pago.getDate();
+        this.monto = pago.getAmount();
+        this.paymentType = pago.getPaymentType();
+        this.descripcion = pago.getDescription();
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getHotelId() { return hotelId; }
+    public void setHotelId(String hotelId) { this.hotelId = hotelId; }
+
+    public String getReservaId() { return reservaId; }
+    public void setReservaId(String reservaId) { this.reservaId = reservaId; }
+
+    public Integer getPosicion() { return posicion; }
+    public void setPosicion(Integer posicion) { this.posicion = posicion; }
+
+    public LocalDateTime getFecha() { return fecha; }
+    public void setFecha(LocalDateTime fecha) { this.fecha = fecha; }
+
+    public Double getMonto() { return monto; }
+    public void setMonto(Double monto) { this.monto = monto; }
+
+    public PaymentType getPaymentType() { return paymentType; }
+    public void setPaymentType(PaymentType paymentType) { this.paymentType = paymentType; }
+
+    public String getDescripcion() { return descripcion; }
+    public void setDescripcion(String descripcion) { this.descripcion = descripcion; }
+}
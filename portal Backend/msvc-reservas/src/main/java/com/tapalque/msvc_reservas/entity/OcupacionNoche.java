@@ -0,0 +1,60 @@
+package com.tapalque.msvc_reservas.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Una noche ocupada de una habitación. El índice único (hotelId, roomNumber, noche) es el que impide
+ * reservar dos veces la misma habitación la misma noche. Las reservas online pendientes de pago
+ * ocupan con expiraEn: el índice TTL las borra al vencer la retención; al confirmarse se quita.
+ */
+@Document(collection = "ocupacion_noches")
+@CompoundIndex(name = "hotel_habitacion_noche", def = "{ 'hotelId': 1, 'roomNumber': 1, 'noche': 1 }", unique = true)
+public class OcupacionNoche {
+
+    @Id
+    private String id;
+
+    private String hotelId;
+    private Integer roomNumber;
+    private LocalDate noche;         // noche del check-in al día previo al check-out
+    private String reservaId;
+    private LocalDateTime expiraEn;  // null = ocupación firme
+    private LocalDateTime creado;
+
+    public OcupacionNoche() {}
+
+    public OcupacionNoche(String hotelId, Integer roomNumber, LocalDate noche, String reservaId, LocalDateTime expiraEn) {
+        this.hotelId = hotelId;
+        this.roomNumber = roomNumber;
+        this.noche = noche;
+        this.reservaId = reservaId;
+        this.expiraEn = expiraEn;
+        this.creado = LocalDateTime.now();
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getHotelId() { return hotelId; }
+    public void setHotelId(String hotelId) { this.hotelId = hotelId; }
+
+    public Integer getRoomNumber() { return roomNumber; }
+    public void setRoomNumber(Integer roomNumber) { this.roomNumber = roomNumber; }
+
+    public LocalDate getNoche() { return noche; }
+    public void setNoche(LocalDate noche) { this.noche = noche; }
+
+    public String getReservaId() { return reservaId; }
+    public void setReservaId(String reservaId) { this.reservaId = reservaId; }
+
+    public LocalDateTime getExpiraEn() { return expiraEn; }
+    public void setExpiraEn(LocalDateTime expiraEn) { this.expiraEn = expiraEn; }
+
+    public LocalDateTime getCreado() { return creado; }
+    public void setCreado(LocalDateTime creado) { this.creado = creado; }
+}
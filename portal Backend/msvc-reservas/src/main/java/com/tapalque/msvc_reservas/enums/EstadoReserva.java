@@ -0,0 +1,8 @@
+package com.tapalque.msvc_reservas.enums;
+
+// Filtro de estado de los listados de reservas
+public enum EstadoReserva {
+    PAGADA,     // no cancelada y pagada por completo
+    PENDIENTE,  // no cancelada y con saldo (o esperando el pago online)
+    CANCELADA
+}
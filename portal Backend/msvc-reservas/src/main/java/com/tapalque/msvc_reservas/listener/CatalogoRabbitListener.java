@@ -0,0 +1,33 @@
+package com.tapalque.msvc_reservas.listener;
+
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import com.tapalque.msvc_reservas.client.HospedajeClient;
+import com.tapalque.msvc_reservas.dto.CatalogoEventoDTO;
+import com.tapalque.msvc_reservas.service.PoliticaService;
+
+/**
+ * Invalida la cache local de políticas o habitaciones cuando msvc-reservas (otra réplica o esta)
+ * o msvc-hosteleria avisan un cambio. Cada réplica tiene su propia cola anónima.
+ */
+@Component
+public class CatalogoRabbitListener {
+
+    private final PoliticaService politicaService;
+    private final HospedajeClient hospedajeClient;
+
+    public CatalogoRabbitListener(PoliticaService politicaService, HospedajeClient hospedajeClient) {
+        this.politicaService = politicaService;
+        this.hospedajeClient = hospedajeClient;
+    }
+
+    @RabbitListener(queues = "#{catalogoQueue.name}")
+    public void recibirCambio(CatalogoEventoDTO evento) {
+        if (CatalogoEventoDTO.POLITICA.equals(evento.getTipo())) {
+            politicaService.invalidarCache(evento.getHospedajeId());
+        } else if (CatalogoEventoDTO.HABITACIONES.equals(evento.getTipo())) {
+            hospedajeClient.invalidarHabitaciones(evento.getHospedajeId());
+        }
+    }
+}
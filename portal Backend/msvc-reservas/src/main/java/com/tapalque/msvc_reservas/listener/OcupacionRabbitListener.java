@@ -0,0 +1,26 @@
+package com.tapalque.msvc_reservas.listener;
+
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import com.tapalque.msvc_reservas.dto.OcupacionEventoDTO;
+import com.tapalque.msvc_reservas.service.DisponibilidadService;
+
+/**
+ * Aplica al índice de disponibilidad de esta réplica las escrituras del libro de ocupación
+ * hechas por las demás. Cada réplica tiene su propia cola anónima.
+ */
+@Component
+public class OcupacionRabbitListener {
+
+    private final DisponibilidadService disponibilidadService;
+
+    public OcupacionRabbitListener(DisponibilidadService disponibilidadService) {
+        this.disponibilidadService = disponibilidadService;
+    }
+
+    @RabbitListener(queues = "#{ocupacionQueue.name}")
+    public void recibirCambio(OcupacionEventoDTO evento) {
+        disponibilidadService.aplicarRemoto(evento);
+    }
+}
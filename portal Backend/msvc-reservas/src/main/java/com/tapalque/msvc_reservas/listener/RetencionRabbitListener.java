@@ -0,0 +1,43 @@
+package com.tapalque.msvc_reservas.listener;
+
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import com.tapalque.msvc_reservas.config.RabbitMQConfig;
+import com.tapalque.msvc_reservas.service.RetencionService;
+
+@Component
+public class RetencionRabbitListener {
+
+    private final RetencionService retencionService;
+
+    public RetencionRabbitListener(RetencionService retencionService) {
+        this.retencionService = retencionService;
+    }
+
+    // Llega cuando vence la retención de una reserva online (TTL de reservas.retenciones)
+    @RabbitListener(queues = RabbitMQConfig.QUEUE_RETENCIONES_VENCIDAS)
+    public void vencerRetencion(String reservaId,
+                                @Header(name = RetencionService.HEADER_INTENTOS, required = false) Integer intentos) {
+        try {
+            if (Boolean.TRUE.equals(retencionService.vencer(reservaId).block())) {
+                System.out.println("Reserva online " + reservaId + " cancelada: venció la retención sin pago");
+            }
+        } catch (Exception e) {
+            System.err.println("Error al vencer la retención de la reserva " + reservaId + ": " + e.getMessage());
+            reintentar(reservaId, intentos == null ? 0 : intentos);
+        }
+    }
+
+    // Reintento con espera por la cola de retenciones; si ni eso se puede, se descarta sin reencolar
+    // (la reserva sigue pendiente y la encuentra la revisión del próximo arranque)
+    private void reintentar(String reservaId, int intentos) {
+        try {
+            retencionService.reintentar(reservaId, intentos).block();
+        } catch (Exception e) {
+            throw new AmqpRejectAndDontRequeueException("No se pudo reprogramar el vencimiento de la reserva " + reservaId, e);
+        }
+    }
+}
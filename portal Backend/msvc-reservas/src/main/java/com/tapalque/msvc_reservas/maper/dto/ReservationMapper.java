@@ -8,6 +8,7 @@ import com.tapalque.msvc_reservas.dto.CustomerDTO;
 import com.tapalque.msvc_reservas.dto.HotelDTO;
 import com.tapalque.msvc_reservas.dto.PaymentDTO;
 import com.tapalque.msvc_reservas.dto.PaymentRecordDTO;
+import com.tapalque.msvc_reservas.dto.ReservaResumenDTO;
 import com.tapalque.msvc_reservas.dto.ReservationDTO;
 import com.tapalque.msvc_reservas.dto.StayPeriodDTO;
 import com.tapalque.msvc_reservas.entity.Reservation;
@@ -35,6 +36,37 @@ public class ReservationMapper {
         return dto;
     }
 
+    // Para los listados: sólo los campos que trae la proyección de ListadoReservasService
+    public static ReservaResumenDTO toResumen(Reservation r) {
+        ReservaResumenDTO dto = new ReservaResumenDTO();
+        dto.setId(r.getId());
+        if (r.getCustomer() != null) {
+            dto.setCustomerId(r.getCustomer().getCustomerId());
+            dto.setCustomerName(r.getCustomer().getCustomerName());
+        }
+        if (r.getHotel() != null) {
+            dto.setHotelId(r.getHotel().getHotelId());
+            dto.setHotelName(r.getHotel().getHotelName());
+        }
+        if (r.getStayPeriod() != null) {
+            dto.setCheckInDate(r.getStayPeriod().getCheckInDate());
+            dto.setCheckOutDate(r.getStayPeriod().getCheckOutDate());
+        }
+        if (r.getPayment() != null) {
+            dto.setAmountPaid(r.getPayment().getAmountPaid());
+            dto.setRemainingAmount(r.getPayment().getRemainingAmount());
+            dto.setIsPaid(r.getPayment().getIsPaid());
+            dto.setPaymentType(r.getPayment().getPaymentType());
+        }
+        dto.setRoomNumber(r.getRoomNumber());
+        dto.setCantidadHuespedes(r.getCantidadHuespedes());
+        dto.setTotalPrice(r.getTotalPrice());
+        dto.setIsActive(r.getIsActive());
+        dto.setIsCancelled(r.getIsCancelled());
+        dto.setDateCreated(r.getDateCreated());
+        return dto;
+    }
+
     public static CustomerDTO toDto(Reservation.Customer c) {
         if (c == null) return null;
         CustomerDTO dto = new CustomerDTO();
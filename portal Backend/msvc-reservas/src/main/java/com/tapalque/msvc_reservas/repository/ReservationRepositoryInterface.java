@@ -7,8 +7,12 @@ import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 
 import com.tapalque.msvc_reservas.entity.Reservation;
+import com.tapalque.msvc_reservas.repository.projection.ReservaEstadiaView;
+import com.tapalque.msvc_reservas.repository.projection.ReservaEstadoView;
+import com.tapalque.msvc_reservas.repository.projection.ReservaPagoView;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Repository
 public interface ReservationRepositoryInterface extends ReactiveMongoRepository<Reservation, String> {
@@ -17,6 +21,11 @@ public interface ReservationRepositoryInterface extends ReactiveMongoRepository<
     public Flux<Reservation> findByHotel_HotelId(String hotelId);
     public Flux<Reservation> findByCustomer_CustomerId(String customerId);
 
+    // Lecturas chicas por _id: sólo traen los campos de la proyección
+    public Mono<ReservaEstadoView> findEstadoById(String id);
+    public Mono<ReservaPagoView> findPagoById(String id);
+    public Mono<ReservaEstadiaView> findEstadiaById(String id);
+
     // Reservas de un hotel filtradas por fecha de creación
     public Flux<Reservation> findByHotel_HotelIdAndDateCreatedBetween(
             String hotelId, LocalDateTime desde, LocalDateTime hasta);
@@ -30,26 +39,34 @@ public interface ReservationRepositoryInterface extends ReactiveMongoRepository<
     @Query("{ 'hotel.hotelId': ?0, 'stayPeriod.checkInDate': { $lt: ?2 }, 'stayPeriod.checkOutDate': { $gt: ?1 }, 'isActive': true, 'isCancelled': false }")
     Flux<Reservation> findByHotelAndStayPeriodOverlap(String hotelId, LocalDateTime desde, LocalDateTime hasta);
 
-    // Reservas de un hotel que tienen al menos un pago registrado en el rango de fechas (para cierre del día)
-    @Query("{ 'hotel.hotelId': ?0, 'paymentHistory': { $elemMatch: { 'date': { $gte: ?1, $lte: ?2 } } } }")
-    Flux<Reservation> findByHotelIdWithPaymentsInRange(String hotelId, LocalDateTime desde, LocalDateTime hasta);
+    // Reservas con algún pago en el historial (carga inicial del libro de pagos)
+    @Query("{ 'paymentHistory.0': { $exists: true } }")
+    Flux<Reservation> findWithPaymentHistory();
 
     // Igual que la anterior pero también incluye reservas pendientes de pago (creadas hace menos de X minutos)
     // Esto bloquea temporalmente la habitación mientras el usuario completa el pago
     @Query("{ 'hotel.hotelId': ?0, 'stayPeriod.checkInDate': { $lt: ?2 }, 'stayPeriod.checkOutDate': { $gt: ?1 }, 'isCancelled': false, $or: [ { 'isActive': true }, { 'isActive': false, 'payment.isPaid': false, 'dateCreated': { $gte: ?3 } } ] }")
     Flux<Reservation> findByHotelAndStayPeriodOverlapIncludingPending(String hotelId, LocalDateTime desde, LocalDateTime hasta, LocalDateTime creadoDespuesDe);
 
-    // Reservas online (MercadoPago) abandonadas: sin evento de pago recibido (transaccionId null),
+    // Mismo filtro que la anterior, pero sólo habitación y fechas (para disponibilidad)
+    @Query(value = "{ 'hotel.hotelId': ?0, 'stayPeriod.checkInDate': { $lt: ?2 }, 'stayPeriod.checkOutDate': { $gt: ?1 }, 'isCancelled': false, $or: [ { 'isActive': true }, { 'isActive': false, 'payment.isPaid': false, 'dateCreated': { $gte: ?3 } } ] }",
+           fields = "{ 'roomNumber': 1, 'stayPeriod': 1 }")
+    Flux<ReservaEstadiaView> findEstadiasByHotelAndStayPeriodOverlapIncludingPending(String hotelId, LocalDateTime desde, LocalDateTime hasta, LocalDateTime creadoDespuesDe);
+
+    // Reservas online (MercadoPago) esperando el pago: sin evento de pago recibido (transaccionId null),
     // no pagadas, no canceladas, y creadas antes del límite de tiempo
     @Query("{ 'payment.paymentType': 'MERCADO_PAGO', 'payment.isPaid': false, 'isCancelled': false, 'transaccionId': null, 'dateCreated': { $lt: ?0 } }")
     Flux<Reservation> findAbandonedOnlineReservations(LocalDateTime creadoAntesDe);
 
-    // Reservas conflictivas para una habitación específica (usado por el lock distribuido al crear reservas).
-    // Igual que findByHotelAndStayPeriodOverlapIncludingPending pero filtra por roomNumber.
-    @Query("{ 'hotel.hotelId': ?0, 'roomNumber': ?1, 'stayPeriod.checkInDate': { $lt: ?3 }, 'stayPeriod.checkOutDate': { $gt: ?2 }, 'isCancelled': false, $or: [ { 'isActive': true }, { 'isActive': false, 'payment.isPaid': false, 'dateCreated': { $gte: ?4 } } ] }")
-    Flux<Reservation> findConflictingRoomReservations(String hotelId, Integer roomNumber, LocalDateTime desde, LocalDateTime hasta, LocalDateTime pendingLimit);
+    // Reservas activas que todavía no terminaron (carga inicial del libro de ocupación)
+    @Query("{ 'isActive': true, 'isCancelled': false, 'stayPeriod.checkOutDate': { $gt: ?0 } }")
+    Flux<Reservation> findActiveWithCheckOutAfter(LocalDateTime desde);
 
     // Reservas canceladas sin pago (para limpieza semanal)
     @Query("{ 'isCancelled': true, 'payment.isPaid': false }")
     Flux<Reservation> findCancelledUnpaidReservations();
+
+    // Reservas pagadas creadas antes de la fecha (para limpieza de reservas viejas): sólo el _id
+    @Query(value = "{ 'payment.isPaid': true, 'dateCreated': { $lt: ?0 } }", fields = "{ '_id': 1 }")
+    Flux<ReservaEstadoView> findPaidCreatedBefore(LocalDateTime creadoAntesDe);
 }
@@ -0,0 +1,13 @@
+package com.tapalque.msvc_reservas.repository.projection;
+
+import com.tapalque.msvc_reservas.entity.Reservation;
+
+/**
+ * Proyección con la habitación y las fechas de estadía de una reserva (disponibilidad y calendarios).
+ */
+public interface ReservaEstadiaView {
+
+    String getId();
+    Integer getRoomNumber();
+    Reservation.StayPeriod getStayPeriod();
+}
@@ -0,0 +1,15 @@
+package com.tapalque.msvc_reservas.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección con el estado de una reserva (activa/cancelada), sin cliente, pagos ni facturación.
+ */
+public interface ReservaEstadoView {
+
+    String getId();
+    Boolean getIsActive();
+    Boolean getIsCancelled();
+    LocalDateTime getDateCreated();
+    LocalDateTime getDateUpdated();
+}
@@ -0,0 +1,18 @@
+package com.tapalque.msvc_reservas.repository.projection;
+
+import java.time.LocalDateTime;
+
+import com.tapalque.msvc_reservas.entity.Reservation;
+
+/**
+ * Proyección con el pago de una reserva y los datos de Mercado Pago, sin el historial de pagos.
+ */
+public interface ReservaPagoView {
+
+    String getId();
+    Double getTotalPrice();
+    Reservation.Payment getPayment();
+    Long getTransaccionId();
+    String getMercadoPagoId();
+    LocalDateTime getFechaPago();
+}
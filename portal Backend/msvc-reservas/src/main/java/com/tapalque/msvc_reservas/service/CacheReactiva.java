@@ -0,0 +1,64 @@
+package com.tapalque.msvc_reservas.service;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cache local para datos que casi no cambian (políticas, habitaciones) y se leen en cada reserva.
+ * - Una sola carga por clave: los pedidos concurrentes de una clave ausente esperan el mismo resultado.
+ * - Pasado {@code refresco}, se sigue respondiendo el valor guardado mientras se recarga por detrás;
+ *   si la recarga falla queda el anterior. {@code vencimiento} es el tope si nadie lo pide ni llega
+ *   la invalidación.
+ * - Los errores y los vacíos no se guardan.
+ * Publica las métricas de Caffeine (cache.gets con result=hit/miss, cache.evictions, ...) y
+ * cache.hit.ratio, con la etiqueta cache=nombre.
+ */
+public final class CacheReactiva<V> {
+
+    private final AsyncLoadingCache<String, V> cache;
+
+    public CacheReactiva(String nombre, Function<String, Mono<V>> cargador, Duration refresco,
+                         Duration vencimiento, long maximo, MeterRegistry meterRegistry) {
+        this(nombre, cargador, refresco, vencimiento, maximo, meterRegistry, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    CacheReactiva(String nombre, Function<String, Mono<V>> cargador, Duration refresco, Duration vencimiento,
+                  long maximo, MeterRegistry meterRegistry, Ticker ticker, Executor executor) {
+        this.cache = Caffeine.newBuilder()
+                .refreshAfterWrite(refresco)
+                .expireAfterWrite(vencimiento)
+                .maximumSize(maximo)
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats()
+                .buildAsync((clave, ejecutor) -> cargador.apply(clave).toFuture());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, nombre);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+                .tag("cache", nombre)
+                .register(meterRegistry);
+    }
+
+    public Mono<V> get(String clave) {
+        // Sin propagar la cancelación: el futuro lo comparten todos los que esperan esa clave
+        return Mono.fromFuture(() -> cache.get(clave), true);
+    }
+
+    public void invalidar(String clave) {
+        cache.synchronous().invalidate(clave);
+    }
+
+    public void invalidarTodo() {
+        cache.synchronous().invalidateAll();
+    }
+}
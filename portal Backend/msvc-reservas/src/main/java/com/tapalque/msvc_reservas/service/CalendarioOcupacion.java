@@ -0,0 +1,213 @@
+package com.tapalque.msvc_reservas.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.tapalque.msvc_reservas.entity.OcupacionNoche;
+
+/**
+ * Copia en memoria del libro de ocupación para las noches [inicio, inicio + dias).
+ * La ocupación firme es un bitmap por habitación (un bit por noche, 365 noches = 6 longs); las
+ * retenciones de reservas pendientes de pago son pocas y duran minutos, así que se guardan aparte
+ * con su vencimiento y se filtran al leer: una retención vencida deja de contar sin ningún evento.
+ *
+ * Las lecturas no toman locks. Las escrituras las serializa DisponibilidadService.
+ */
+final class CalendarioOcupacion {
+
+    record Clave(String hotelId, Integer roomNumber, LocalDate noche) {}
+
+    private record Ocupante(String reservaId, LocalDateTime expiraEn) {}
+
+    private final LocalDate inicio;
+    private final int dias;
+
+    private final Map<String, Map<Integer, AtomicLongArray>> firmes = new ConcurrentHashMap<>();
+    private final Map<String, Map<Clave, LocalDateTime>> retenciones = new ConcurrentHashMap<>();
+
+    // Quién ocupa cada noche y qué noches tiene cada reserva: sólo los usan las escrituras
+    private final Map<Clave, Ocupante> ocupantes = new HashMap<>();
+    private final Map<String, Set<Clave>> porReserva = new HashMap<>();
+
+    CalendarioOcupacion(LocalDate inicio, int dias) {
+        this.inicio = inicio;
+        this.dias = dias;
+    }
+
+    boolean cubre(LocalDate desde, LocalDate hasta) {
+        return !desde.isBefore(inicio) && !hasta.isAfter(inicio.plusDays(dias));
+    }
+
+    void cargar(OcupacionNoche ocupacion) {
+        ocupar(ocupacion.getReservaId(),
+                new Clave(ocupacion.getHotelId(), ocupacion.getRoomNumber(), ocupacion.getNoche()),
+                ocupacion.getExpiraEn());
+    }
+
+    void ocupar(String reservaId, Clave clave, LocalDateTime expiraEn) {
+        int noche = indice(clave.noche());
+        if (noche < 0 || noche >= dias || clave.roomNumber() == null) {
+            return;
+        }
+        Ocupante anterior = ocupantes.put(clave, new Ocupante(reservaId, expiraEn));
+        if (anterior != null && !anterior.reservaId().equals(reservaId)) {
+            quitarDeReserva(anterior.reservaId(), clave);
+        }
+        porReserva.computeIfAbsent(reservaId, id -> new HashSet<>()).add(clave);
+        if (expiraEn == null) {
+            retencionesDe(clave.hotelId()).remove(clave);
+            marcar(clave, noche, true);
+        } else {
+            marcar(clave, noche, false);
+            retencionesDe(clave.hotelId()).put(clave, expiraEn);
+        }
+    }
+
+    /** Suelta la noche sólo si sigue siendo de esta reserva (otra pudo tomarla después). */
+    void soltar(String reservaId, Clave clave) {
+        Ocupante ocupante = ocupantes.get(clave);
+        if (ocupante == null || !ocupante.reservaId().equals(reservaId)) {
+            return;
+        }
+        ocupantes.remove(clave);
+        quitarDeReserva(reservaId, clave);
+        retencionesDe(clave.hotelId()).remove(clave);
+        marcar(clave, indice(clave.noche()), false);
+    }
+
+    void soltar(String reservaId) {
+        for (Clave clave : List.copyOf(porReserva.getOrDefault(reservaId, Set.of()))) {
+            soltar(reservaId, clave);
+        }
+    }
+
+    void confirmar(String reservaId) {
+        for (Clave clave : List.copyOf(porReserva.getOrDefault(reservaId, Set.of()))) {
+            Ocupante ocupante = ocupantes.get(clave);
+            if (ocupante != null && ocupante.expiraEn() != null) {
+                ocupar(reservaId, clave, null);
+            }
+        }
+    }
+
+    /** Habitaciones con al menos una noche ocupada (o retenida y vigente) en [desde, hasta). */
+    Set<Integer> ocupadas(String hotelId, LocalDate desde, LocalDate hasta, LocalDateTime ahora) {
+        Set<Integer> ocupadas = new HashSet<>();
+        int a = Math.max(0, indice(desde));
+        int b = Math.min(dias, indice(hasta));
+        if (a >= b) {
+            return ocupadas;
+        }
+        firmes.getOrDefault(hotelId, Map.of()).forEach((habitacion, bits) -> {
+            if (algunaEn(bits, a, b)) {
+                ocupadas.add(habitacion);
+            }
+        });
+        retenciones.getOrDefault(hotelId, Map.of()).forEach((clave, expiraEn) -> {
+            if (expiraEn.isAfter(ahora) && !clave.noche().isBefore(desde) && clave.noche().isBefore(hasta)) {
+                ocupadas.add(clave.roomNumber());
+            }
+        });
+        return ocupadas;
+    }
+
+    /** Noches de [desde, hasta) en las que todas las habitaciones indicadas están ocupadas. */
+    List<LocalDate> nochesCompletas(String hotelId, LocalDate desde, LocalDate hasta,
+                                    Collection<Integer> habitaciones, LocalDateTime ahora) {
+        int a = Math.max(0, indice(desde));
+        int b = Math.min(dias, indice(hasta));
+        List<LocalDate> completas = new ArrayList<>();
+        if (a >= b || habitaciones.isEmpty()) {
+            return completas;
+        }
+        Map<Integer, AtomicLongArray> delHotel = firmes.getOrDefault(hotelId, Map.of());
+        Map<Integer, long[]> conRetenciones = new HashMap<>();
+        retenciones.getOrDefault(hotelId, Map.of()).forEach((clave, expiraEn) -> {
+            if (expiraEn.isAfter(ahora)) {
+                int noche = indice(clave.noche());
+                conRetenciones.computeIfAbsent(clave.roomNumber(), h -> new long[palabras()])[noche >>> 6] |= 1L << noche;
+            }
+        });
+
+        long[] todas = new long[palabras()];
+        Arrays.fill(todas, -1L);
+        for (Integer habitacion : habitaciones) {
+            AtomicLongArray bits = delHotel.get(habitacion);
+            long[] retenidas = conRetenciones.get(habitacion);
+            for (int w = 0; w < todas.length; w++) {
+                long ocupada = (bits != null ? bits.get(w) : 0L) | (retenidas != null ? retenidas[w] : 0L);
+                todas[w] &= ocupada;
+            }
+        }
+        for (int noche = a; noche < b; noche++) {
+            if ((todas[noche >>> 6] & (1L << noche)) != 0) {
+                completas.add(inicio.plusDays(noche));
+            }
+        }
+        return completas;
+    }
+
+    private int indice(LocalDate noche) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, ChronoUnit.DAYS.between(inicio, noche)));
+    }
+
+    private int palabras() {
+        return (dias + 63) >>> 6;
+    }
+
+    private Map<Clave, LocalDateTime> retencionesDe(String hotelId) {
+        return retenciones.computeIfAbsent(hotelId, id -> new ConcurrentHashMap<>());
+    }
+
+    private void marcar(Clave clave, int noche, boolean ocupada) {
+        Map<Integer, AtomicLongArray> delHotel = firmes.computeIfAbsent(clave.hotelId(), id -> new ConcurrentHashMap<>());
+        AtomicLongArray bits = ocupada
+                ? delHotel.computeIfAbsent(clave.roomNumber(), h -> new AtomicLongArray(palabras()))
+                : delHotel.get(clave.roomNumber());
+        if (bits == null) {
+            return;
+        }
+        long bit = 1L << noche;
+        bits.getAndUpdate(noche >>> 6, palabra -> ocupada ? palabra | bit : palabra & ~bit);
+    }
+
+    private void quitarDeReserva(String reservaId, Clave clave) {
+        Set<Clave> claves = porReserva.get(reservaId);
+        if (claves != null) {
+            claves.remove(clave);
+            if (claves.isEmpty()) {
+                porReserva.remove(reservaId);
+            }
+        }
+    }
+
+    // Algún bit encendido en [desde, hasta), de a palabras de 64 noches
+    private static boolean algunaEn(AtomicLongArray bits, int desde, int hasta) {
+        int primera = desde >>> 6;
+        int ultima = (hasta - 1) >>> 6;
+        for (int w = primera; w <= ultima; w++) {
+            long mascara = -1L;
+            if (w == primera) {
+                mascara &= -1L << desde;
+            }
+            if (w == ultima) {
+                mascara &= -1L >>> (63 - ((hasta - 1) & 63));
+            }
+            if ((bits.get(w) & mascara) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
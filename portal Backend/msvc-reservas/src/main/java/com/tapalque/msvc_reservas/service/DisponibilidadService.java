@@ -0,0 +1,242 @@
+package com.tapalque.msvc_reservas.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.tapalque.msvc_reservas.config.RabbitMQConfig;
+import com.tapalque.msvc_reservas.dto.OcupacionEventoDTO;
+import com.tapalque.msvc_reservas.entity.OcupacionNoche;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Índice de disponibilidad en memoria: las noches ocupadas de cada hotel para los próximos
+ * {@code reservas.disponibilidad.dias} días. Se carga del libro de ocupación al arrancar y se
+ * mantiene con las mismas escrituras de OcupacionService: alta, cambio de fechas, confirmación de
+ * pago y cancelación. Las retenciones vencen solas al leer.
+ *
+ * Con más de una réplica, cada escritura se publica en el exchange fanout reservas.ocupacion y las
+ * demás la aplican al recibirla. Si se pierde un aviso (Rabbit caído, réplica reiniciando), la
+ * recarga periódica ({@code reservas.disponibilidad.reconciliacion}) vuelve a leer el libro, que
+ * además avanza el horizonte. La exclusión de reservas la sigue garantizando el índice único del libro.
+ *
+ * Mientras no terminó la primera carga, o si se consulta fuera del horizonte, ocupadas() no responde
+ * y el llamador usa la consulta a Mongo.
+ */
+@Service
+public class DisponibilidadService {
+
+    private static final System.Logger logger = System.getLogger(DisponibilidadService.class.getName());
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    // Un solo hilo: los avisos salen en el orden de las escrituras (ocupar antes que soltar)
+    private final Scheduler avisos;
+    private final int dias;
+    // Identifica los avisos de esta réplica, que vuelven por su propia cola
+    private final String replica = UUID.randomUUID().toString();
+
+    private record Habitacion(String hotelId, Integer roomNumber) {}
+
+    private volatile CalendarioOcupacion calendario;
+    // Escrituras recibidas durante una recarga: se repiten sobre el calendario nuevo antes de publicarlo
+    private List<Consumer<CalendarioOcupacion>> pendientes;
+
+    @Autowired
+    public DisponibilidadService(ReactiveMongoTemplate mongoTemplate, RabbitTemplate rabbitTemplate,
+                                 @Value("${reservas.disponibilidad.dias:365}") int dias) {
+        this(mongoTemplate, rabbitTemplate, Schedulers.newSingle("disponibilidad-avisos", true), dias);
+    }
+
+    DisponibilidadService(ReactiveMongoTemplate mongoTemplate, RabbitTemplate rabbitTemplate, Scheduler avisos, int dias) {
+        this.mongoTemplate = mongoTemplate;
+        this.rabbitTemplate = rabbitTemplate;
+        this.avisos = avisos;
+        this.dias = dias;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        recargar();
+    }
+
+    @Scheduled(fixedDelayString = "${reservas.disponibilidad.reconciliacion:PT5M}",
+               initialDelayString = "${reservas.disponibilidad.reconciliacion:PT5M}")
+    public void recargar() {
+        reconstruir().subscribe(null, e -> logger.log(System.Logger.Level.ERROR,
+                () -> "Error cargando el índice de disponibilidad: " + e.getMessage()));
+    }
+
+    Mono<Void> reconstruir() {
+        return Mono.defer(() -> {
+            synchronized (this) {
+                if (pendientes != null) {
+                    return Mono.empty(); // ya hay una recarga en curso
+                }
+                pendientes = new ArrayList<>();
+            }
+            LocalDate inicio = LocalDate.now();
+            CalendarioOcupacion nuevo = new CalendarioOcupacion(inicio, dias);
+            long comienzo = System.nanoTime();
+            return mongoTemplate.find(Query.query(Criteria.where("noche").gte(inicio).lt(inicio.plusDays(dias))),
+                            OcupacionNoche.class)
+                    .doOnNext(nuevo::cargar)
+                    .count()
+                    .doOnNext(noches -> {
+                        publicar(nuevo);
+                        logger.log(System.Logger.Level.INFO, () -> "Índice de disponibilidad cargado: " + noches
+                                + " noches ocupadas en " + (System.nanoTime() - comienzo) / 1_000_000 + " ms");
+                    })
+                    .doOnError(e -> descartarPendientes())
+                    .then();
+        });
+    }
+
+    private synchronized void publicar(CalendarioOcupacion nuevo) {
+        pendientes.forEach(escritura -> escritura.accept(nuevo));
+        pendientes = null;
+        calendario = nuevo;
+    }
+
+    private synchronized void descartarPendientes() {
+        pendientes = null;
+    }
+
+    private synchronized void aplicar(Consumer<CalendarioOcupacion> escritura) {
+        if (calendario != null) {
+            escritura.accept(calendario);
+        }
+        if (pendientes != null) {
+            pendientes.add(escritura);
+        }
+    }
+
+    // Escrituras del libro de ocupación, una vez confirmadas en Mongo
+
+    void ocupar(String reservaId, String hotelId, Integer roomNumber, List<LocalDate> noches, LocalDateTime expiraEn) {
+        aplicarOcupar(reservaId, hotelId, roomNumber, noches, expiraEn);
+        avisar(new OcupacionEventoDTO(OcupacionEventoDTO.OCUPAR, replica, reservaId, hotelId, roomNumber, noches, expiraEn));
+    }
+
+    void soltar(String reservaId, List<OcupacionNoche> entradas) {
+        entradas.stream()
+                .collect(Collectors.groupingBy(o -> new Habitacion(o.getHotelId(), o.getRoomNumber()),
+                        Collectors.mapping(OcupacionNoche::getNoche, Collectors.toList())))
+                .forEach((habitacion, noches) -> {
+                    aplicarSoltar(reservaId, habitacion.hotelId(), habitacion.roomNumber(), noches);
+                    avisar(new OcupacionEventoDTO(OcupacionEventoDTO.SOLTAR, replica, reservaId,
+                            habitacion.hotelId(), habitacion.roomNumber(), noches, null));
+                });
+    }
+
+    void soltar(String reservaId) {
+        aplicar(c -> c.soltar(reservaId));
+        avisar(new OcupacionEventoDTO(OcupacionEventoDTO.SOLTAR, replica, reservaId, null, null, null, null));
+    }
+
+    void confirmar(String reservaId) {
+        aplicar(c -> c.confirmar(reservaId));
+        avisar(new OcupacionEventoDTO(OcupacionEventoDTO.CONFIRMAR, replica, reservaId, null, null, null, null));
+    }
+
+    /** Escritura hecha por otra réplica; las propias ya se aplicaron al hacerlas. */
+    public void aplicarRemoto(OcupacionEventoDTO evento) {
+        if (replica.equals(evento.getOrigen()) || evento.getReservaId() == null) {
+            return;
+        }
+        switch (evento.getTipo()) {
+            case OcupacionEventoDTO.OCUPAR -> aplicarOcupar(evento.getReservaId(), evento.getHotelId(),
+                    evento.getRoomNumber(), evento.getNoches(), evento.getExpiraEn());
+            case OcupacionEventoDTO.SOLTAR -> {
+                if (evento.getNoches() == null) {
+                    aplicar(c -> c.soltar(evento.getReservaId()));
+                } else {
+                    aplicarSoltar(evento.getReservaId(), evento.getHotelId(), evento.getRoomNumber(), evento.getNoches());
+                }
+            }
+            case OcupacionEventoDTO.CONFIRMAR -> aplicar(c -> c.confirmar(evento.getReservaId()));
+            default -> logger.log(System.Logger.Level.WARNING, () -> "Aviso de ocupación desconocido: " + evento.getTipo());
+        }
+    }
+
+    private void aplicarOcupar(String reservaId, String hotelId, Integer roomNumber, List<LocalDate> noches,
+                               LocalDateTime expiraEn) {
+        aplicar(c -> noches.forEach(noche ->
+                c.ocupar(reservaId, new CalendarioOcupacion.Clave(hotelId, roomNumber, noche), expiraEn)));
+    }
+
+    private void aplicarSoltar(String reservaId, String hotelId, Integer roomNumber, List<LocalDate> noches) {
+        aplicar(c -> noches.forEach(noche ->
+                c.soltar(reservaId, new CalendarioOcupacion.Clave(hotelId, roomNumber, noche))));
+    }
+
+    // Si Rabbit no responde, las demás réplicas lo ven en la próxima reconciliación
+    private void avisar(OcupacionEventoDTO evento) {
+        avisos.schedule(() -> {
+            try {
+                rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_OCUPACION, "", evento);
+            } catch (Exception e) {
+                logger.log(System.Logger.Level.WARNING, () -> "No se pudo avisar la ocupación de la reserva "
+                        + evento.getReservaId() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Números de habitación con alguna noche ocupada en [desde, hasta), o vacío si el índice no
+     * puede responder (todavía no cargó o el rango sale del horizonte).
+     */
+    public Optional<Set<Integer>> ocupadas(String hotelId, LocalDate desde, LocalDate hasta) {
+        CalendarioOcupacion actual = calendario;
+        if (actual == null || !actual.cubre(desde, hasta)) {
+            return Optional.empty();
+        }
+        return Optional.of(actual.ocupadas(hotelId, desde, hasta, LocalDateTime.now()));
+    }
+
+    /**
+     * Noches del mes, desde hoy, en las que no queda libre ninguna de las habitaciones indicadas.
+     * Fuera del horizonte se arma el calendario del mes leyendo el libro.
+     */
+    public Mono<List<LocalDate>> nochesCompletas(String hotelId, YearMonth mes, Collection<Integer> habitaciones) {
+        LocalDate hoy = LocalDate.now();
+        LocalDate desde = mes.atDay(1).isBefore(hoy) ? hoy : mes.atDay(1);
+        LocalDate hasta = mes.plusMonths(1).atDay(1);
+        if (!desde.isBefore(hasta) || habitaciones.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        CalendarioOcupacion actual = calendario;
+        if (actual != null && actual.cubre(desde, hasta)) {
+            return Mono.just(actual.nochesCompletas(hotelId, desde, hasta, habitaciones, LocalDateTime.now()));
+        }
+        CalendarioOcupacion delMes = new CalendarioOcupacion(desde, (int) ChronoUnit.DAYS.between(desde, hasta));
+        return mongoTemplate.find(Query.query(Criteria.where("hotelId").is(hotelId).and("noche").gte(desde).lt(hasta)),
+                        OcupacionNoche.class)
+                .doOnNext(delMes::cargar)
+                .then(Mono.fromSupplier(() -> delMes.nochesCompletas(hotelId, desde, hasta, habitaciones, LocalDateTime.now())));
+    }
+}
@@ -0,0 +1,275 @@
+package com.tapalque.msvc_reservas.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.tapalque.msvc_reservas.client.HospedajeClient;
+import com.tapalque.msvc_reservas.config.EmailOutboxProperties;
+import com.tapalque.msvc_reservas.entity.EmailSaliente;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Outbox de emails (colección emails_salientes). Quien notifica sólo guarda el mensaje; el envío
+ * por SMTP ocurre después, fuera del flujo que lo originó (p. ej. la confirmación de pago que
+ * llega por RabbitMQ). Los avisos a un hospedaje se guardan sin destinatario y acá se busca su
+ * email de notificación: si msvc-hosteleria no responde se reintenta como un envío fallido.
+ *
+ * Cada corrida toma un bloqueo sobre un lote de pendientes (así dos réplicas no mandan el mismo),
+ * lo parte en grupos de {@code porConexion} y cada grupo se manda en una sola conexión SMTP desde
+ * un pool de {@code trabajadores} hilos. Un mensaje que falla se reprograma con espera exponencial
+ * y, agotados los intentos, queda FALLIDO. La entrega es al menos una vez.
+ */
+@Service
+@ConditionalOnProperty(name = "spring.mail.username")
+public class EmailOutboxService {
+
+    private static final System.Logger logger = System.getLogger(EmailOutboxService.class.getName());
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final JavaMailSender mailSender;
+    private final HospedajeClient hospedajeClient;
+    private final EmailOutboxProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final String fromAddress;
+    private final String fromName;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Scheduler trabajadores;
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    public EmailOutboxService(ReactiveMongoTemplate mongoTemplate, JavaMailSender mailSender,
+                              HospedajeClient hospedajeClient,
+                              EmailOutboxProperties properties, MeterRegistry meterRegistry,
+                              @Value("${app.mail.from:tapalqueapp@gmail.com}") String fromAddress,
+                              @Value("${app.mail.from-name:TapalqueApp}") String fromName) {
+        this.mongoTemplate = mongoTemplate;
+        this.mailSender = mailSender;
+        this.hospedajeClient = hospedajeClient;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.fromAddress = fromAddress;
+        this.fromName = fromName;
+        this.trabajadores = Schedulers.newBoundedElastic(properties.getTrabajadores(), Integer.MAX_VALUE, "email-outbox");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        var indices = mongoTemplate.indexOps(EmailSaliente.class);
+        indices.createIndex(new Index().on("estado", Sort.Direction.ASC).on("proximoIntento", Sort.Direction.ASC))
+                .then(indices.createIndex(new Index().on("bloqueo", Sort.Direction.ASC)))
+                .then(indices.createIndex(new Index().on("enviado", Sort.Direction.ASC).expire(Duration.ofDays(30))))
+                .subscribe(null, e -> logger.log(System.Logger.Level.ERROR,
+                        () -> "Error creando los índices del outbox de emails: " + e.getMessage()));
+    }
+
+    @PreDestroy
+    public void detener() {
+        trabajadores.dispose();
+    }
+
+    /** Guarda el email para enviarlo en segundo plano. Si ya estaba encolado con ese id no hace nada. */
+    public Mono<Void> encolar(String id, String destinatario, String asunto, String cuerpo) {
+        return insertar(new EmailSaliente(id, destinatario, asunto, cuerpo));
+    }
+
+    /** Como {@link #encolar}, para el email de notificación del hospedaje, que se busca al enviar. */
+    public Mono<Void> encolarParaHospedaje(String id, String hospedajeId, String asunto, String cuerpo) {
+        return insertar(EmailSaliente.paraHospedaje(id, hospedajeId, asunto, cuerpo));
+    }
+
+    private Mono<Void> insertar(EmailSaliente email) {
+        return mongoTemplate.insert(email)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .then();
+    }
+
+    /** Si la corrida anterior sigue en curso, este tick se saltea. */
+    @Scheduled(fixedDelayString = "${reservas.email.poll-interval-ms:2000}")
+    public void enviarPendientes() {
+        if (!enCurso.compareAndSet(false, true)) {
+            return;
+        }
+        procesarPendientes()
+                .doFinally(signal -> enCurso.set(false))
+                .subscribe(null, e -> logger.log(System.Logger.Level.ERROR,
+                        () -> "Error procesando el outbox de emails: " + e.getMessage()));
+    }
+
+    /** Toma un lote de pendientes, lo envía y guarda el resultado. Devuelve cuántos se enviaron. */
+    Mono<Long> procesarPendientes() {
+        LocalDateTime ahora = LocalDateTime.now();
+        String bloqueo = instanceId + ":" + UUID.randomUUID();
+
+        Query candidatos = new Query(Criteria.where("estado").is(EmailSaliente.Estado.PENDIENTE)
+                .and("proximoIntento").lte(ahora)
+                .orOperator(Criteria.where("bloqueoHasta").is(null), Criteria.where("bloqueoHasta").lt(ahora)))
+                .limit(properties.getLote());
+        candidatos.fields().include("_id");
+
+        return mongoTemplate.find(candidatos, EmailSaliente.class)
+                .map(EmailSaliente::getId)
+                .collectList()
+                .flatMapMany(ids -> ids.isEmpty() ? Flux.empty() : tomar(ids, bloqueo, ahora))
+                .flatMap(email -> email.getDestinatario() != null ? Mono.just(email) : resolverDestinatario(email, ahora),
+                        Math.max(1, properties.getTrabajadores()))
+                .buffer(Math.max(1, properties.getPorConexion()))
+                .flatMap(grupo -> Mono.fromCallable(() -> enviar(grupo)).subscribeOn(trabajadores),
+                        Math.max(1, properties.getTrabajadores()))
+                .flatMapIterable(grupo -> grupo)
+                .concatMap(mongoTemplate::save)
+                .filter(email -> email.getEstado() == EmailSaliente.Estado.ENVIADO)
+                .count();
+    }
+
+    // El updateMulti sólo toma los que siguen libres y pendientes; otra réplica pudo ganarlos, o
+    // terminar de enviarlos (al guardar suelta el bloqueo) entre la búsqueda de candidatos y este update
+    private Flux<EmailSaliente> tomar(List<String> ids, String bloqueo, LocalDateTime ahora) {
+        Query libres = new Query(Criteria.where("_id").in(ids)
+                .and("estado").is(EmailSaliente.Estado.PENDIENTE)
+                .orOperator(Criteria.where("bloqueoHasta").is(null), Criteria.where("bloqueoHasta").lt(ahora)));
+        Update tomar = new Update().set("bloqueo", bloqueo).set("bloqueoHasta", ahora.plus(properties.getBloqueo()));
+        return mongoTemplate.updateMulti(libres, tomar, EmailSaliente.class)
+                .thenMany(mongoTemplate.find(Query.query(Criteria.where("bloqueo").is(bloqueo)), EmailSaliente.class));
+    }
+
+    /**
+     * Busca el email de notificación del hospedaje. Si no se puede (hosteleria caída) el email se
+     * reprograma; si el hospedaje no tiene email cargado no hay a quién mandarlo y queda FALLIDO.
+     * En ambos casos se guarda acá y no sigue al envío.
+     */
+    private Mono<EmailSaliente> resolverDestinatario(EmailSaliente email, LocalDateTime ahora) {
+        if (email.getHospedajeId() == null) {
+            descartar(email, "Sin destinatario ni hospedaje");
+            return mongoTemplate.save(email).then(Mono.empty());
+        }
+        return hospedajeClient.fetchEmailNotificacion(email.getHospedajeId())
+                .map(destinatario -> {
+                    email.setDestinatario(destinatario);
+                    return email;
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    descartar(email, "El hospedaje " + email.getHospedajeId() + " no tiene email de notificación");
+                    return mongoTemplate.save(email).then(Mono.empty());
+                }))
+                .onErrorResume(e -> {
+                    registrarError(email, e instanceof Exception ex ? ex : new IllegalStateException(e), ahora);
+                    return mongoTemplate.save(email).then(Mono.empty());
+                });
+    }
+
+    /**
+     * Manda el grupo en una sola conexión SMTP y deja en cada email el resultado (enviado,
+     * reprogramado o fallido). Bloquea: corre en el pool de trabajadores.
+     */
+    List<EmailSaliente> enviar(List<EmailSaliente> grupo) {
+        LocalDateTime ahora = LocalDateTime.now();
+        Map<MimeMessage, EmailSaliente> mensajes = new LinkedHashMap<>();
+        for (EmailSaliente email : grupo) {
+            try {
+                mensajes.put(armar(email), email);
+            } catch (Exception e) {
+                registrarError(email, e, ahora);
+            }
+        }
+        if (mensajes.isEmpty()) {
+            return grupo;
+        }
+
+        Map<Object, Exception> fallidos = Map.of();
+        Exception errorGeneral = null;
+        try {
+            mailSender.send(mensajes.keySet().toArray(MimeMessage[]::new));
+        } catch (MailSendException e) {
+            fallidos = e.getFailedMessages();
+            errorGeneral = fallidos.isEmpty() ? e : null;
+        } catch (Exception e) {
+            errorGeneral = e; // autenticación, configuración: no salió ninguno
+        }
+
+        for (Map.Entry<MimeMessage, EmailSaliente> entrada : mensajes.entrySet()) {
+            Exception error = errorGeneral != null ? errorGeneral : fallidos.get(entrada.getKey());
+            if (error == null) {
+                registrarEnvio(entrada.getValue(), ahora);
+            } else {
+                registrarError(entrada.getValue(), error, ahora);
+            }
+        }
+        return grupo;
+    }
+
+    private MimeMessage armar(EmailSaliente email) throws Exception {
+        MimeMessage mensaje = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mensaje, false, "UTF-8");
+        helper.setFrom(fromAddress, fromName);
+        helper.setTo(email.getDestinatario());
+        helper.setSubject(email.getAsunto());
+        helper.setText(email.getCuerpo(), false);
+        return mensaje;
+    }
+
+    private void registrarEnvio(EmailSaliente email, LocalDateTime ahora) {
+        email.setEstado(EmailSaliente.Estado.ENVIADO);
+        email.setEnviado(ahora);
+        email.setIntentos(email.getIntentos() + 1);
+        email.setBloqueo(null);
+        email.setBloqueoHasta(null);
+        meterRegistry.counter("reservas.email.enviados").increment();
+    }
+
+    private void descartar(EmailSaliente email, String motivo) {
+        email.setEstado(EmailSaliente.Estado.FALLIDO);
+        email.setUltimoError(motivo);
+        email.setBloqueo(null);
+        email.setBloqueoHasta(null);
+        meterRegistry.counter("reservas.email.fallidos").increment();
+        logger.log(System.Logger.Level.WARNING, () -> "Email " + email.getId() + " descartado: " + motivo);
+    }
+
+    private void registrarError(EmailSaliente email, Exception error, LocalDateTime ahora) {
+        int intentos = email.getIntentos() + 1;
+        email.setIntentos(intentos);
+        email.setUltimoError(Objects.toString(error.getMessage(), error.getClass().getSimpleName()));
+        email.setBloqueo(null);
+        email.setBloqueoHasta(null);
+        if (intentos >= properties.getMaxIntentos()) {
+            email.setEstado(EmailSaliente.Estado.FALLIDO);
+            meterRegistry.counter("reservas.email.fallidos").increment();
+            logger.log(System.Logger.Level.ERROR, () -> "Email " + email.getId() + " a " + email.getDestinatario()
+                    + " descartado después de " + intentos + " intentos: " + email.getUltimoError());
+        } else {
+            email.setProximoIntento(ahora.plus(properties.espera(intentos)));
+            meterRegistry.counter("reservas.email.reintentos").increment();
+            logger.log(System.Logger.Level.WARNING, () -> "Email " + email.getId() + " no enviado (intento "
+                    + intentos + "), se reintenta: " + email.getUltimoError());
+        }
+    }
+}
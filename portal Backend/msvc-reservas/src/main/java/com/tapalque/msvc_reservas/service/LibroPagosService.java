@@ -0,0 +1,127 @@
+package com.tapalque.msvc_reservas.service;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.tapalque.msvc_reservas.dto.CierreCajaDTO;
+import com.tapalque.msvc_reservas.entity.MovimientoPago;
+import com.tapalque.msvc_reservas.entity.Reservation;
+import com.tapalque.msvc_reservas.repository.ReservationRepositoryInterface;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Libro de pagos de los hospedajes (colección movimientos_pago): un documento por cada pago del
+ * historial de las reservas, indexado por (hotelId, fecha). El cierre de caja agrupa los pagos del
+ * período en Mongo en vez de traer las reservas completas y sumar su historial.
+ *
+ * Se escribe cada vez que se guarda una reserva con pagos. El libro copia el historial tal como
+ * quedó, así que también recoge las correcciones que el admin haga sobre el historial.
+ */
+@Service
+public class LibroPagosService {
+
+    private static final System.Logger logger = System.getLogger(LibroPagosService.class.getName());
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ReservationRepositoryInterface reservationRepository;
+
+    public LibroPagosService(ReactiveMongoTemplate mongoTemplate,
+                             ReservationRepositoryInterface reservationRepository) {
+        this.mongoTemplate = mongoTemplate;
+        this.reservationRepository = reservationRepository;
+    }
+
+    /** Crea los índices y, si el libro está vacío (primer arranque), lo carga con los pagos existentes. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        var indices = mongoTemplate.indexOps(MovimientoPago.class);
+        indices.createIndex(new Index().on("hotelId", Sort.Direction.ASC).on("fecha", Sort.Direction.ASC).named("hotel_fecha"))
+                .then(indices.createIndex(new Index().on("reservaId", Sort.Direction.ASC)))
+                .then(mongoTemplate.exists(new Query(), MovimientoPago.class))
+                .filter(hayMovimientos -> !hayMovimientos)
+                .flatMapMany(vacio -> reservationRepository.findWithPaymentHistory())
+                .concatMap(this::registrar)
+                .count()
+                .subscribe(reservas -> {
+                    if (reservas > 0) {
+                        logger.log(System.Logger.Level.INFO, () -> "Libro de pagos cargado con " + reservas + " reservas");
+                    }
+                }, e -> logger.log(System.Logger.Level.ERROR,
+                        () -> "Error inicializando el libro de pagos: " + e.getMessage()));
+    }
+
+    /** Deja en el libro los pagos de la reserva tal como están en su historial. */
+    public Mono<Void> registrar(Reservation reserva) {
+        if (reserva.getId() == null || reserva.getHotel() == null || reserva.getHotel().getHotelId() == null) {
+            return Mono.empty();
+        }
+        String hotelId = reserva.getHotel().getHotelId();
+        List<Reservation.PaymentRecord> historial = reserva.getPaymentHistory() != null
+                ? reserva.getPaymentHistory() : List.of();
+
+        Flux<MovimientoPago> movimientos = Flux.range(0, historial.size())
+                .filter(i -> historial.get(i) != null && historial.get(i).getDate() != null)
+                .map(i -> new MovimientoPago(hotelId, reserva.getId(), i, historial.get(i)));
+        // Pagos que ya no están en el historial (el admin lo corrigió)
+        Query sobrantes = Query.query(Criteria.where("reservaId").is(reserva.getId()).and("posicion").gte(historial.size()));
+
+        return movimientos.concatMap(mongoTemplate::save)
+                .then(mongoTemplate.remove(sobrantes, MovimientoPago.class))
+                .then();
+    }
+
+    /** Ids de las reservas del hotel con algún pago en [desde, hasta]. */
+    public Flux<String> reservasConPagos(String hotelId, LocalDateTime desde, LocalDateTime hasta) {
+        return mongoTemplate.findDistinct(Query.query(enPeriodo(hotelId, desde, hasta)), "reservaId",
+                MovimientoPago.class, String.class);
+    }
+
+    /** Totales del período por medio de pago, resueltos con un $group sobre el índice (hotelId, fecha). */
+    public Mono<CierreCajaDTO> cierre(String hotelId, LocalDateTime desde, LocalDateTime hasta) {
+        Aggregation agregacion = Aggregation.newAggregation(
+                Aggregation.match(enPeriodo(hotelId, desde, hasta)),
+                Aggregation.group("paymentType")
+                        .sum("monto").as("total")
+                        .count().as("pagos")
+                        .addToSet("reservaId").as("reservas"));
+
+        return mongoTemplate.aggregate(agregacion, MovimientoPago.class, Document.class)
+                .collectList()
+                .map(grupos -> {
+                    Map<String, Double> porMedioDePago = new LinkedHashMap<>();
+                    Set<String> reservas = new HashSet<>();
+                    double total = 0;
+                    int pagos = 0;
+                    for (Document grupo : grupos) {
+                        Object tipo = grupo.get("_id");
+                        double monto = grupo.get("total", Number.class).doubleValue();
+                        porMedioDePago.merge(tipo != null ? tipo.toString() : "OTRO", monto, Double::sum);
+                        reservas.addAll(grupo.getList("reservas", String.class));
+                        total += monto;
+                        pagos += grupo.get("pagos", Number.class).intValue();
+                    }
+                    return new CierreCajaDTO(desde, hasta, total, reservas.size(), pagos, porMedioDePago);
+                });
+    }
+
+    private static Criteria enPeriodo(String hotelId, LocalDateTime desde, LocalDateTime hasta) {
+        return Criteria.where("hotelId").is(hotelId).and("fecha").gte(desde).lte(hasta);
+    }
+}
@@ -0,0 +1,180 @@
+package com.tapalque.msvc_reservas.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.tapalque.msvc_reservas.dto.PaginaReservasDTO;
+import com.tapalque.msvc_reservas.entity.Reservation;
+import com.tapalque.msvc_reservas.enums.EstadoReserva;
+import com.tapalque.msvc_reservas.maper.dto.ReservationMapper;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Listados paginados de reservas de un hotel o de un cliente, con los filtros resueltos en Mongo.
+ *
+ * La paginación es por cursor (keyset) sobre (checkInDate, _id): cada página pide las reservas
+ * posteriores a la última de la anterior, así que el costo no crece con el número de página y
+ * una reserva nueva no corre las páginas ya leídas. Los índices compuestos que crea {@link #iniciar()}
+ * cubren el filtro y el orden; sólo se traen los campos del resumen.
+ */
+@Service
+public class ListadoReservasService {
+
+    private static final System.Logger logger = System.getLogger(ListadoReservasService.class.getName());
+
+    static final int LIMITE_POR_DEFECTO = 50;
+    static final int LIMITE_MAXIMO = 200;
+
+    private static final String CHECK_IN = "stayPeriod.checkInDate";
+
+    /** Filtros opcionales; null = sin filtrar. Las fechas de check-in son inclusivas. */
+    public record Filtro(LocalDate checkInDesde, LocalDate checkInHasta, EstadoReserva estado, Integer habitacion) {
+        public static final Filtro NINGUNO = new Filtro(null, null, null, null);
+    }
+
+    private record Cursor(LocalDateTime checkIn, String id) {}
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public ListadoReservasService(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        var indices = mongoTemplate.indexOps(Reservation.class);
+        indices.createIndex(new Index().named("hotel_checkin")
+                        .on("hotel.hotelId", Sort.Direction.ASC).on(CHECK_IN, Sort.Direction.ASC).on("_id", Sort.Direction.ASC))
+                .then(indices.createIndex(new Index().named("hotel_habitacion_checkin")
+                        .on("hotel.hotelId", Sort.Direction.ASC).on("roomNumber", Sort.Direction.ASC)
+                        .on(CHECK_IN, Sort.Direction.ASC).on("_id", Sort.Direction.ASC)))
+                .then(indices.createIndex(new Index().named("cliente_checkin")
+                        .on("customer.customerId", Sort.Direction.ASC).on(CHECK_IN, Sort.Direction.ASC).on("_id", Sort.Direction.ASC)))
+                .subscribe(null, e -> logger.log(System.Logger.Level.ERROR,
+                        () -> "Error creando los índices de los listados de reservas: " + e.getMessage()));
+    }
+
+    /** Reservas del hotel por fecha de check-in, de la más próxima a la más lejana. */
+    public Mono<PaginaReservasDTO> porHotel(String hotelId, Filtro filtro, String despues, Integer limite) {
+        return pagina(Criteria.where("hotel.hotelId").is(hotelId), filtro, despues, limite, Sort.Direction.ASC);
+    }
+
+    /** Reservas del cliente, de la más reciente a la más vieja. */
+    public Mono<PaginaReservasDTO> porCliente(String customerId, Filtro filtro, String despues, Integer limite) {
+        return pagina(Criteria.where("customer.customerId").is(customerId), filtro, despues, limite, Sort.Direction.DESC);
+    }
+
+    private Mono<PaginaReservasDTO> pagina(Criteria duenio, Filtro filtro, String despues, Integer limite,
+                                           Sort.Direction orden) {
+        Filtro f = filtro != null ? filtro : Filtro.NINGUNO;
+        if (f.checkInDesde() != null && f.checkInHasta() != null && f.checkInHasta().isBefore(f.checkInDesde())) {
+            return Mono.error(new IllegalArgumentException("checkInHasta no puede ser anterior a checkInDesde"));
+        }
+        Cursor cursor;
+        try {
+            cursor = despues == null || despues.isBlank() ? null : leerCursor(despues);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        int tamanio = limite == null ? LIMITE_POR_DEFECTO : Math.max(1, Math.min(LIMITE_MAXIMO, limite));
+
+        List<Criteria> condiciones = new ArrayList<>();
+        condiciones.add(duenio);
+        condiciones.addAll(filtros(f));
+        if (cursor != null) {
+            condiciones.add(despuesDe(cursor, orden));
+        }
+
+        // Uno de más para saber si hay otra página sin contar
+        Query query = new Query(new Criteria().andOperator(condiciones))
+                .with(Sort.by(orden, CHECK_IN, "_id"))
+                .limit(tamanio + 1);
+        query.fields()
+                .include("customer.customerId", "customer.customerName", "hotel", "stayPeriod", "roomNumber",
+                        "cantidadHuespedes", "totalPrice", "isActive", "isCancelled", "dateCreated",
+                        "payment.isPaid", "payment.paymentType", "payment.amountPaid", "payment.remainingAmount");
+
+        return mongoTemplate.find(query, Reservation.class)
+                .collectList()
+                .map(reservas -> {
+                    boolean hayMas = reservas.size() > tamanio;
+                    List<Reservation> pagina = hayMas ? reservas.subList(0, tamanio) : reservas;
+                    String siguiente = hayMas ? escribirCursor(pagina.get(pagina.size() - 1)) : null;
+                    return new PaginaReservasDTO(pagina.stream().map(ReservationMapper::toResumen).toList(), siguiente);
+                });
+    }
+
+    private static List<Criteria> filtros(Filtro f) {
+        List<Criteria> condiciones = new ArrayList<>();
+        if (f.checkInDesde() != null || f.checkInHasta() != null) {
+            Criteria checkIn = Criteria.where(CHECK_IN);
+            if (f.checkInDesde() != null) {
+                checkIn = checkIn.gte(f.checkInDesde().atStartOfDay());
+            }
+            if (f.checkInHasta() != null) {
+                checkIn = checkIn.lt(f.checkInHasta().plusDays(1).atStartOfDay());
+            }
+            condiciones.add(checkIn);
+        } else {
+            // Las reservas sin fechas no entran en el orden del cursor
+            condiciones.add(Criteria.where(CHECK_IN).ne(null));
+        }
+        if (f.habitacion() != null) {
+            condiciones.add(Criteria.where("roomNumber").is(f.habitacion()));
+        }
+        if (f.estado() != null) {
+            switch (f.estado()) {
+                case CANCELADA -> condiciones.add(Criteria.where("isCancelled").is(true));
+                case PAGADA -> {
+                    condiciones.add(Criteria.where("isCancelled").ne(true));
+                    condiciones.add(Criteria.where("payment.isPaid").is(true));
+                }
+                case PENDIENTE -> {
+                    condiciones.add(Criteria.where("isCancelled").ne(true));
+                    condiciones.add(Criteria.where("payment.isPaid").ne(true));
+                }
+            }
+        }
+        return condiciones;
+    }
+
+    private static Criteria despuesDe(Cursor cursor, Sort.Direction orden) {
+        boolean asc = orden == Sort.Direction.ASC;
+        Criteria fecha = asc ? Criteria.where(CHECK_IN).gt(cursor.checkIn()) : Criteria.where(CHECK_IN).lt(cursor.checkIn());
+        Criteria id = asc ? Criteria.where("_id").gt(cursor.id()) : Criteria.where("_id").lt(cursor.id());
+        return new Criteria().orOperator(fecha, new Criteria().andOperator(Criteria.where(CHECK_IN).is(cursor.checkIn()), id));
+    }
+
+    static String escribirCursor(Reservation r) {
+        String valor = r.getStayPeriod().getCheckInDate() + "|" + r.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor leerCursor(String cursor) {
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = valor.indexOf('|');
+            if (separador <= 0 || separador == valor.length() - 1) {
+                throw new IllegalArgumentException("Cursor de página inválido");
+            }
+            return new Cursor(LocalDateTime.parse(valor.substring(0, separador)), valor.substring(separador + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor de página inválido", e);
+        }
+    }
+}
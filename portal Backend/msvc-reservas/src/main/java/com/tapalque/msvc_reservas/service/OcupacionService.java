@@ -0,0 +1,191 @@
+package com.tapalque.msvc_reservas.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.client.result.DeleteResult;
+import com.tapalque.msvc_reservas.entity.OcupacionNoche;
+import com.tapalque.msvc_reservas.entity.Reservation;
+import com.tapalque.msvc_reservas.repository.ReservationRepositoryInterface;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Libro de ocupación por habitación y noche (colección ocupacion_noches).
+ * Reservar es un único insert ordenado de las noches de la estadía: si alguna ya está ocupada el
+ * índice único lo rechaza con duplicate key, se borran las noches que sí entraron y la reserva
+ * no se crea. No hay locks: dos altas para la misma habitación y noche compiten en Mongo y gana una.
+ *
+ * Las reservas online pendientes de pago ocupan con vencimiento (RETENCION_PENDIENTE); si un
+ * conflicto choca con una retención vencida que el TTL todavía no borró, se libera y se reintenta.
+ * Cada escritura confirmada se refleja en el índice de DisponibilidadService.
+ */
+@Service
+public class OcupacionService {
+
+    private static final System.Logger logger = System.getLogger(OcupacionService.class.getName());
+
+    public static final Duration RETENCION_PENDIENTE = Duration.ofMinutes(5);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ReservationRepositoryInterface reservationRepository;
+    private final DisponibilidadService disponibilidadService;
+
+    public OcupacionService(ReactiveMongoTemplate mongoTemplate,
+                            ReservationRepositoryInterface reservationRepository,
+                            DisponibilidadService disponibilidadService) {
+        this.mongoTemplate = mongoTemplate;
+        this.reservationRepository = reservationRepository;
+        this.disponibilidadService = disponibilidadService;
+    }
+
+    /**
+     * Crea los índices (la exclusión depende del único) y carga en el libro las reservas vigentes
+     * que todavía no están, p. ej. las creadas antes de que existiera.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        crearIndices()
+                .thenMany(reservationRepository.findActiveWithCheckOutAfter(LocalDateTime.now()))
+                .concatMap(reserva -> sincronizar(reserva)
+                        .onErrorResume(e -> {
+                            logger.log(System.Logger.Level.WARNING, () -> "Reserva " + reserva.getId()
+                                    + " en conflicto al cargar el libro de ocupación: " + e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe(null, e -> logger.log(System.Logger.Level.ERROR,
+                        () -> "Error inicializando el libro de ocupación: " + e.getMessage()));
+    }
+
+    Mono<Void> crearIndices() {
+        var indices = mongoTemplate.indexOps(OcupacionNoche.class);
+        return indices.createIndex(new Index()
+                        .on("hotelId", Sort.Direction.ASC)
+                        .on("roomNumber", Sort.Direction.ASC)
+                        .on("noche", Sort.Direction.ASC)
+                        .unique()
+                        .named("hotel_habitacion_noche"))
+                .then(indices.createIndex(new Index().on("expiraEn", Sort.Direction.ASC).expire(Duration.ZERO)))
+                .then(indices.createIndex(new Index().on("reservaId", Sort.Direction.ASC)))
+                .then();
+    }
+
+    /**
+     * Ocupa las noches [checkIn, checkOut) de la habitación para una reserva nueva.
+     * Falla con IllegalStateException si alguna noche ya está tomada.
+     */
+    public Mono<Void> reservar(String reservaId, String hotelId, Integer roomNumber,
+                               LocalDate checkIn, LocalDate checkOut, LocalDateTime expiraEn) {
+        return insertar(reservaId, hotelId, roomNumber, noches(checkIn, checkOut), expiraEn, true);
+    }
+
+    /**
+     * Ajusta el libro a la reserva tal como quedó (habitación, fechas, estado): ocupa las noches
+     * nuevas, suelta las que ya no corresponden y, si la reserva está activa, vuelve firme la ocupación.
+     */
+    public Mono<Void> sincronizar(Reservation reserva) {
+        if (Boolean.TRUE.equals(reserva.getIsCancelled()) || reserva.getHotel() == null
+                || reserva.getRoomNumber() == null || reserva.getStayPeriod() == null
+                || reserva.getStayPeriod().getCheckInDate() == null || reserva.getStayPeriod().getCheckOutDate() == null) {
+            return liberar(reserva.getId());
+        }
+        String hotelId = reserva.getHotel().getHotelId();
+        Integer roomNumber = reserva.getRoomNumber();
+        boolean firme = Boolean.TRUE.equals(reserva.getIsActive());
+        List<LocalDate> deseadas = noches(reserva.getStayPeriod().getCheckInDate().toLocalDate(),
+                reserva.getStayPeriod().getCheckOutDate().toLocalDate());
+
+        return mongoTemplate.find(Query.query(Criteria.where("reservaId").is(reserva.getId())), OcupacionNoche.class)
+                .collectList()
+                .flatMap(propias -> {
+                    Set<LocalDate> tomadas = propias.stream()
+                            .filter(o -> hotelId.equals(o.getHotelId()) && roomNumber.equals(o.getRoomNumber()))
+                            .map(OcupacionNoche::getNoche)
+                            .collect(Collectors.toSet());
+                    List<LocalDate> faltantes = deseadas.stream().filter(n -> !tomadas.contains(n)).toList();
+                    List<OcupacionNoche> sobrantes = propias.stream()
+                            .filter(o -> !hotelId.equals(o.getHotelId()) || !roomNumber.equals(o.getRoomNumber())
+                                    || !deseadas.contains(o.getNoche()))
+                            .toList();
+
+                    Mono<Void> ocupar = faltantes.isEmpty()
+                            ? Mono.empty()
+                            : insertar(reserva.getId(), hotelId, roomNumber, faltantes, firme ? null : vencimiento(), true);
+                    Mono<Void> soltar = sobrantes.isEmpty()
+                            ? Mono.empty()
+                            : mongoTemplate.remove(Query.query(Criteria.where("_id").in(sobrantes.stream().map(OcupacionNoche::getId).toList())),
+                                            OcupacionNoche.class)
+                                    .then(Mono.fromRunnable(() -> disponibilidadService.soltar(reserva.getId(), sobrantes)));
+                    Mono<Void> confirmar = firme
+                            ? mongoTemplate.updateMulti(
+                                    Query.query(Criteria.where("reservaId").is(reserva.getId()).and("expiraEn").exists(true)),
+                                    new Update().unset("expiraEn"), OcupacionNoche.class)
+                                    .then(Mono.fromRunnable(() -> disponibilidadService.confirmar(reserva.getId())))
+                            : Mono.empty();
+                    return ocupar.then(soltar).then(confirmar);
+                });
+    }
+
+    /** Suelta todas las noches de la reserva (cancelación, pago rechazado, baja). */
+    public Mono<Void> liberar(String reservaId) {
+        if (reservaId == null) {
+            return Mono.empty();
+        }
+        return mongoTemplate.remove(Query.query(Criteria.where("reservaId").is(reservaId)), OcupacionNoche.class)
+                .then(Mono.fromRunnable(() -> disponibilidadService.soltar(reservaId)));
+    }
+
+    public static LocalDateTime vencimiento() {
+        return LocalDateTime.now().plus(RETENCION_PENDIENTE);
+    }
+
+    /** Noches de una estadía: desde el día del check-in hasta el anterior al check-out. */
+    static List<LocalDate> noches(LocalDate checkIn, LocalDate checkOut) {
+        return checkIn.datesUntil(checkOut).toList();
+    }
+
+    private Mono<Void> insertar(String reservaId, String hotelId, Integer roomNumber, List<LocalDate> noches,
+                                LocalDateTime expiraEn, boolean reintentar) {
+        List<OcupacionNoche> entradas = noches.stream()
+                .map(noche -> new OcupacionNoche(hotelId, roomNumber, noche, reservaId, expiraEn))
+                .toList();
+        return mongoTemplate.insert(entradas, OcupacionNoche.class)
+                .then(Mono.<Void>fromRunnable(() -> disponibilidadService.ocupar(reservaId, hotelId, roomNumber, noches, expiraEn)))
+                .onErrorResume(DuplicateKeyException.class, e -> compensar(reservaId, noches)
+                        .then(reintentar ? liberarVencidas(hotelId, roomNumber, noches) : Mono.just(0L))
+                        .flatMap(liberadas -> liberadas > 0
+                                ? insertar(reservaId, hotelId, roomNumber, noches, expiraEn, false)
+                                : Mono.error(new IllegalStateException(
+                                        "La habitación " + roomNumber + " no está disponible para las fechas seleccionadas"))));
+    }
+
+    // El insert es ordenado: las noches anteriores a la duplicada quedaron escritas y hay que borrarlas
+    private Mono<Void> compensar(String reservaId, List<LocalDate> noches) {
+        return mongoTemplate.remove(Query.query(Criteria.where("reservaId").is(reservaId).and("noche").in(noches)),
+                OcupacionNoche.class).then();
+    }
+
+    // Retenciones vencidas que el TTL de Mongo (pasa cada ~60 s) todavía no borró
+    private Mono<Long> liberarVencidas(String hotelId, Integer roomNumber, List<LocalDate> noches) {
+        return mongoTemplate.remove(Query.query(Criteria.where("hotelId").is(hotelId)
+                        .and("roomNumber").is(roomNumber)
+                        .and("noche").in(noches)
+                        .and("expiraEn").lt(LocalDateTime.now())), OcupacionNoche.class)
+                .map(DeleteResult::getDeletedCount);
+    }
+}
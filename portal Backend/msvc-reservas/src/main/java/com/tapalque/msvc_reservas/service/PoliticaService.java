@@ -6,4 +6,6 @@ import reactor.core.publisher.Mono;
 public interface PoliticaService {
     Mono<PoliticaGlobal> obtenerPolitica(String hotelId);
     Mono<PoliticaGlobal> actualizarPolitica(String hotelId, Boolean reservasHabilitadas, Boolean politicaFdsActiva, Integer estadiaMinima, String actualizadoPor);
+    /** Descarta la política cacheada del hospedaje (null = todas). */
+    void invalidarCache(String hotelId);
 }
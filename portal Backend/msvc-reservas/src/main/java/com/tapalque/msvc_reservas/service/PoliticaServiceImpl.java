@@ -1,32 +1,48 @@
 package com.tapalque.msvc_reservas.service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.tapalque.msvc_reservas.config.RabbitMQConfig;
+import com.tapalque.msvc_reservas.dto.CatalogoEventoDTO;
 import com.tapalque.msvc_reservas.entity.PoliticaGlobal;
 import com.tapalque.msvc_reservas.repository.PoliticaRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
 public class PoliticaServiceImpl implements PoliticaService {
 
     private final PoliticaRepository politicaRepository;
+    private final RabbitTemplate rabbitTemplate;
+    // Cada alta de reserva y cada consulta de la política leen de acá; la política cambia muy de vez en cuando
+    private final CacheReactiva<PoliticaGlobal> politicas;
 
-    public PoliticaServiceImpl(PoliticaRepository politicaRepository) {
+    public PoliticaServiceImpl(PoliticaRepository politicaRepository, RabbitTemplate rabbitTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${reservas.cache.refresco:5m}") Duration refresco,
+                               @Value("${reservas.cache.vencimiento:1h}") Duration vencimiento) {
         this.politicaRepository = politicaRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.politicas = new CacheReactiva<>("reservas.politicas", this::leerPolitica,
+                refresco, vencimiento, 1000, meterRegistry);
     }
 
     @Override
     public Mono<PoliticaGlobal> obtenerPolitica(String hotelId) {
-        return politicaRepository.findByHotelId(hotelId)
-                .switchIfEmpty(crearPoliticaDefecto(hotelId));
+        return politicas.get(hotelId);
     }
 
     @Override
     public Mono<PoliticaGlobal> actualizarPolitica(String hotelId, Boolean reservasHabilitadas, Boolean politicaFdsActiva, Integer estadiaMinima, String actualizadoPor) {
-        return obtenerPolitica(hotelId)
+        // Se modifica una copia leída de Mongo, nunca la instancia compartida de la cache
+        return leerPolitica(hotelId)
                 .flatMap(politica -> {
                     if (reservasHabilitadas != null) politica.setReservasHabilitadas(reservasHabilitadas);
                     if (politicaFdsActiva != null) politica.setPoliticaFdsActiva(politicaFdsActiva);
@@ -39,9 +55,40 @@ public class PoliticaServiceImpl implements PoliticaService {
                     politica.setFechaActualizacion(LocalDateTime.now());
                     politica.setActualizadoPor(actualizadoPor);
                     return politicaRepository.save(politica);
+                })
+                .flatMap(guardada -> {
+                    politicas.invalidar(hotelId);
+                    return avisarCambio(hotelId).thenReturn(guardada);
                 });
     }
 
+    @Override
+    public void invalidarCache(String hotelId) {
+        if (hotelId == null) {
+            politicas.invalidarTodo();
+        } else {
+            politicas.invalidar(hotelId);
+        }
+    }
+
+    private Mono<PoliticaGlobal> leerPolitica(String hotelId) {
+        return politicaRepository.findByHotelId(hotelId)
+                .switchIfEmpty(crearPoliticaDefecto(hotelId));
+    }
+
+    // Las demás réplicas invalidan su cache al recibirlo; si Rabbit no responde, la vencen por tiempo
+    private Mono<Void> avisarCambio(String hotelId) {
+        return Mono.<Void>fromRunnable(() -> {
+                    try {
+                        rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_CATALOGO, "",
+                                new CatalogoEventoDTO(CatalogoEventoDTO.POLITICA, hotelId));
+                    } catch (Exception e) {
+                        System.err.println("No se pudo avisar el cambio de política del hospedaje " + hotelId + ": " + e.getMessage());
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
     private Mono<PoliticaGlobal> crearPoliticaDefecto(String hotelId) {
         PoliticaGlobal defecto = new PoliticaGlobal();
         defecto.setHotelId(hotelId);
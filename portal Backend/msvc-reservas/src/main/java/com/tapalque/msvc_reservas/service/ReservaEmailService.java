@@ -1,46 +1,68 @@
 package com.tapalque.msvc_reservas.service;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.Template;
 import com.tapalque.msvc_reservas.dto.ReservationDTO;
 
-import jakarta.mail.internet.MimeMessage;
+import reactor.core.publisher.Mono;
 
+/**
+ * Emails de reservas. Las plantillas (resources/templates/email) se compilan una vez al arrancar;
+ * cada aviso se arma con la plantilla y se deja en el outbox, que lo envía en segundo plano.
+ */
 @Service
 @ConditionalOnProperty(name = "spring.mail.username")
 public class ReservaEmailService {
 
-    private final JavaMailSender mailSender;
+    private static final DateTimeFormatter FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
-    @Value("${app.mail.from:tapalqueapp@gmail.com}")
-    private String fromAddress;
+    private final EmailOutboxService outbox;
+    private final Template nuevaReserva;
 
-    @Value("${app.mail.from-name:TapalqueApp}")
-    private String fromName;
+    public ReservaEmailService(EmailOutboxService outbox) {
+        this.outbox = outbox;
+        this.nuevaReserva = compilar("templates/email/nueva-reserva.mustache");
+    }
 
-    public ReservaEmailService(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
+    /** Aviso al hospedaje de la reserva; su email de notificación lo busca el outbox al enviar. */
+    public Mono<Void> notificarNuevaReserva(ReservationDTO reserva) {
+        if (reserva.getHotel() == null || reserva.getHotel().getHotelId() == null) return Mono.empty();
+        return outbox.encolarParaHospedaje("nueva-reserva:" + reserva.getId(), reserva.getHotel().getHotelId(),
+                "Nueva reserva — " + hotelName(reserva), cuerpoNuevaReserva(reserva));
     }
 
-    public void notificarNuevaReserva(ReservationDTO reserva, String adminEmail) {
-        if (adminEmail == null || adminEmail.isBlank()) return;
-        try {
-            MimeMessage msg = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(msg, false, "UTF-8");
-            helper.setFrom(fromAddress, fromName);
-            helper.setTo(adminEmail);
-            helper.setSubject("Nueva reserva — " + hotelName(reserva));
-            helper.setText(buildBody(reserva), false);
-            mailSender.send(msg);
-        } catch (Exception e) {
-            System.err.println("Error al enviar email de nueva reserva: " + e.getMessage());
+    String cuerpoNuevaReserva(ReservationDTO r) {
+        Map<String, Object> datos = new HashMap<>();
+        datos.put("hotel", hotelName(r));
+        datos.put("id", r.getId());
+        if (r.getCustomer() != null) {
+            datos.put("huesped", String.valueOf(r.getCustomer().getCustomerName()));
+            datos.put("email", r.getCustomer().getCustomerEmail());
+            datos.put("telefono", r.getCustomer().getCustomerPhone());
+            datos.put("dni", r.getCustomer().getCustomerDni());
+        }
+        if (r.getStayPeriod() != null) {
+            datos.put("checkIn", r.getStayPeriod().getCheckInDate().format(FECHA));
+            datos.put("checkOut", r.getStayPeriod().getCheckOutDate().format(FECHA));
         }
+        if (r.getRoomNumber() != null) datos.put("habitacion", r.getRoomNumber().toString());
+        if (r.getCantidadHuespedes() != null) datos.put("huespedes", r.getCantidadHuespedes().toString());
+        if (r.getTotalPrice() != null) datos.put("total", String.format("%.2f", r.getTotalPrice()));
+        if (r.getNotas() != null && !r.getNotas().isBlank()) datos.put("notas", r.getNotas());
+        return nuevaReserva.execute(datos);
     }
 
     private String hotelName(ReservationDTO r) {
@@ -49,36 +71,16 @@ public class ReservaEmailService {
                 : "Hospedaje";
     }
 
-    private String buildBody(ReservationDTO r) {
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        StringBuilder sb = new StringBuilder();
-        sb.append("Se registró una nueva reserva en ").append(hotelName(r)).append(".\n\n");
-
-        if (r.getCustomer() != null) {
-            sb.append("— Huésped: ").append(r.getCustomer().getCustomerName()).append("\n");
-            if (r.getCustomer().getCustomerEmail() != null)
-                sb.append("  Email: ").append(r.getCustomer().getCustomerEmail()).append("\n");
-            if (r.getCustomer().getCustomerPhone() != null)
-                sb.append("  Teléfono: ").append(r.getCustomer().getCustomerPhone()).append("\n");
-            if (r.getCustomer().getCustomerDni() != null)
-                sb.append("  DNI: ").append(r.getCustomer().getCustomerDni()).append("\n");
+    // Texto plano: sin escapar HTML; los campos ausentes no imprimen su línea
+    private static Template compilar(String plantilla) {
+        try (Reader reader = new InputStreamReader(new ClassPathResource(plantilla).getInputStream(), StandardCharsets.UTF_8)) {
+            return Mustache.compiler()
+                    .escapeHTML(false)
+                    .defaultValue("")
+                    .emptyStringIsFalse(true)
+                    .compile(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer la plantilla " + plantilla, e);
         }
-
-        if (r.getStayPeriod() != null) {
-            sb.append("\n— Check-in:  ").append(r.getStayPeriod().getCheckInDate().format(fmt)).append("\n");
-            sb.append("— Check-out: ").append(r.getStayPeriod().getCheckOutDate().format(fmt)).append("\n");
-        }
-
-        if (r.getRoomNumber() != null)
-            sb.append("— Habitación: ").append(r.getRoomNumber()).append("\n");
-        if (r.getCantidadHuespedes() != null)
-            sb.append("— Huéspedes: ").append(r.getCantidadHuespedes()).append("\n");
-        if (r.getTotalPrice() != null)
-            sb.append("— Total: $").append(String.format("%.2f", r.getTotalPrice())).append("\n");
-        if (r.getNotas() != null && !r.getNotas().isBlank())
-            sb.append("— Notas: ").append(r.getNotas()).append("\n");
-
-        sb.append("\nID de reserva: ").append(r.getId());
-        return sb.toString();
     }
 }
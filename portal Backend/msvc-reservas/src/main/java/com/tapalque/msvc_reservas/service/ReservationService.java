@@ -2,6 +2,7 @@ package com.tapalque.msvc_reservas.service;
 
 import java.time.LocalDateTime;
 
+import com.tapalque.msvc_reservas.dto.CierreCajaDTO;
 import com.tapalque.msvc_reservas.dto.PagoEventoDTO;
 import com.tapalque.msvc_reservas.dto.ReservationDTO;
 
@@ -18,9 +19,6 @@ public interface ReservationService {
     public Flux<ReservationDTO> getReservationsByCustomer(String customerId);
     public void cleanUnpaidReservations();
 
-    // Cancela reservas online abandonadas (MercadoPago, sin pago, sin evento recibido) tras 5 minutos
-    public void cancelarReservasOnlineAbandonadas();
-
     // limpieza de reservas pagadas con más de 3 meses
     public void cleanOldPaidReservations();
 
@@ -38,10 +36,16 @@ public interface ReservationService {
     public Flux<ReservationDTO> getReservationsByHotelAndStayOverlapIncludingPending(
             String hotelId, LocalDateTime desde, LocalDateTime hasta);
 
+    // Números de habitación ocupados (activas + pendientes de pago) en el rango, leyendo sólo habitación y fechas
+    public Flux<Integer> getOccupiedRoomNumbers(String hotelId, LocalDateTime desde, LocalDateTime hasta);
+
     // Reservas con pagos registrados en un rango de fechas (para cierre del día)
     public Flux<ReservationDTO> getReservationsWithPaymentsInRange(
             String hotelId, LocalDateTime desde, LocalDateTime hasta);
 
+    // Totales por medio de pago de lo cobrado en el rango (cierre del día)
+    public Mono<CierreCajaDTO> getCierreCaja(String hotelId, LocalDateTime desde, LocalDateTime hasta);
+
     // Métodos para RabbitMQ - confirmación de pagos
     void confirmarPagoReserva(String reservaId, PagoEventoDTO evento);
     void rechazarPagoReserva(String reservaId, PagoEventoDTO evento);
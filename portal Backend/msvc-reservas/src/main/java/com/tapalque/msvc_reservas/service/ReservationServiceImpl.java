@@ -7,15 +7,14 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
 
-import org.redisson.api.RLockReactive;
-import org.redisson.api.RedissonClient;
+import org.bson.types.ObjectId;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.tapalque.msvc_reservas.client.HospedajeClient;
 import com.tapalque.msvc_reservas.client.MercadoPagoClient;
+import com.tapalque.msvc_reservas.dto.CierreCajaDTO;
 import com.tapalque.msvc_reservas.dto.HabitacionDTO;
 import com.tapalque.msvc_reservas.dto.PagoEventoDTO;
 import com.tapalque.msvc_reservas.dto.ReservationDTO;
@@ -23,6 +22,7 @@ import com.tapalque.msvc_reservas.entity.Reservation;
 import com.tapalque.msvc_reservas.enums.PaymentType;
 import com.tapalque.msvc_reservas.maper.dto.ReservationMapper;
 import com.tapalque.msvc_reservas.repository.ReservationRepositoryInterface;
+import com.tapalque.msvc_reservas.repository.projection.ReservaEstadiaView;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -35,7 +35,9 @@ public class ReservationServiceImpl implements ReservationService {
     private final HospedajeClient hospedajeClient;
     private final MercadoPagoClient mercadoPagoClient;
     private final PoliticaService politicaService;
-    private final RedissonClient redissonClient;
+    private final OcupacionService ocupacionService;
+    private final LibroPagosService libroPagosService;
+    private final RetencionService retencionService;
 
     @org.springframework.beans.factory.annotation.Autowired(required = false)
     private ReservaEmailService emailService;
@@ -46,13 +48,17 @@ public class ReservationServiceImpl implements ReservationService {
                                   HospedajeClient hospedajeClient,
                                   MercadoPagoClient mercadoPagoClient,
                                   PoliticaService politicaService,
-                                  RedissonClient redissonClient) {
+                                  OcupacionService ocupacionService,
+                                  LibroPagosService libroPagosService,
+                                  RetencionService retencionService) {
         this.reservationRepository = reservationRepository;
         this.adminNotificationService = adminNotificationService;
         this.hospedajeClient = hospedajeClient;
         this.mercadoPagoClient = mercadoPagoClient;
         this.politicaService = politicaService;
-        this.redissonClient = redissonClient;
+        this.ocupacionService = ocupacionService;
+        this.libroPagosService = libroPagosService;
+        this.retencionService = retencionService;
     }
 
     @Override
@@ -182,31 +188,22 @@ public class ReservationServiceImpl implements ReservationService {
                             reservation.setIsActive(false);
                         }
 
-                        String lockKey = "lock:reserva:" + hotelId + ":" + roomNumber;
-                        RLockReactive lock = redissonClient.reactive().getLock(lockKey);
-
-                        return lock.tryLock(5, 10, TimeUnit.SECONDS)
-                            .flatMap(acquired -> {
-                                if (!acquired) {
-                                    return Mono.error(new IllegalStateException(
-                                        "La habitación está siendo procesada por otro usuario. Intentá de nuevo en unos segundos."));
-                                }
-                                LocalDateTime pendingLimit = LocalDateTime.now().minusMinutes(5);
-                                return reservationRepository
-                                    .findConflictingRoomReservations(hotelId, roomNumber, checkIn, checkOut, pendingLimit)
-                                    .hasElements()
-                                    .flatMap(hasConflict -> {
-                                        if (hasConflict) {
-                                            return Mono.error(new IllegalStateException(
-                                                "La habitación " + roomNumber + " no está disponible para las fechas seleccionadas"));
-                                        }
-                                        // Nota: No notificamos aquí. La notificación se envía cuando se confirma el pago en confirmarPagoReserva()
-                                        return reservationRepository.save(reservation).map(ReservationMapper::toDto);
-                                    })
-                                    .doFinally(signal -> lock.unlock()
-                                        .onErrorResume(e -> Mono.empty())
-                                        .subscribe());
-                            });
+                        // El id se asigna acá para anotar las noches en el libro de ocupación antes de guardar
+                        reservation.setId(new ObjectId().toHexString());
+                        // Online: la habitación queda retenida 5 minutos mientras se completa el pago
+                        LocalDateTime retencion = esReservaManual ? null : OcupacionService.vencimiento();
+
+                        // Nota: No notificamos aquí. La notificación se envía cuando se confirma el pago en confirmarPagoReserva()
+                        return ocupacionService.reservar(reservation.getId(), hotelId, roomNumber,
+                                        checkIn.toLocalDate(), checkOut.toLocalDate(), retencion)
+                            .then(Mono.defer(() -> reservationRepository.save(reservation)
+                                .onErrorResume(e -> ocupacionService.liberar(reservation.getId()).then(Mono.error(e)))))
+                            .flatMap(this::registrarPagos)
+                            // Online: si no llega el pago, la reserva se cancela cuando vence la retención
+                            .flatMap(saved -> retencion == null
+                                    ? Mono.just(saved)
+                                    : retencionService.programar(saved.getId()).thenReturn(saved))
+                            .map(ReservationMapper::toDto);
                     })
                     .orElse(Mono.error(new IllegalArgumentException(
                         "Habitación número " + roomNumber + " no encontrada en el hospedaje")));
@@ -215,8 +212,9 @@ public class ReservationServiceImpl implements ReservationService {
 
     @Override
     public Flux<ReservationDTO> getReservationById(String id) {
-    return reservationRepository.findAll()
-            .filter(reservation -> reservation.getId().equals(id))
+    // Lectura por _id (índice); se mantiene Flux porque /by-id responde un array
+    return reservationRepository.findById(id)
+            .flux()
             .map(ReservationMapper::toDto);
 }
 
@@ -231,7 +229,10 @@ public Mono<ReservationDTO> updateReservation(ReservationDTO reservationDto) {
             .flatMap(existing -> {
                 Reservation updated = ReservationMapper.toEntity(reservationDto);
                 updated.setDateUpdated(LocalDateTime.now());
-                return reservationRepository.save(updated);
+                // Cambio de habitación o fechas: primero se ocupan las noches nuevas, si están libres
+                return ocupacionService.sincronizar(updated)
+                        .then(Mono.defer(() -> reservationRepository.save(updated)))
+                        .flatMap(this::registrarPagos);
             })
             .map(ReservationMapper::toDto)
             .doOnSuccess(dto -> {
@@ -247,7 +248,8 @@ public Mono<ReservationDTO> updateReservation(ReservationDTO reservationDto) {
                     reservation.setIsCancelled(true);
                     reservation.setIsActive(false);
                     reservation.setDateUpdated(LocalDateTime.now());
-                    return reservationRepository.save(reservation);
+                    return reservationRepository.save(reservation)
+                            .flatMap(saved -> ocupacionService.liberar(saved.getId()).thenReturn(saved));
                 })
                 .doOnSuccess(saved -> {
                     if (saved != null) {
@@ -272,28 +274,13 @@ public Mono<ReservationDTO> updateReservation(ReservationDTO reservationDto) {
         return reservationRepository.findByHotel_HotelId(hotelId).map(ReservationMapper::toDto);
     }
 
-    @Override
-    @Scheduled(fixedDelay = 600000) // cada 10 minutos
-    public void cancelarReservasOnlineAbandonadas() {
-        LocalDateTime limite = LocalDateTime.now().minusMinutes(5);
-        reservationRepository.findAbandonedOnlineReservations(limite)
-            .flatMap(r -> {
-                r.setIsCancelled(true);
-                r.setIsActive(false);
-                r.setDateUpdated(LocalDateTime.now());
-                return reservationRepository.save(r);
-            })
-            .doOnComplete(() -> System.out.println("Limpieza de reservas online abandonadas completada."))
-            .subscribe();
-    }
-
     @Override
     @Scheduled(cron = "0 0 3 * * SUN")
     public void cleanUnpaidReservations() {
         // Solo elimina registros ya cancelados sin pago (garbage collection semanal).
         // Las reservas manuales con EFECTIVO/TRANSFERENCIA/etc. activas NO se tocan aunque no estén pagadas.
         reservationRepository.findCancelledUnpaidReservations()
-            .flatMap(r -> reservationRepository.deleteById(r.getId()))
+            .flatMap(r -> reservationRepository.deleteById(r.getId()).then(ocupacionService.liberar(r.getId())))
             .doOnComplete(() -> System.out.println("Limpieza semanal de reservas canceladas sin pago realizada."))
             .subscribe();
     }
@@ -302,11 +289,8 @@ public Mono<ReservationDTO> updateReservation(ReservationDTO reservationDto) {
     @Scheduled(cron = "0 0 3 * * SUN") // limpieza de reservas pagadas con más de 3 meses, domingos 3AM
     public void cleanOldPaidReservations() {
         LocalDateTime tresMesesAtras = LocalDateTime.now().minusMonths(3);
-        reservationRepository.findAll()
-            .filter(r -> r.getPayment() != null
-                         && Boolean.TRUE.equals(r.getPayment().getIsPaid())
-                         && r.getDateCreated().isBefore(tresMesesAtras))
-            .flatMap(r -> reservationRepository.deleteById(r.getId()))
+        reservationRepository.findPaidCreatedBefore(tresMesesAtras)
+            .flatMap(r -> reservationRepository.deleteById(r.getId()).then(ocupacionService.liberar(r.getId())))
             .subscribe();
         System.out.println("Limpieza de reservas pagadas con más de 3 meses realizada.");
     }
@@ -346,13 +330,51 @@ public Mono<ReservationDTO> updateReservation(ReservationDTO reservationDto) {
                 .map(ReservationMapper::toDto);
     }
 
+    @Override
+    public Flux<Integer> getOccupiedRoomNumbers(String hotelId, LocalDateTime desde, LocalDateTime hasta) {
+        LocalDateTime limiteBloqueo = LocalDateTime.now().minusMinutes(5);
+        return reservationRepository.findEstadiasByHotelAndStayPeriodOverlapIncludingPending(hotelId, desde, hasta, limiteBloqueo)
+                .mapNotNull(ReservaEstadiaView::getRoomNumber);
+    }
+
     @Override
     public Flux<ReservationDTO> getReservationsWithPaymentsInRange(
             String hotelId, LocalDateTime desde, LocalDateTime hasta) {
-        return reservationRepository.findByHotelIdWithPaymentsInRange(hotelId, desde, hasta)
+        // El libro de pagos resuelve qué reservas cobraron en el período con una lectura por (hotelId, fecha)
+        return libroPagosService.reservasConPagos(hotelId, desde, hasta)
+                .collectList()
+                .flatMapMany(reservationRepository::findAllById)
                 .map(ReservationMapper::toDto);
     }
 
+    @Override
+    public Mono<CierreCajaDTO> getCierreCaja(String hotelId, LocalDateTime desde, LocalDateTime hasta) {
+        return libroPagosService.cierre(hotelId, desde, hasta);
+    }
+
+    // La reserva ya quedó guardada: si falla el libro de pagos se registra en el log y se corrige
+    // la próxima vez que se guarde la reserva
+    private Mono<Reservation> registrarPagos(Reservation reservation) {
+        return libroPagosService.registrar(reservation)
+                .onErrorResume(e -> {
+                    System.err.println("Error registrando pagos de la reserva " + reservation.getId()
+                            + " en el libro de pagos: " + e.getMessage());
+                    return Mono.empty();
+                })
+                .thenReturn(reservation);
+    }
+
+    private Mono<Void> encolarEmailNuevaReserva(Reservation reservation) {
+        if (emailService == null) {
+            return Mono.empty();
+        }
+        return emailService.notificarNuevaReserva(ReservationMapper.toDto(reservation))
+                .onErrorResume(e -> {
+                    System.err.println("Error al encolar email de nueva reserva " + reservation.getId() + ": " + e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
     @Override
     public void confirmarPagoReserva(String reservaId, PagoEventoDTO evento) {
         reservationRepository.findById(reservaId)
@@ -376,22 +398,26 @@ public Mono<ReservationDTO> updateReservation(ReservationDTO reservationDto) {
                 reservation.setMercadoPagoId(evento.getMercadoPagoId());
                 reservation.setFechaPago(evento.getFechaPago());
                 reservation.setDateUpdated(LocalDateTime.now());
-                return reservationRepository.save(reservation);
+                // Primero se guarda el pago: con transaccionId puesto el vencimiento de la retención ya no
+                // la cancela. Después la retención pasa a ocupación firme; si venció y otro tomó la habitación
+                // el pago igual queda registrado y en el log para que el hospedaje lo resuelva
+                return reservationRepository.save(reservation)
+                    .flatMap(guardada -> ocupacionService.sincronizar(guardada)
+                        .onErrorResume(e -> {
+                            System.err.println("Reserva " + reservaId + " pagada sin poder ocupar la habitación: " + e.getMessage());
+                            return Mono.empty();
+                        })
+                        .thenReturn(guardada))
+                    .flatMap(this::registrarPagos)
+                    // El email queda guardado en el outbox antes de dar la confirmación por terminada;
+                    // el envío (y la búsqueda del email del hospedaje) se reintenta desde ahí
+                    .flatMap(guardada -> encolarEmailNuevaReserva(guardada).thenReturn(guardada));
             })
             .doOnSuccess(reservation -> {
                 System.out.println("Reserva " + reservaId + " confirmada como PAGADA");
                 if (reservation != null) {
-                    ReservationDTO dto = ReservationMapper.toDto(reservation);
                     // Notificamos como NUEVA reserva cuando se confirma el pago (es cuando realmente se crea para el admin)
-                    adminNotificationService.notificarNuevaReserva(dto);
-                    if (reservation.getHotel() != null) {
-                        hospedajeClient.fetchEmailNotificacion(reservation.getHotel().getHotelId())
-                            .subscribe(hotel -> {
-                                if (hotel != null && emailService != null) {
-                                    emailService.notificarNuevaReserva(dto, hotel.emailNotificacion());
-                                }
-                            });
-                    }
+                    adminNotificationService.notificarNuevaReserva(ReservationMapper.toDto(reservation));
                 }
             })
             .doOnError(error -> System.err.println("Error al confirmar pago de reserva " + reservaId + ": " + error.getMessage()))
@@ -428,7 +454,8 @@ public Mono<ReservationDTO> updateReservation(ReservationDTO reservationDto) {
                 reservation.setTransaccionId(evento.getTransaccionId());
                 reservation.setMercadoPagoId(evento.getMercadoPagoId());
                 reservation.setDateUpdated(LocalDateTime.now());
-                return reservationRepository.save(reservation);
+                return reservationRepository.save(reservation)
+                    .flatMap(saved -> ocupacionService.liberar(saved.getId()).thenReturn(saved));
             })
             .doOnSuccess(reservation -> System.out.println("Pago rechazado para reserva " + reservaId))
             .doOnError(error -> System.err.println("Error al procesar rechazo de pago de reserva " + reservaId + ": " + error.getMessage()))
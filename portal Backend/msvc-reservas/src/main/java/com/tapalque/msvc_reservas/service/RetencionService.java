@@ -0,0 +1,165 @@
+package com.tapalque.msvc_reservas.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.tapalque.msvc_reservas.config.RabbitMQConfig;
+import com.tapalque.msvc_reservas.entity.Reservation;
+import com.tapalque.msvc_reservas.enums.PaymentType;
+import com.tapalque.msvc_reservas.repository.ReservationRepositoryInterface;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Vencimiento de las reservas online que esperan el pago de Mercado Pago. Al crearse, cada una
+ * deja su id en la cola reservas.retenciones; a los RETENCION_PENDIENTE minutos RabbitMQ lo pasa a
+ * reservas.retenciones.vencidas y vencer() la cancela, sólo si sigue sin pago, y suelta sus noches.
+ *
+ * Al arrancar se revisan las pendientes: las que ya vencieron se cancelan y las demás se vuelven a
+ * programar por lo que les falta (un aviso repetido no hace nada: la cancelación es condicional).
+ *
+ * Si vencer() falla el aviso vuelve a la cola de espera por REINTENTO, hasta MAX_INTENTOS veces; después
+ * queda en reservas.retenciones.fallidas para revisarlo a mano. La reserva sigue pendiente, así que el
+ * próximo arranque también la encuentra.
+ */
+@Service
+public class RetencionService {
+
+    private static final System.Logger logger = System.getLogger(RetencionService.class.getName());
+
+    /** Header con la cantidad de veces que ya falló el vencimiento del aviso. */
+    public static final String HEADER_INTENTOS = "x-intentos";
+    static final int MAX_INTENTOS = 5;
+    static final Duration REINTENTO = Duration.ofSeconds(30);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final ReservationRepositoryInterface reservationRepository;
+    private final OcupacionService ocupacionService;
+
+    public RetencionService(ReactiveMongoTemplate mongoTemplate, RabbitTemplate rabbitTemplate,
+                            ReservationRepositoryInterface reservationRepository,
+                            OcupacionService ocupacionService) {
+        this.mongoTemplate = mongoTemplate;
+        this.rabbitTemplate = rabbitTemplate;
+        this.reservationRepository = reservationRepository;
+        this.ocupacionService = ocupacionService;
+    }
+
+    /** Programa el vencimiento de la retención. Si RabbitMQ no responde se registra y la revisa el próximo arranque. */
+    public Mono<Void> programar(String reservaId) {
+        return publicar(() -> rabbitTemplate.convertAndSend("", RabbitMQConfig.QUEUE_RETENCIONES, reservaId), reservaId);
+    }
+
+    /**
+     * Programa el vencimiento para dentro de {@code espera} (el TTL de la cola sigue siendo el tope).
+     * RabbitMQ sólo vence mensajes desde la cabeza de la cola, así que uno más corto puede esperar a
+     * los que entraron antes, nunca más que RETENCION_PENDIENTE.
+     */
+    Mono<Void> programar(String reservaId, Duration espera) {
+        return publicar(() -> rabbitTemplate.convertAndSend("", RabbitMQConfig.QUEUE_RETENCIONES, reservaId,
+                expiracion(espera, 0)), reservaId);
+    }
+
+    /**
+     * Vuelve a programar un aviso cuyo vencimiento falló, o lo deja en la cola de fallidas si ya agotó
+     * los intentos. Los errores de RabbitMQ se propagan: el listener descarta el aviso y lo recupera el
+     * próximo arranque.
+     */
+    public Mono<Void> reintentar(String reservaId, int intentos) {
+        return Mono.fromRunnable(() -> {
+                    if (intentos + 1 >= MAX_INTENTOS) {
+                        logger.log(System.Logger.Level.ERROR, () -> "El vencimiento de la reserva " + reservaId
+                                + " falló " + MAX_INTENTOS + " veces; queda en " + RabbitMQConfig.QUEUE_RETENCIONES_FALLIDAS);
+                        rabbitTemplate.convertAndSend("", RabbitMQConfig.QUEUE_RETENCIONES_FALLIDAS, reservaId);
+                    } else {
+                        rabbitTemplate.convertAndSend("", RabbitMQConfig.QUEUE_RETENCIONES, reservaId,
+                                expiracion(REINTENTO, intentos + 1));
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private static MessagePostProcessor expiracion(Duration espera, int intentos) {
+        return mensaje -> {
+            mensaje.getMessageProperties().setExpiration(String.valueOf(Math.max(0, espera.toMillis())));
+            if (intentos > 0) {
+                mensaje.getMessageProperties().setHeader(HEADER_INTENTOS, intentos);
+            }
+            return mensaje;
+        };
+    }
+
+    private Mono<Void> publicar(Runnable envio, String reservaId) {
+        return Mono.fromRunnable(envio)
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    logger.log(System.Logger.Level.WARNING, () -> "No se pudo programar el vencimiento de la reserva "
+                            + reservaId + ": " + e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Cancela la reserva si sigue esperando el pago: online, impaga, sin cancelar y sin ningún
+     * evento de Mercado Pago (un pago en proceso deja transaccionId). Devuelve si la canceló.
+     *
+     * Si la confirmación del pago la leyó antes de la cancelación la vuelve a activar al guardar; por eso,
+     * después de soltar las noches, se relee y si ya no está cancelada se vuelve a sincronizar el libro.
+     */
+    public Mono<Boolean> vencer(String reservaId) {
+        Query sinPago = Query.query(Criteria.where("_id").is(reservaId)
+                .and("payment.paymentType").is(PaymentType.MERCADO_PAGO)
+                .and("payment.isPaid").is(false)
+                .and("isCancelled").is(false)
+                .and("transaccionId").is(null));
+        Update cancelar = new Update()
+                .set("isCancelled", true)
+                .set("isActive", false)
+                .set("dateUpdated", LocalDateTime.now());
+        return mongoTemplate.updateFirst(sinPago, cancelar, Reservation.class)
+                .flatMap(resultado -> resultado.getModifiedCount() > 0
+                        ? ocupacionService.liberar(reservaId)
+                                .then(reservationRepository.findById(reservaId))
+                                .flatMap(reserva -> Boolean.TRUE.equals(reserva.getIsCancelled())
+                                        ? Mono.just(true)
+                                        : ocupacionService.sincronizar(reserva).thenReturn(false))
+                                .defaultIfEmpty(true)
+                        : Mono.just(false));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void revisarPendientes() {
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime vencidasAntesDe = ahora.minus(OcupacionService.RETENCION_PENDIENTE);
+        reservationRepository.findAbandonedOnlineReservations(ahora)
+                // Las que vencen antes van primero, para no quedar detrás de un aviso más largo
+                .sort(Comparator.comparing(Reservation::getDateCreated, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .concatMap(reserva -> reserva.getDateCreated() == null || reserva.getDateCreated().isBefore(vencidasAntesDe)
+                        ? vencer(reserva.getId())
+                        : programar(reserva.getId(), Duration.between(ahora,
+                                reserva.getDateCreated().plus(OcupacionService.RETENCION_PENDIENTE))).thenReturn(false))
+                .filter(cancelada -> cancelada)
+                .count()
+                .subscribe(canceladas -> {
+                    if (canceladas > 0) {
+                        logger.log(System.Logger.Level.INFO, () -> canceladas + " reservas online vencidas canceladas al arrancar");
+                    }
+                }, e -> logger.log(System.Logger.Level.ERROR,
+                        () -> "Error revisando retenciones pendientes: " + e.getMessage()));
+    }
+}
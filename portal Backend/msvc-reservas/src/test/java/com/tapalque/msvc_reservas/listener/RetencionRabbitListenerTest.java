@@ -0,0 +1,74 @@
+package com.tapalque.msvc_reservas.listener;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+
+import com.tapalque.msvc_reservas.service.RetencionService;
+
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("RetencionRabbitListener Tests")
+class RetencionRabbitListenerTest {
+
+    @Mock
+    private RetencionService retencionService;
+
+    private RetencionRabbitListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new RetencionRabbitListener(retencionService);
+    }
+
+    @Test
+    @DisplayName("Si vencer funciona no reintenta")
+    void vencerRetencion_Ok_NoReintenta() {
+        when(retencionService.vencer("res1")).thenReturn(Mono.just(true));
+
+        listener.vencerRetencion("res1", null);
+
+        verify(retencionService, never()).reintentar("res1", 0);
+    }
+
+    @Test
+    @DisplayName("Si vencer falla lo reprograma con el intento siguiente en vez de reencolarlo")
+    void vencerRetencion_Falla_Reprograma() {
+        when(retencionService.vencer("res1")).thenReturn(Mono.error(new RuntimeException("mongo caído")));
+        when(retencionService.reintentar("res1", 2)).thenReturn(Mono.empty());
+
+        assertDoesNotThrow(() -> listener.vencerRetencion("res1", 2));
+
+        verify(retencionService).reintentar("res1", 2);
+    }
+
+    @Test
+    @DisplayName("Sin header cuenta como primer intento")
+    void vencerRetencion_SinHeader_IntentoCero() {
+        when(retencionService.vencer("res1")).thenReturn(Mono.error(new RuntimeException("mongo caído")));
+        when(retencionService.reintentar("res1", 0)).thenReturn(Mono.empty());
+
+        listener.vencerRetencion("res1", null);
+
+        verify(retencionService).reintentar("res1", 0);
+    }
+
+    @Test
+    @DisplayName("Si tampoco se puede reprogramar se descarta sin reencolar")
+    void vencerRetencion_RabbitCaido_Descarta() {
+        when(retencionService.vencer("res1")).thenReturn(Mono.error(new RuntimeException("mongo caído")));
+        when(retencionService.reintentar("res1", 0)).thenReturn(Mono.error(new RuntimeException("broker caído")));
+
+        assertThrows(AmqpRejectAndDontRequeueException.class, () -> listener.vencerRetencion("res1", null));
+    }
+}
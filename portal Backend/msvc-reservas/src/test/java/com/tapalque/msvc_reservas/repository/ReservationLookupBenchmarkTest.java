@@ -0,0 +1,146 @@
+package com.tapalque.msvc_reservas.repository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.tapalque.msvc_reservas.entity.Reservation;
+import com.tapalque.msvc_reservas.enums.PaymentType;
+import com.tapalque.msvc_reservas.repository.projection.ReservaEstadiaView;
+import com.tapalque.msvc_reservas.repository.projection.ReservaPagoView;
+
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Siembra 200.000 reservas en una base descartable y mide la lectura por id a medida que crece la
+ * colección: con el índice de _id la latencia no debe depender del tamaño (el findAll + filter
+ * anterior crecía linealmente). Requiere BENCHMARK_MONGO_URI (por ejemplo: docker run -p 27017:27017 mongo
+ * y BENCHMARK_MONGO_URI=mongodb://localhost:27017). La medición corre sólo con mvn test -Pbenchmark.
+ */
+@EnabledIfEnvironmentVariable(named = "BENCHMARK_MONGO_URI", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@DisplayName("Benchmark de lectura de reservas por id")
+class ReservationLookupBenchmarkTest {
+
+    private static final int TOTAL = 200_000;
+    private static final int LOTE = 5_000;
+    private static final int LECTURAS = 2_000;
+
+    private MongoClient client;
+    private ReactiveMongoTemplate template;
+    private ReservationRepositoryInterface repository;
+    private final List<String> ids = new ArrayList<>();
+    private final Random random = new Random(42);
+
+    @BeforeAll
+    void setUp() {
+        client = MongoClients.create(System.getenv("BENCHMARK_MONGO_URI"));
+        template = new ReactiveMongoTemplate(client, "reservas_benchmark_" + System.currentTimeMillis());
+        repository = new ReactiveMongoRepositoryFactory(template).getRepository(ReservationRepositoryInterface.class);
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (template != null) {
+            template.getMongoDatabase().flatMap(db -> Mono.from(db.drop())).block(Duration.ofMinutes(1));
+        }
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    private void sembrarHasta(int cantidad) {
+        while (ids.size() < cantidad) {
+            int desde = ids.size();
+            List<Reservation> lote = new ArrayList<>(LOTE);
+            for (int i = desde; i < desde + LOTE; i++) {
+                lote.add(reserva(i));
+            }
+            template.insertAll(lote).map(Reservation::getId).doOnNext(ids::add).blockLast(Duration.ofMinutes(2));
+        }
+    }
+
+    private static Reservation reserva(int i) {
+        LocalDateTime checkIn = LocalDateTime.of(2025, 1, 1, 13, 0).plusDays(i % 365);
+        Reservation reservation = new Reservation(
+                new Reservation.Customer("cust" + (i % 5_000), "Cliente " + i, "2281000000", "cliente" + i + "@mail.com"),
+                new Reservation.Hotel("hotel" + (i % 40), "Hotel " + (i % 40)),
+                new Reservation.StayPeriod(checkIn, checkIn.plusDays(2).withHour(10)),
+                new Reservation.Payment(50_000.0, 10_000.0, true, PaymentType.EFECTIVO),
+                50_000.0);
+        reservation.setRoomNumber(1 + i % 20);
+        reservation.setCantidadHuespedes(2);
+        reservation.setNotas("Reserva sembrada para benchmark");
+        reservation.setPaymentHistory(new ArrayList<>(List.of(new Reservation.PaymentRecord(
+                reservation.getDateCreated(), 10_000.0, PaymentType.EFECTIVO, "Seña"))));
+        return reservation;
+    }
+
+    private long p50Micros() {
+        List<Long> tiempos = new ArrayList<>(LECTURAS);
+        for (int i = 0; i < LECTURAS; i++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            long inicio = System.nanoTime();
+            Reservation leida = repository.findById(id).block(Duration.ofSeconds(5));
+            tiempos.add((System.nanoTime() - inicio) / 1_000);
+            assertNotNull(leida);
+        }
+        Collections.sort(tiempos);
+        return tiempos.get(tiempos.size() / 2);
+    }
+
+    @Test
+    @DisplayName("Las proyecciones por id y por hotel traen sólo sus campos")
+    void proyecciones_TraenSusCampos() {
+        sembrarHasta(LOTE);
+
+        String id = ids.get(LOTE / 2);
+        ReservaPagoView pago = repository.findPagoById(id).block(Duration.ofSeconds(5));
+        assertNotNull(pago);
+        assertEquals(40_000.0, pago.getPayment().getRemainingAmount());
+        ReservaEstadiaView estadia = repository.findEstadiaById(id).block(Duration.ofSeconds(5));
+        assertNotNull(estadia);
+        assertNotNull(estadia.getStayPeriod().getCheckInDate());
+        assertTrue(repository.findEstadoById(id).map(e -> Boolean.TRUE.equals(e.getIsActive())).block(Duration.ofSeconds(5)));
+
+        List<Integer> ocupadas = repository.findEstadiasByHotelAndStayPeriodOverlapIncludingPending("hotel0",
+                        LocalDateTime.of(2025, 3, 1, 13, 0), LocalDateTime.of(2025, 3, 10, 10, 0), LocalDateTime.now().minusMinutes(5))
+                .map(ReservaEstadiaView::getRoomNumber)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+        assertFalse(ocupadas.contains(null));
+        assertFalse(ocupadas.isEmpty());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("findById tarda lo mismo con 10.000 que con 200.000 reservas")
+    void lecturaPorId_TiempoConstante() {
+        sembrarHasta(10_000);
+        p50Micros(); // calentamiento
+        long p50Chico = p50Micros();
+
+        sembrarHasta(TOTAL);
+        long p50Grande = p50Micros();
+        assertTrue(p50Grande <= p50Chico * 3 + 1_000,
+                "La lectura por id no debe crecer con la colección: " + p50Chico + " µs con 10.000 reservas vs "
+                        + p50Grande + " µs con " + TOTAL);
+    }
+}
@@ -0,0 +1,138 @@
+package com.tapalque.msvc_reservas.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+@DisplayName("CacheReactiva Tests")
+class CacheReactivaTest {
+
+    private final AtomicLong ahora = new AtomicLong();
+    private final AtomicInteger cargas = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private CacheReactiva<String> cache(Function<String, Mono<String>> cargador) {
+        return new CacheReactiva<>("test", clave -> {
+            cargas.incrementAndGet();
+            return cargador.apply(clave);
+        }, Duration.ofMinutes(5), Duration.ofHours(1), 100, meterRegistry, ahora::get, Runnable::run);
+    }
+
+    private void avanzar(Duration tiempo) {
+        ahora.addAndGet(tiempo.toNanos());
+    }
+
+    @Test
+    @DisplayName("100 pedidos concurrentes de una clave ausente hacen una sola carga")
+    void get_ConcurrentesUnaSolaCarga() {
+        Sinks.One<String> respuesta = Sinks.one();
+        CacheReactiva<String> cache = cache(clave -> respuesta.asMono());
+
+        Mono<List<String>> todos = Flux.range(0, 100)
+                .flatMap(i -> cache.get("hotel1").subscribeOn(Schedulers.parallel()), 100)
+                .collectList();
+        StepVerifier.create(todos)
+                .then(() -> respuesta.tryEmitValue("politica"))
+                .assertNext(valores -> assertTrue(valores.size() == 100 && valores.stream().allMatch("politica"::equals)))
+                .verifyComplete();
+
+        assertEquals(1, cargas.get());
+    }
+
+    @Test
+    @DisplayName("Pasado el refresco responde el valor guardado y recarga por detrás")
+    void get_StaleWhileRevalidate() {
+        AtomicInteger version = new AtomicInteger();
+        Sinks.Many<String> recargas = Sinks.many().unicast().onBackpressureBuffer();
+        CacheReactiva<String> cache = cache(clave -> version.getAndIncrement() == 0
+                ? Mono.just("v0")
+                : recargas.asFlux().next());
+
+        assertEquals("v0", cache.get("hotel1").block());
+        avanzar(Duration.ofMinutes(6));
+
+        // Dispara la recarga pero no la espera
+        assertEquals("v0", cache.get("hotel1").block(Duration.ofSeconds(1)));
+        assertEquals("v0", cache.get("hotel1").block(Duration.ofSeconds(1)));
+        assertEquals(2, cargas.get(), "Una sola recarga en curso");
+
+        recargas.tryEmitNext("v1");
+        assertEquals("v1", cache.get("hotel1").block());
+    }
+
+    @Test
+    @DisplayName("Si la recarga falla queda el valor anterior; los errores de carga no se guardan")
+    void get_ErroresNoSeGuardan() {
+        AtomicBoolean caido = new AtomicBoolean(true);
+        CacheReactiva<String> cache = cache(clave -> caido.get()
+                ? Mono.error(new IllegalStateException("msvc-hosteleria caído"))
+                : Mono.just("v" + cargas.get()));
+
+        StepVerifier.create(cache.get("hotel1")).expectError(IllegalStateException.class).verify();
+        caido.set(false);
+        assertEquals("v2", cache.get("hotel1").block());
+
+        caido.set(true);
+        avanzar(Duration.ofMinutes(6));
+        assertEquals("v2", cache.get("hotel1").block(), "La recarga falla: sigue el valor anterior");
+        assertEquals("v2", cache.get("hotel1").block());
+
+        // Cada lectura vuelve a intentar la recarga hasta que sale bien
+        caido.set(false);
+        cache.get("hotel1").block();
+        assertEquals("v5", cache.get("hotel1").block());
+    }
+
+    @Test
+    @DisplayName("Invalidar fuerza una carga nueva; vencido el tope también")
+    void invalidar_RecargaAlPedir() {
+        CacheReactiva<String> cache = cache(clave -> Mono.just(clave + "-" + cargas.get()));
+
+        assertEquals("hotel1-1", cache.get("hotel1").block());
+        assertEquals("hotel2-2", cache.get("hotel2").block());
+        cache.invalidar("hotel1");
+        assertEquals("hotel1-3", cache.get("hotel1").block());
+        assertEquals("hotel2-2", cache.get("hotel2").block());
+
+        cache.invalidarTodo();
+        assertEquals("hotel2-4", cache.get("hotel2").block());
+
+        avanzar(Duration.ofHours(2));
+        assertEquals("hotel2-5", cache.get("hotel2").block());
+    }
+
+    @Test
+    @DisplayName("Publica aciertos, fallos y la tasa de aciertos")
+    void metricas_TasaDeAciertos() {
+        CacheReactiva<String> cache = cache(Mono::just);
+        cache.get("hotel1").block();
+        cache.get("hotel1").block();
+        cache.get("hotel1").block();
+        cache.get("hotel2").block();
+
+        assertEquals(2, meterRegistry.get("cache.gets").tag("cache", "test").tag("result", "hit").functionCounter().count());
+        assertEquals(2, meterRegistry.get("cache.gets").tag("cache", "test").tag("result", "miss").functionCounter().count());
+        assertEquals(0.5, meterRegistry.get("cache.hit.ratio").tag("cache", "test").gauge().value(), 0.001);
+    }
+}
@@ -0,0 +1,389 @@
+package com.tapalque.msvc_reservas.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.tapalque.msvc_reservas.config.RabbitMQConfig;
+import com.tapalque.msvc_reservas.dto.OcupacionEventoDTO;
+import com.tapalque.msvc_reservas.entity.OcupacionNoche;
+import com.tapalque.msvc_reservas.entity.Reservation;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Propiedades del índice de disponibilidad: para historias de reservas generadas al azar
+ * (altas manuales y online, pagos, cancelaciones, cambios de fecha y retenciones vencidas) responde
+ * lo mismo que la consulta de solapamiento de Mongo que reemplaza.
+ */
+@DisplayName("DisponibilidadService Tests")
+class DisponibilidadServiceTest {
+
+    private static final List<String> HOTELES = List.of("hotel1", "hotel2");
+    private static final List<Integer> HABITACIONES = List.of(1, 2, 3, 4);
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private RabbitTemplate rabbitTemplate;
+    private DisponibilidadService disponibilidadService;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        rabbitTemplate = mock(RabbitTemplate.class);
+        disponibilidadService = nuevaReplica();
+    }
+
+    private DisponibilidadService nuevaReplica() {
+        return new DisponibilidadService(mongoTemplate, rabbitTemplate, Schedulers.immediate(), 365);
+    }
+
+    // Exchange fanout: cada aviso llega a la cola de todas las réplicas, también a la de quien lo publicó
+    private void fanout(DisponibilidadService... replicas) {
+        doAnswer(inv -> {
+            for (DisponibilidadService replica : replicas) {
+                replica.aplicarRemoto(inv.getArgument(2));
+            }
+            return null;
+        }).when(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.EXCHANGE_OCUPACION), eq(""), any(Object.class));
+    }
+
+    private void cargarVacio() {
+        when(mongoTemplate.find(any(Query.class), eq(OcupacionNoche.class))).thenReturn(Flux.empty());
+        disponibilidadService.reconstruir().block();
+    }
+
+    /**
+     * findEstadiasByHotelAndStayPeriodOverlapIncludingPending + getOccupiedRoomNumbers, evaluada en memoria:
+     * solapa con check-in 13:00 / check-out 10:00, no cancelada y activa o pendiente de hace menos de 5 minutos.
+     */
+    private static Set<Integer> consultaMongo(List<Reservation> reservas, String hotelId, LocalDate desde, LocalDate hasta) {
+        LocalDateTime desdeDateTime = desde.atTime(13, 0);
+        LocalDateTime hastaDateTime = hasta.atTime(10, 0);
+        LocalDateTime limiteBloqueo = LocalDateTime.now().minusMinutes(5);
+        return reservas.stream()
+                .filter(r -> hotelId.equals(r.getHotel().getHotelId()))
+                .filter(r -> r.getStayPeriod().getCheckInDate().isBefore(hastaDateTime)
+                        && r.getStayPeriod().getCheckOutDate().isAfter(desdeDateTime))
+                .filter(r -> !r.getIsCancelled())
+                .filter(r -> r.getIsActive()
+                        || (!r.getPayment().getIsPaid() && !r.getDateCreated().isBefore(limiteBloqueo)))
+                .map(Reservation::getRoomNumber)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Genera una historia al azar. El libro se modela como en Mongo (una reserva por habitación y noche;
+     * una retención vencida se pisa) y cada escritura que lo cambia se informa al índice como lo hace
+     * OcupacionService.
+     */
+    private static final class Historia {
+
+        final List<Reservation> reservas = new ArrayList<>();
+        final Map<CalendarioOcupacion.Clave, Reservation> libro = new HashMap<>();
+        private final Random random;
+        private final DisponibilidadService indice;
+        private final LocalDate hoy = LocalDate.now();
+        private int siguienteId;
+
+        Historia(long semilla, DisponibilidadService indice) {
+            this.random = new Random(semilla);
+            this.indice = indice;
+        }
+
+        void paso() {
+            int accion = random.nextInt(10);
+            if (accion < 4 || reservas.isEmpty()) {
+                alta(accion % 2 == 0);
+                return;
+            }
+            Reservation reserva = reservas.get(random.nextInt(reservas.size()));
+            if (reserva.getIsCancelled()) {
+                return;
+            }
+            switch (accion) {
+                case 4, 5 -> cancelar(reserva);
+                case 6, 7 -> pagar(reserva);
+                default -> mover(reserva);
+            }
+        }
+
+        private void alta(boolean manual) {
+            Reservation reserva = new Reservation();
+            reserva.setId("r" + siguienteId++);
+            reserva.setHotel(new Reservation.Hotel(HOTELES.get(random.nextInt(HOTELES.size())), "Hotel"));
+            reserva.setRoomNumber(HABITACIONES.get(random.nextInt(HABITACIONES.size())));
+            LocalDate checkIn = hoy.plusDays(random.nextInt(40));
+            reserva.setStayPeriod(estadia(checkIn, checkIn.plusDays(1 + random.nextInt(5))));
+            Reservation.Payment pago = new Reservation.Payment();
+            pago.setIsPaid(manual);
+            reserva.setPayment(pago);
+            reserva.setIsCancelled(false);
+            reserva.setIsActive(manual);
+            // Online: algunas ya abandonaron el pago (la retención venció)
+            reserva.setDateCreated(LocalDateTime.now().minusMinutes(manual ? 0 : random.nextInt(10)));
+
+            List<LocalDate> noches = noches(reserva);
+            if (noches.stream().anyMatch(n -> vigente(libro.get(clave(reserva, n))))) {
+                return; // el índice único la rechaza
+            }
+            LocalDateTime expiraEn = manual ? null : reserva.getDateCreated().plus(OcupacionService.RETENCION_PENDIENTE);
+            noches.forEach(n -> libro.put(clave(reserva, n), reserva));
+            reservas.add(reserva);
+            indice.ocupar(reserva.getId(), reserva.getHotel().getHotelId(), reserva.getRoomNumber(), noches, expiraEn);
+        }
+
+        private void cancelar(Reservation reserva) {
+            reserva.setIsCancelled(true);
+            reserva.setIsActive(false);
+            libro.values().removeIf(r -> r == reserva);
+            indice.soltar(reserva.getId());
+        }
+
+        private void pagar(Reservation reserva) {
+            // El pago llega tarde: si la retención venció y otra tomó alguna noche, se rechaza
+            if (noches(reserva).stream().anyMatch(n -> libro.get(clave(reserva, n)) != reserva)) {
+                return;
+            }
+            reserva.setIsActive(true);
+            reserva.getPayment().setIsPaid(true);
+            indice.confirmar(reserva.getId());
+        }
+
+        private void mover(Reservation reserva) {
+            if (!reserva.getIsActive()) {
+                return;
+            }
+            LocalDate checkIn = reserva.getStayPeriod().getCheckInDate().toLocalDate().plusDays(random.nextInt(5) - 2);
+            if (checkIn.isBefore(hoy)) {
+                return;
+            }
+            List<LocalDate> nuevas = checkIn.datesUntil(checkIn.plusDays(1 + random.nextInt(5))).toList();
+            List<LocalDate> faltantes = nuevas.stream().filter(n -> libro.get(clave(reserva, n)) != reserva).toList();
+            if (faltantes.stream().anyMatch(n -> vigente(libro.get(clave(reserva, n))))) {
+                return;
+            }
+            faltantes.forEach(n -> libro.put(clave(reserva, n), reserva));
+            indice.ocupar(reserva.getId(), reserva.getHotel().getHotelId(), reserva.getRoomNumber(), faltantes, null);
+            List<OcupacionNoche> sobrantes = noches(reserva).stream()
+                    .filter(n -> !nuevas.contains(n))
+                    .map(n -> new OcupacionNoche(reserva.getHotel().getHotelId(), reserva.getRoomNumber(), n, reserva.getId(), null))
+                    .toList();
+            sobrantes.forEach(o -> libro.remove(clave(reserva, o.getNoche())));
+            indice.soltar(reserva.getId(), sobrantes);
+            reserva.setStayPeriod(estadia(nuevas.get(0), nuevas.get(nuevas.size() - 1).plusDays(1)));
+        }
+
+        private static boolean vigente(Reservation r) {
+            return r != null && (r.getIsActive() || r.getDateCreated().isAfter(LocalDateTime.now().minus(OcupacionService.RETENCION_PENDIENTE)));
+        }
+
+        private static CalendarioOcupacion.Clave clave(Reservation r, LocalDate noche) {
+            return new CalendarioOcupacion.Clave(r.getHotel().getHotelId(), r.getRoomNumber(), noche);
+        }
+
+        private static List<LocalDate> noches(Reservation r) {
+            return OcupacionService.noches(r.getStayPeriod().getCheckInDate().toLocalDate(),
+                    r.getStayPeriod().getCheckOutDate().toLocalDate());
+        }
+
+        private static Reservation.StayPeriod estadia(LocalDate checkIn, LocalDate checkOut) {
+            return new Reservation.StayPeriod(checkIn.atTime(13, 0), checkOut.atTime(10, 0));
+        }
+    }
+
+    @Test
+    @DisplayName("Para cualquier historia y rango responde lo mismo que la consulta de solapamiento")
+    void ocupadas_IgualQueLaConsultaDeSolapamiento() {
+        for (long semilla = 1; semilla <= 30; semilla++) {
+            setUp();
+            cargarVacio();
+            Historia historia = new Historia(semilla, disponibilidadService);
+            Random consultas = new Random(semilla * 31);
+            for (int paso = 0; paso < 300; paso++) {
+                historia.paso();
+                if (paso % 10 != 0) {
+                    continue;
+                }
+                for (int q = 0; q < 20; q++) {
+                    String hotelId = HOTELES.get(consultas.nextInt(HOTELES.size()));
+                    LocalDate desde = LocalDate.now().plusDays(consultas.nextInt(45));
+                    LocalDate hasta = desde.plusDays(1 + consultas.nextInt(10));
+                    assertEquals(consultaMongo(historia.reservas, hotelId, desde, hasta),
+                            disponibilidadService.ocupadas(hotelId, desde, hasta).orElseThrow(),
+                            "Semilla " + semilla + ", paso " + paso + ": " + hotelId + " " + desde + " a " + hasta);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Una noche está completa si la consulta da todas las habitaciones ocupadas")
+    void nochesCompletas_IgualQueConsultarNochePorNoche() {
+        for (long semilla = 1; semilla <= 10; semilla++) {
+            setUp();
+            cargarVacio();
+            Historia historia = new Historia(semilla, disponibilidadService);
+            for (int paso = 0; paso < 400; paso++) {
+                historia.paso();
+            }
+            YearMonth mes = YearMonth.from(LocalDate.now());
+            for (String hotelId : HOTELES) {
+                List<LocalDate> esperadas = new ArrayList<>();
+                for (LocalDate noche = LocalDate.now(); noche.isBefore(mes.plusMonths(1).atDay(1)); noche = noche.plusDays(1)) {
+                    if (consultaMongo(historia.reservas, hotelId, noche, noche.plusDays(1)).containsAll(HABITACIONES)) {
+                        esperadas.add(noche);
+                    }
+                }
+                assertEquals(esperadas, disponibilidadService.nochesCompletas(hotelId, mes, HABITACIONES).block(),
+                        "Semilla " + semilla + ", " + hotelId);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Las escrituras que llegan durante la recarga no se pierden")
+    void reconstruir_RepiteLasEscriturasEnCurso() {
+        Sinks.Many<OcupacionNoche> libro = Sinks.many().unicast().onBackpressureBuffer();
+        when(mongoTemplate.find(any(Query.class), eq(OcupacionNoche.class))).thenReturn(libro.asFlux());
+        LocalDate noche = LocalDate.now().plusDays(3);
+
+        disponibilidadService.reconstruir().subscribe();
+        assertTrue(disponibilidadService.ocupadas("hotel1", noche, noche.plusDays(1)).isEmpty(),
+                "Antes de la primera carga no responde: se usa Mongo");
+
+        libro.tryEmitNext(new OcupacionNoche("hotel1", 1, noche, "cargada", null));
+        libro.tryEmitNext(new OcupacionNoche("hotel1", 2, noche, "cancelada", null));
+        // Alta y cancelación confirmadas en Mongo mientras se lee el libro
+        disponibilidadService.ocupar("nueva", "hotel1", 3, List.of(noche), null);
+        disponibilidadService.soltar("cancelada");
+        libro.tryEmitComplete();
+
+        assertEquals(Set.of(1, 3), disponibilidadService.ocupadas("hotel1", noche, noche.plusDays(1)).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Otra réplica ve las escrituras por los avisos, sin esperar a la reconciliación")
+    void avisos_OtraReplicaRespondeIgual() {
+        for (long semilla = 1; semilla <= 10; semilla++) {
+            setUp();
+            cargarVacio();
+            DisponibilidadService otra = nuevaReplica();
+            otra.reconstruir().block();
+            fanout(disponibilidadService, otra);
+
+            Historia historia = new Historia(semilla, disponibilidadService);
+            for (int paso = 0; paso < 300; paso++) {
+                historia.paso();
+            }
+            for (String hotelId : HOTELES) {
+                for (int dia = 0; dia < 45; dia++) {
+                    LocalDate desde = LocalDate.now().plusDays(dia);
+                    assertEquals(consultaMongo(historia.reservas, hotelId, desde, desde.plusDays(1)),
+                            otra.ocupadas(hotelId, desde, desde.plusDays(1)).orElseThrow(),
+                            "Semilla " + semilla + ": " + hotelId + " " + desde);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("La réplica que escribió ignora su propio aviso")
+    void avisos_PropioSeIgnora() {
+        cargarVacio();
+        List<OcupacionEventoDTO> publicados = new ArrayList<>();
+        doAnswer(inv -> publicados.add(inv.getArgument(2)))
+                .when(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.EXCHANGE_OCUPACION), eq(""), any(Object.class));
+        LocalDate noche = LocalDate.now().plusDays(3);
+
+        disponibilidadService.ocupar("r1", "hotel1", 1, List.of(noche), null);
+        disponibilidadService.soltar("r1");
+        // El alta vuelve por la cola después de la cancelación: no tiene que reaparecer
+        disponibilidadService.aplicarRemoto(publicados.get(0));
+
+        assertEquals(2, publicados.size());
+        assertEquals(Set.of(), disponibilidadService.ocupadas("hotel1", noche, noche.plusDays(1)).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Fuera del horizonte no responde y el calendario se arma desde el libro")
+    void fueraDelHorizonte_UsaMongo() {
+        cargarVacio();
+        LocalDate lejos = LocalDate.now().plusDays(400);
+        assertTrue(disponibilidadService.ocupadas("hotel1", lejos, lejos.plusDays(2)).isEmpty());
+        assertTrue(disponibilidadService.ocupadas("hotel1", LocalDate.now().minusDays(1), LocalDate.now()).isEmpty());
+
+        YearMonth mes = YearMonth.from(lejos);
+        LocalDate noche = mes.atDay(10);
+        when(mongoTemplate.find(any(Query.class), eq(OcupacionNoche.class))).thenReturn(Flux.just(
+                new OcupacionNoche("hotel1", 1, noche, "a", null),
+                new OcupacionNoche("hotel1", 2, noche, "b", null),
+                new OcupacionNoche("hotel1", 1, noche.plusDays(1), "a", null)));
+
+        assertEquals(List.of(noche), disponibilidadService.nochesCompletas("hotel1", mes, List.of(1, 2)).block());
+    }
+
+    @Test
+    @DisplayName("Dentro del horizonte responde desde memoria, sin volver a consultar Mongo")
+    void ocupadas_NoConsultaMongo() {
+        cargarVacio();
+        Historia historia = new Historia(7, disponibilidadService);
+        for (int paso = 0; paso < 200; paso++) {
+            historia.paso();
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 1_000; i++) {
+            LocalDate desde = LocalDate.now().plusDays(random.nextInt(40));
+            assertTrue(disponibilidadService.ocupadas(HOTELES.get(i & 1), desde, desde.plusDays(3)).isPresent());
+        }
+        // Sólo la carga inicial
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(OcupacionNoche.class));
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Responde en microsegundos")
+    void ocupadas_Microsegundos() {
+        cargarVacio();
+        for (long semilla = 0; semilla < 5; semilla++) {
+            Historia historia = new Historia(semilla, disponibilidadService);
+            for (int paso = 0; paso < 500; paso++) {
+                historia.paso();
+            }
+        }
+        Random random = new Random(1);
+        int consultas = 200_000;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < consultas; i++) {
+            LocalDate desde = LocalDate.now().plusDays(random.nextInt(40));
+            disponibilidadService.ocupadas(HOTELES.get(i & 1), desde, desde.plusDays(3)).orElseThrow();
+        }
+        double promedioMicros = (System.nanoTime() - inicio) / 1_000.0 / consultas;
+        assertTrue(promedioMicros < 100, "Promedio " + promedioMicros + " µs por consulta");
+    }
+}
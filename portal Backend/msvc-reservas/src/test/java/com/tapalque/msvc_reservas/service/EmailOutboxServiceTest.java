@@ -0,0 +1,246 @@
+package com.tapalque.msvc_reservas.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.mongodb.client.result.UpdateResult;
+import com.tapalque.msvc_reservas.client.HospedajeClient;
+import com.tapalque.msvc_reservas.config.EmailOutboxProperties;
+import com.tapalque.msvc_reservas.entity.EmailSaliente;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/** Envío del outbox contra un servidor SMTP local (GreenMail); Mongo se simula con Mockito. */
+@DisplayName("EmailOutboxService Tests")
+class EmailOutboxServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP.dynamicPort());
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private JavaMailSenderImpl mailSender;
+    private HospedajeClient hospedajeClient;
+    private EmailOutboxProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private EmailOutboxService outbox;
+    private final List<EmailSaliente> guardados = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("localhost");
+        sender.setPort(greenMail.getSmtp().getPort());
+        mailSender = spy(sender);
+        properties = new EmailOutboxProperties();
+        properties.setPorConexion(2);
+        properties.setMaxIntentos(3);
+        meterRegistry = new SimpleMeterRegistry();
+        hospedajeClient = mock(HospedajeClient.class);
+        outbox = new EmailOutboxService(mongoTemplate, mailSender, hospedajeClient, properties, meterRegistry,
+                "reservas@tapalque.test", "TapalqueApp");
+
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(EmailSaliente.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.save(any(EmailSaliente.class))).thenAnswer(inv -> {
+            guardados.add(inv.getArgument(0));
+            return Mono.just(inv.getArgument(0));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        outbox.detener();
+    }
+
+    private static EmailSaliente email(int i) {
+        return new EmailSaliente("nueva-reserva:res" + i + ":admin@hotel.test", "admin" + i + "@hotel.test",
+                "Nueva reserva — Hotel " + i, "Reserva número " + i);
+    }
+
+    // Primera consulta: candidatos; segunda: los que quedaron tomados por este lote
+    private void pendientes(List<EmailSaliente> emails) {
+        when(mongoTemplate.find(any(Query.class), eq(EmailSaliente.class)))
+                .thenReturn(Flux.fromIterable(emails))
+                .thenReturn(Flux.fromIterable(emails));
+    }
+
+    @Test
+    @DisplayName("Envía los pendientes agrupados por conexión SMTP y los marca ENVIADO")
+    void procesarPendientes_EnviaPorConexion() throws Exception {
+        pendientes(IntStream.range(0, 5).mapToObj(EmailOutboxServiceTest::email).toList());
+
+        StepVerifier.create(outbox.procesarPendientes()).expectNext(5L).verifyComplete();
+
+        MimeMessage[] recibidos = greenMail.getReceivedMessages();
+        assertEquals(5, recibidos.length);
+        assertTrue(List.of(recibidos).stream().anyMatch(m -> {
+            try {
+                return "Nueva reserva — Hotel 3".equals(m.getSubject());
+            } catch (Exception e) {
+                return false;
+            }
+        }));
+        // 5 mensajes de a 2 por conexión
+        verify(mailSender, times(3)).send(any(MimeMessage[].class));
+        assertTrue(guardados.stream().allMatch(e -> e.getEstado() == EmailSaliente.Estado.ENVIADO
+                && e.getEnviado() != null && e.getBloqueo() == null));
+        assertEquals(5, meterRegistry.counter("reservas.email.enviados").count());
+    }
+
+    @Test
+    @DisplayName("Un destinatario inválido no impide enviar el resto del grupo")
+    void procesarPendientes_DestinatarioInvalido() {
+        EmailSaliente invalido = new EmailSaliente("x", "no es un email", "Asunto", "Cuerpo");
+        pendientes(List.of(email(1), invalido));
+
+        StepVerifier.create(outbox.procesarPendientes()).expectNext(1L).verifyComplete();
+
+        assertEquals(1, greenMail.getReceivedMessages().length);
+        assertEquals(EmailSaliente.Estado.PENDIENTE, invalido.getEstado());
+        assertEquals(1, invalido.getIntentos());
+        assertNotNull(invalido.getUltimoError());
+    }
+
+    @Test
+    @DisplayName("Con el SMTP caído se reprograma con espera exponencial y al agotar intentos queda FALLIDO")
+    void procesarPendientes_SmtpCaido_ReintentaYDescarta() {
+        greenMail.stop();
+        try {
+            EmailSaliente nuevo = email(1);
+            EmailSaliente ultimoIntento = email(2);
+            ultimoIntento.setIntentos(properties.getMaxIntentos() - 1);
+            pendientes(List.of(nuevo, ultimoIntento));
+            LocalDateTime antes = LocalDateTime.now();
+
+            StepVerifier.create(outbox.procesarPendientes()).expectNext(0L).verifyComplete();
+
+            assertEquals(EmailSaliente.Estado.PENDIENTE, nuevo.getEstado());
+            assertEquals(1, nuevo.getIntentos());
+            assertFalse(nuevo.getProximoIntento().isBefore(antes.plus(properties.espera(1))));
+            assertEquals(EmailSaliente.Estado.FALLIDO, ultimoIntento.getEstado());
+            assertEquals(2, guardados.size());
+            assertEquals(1, meterRegistry.counter("reservas.email.fallidos").count());
+        } finally {
+            greenMail.start();
+        }
+    }
+
+    @Test
+    @DisplayName("Con hosteleria caída el aviso al hospedaje queda guardado y se manda cuando responde")
+    void procesarPendientes_HospedajeCaido_ReintentaLaBusqueda() throws Exception {
+        EmailSaliente aviso = EmailSaliente.paraHospedaje("nueva-reserva:res1", "hotel1", "Nueva reserva — Hotel", "Cuerpo");
+        when(mongoTemplate.insert(any(EmailSaliente.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        when(hospedajeClient.fetchEmailNotificacion("hotel1"))
+                .thenReturn(Mono.error(new IllegalStateException("503 msvc-hosteleria")))
+                .thenReturn(Mono.just("admin@hotel.test"));
+
+        StepVerifier.create(outbox.encolarParaHospedaje("nueva-reserva:res1", "hotel1", "Nueva reserva — Hotel", "Cuerpo"))
+                .verifyComplete();
+        verify(mongoTemplate).insert(argThat((EmailSaliente e) -> e.getDestinatario() == null && "hotel1".equals(e.getHospedajeId())
+                && e.getEstado() == EmailSaliente.Estado.PENDIENTE));
+
+        pendientes(List.of(aviso));
+        StepVerifier.create(outbox.procesarPendientes()).expectNext(0L).verifyComplete();
+
+        assertEquals(EmailSaliente.Estado.PENDIENTE, aviso.getEstado());
+        assertEquals(1, aviso.getIntentos());
+        assertTrue(aviso.getProximoIntento().isAfter(LocalDateTime.now()));
+        assertEquals(List.of(aviso), guardados);
+        verify(mailSender, never()).send(any(MimeMessage[].class));
+
+        pendientes(List.of(aviso));
+        StepVerifier.create(outbox.procesarPendientes()).expectNext(1L).verifyComplete();
+
+        assertEquals(EmailSaliente.Estado.ENVIADO, aviso.getEstado());
+        assertEquals("admin@hotel.test", aviso.getDestinatario());
+        assertEquals(1, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    @DisplayName("Si el hospedaje no tiene email de notificación el aviso queda FALLIDO sin reintentos")
+    void procesarPendientes_HospedajeSinEmail() {
+        EmailSaliente aviso = EmailSaliente.paraHospedaje("nueva-reserva:res1", "hotel1", "Asunto", "Cuerpo");
+        when(hospedajeClient.fetchEmailNotificacion("hotel1")).thenReturn(Mono.empty());
+        pendientes(List.of(aviso));
+
+        StepVerifier.create(outbox.procesarPendientes()).expectNext(0L).verifyComplete();
+
+        assertEquals(EmailSaliente.Estado.FALLIDO, aviso.getEstado());
+        assertEquals(List.of(aviso), guardados);
+        assertEquals(0, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    @DisplayName("Sólo toma los que siguen pendientes: uno que otra réplica acaba de enviar no se vuelve a mandar")
+    void procesarPendientes_TomaSoloPendientes() {
+        EmailSaliente pendiente = email(1);
+        pendiente.setId("e1");
+        pendientes(List.of(pendiente));
+
+        StepVerifier.create(outbox.procesarPendientes()).expectNext(1L).verifyComplete();
+
+        ArgumentCaptor<Query> libres = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateMulti(libres.capture(), any(Update.class), eq(EmailSaliente.class));
+        assertEquals(EmailSaliente.Estado.PENDIENTE, libres.getValue().getQueryObject().get("estado"));
+    }
+
+    @Test
+    @DisplayName("Sin pendientes no abre conexiones")
+    void procesarPendientes_SinPendientes() {
+        when(mongoTemplate.find(any(Query.class), eq(EmailSaliente.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(outbox.procesarPendientes()).expectNext(0L).verifyComplete();
+
+        verify(mailSender, times(0)).send(any(MimeMessage[].class));
+    }
+
+    @Test
+    @DisplayName("Encolar dos veces el mismo aviso no falla ni lo duplica")
+    void encolar_Repetido() {
+        when(mongoTemplate.insert(any(EmailSaliente.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+
+        StepVerifier.create(outbox.encolar("nueva-reserva:res1:a@b.c", "a@b.c", "Asunto", "Cuerpo"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("La espera entre reintentos se duplica hasta el tope")
+    void espera_Exponencial() {
+        assertEquals(properties.getEsperaInicial(), properties.espera(1));
+        assertEquals(properties.getEsperaInicial().multipliedBy(4), properties.espera(3));
+        assertEquals(properties.getEsperaMaxima(), properties.espera(30));
+    }
+}
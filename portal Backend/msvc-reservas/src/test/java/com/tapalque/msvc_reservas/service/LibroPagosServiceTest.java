@@ -0,0 +1,147 @@
+package com.tapalque.msvc_reservas.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.client.result.DeleteResult;
+import com.tapalque.msvc_reservas.entity.MovimientoPago;
+import com.tapalque.msvc_reservas.entity.Reservation;
+import com.tapalque.msvc_reservas.enums.PaymentType;
+import com.tapalque.msvc_reservas.repository.ReservationRepositoryInterface;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LibroPagosService Tests")
+class LibroPagosServiceTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private ReservationRepositoryInterface reservationRepository;
+
+    private LibroPagosService libroPagosService;
+
+    private final LocalDateTime desde = LocalDateTime.of(2026, 1, 10, 0, 0);
+    private final LocalDateTime hasta = LocalDateTime.of(2026, 1, 10, 23, 59);
+
+    @BeforeEach
+    void setUp() {
+        libroPagosService = new LibroPagosService(mongoTemplate, reservationRepository);
+    }
+
+    private static Reservation reserva(Reservation.PaymentRecord... pagos) {
+        Reservation.Hotel hotel = new Reservation.Hotel();
+        hotel.setHotelId("hotel1");
+        Reservation reserva = new Reservation();
+        reserva.setId("res1");
+        reserva.setHotel(hotel);
+        reserva.setPaymentHistory(new ArrayList<>(List.of(pagos)));
+        return reserva;
+    }
+
+    @Test
+    @DisplayName("Copia cada pago con id reserva-posición y borra los que ya no están en el historial")
+    void registrar_CopiaHistorial() {
+        when(mongoTemplate.save(any(MovimientoPago.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        when(mongoTemplate.remove(any(Query.class), eq(MovimientoPago.class))).thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+
+        Reservation reserva = reserva(
+                new Reservation.PaymentRecord(desde.plusHours(9), 5000.0, PaymentType.EFECTIVO, "Seña"),
+                new Reservation.PaymentRecord(desde.plusHours(12), 7000.0, PaymentType.MERCADO_PAGO, "Saldo"));
+
+        StepVerifier.create(libroPagosService.registrar(reserva)).verifyComplete();
+
+        ArgumentCaptor<MovimientoPago> guardados = ArgumentCaptor.forClass(MovimientoPago.class);
+        verify(mongoTemplate, times(2)).save(guardados.capture());
+        assertEquals(List.of("res1-0", "res1-1"), guardados.getAllValues().stream().map(MovimientoPago::getId).toList());
+        assertEquals("hotel1", guardados.getAllValues().get(1).getHotelId());
+        assertEquals(PaymentType.MERCADO_PAGO, guardados.getAllValues().get(1).getPaymentType());
+
+        ArgumentCaptor<Query> sobrantes = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(sobrantes.capture(), eq(MovimientoPago.class));
+        Document filtro = sobrantes.getValue().getQueryObject();
+        assertEquals("res1", filtro.get("reservaId"));
+        assertEquals(new Document("$gte", 2), filtro.get("posicion"));
+    }
+
+    @Test
+    @DisplayName("Sin hotel no escribe en el libro")
+    void registrar_SinHotel_NoHaceNada() {
+        Reservation reserva = reserva(new Reservation.PaymentRecord(desde, 100.0, PaymentType.EFECTIVO, "x"));
+        reserva.setHotel(null);
+
+        StepVerifier.create(libroPagosService.registrar(reserva)).verifyComplete();
+
+        verify(mongoTemplate, never()).save(any(MovimientoPago.class));
+    }
+
+    @Test
+    @DisplayName("El cierre agrupa en Mongo por medio de pago y cuenta reservas distintas")
+    void cierre_ArmaTotales() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(MovimientoPago.class), eq(Document.class)))
+                .thenReturn(Flux.just(
+                        new Document("_id", "EFECTIVO").append("total", 12000.0).append("pagos", 3)
+                                .append("reservas", List.of("res1", "res2")),
+                        new Document("_id", "MERCADO_PAGO").append("total", 8000.5).append("pagos", 1)
+                                .append("reservas", List.of("res2"))));
+
+        StepVerifier.create(libroPagosService.cierre("hotel1", desde, hasta))
+                .assertNext(cierre -> {
+                    assertEquals(20000.5, cierre.getTotalIngresado(), 0.001);
+                    assertEquals(4, cierre.getTotalPagos());
+                    assertEquals(2, cierre.getTotalReservas());
+                    assertEquals(12000.0, cierre.getPorMedioDePago().get("EFECTIVO"));
+                    assertEquals(8000.5, cierre.getPorMedioDePago().get("MERCADO_PAGO"));
+                    assertEquals(desde, cierre.getDesde());
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<Aggregation> agregacion = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(agregacion.capture(), eq(MovimientoPago.class), eq(Document.class));
+        List<Document> etapas = agregacion.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        Document match = etapas.get(0).get("$match", Document.class);
+        assertEquals("hotel1", match.get("hotelId"));
+        assertEquals(new Document("$gte", desde).append("$lte", hasta), match.get("fecha"));
+        assertEquals("$paymentType", etapas.get(1).get("$group", Document.class).get("_id"));
+    }
+
+    @Test
+    @DisplayName("Sin pagos en el período el cierre da cero")
+    void cierre_SinPagos() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(MovimientoPago.class), eq(Document.class)))
+                .thenReturn(Flux.empty());
+
+        StepVerifier.create(libroPagosService.cierre("hotel1", desde, hasta))
+                .assertNext(cierre -> {
+                    assertEquals(0.0, cierre.getTotalIngresado());
+                    assertEquals(0, cierre.getTotalReservas());
+                    assertTrue(cierre.getPorMedioDePago().isEmpty());
+                })
+                .verifyComplete();
+    }
+}
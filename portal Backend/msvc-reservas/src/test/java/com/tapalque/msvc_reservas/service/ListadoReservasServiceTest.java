@@ -0,0 +1,312 @@
+package com.tapalque.msvc_reservas.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.tapalque.msvc_reservas.dto.PaginaReservasDTO;
+import com.tapalque.msvc_reservas.dto.ReservaResumenDTO;
+import com.tapalque.msvc_reservas.entity.Reservation;
+import com.tapalque.msvc_reservas.enums.EstadoReserva;
+import com.tapalque.msvc_reservas.enums.PaymentType;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ListadoReservasService Tests")
+class ListadoReservasServiceTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private ListadoReservasService listadoReservasService;
+
+    private final List<Reservation> reservas = new ArrayList<>();
+    private final List<Query> consultas = new ArrayList<>();
+    private MappingMongoConverter converter;
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversiones = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversiones.getSimpleTypeHolder());
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversiones);
+        converter.afterPropertiesSet();
+
+        // Evalúa la consulta que arma el servicio sobre las reservas en memoria
+        lenient().when(mongoTemplate.find(any(Query.class), eq(Reservation.class))).thenAnswer(inv -> {
+            Query query = inv.getArgument(0);
+            consultas.add(query);
+            Document filtro = query.getQueryObject();
+            Document orden = query.getSortObject();
+            return Flux.fromStream(reservas.stream()
+                    .map(r -> Map.entry(r, documento(r)))
+                    .filter(e -> cumple(e.getValue(), filtro))
+                    .sorted((a, b) -> comparar(a.getValue(), b.getValue(), orden))
+                    .limit(query.getLimit() > 0 ? query.getLimit() : Long.MAX_VALUE)
+                    .map(Map.Entry::getKey));
+        });
+
+        listadoReservasService = new ListadoReservasService(mongoTemplate);
+    }
+
+    @Test
+    @DisplayName("Recorrer todas las páginas devuelve lo mismo que filtrar y ordenar la colección entera")
+    void paginasEquivalenAFiltrarTodo() {
+        Random random = new Random(20260118L);
+        sembrar(random, 300);
+
+        for (int caso = 0; caso < 60; caso++) {
+            ListadoReservasService.Filtro filtro = filtroAlAzar(random);
+            int limite = 1 + random.nextInt(40);
+
+            String hotelId = "h" + random.nextInt(3);
+            List<String> esperadas = filtrar(r -> hotelId.equals(r.getHotel().getHotelId()), filtro, true);
+            assertEquals(esperadas, recorrer(despues -> listadoReservasService.porHotel(hotelId, filtro, despues, limite).block()),
+                    "hotel " + hotelId + " " + filtro + " limite " + limite);
+
+            ListadoReservasService.Filtro filtroCliente = new ListadoReservasService.Filtro(
+                    filtro.checkInDesde(), filtro.checkInHasta(), filtro.estado(), null);
+            String customerId = "c" + random.nextInt(8);
+            List<String> delCliente = filtrar(r -> customerId.equals(r.getCustomer().getCustomerId()), filtroCliente, false);
+            assertEquals(delCliente, recorrer(despues -> listadoReservasService.porCliente(customerId, filtroCliente, despues, limite).block()),
+                    "cliente " + customerId + " " + filtroCliente + " limite " + limite);
+        }
+    }
+
+    @Test
+    @DisplayName("La página trae el resumen de la reserva y pide un elemento de más con la proyección")
+    void paginaConResumen() {
+        Reservation reserva = reserva("r-1", "h1", "c1", 4, LocalDateTime.of(2026, 2, 1, 13, 0), true, false);
+        reservas.add(reserva);
+
+        StepVerifier.create(listadoReservasService.porHotel("h1", null, null, null))
+                .assertNext(pagina -> {
+                    assertNull(pagina.getSiguiente());
+                    assertEquals(1, pagina.getReservas().size());
+                    ReservaResumenDTO resumen = pagina.getReservas().get(0);
+                    assertEquals("r-1", resumen.getId());
+                    assertEquals(4, resumen.getRoomNumber());
+                    assertEquals(LocalDateTime.of(2026, 2, 1, 13, 0), resumen.getCheckInDate());
+                    assertTrue(resumen.getIsPaid());
+                    assertEquals(PaymentType.TRANSFERENCIA, resumen.getPaymentType());
+                })
+                .verifyComplete();
+
+        Query query = consultas.get(0);
+        assertEquals(ListadoReservasService.LIMITE_POR_DEFECTO + 1, query.getLimit());
+        assertFalse(query.getFieldsObject().containsKey("paymentHistory"));
+        assertFalse(query.getFieldsObject().containsKey("billingInfo"));
+    }
+
+    @Test
+    @DisplayName("El límite se acota al máximo permitido")
+    void limiteAcotado() {
+        StepVerifier.create(listadoReservasService.porCliente("c1", null, null, 10_000))
+                .assertNext(pagina -> assertTrue(pagina.getReservas().isEmpty()))
+                .verifyComplete();
+
+        assertEquals(ListadoReservasService.LIMITE_MAXIMO + 1, consultas.get(0).getLimit());
+    }
+
+    @Test
+    @DisplayName("Un cursor inválido o un rango invertido son errores del pedido")
+    void parametrosInvalidos() {
+        StepVerifier.create(listadoReservasService.porHotel("h1", null, "no-es-un-cursor", 10))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        var invertido = new ListadoReservasService.Filtro(LocalDate.of(2026, 3, 10), LocalDate.of(2026, 3, 1), null, null);
+        StepVerifier.create(listadoReservasService.porHotel("h1", invertido, null, 10))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        assertTrue(consultas.isEmpty());
+    }
+
+    // --- Datos ---
+
+    private void sembrar(Random random, int cantidad) {
+        LocalDate base = LocalDate.of(2026, 1, 1);
+        for (int i = 0; i < cantidad; i++) {
+            // Pocos horarios distintos para que haya muchos empates de check-in
+            LocalDateTime checkIn = random.nextInt(25) == 0 ? null
+                    : base.plusDays(random.nextInt(60)).atTime(random.nextBoolean() ? 13 : 15, 0);
+            reservas.add(reserva(String.format("r-%04d", random.nextInt(100_000) * 1000 + i),
+                    "h" + random.nextInt(3), "c" + random.nextInt(8), 1 + random.nextInt(6),
+                    checkIn, random.nextBoolean(), random.nextInt(5) == 0));
+        }
+    }
+
+    private static Reservation reserva(String id, String hotelId, String customerId, int habitacion,
+                                       LocalDateTime checkIn, boolean pagada, boolean cancelada) {
+        Reservation.Payment payment = new Reservation.Payment(100.0, pagada ? 100.0 : 0.0, false, PaymentType.TRANSFERENCIA);
+        payment.setIsPaid(pagada);
+
+        Reservation reserva = new Reservation(new Reservation.Customer(customerId, "Cliente " + customerId),
+                new Reservation.Hotel(hotelId, "Hotel " + hotelId),
+                checkIn == null ? null : new Reservation.StayPeriod(checkIn, checkIn.plusDays(2).withHour(10)),
+                payment, 100.0);
+        reserva.setId(id);
+        reserva.setRoomNumber(habitacion);
+        reserva.setIsCancelled(cancelada);
+        return reserva;
+    }
+
+    private static ListadoReservasService.Filtro filtroAlAzar(Random random) {
+        LocalDate desde = random.nextBoolean() ? LocalDate.of(2026, 1, 1).plusDays(random.nextInt(50)) : null;
+        LocalDate hasta = random.nextBoolean()
+                ? (desde != null ? desde : LocalDate.of(2026, 1, 1)).plusDays(random.nextInt(30)) : null;
+        EstadoReserva estado = random.nextInt(4) == 0 ? null : EstadoReserva.values()[random.nextInt(3)];
+        Integer habitacion = random.nextBoolean() ? 1 + random.nextInt(6) : null;
+        return new ListadoReservasService.Filtro(desde, hasta, estado, habitacion);
+    }
+
+    private List<String> filtrar(Predicate<Reservation> duenio, ListadoReservasService.Filtro f,
+                                 boolean ascendente) {
+        Comparator<Reservation> orden = Comparator.comparing((Reservation r) -> r.getStayPeriod().getCheckInDate())
+                .thenComparing(Reservation::getId);
+        return reservas.stream()
+                .filter(duenio)
+                .filter(r -> r.getStayPeriod() != null)
+                .filter(r -> {
+                    LocalDate dia = r.getStayPeriod().getCheckInDate().toLocalDate();
+                    return (f.checkInDesde() == null || !dia.isBefore(f.checkInDesde()))
+                            && (f.checkInHasta() == null || !dia.isAfter(f.checkInHasta()));
+                })
+                .filter(r -> f.habitacion() == null || f.habitacion().equals(r.getRoomNumber()))
+                .filter(r -> f.estado() == null || switch (f.estado()) {
+                    case CANCELADA -> r.getIsCancelled();
+                    case PAGADA -> !r.getIsCancelled() && r.getPayment().getIsPaid();
+                    case PENDIENTE -> !r.getIsCancelled() && !r.getPayment().getIsPaid();
+                })
+                .sorted(ascendente ? orden : orden.reversed())
+                .map(Reservation::getId)
+                .toList();
+    }
+
+    private static List<String> recorrer(Function<String, PaginaReservasDTO> pagina) {
+        List<String> ids = new ArrayList<>();
+        String despues = null;
+        do {
+            PaginaReservasDTO actual = pagina.apply(despues);
+            actual.getReservas().forEach(r -> ids.add(r.getId()));
+            despues = actual.getSiguiente();
+        } while (despues != null);
+        return ids;
+    }
+
+    // --- Evaluador mínimo de filtros Mongo: $and, $or, $gt, $gte, $lt, $lte, $ne e igualdad ---
+
+    private Document documento(Reservation reserva) {
+        Document documento = new Document();
+        converter.write(reserva, documento);
+        return documento;
+    }
+
+    private static boolean cumple(Document documento, Document filtro) {
+        for (Map.Entry<String, Object> condicion : filtro.entrySet()) {
+            String clave = condicion.getKey();
+            boolean ok = switch (clave) {
+                case "$and" -> lista(condicion.getValue()).stream().allMatch(f -> cumple(documento, f));
+                case "$or" -> lista(condicion.getValue()).stream().anyMatch(f -> cumple(documento, f));
+                default -> cumpleCampo(valor(documento, clave), condicion.getValue());
+            };
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean cumpleCampo(Object actual, Object esperado) {
+        if (!(esperado instanceof Document operadores)) {
+            return Objects.equals(actual, normalizar(esperado));
+        }
+        for (Map.Entry<String, Object> operador : operadores.entrySet()) {
+            Object valor = normalizar(operador.getValue());
+            boolean ok = switch (operador.getKey()) {
+                case "$ne" -> !Objects.equals(actual, valor);
+                case "$gt" -> actual != null && comparar(actual, valor) > 0;
+                case "$gte" -> actual != null && comparar(actual, valor) >= 0;
+                case "$lt" -> actual != null && comparar(actual, valor) < 0;
+                case "$lte" -> actual != null && comparar(actual, valor) <= 0;
+                default -> throw new IllegalArgumentException("Operador no soportado: " + operador.getKey());
+            };
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int comparar(Document a, Document b, Document orden) {
+        for (Map.Entry<String, Object> campo : orden.entrySet()) {
+            int resultado = comparar(valor(a, campo.getKey()), valor(b, campo.getKey()));
+            if (resultado != 0) {
+                return ((Number) campo.getValue()).intValue() * resultado;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int comparar(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private static Object valor(Document documento, String ruta) {
+        Object actual = documento;
+        for (String parte : ruta.split("\\.")) {
+            if (!(actual instanceof Document d)) {
+                return null;
+            }
+            actual = d.get(parte);
+        }
+        return normalizar(actual);
+    }
+
+    // El converter guarda LocalDateTime como Date; la consulta sin mapear los tiene como LocalDateTime
+    private static Object normalizar(Object valor) {
+        return valor instanceof Date fecha ? LocalDateTime.ofInstant(fecha.toInstant(), ZoneId.systemDefault()) : valor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Document> lista(Object valor) {
+        return ((List<Object>) valor).stream().flatMap(v -> v instanceof Document d ? Stream.of(d) : Stream.empty()).toList();
+    }
+}
@@ -0,0 +1,248 @@
+package com.tapalque.msvc_reservas.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.tapalque.msvc_reservas.entity.OcupacionNoche;
+import com.tapalque.msvc_reservas.entity.Reservation;
+import com.tapalque.msvc_reservas.repository.ReservationRepositoryInterface;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/**
+ * El libro de ocupación contra un Mongo en memoria que respeta el índice único
+ * (hotelId, roomNumber, noche) documento a documento, como el insert ordenado real.
+ */
+@DisplayName("OcupacionService Tests")
+class OcupacionServiceTest {
+
+    private static final LocalDate NOCHE = LocalDate.now().plusDays(10);
+
+    private final Map<String, OcupacionNoche> libro = new ConcurrentHashMap<>();
+    private ReactiveMongoTemplate mongoTemplateDelLibro;
+    private DisponibilidadService disponibilidadService;
+    private OcupacionService ocupacionService;
+
+    @BeforeEach
+    void setUp() {
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        mongoTemplateDelLibro = mongoTemplate;
+        disponibilidadService = new DisponibilidadService(mongoTemplate, mock(RabbitTemplate.class), Schedulers.immediate(), 365);
+        ocupacionService = new OcupacionService(mongoTemplate, mock(ReservationRepositoryInterface.class), disponibilidadService);
+
+        when(mongoTemplate.insert(anyList(), eq(OcupacionNoche.class))).thenAnswer(inv -> {
+            Collection<OcupacionNoche> entradas = inv.getArgument(0);
+            // Cada documento es atómico y en otro hilo, para que las altas concurrentes se intercalen
+            return Flux.fromIterable(entradas).concatMap(entrada -> Mono.fromCallable(() -> {
+                entrada.setId(new ObjectId().toHexString());
+                if (libro.putIfAbsent(clave(entrada), entrada) != null) {
+                    throw new DuplicateKeyException("E11000 duplicate key error: " + clave(entrada));
+                }
+                return entrada;
+            }).subscribeOn(Schedulers.parallel()));
+        });
+        when(mongoTemplate.remove(any(Query.class), eq(OcupacionNoche.class))).thenAnswer(inv -> Mono.fromCallable(() -> {
+            Predicate<OcupacionNoche> filtro = filtro(inv.getArgument(0));
+            long borradas = 0;
+            for (Map.Entry<String, OcupacionNoche> entrada : libro.entrySet()) {
+                if (filtro.test(entrada.getValue()) && libro.remove(entrada.getKey(), entrada.getValue())) {
+                    borradas++;
+                }
+            }
+            return DeleteResult.acknowledged(borradas);
+        }));
+        when(mongoTemplate.find(any(Query.class), eq(OcupacionNoche.class))).thenAnswer(inv -> {
+            Predicate<OcupacionNoche> filtro = filtro(inv.getArgument(0));
+            return Flux.defer(() -> Flux.fromStream(libro.values().stream().filter(filtro)));
+        });
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(OcupacionNoche.class))).thenAnswer(inv -> Mono.fromCallable(() -> {
+            Predicate<OcupacionNoche> filtro = filtro(inv.getArgument(0));
+            List<OcupacionNoche> afectadas = libro.values().stream().filter(filtro).toList();
+            afectadas.forEach(o -> o.setExpiraEn(null));
+            return UpdateResult.acknowledged(afectadas.size(), (long) afectadas.size(), null);
+        }));
+    }
+
+    private static String clave(OcupacionNoche o) {
+        return o.getHotelId() + ":" + o.getRoomNumber() + ":" + o.getNoche();
+    }
+
+    // Los filtros que usan los servicios: igualdad, $in, $lt, $gte y $exists
+    private static Predicate<OcupacionNoche> filtro(Query query) {
+        Document filtro = query.getQueryObject();
+        return o -> filtro.entrySet().stream().allMatch(condicion -> {
+            Object valor = switch (condicion.getKey()) {
+                case "_id" -> o.getId();
+                case "hotelId" -> o.getHotelId();
+                case "roomNumber" -> o.getRoomNumber();
+                case "noche" -> o.getNoche();
+                case "reservaId" -> o.getReservaId();
+                case "expiraEn" -> o.getExpiraEn();
+                default -> throw new IllegalArgumentException("Filtro no soportado: " + condicion.getKey());
+            };
+            if (!(condicion.getValue() instanceof Document operador)) {
+                return Objects.equals(condicion.getValue(), valor);
+            }
+            return operador.entrySet().stream().allMatch(op -> switch (op.getKey()) {
+                case "$in" -> ((Collection<?>) op.getValue()).contains(valor);
+                case "$lt" -> valor != null && comparar(valor, op.getValue()) < 0;
+                case "$gte" -> valor != null && comparar(valor, op.getValue()) >= 0;
+                case "$exists" -> (valor != null) == (Boolean) op.getValue();
+                default -> throw new IllegalArgumentException("Operador no soportado: " + op.getKey());
+            });
+        });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int comparar(Object valor, Object limite) {
+        return ((Comparable) valor).compareTo(limite);
+    }
+
+    private Mono<Boolean> intentar(String reservaId, LocalDate checkIn, LocalDate checkOut) {
+        return ocupacionService.reservar(reservaId, "hotel1", 7, checkIn, checkOut, null)
+                .thenReturn(true)
+                .onErrorResume(IllegalStateException.class, e -> Mono.just(false))
+                .subscribeOn(Schedulers.parallel());
+    }
+
+    @Test
+    @DisplayName("100 altas concurrentes para la misma habitación y noche: gana exactamente una")
+    void reservar_100Concurrentes_GanaUna() {
+        List<Boolean> resultados = Flux.range(0, 100)
+                .flatMap(i -> intentar("r" + i, NOCHE, NOCHE.plusDays(1)), 100)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(1, resultados.stream().filter(Boolean::booleanValue).count());
+        assertEquals(1, libro.size());
+    }
+
+    @Test
+    @DisplayName("Estadías superpuestas en paralelo: todo o nada, sin noches dobles ni restos de los perdedores")
+    void reservar_EstadiasSuperpuestas_TodoONada() {
+        disponibilidadService.reconstruir().block();
+        Random random = new Random(7);
+        List<LocalDate[]> estadias = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            LocalDate checkIn = NOCHE.plusDays(random.nextInt(20));
+            estadias.add(new LocalDate[] {checkIn, checkIn.plusDays(1 + random.nextInt(4))});
+        }
+
+        List<String> ganadoras = Flux.range(0, estadias.size())
+                .flatMap(i -> intentar("r" + i, estadias.get(i)[0], estadias.get(i)[1])
+                        .filter(Boolean::booleanValue)
+                        .map(ok -> "r" + i), 100)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertFalse(ganadoras.isEmpty());
+        Map<String, Long> nochesPorReserva = libro.values().stream()
+                .collect(Collectors.groupingBy(OcupacionNoche::getReservaId, Collectors.counting()));
+        assertEquals(ganadoras.size(), nochesPorReserva.size(), "Sólo las ganadoras tienen noches en el libro");
+        for (String ganadora : ganadoras) {
+            LocalDate[] estadia = estadias.get(Integer.parseInt(ganadora.substring(1)));
+            assertEquals(OcupacionService.noches(estadia[0], estadia[1]).size(), nochesPorReserva.get(ganadora),
+                    "La reserva " + ganadora + " tiene todas sus noches");
+        }
+
+        // El índice mantenido con las escrituras concurrentes coincide con el libro
+        DisponibilidadService recargado = new DisponibilidadService(mongoTemplateDelLibro, mock(RabbitTemplate.class), Schedulers.immediate(), 365);
+        recargado.reconstruir().block();
+        assertTrue(disponibilidadService.ocupadas("hotel1", NOCHE, NOCHE.plusDays(25)).orElseThrow().contains(7));
+        for (int dia = 0; dia < 25; dia++) {
+            LocalDate desde = NOCHE.plusDays(dia);
+            assertEquals(recargado.ocupadas("hotel1", desde, desde.plusDays(1)),
+                    disponibilidadService.ocupadas("hotel1", desde, desde.plusDays(1)), "Noche " + desde);
+        }
+    }
+
+    @Test
+    @DisplayName("Una retención vencida que el TTL todavía no borró no bloquea la habitación")
+    void reservar_RetencionVencida_SeLibera() {
+        StepVerifier.create(ocupacionService.reservar("online", "hotel1", 7, NOCHE, NOCHE.plusDays(2),
+                        LocalDateTime.now().minusSeconds(1)))
+                .verifyComplete();
+
+        StepVerifier.create(intentar("manual", NOCHE.plusDays(1), NOCHE.plusDays(3)))
+                .expectNext(true)
+                .verifyComplete();
+        assertEquals(List.of("manual", "manual", "online"),
+                libro.values().stream().map(OcupacionNoche::getReservaId).sorted().toList());
+
+        // Una retención vigente sí bloquea
+        StepVerifier.create(ocupacionService.reservar("online2", "hotel1", 8, NOCHE, NOCHE.plusDays(1), OcupacionService.vencimiento()))
+                .verifyComplete();
+        StepVerifier.create(ocupacionService.reservar("otra", "hotel1", 8, NOCHE, NOCHE.plusDays(1), null))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("sincronizar mueve las noches al cambiar fechas, confirma la retención y libera al cancelar")
+    void sincronizar_MoverConfirmarYCancelar() {
+        ocupacionService.reservar("r1", "hotel1", 7, NOCHE, NOCHE.plusDays(2), OcupacionService.vencimiento()).block();
+
+        Reservation reserva = new Reservation();
+        reserva.setId("r1");
+        reserva.setHotel(new Reservation.Hotel("hotel1", "Hotel"));
+        reserva.setRoomNumber(7);
+        reserva.setIsActive(true);
+        reserva.setIsCancelled(false);
+        reserva.setStayPeriod(new Reservation.StayPeriod(NOCHE.plusDays(1).atTime(13, 0), NOCHE.plusDays(4).atTime(10, 0)));
+
+        ocupacionService.sincronizar(reserva).block();
+        assertEquals(List.of(NOCHE.plusDays(1), NOCHE.plusDays(2), NOCHE.plusDays(3)),
+                libro.values().stream().map(OcupacionNoche::getNoche).sorted().toList());
+        assertTrue(libro.values().stream().allMatch(o -> o.getExpiraEn() == null), "Activa: ocupación firme");
+
+        // El cambio choca con otra reserva: no se guarda nada a medias
+        ocupacionService.reservar("r2", "hotel1", 7, NOCHE.plusDays(5), NOCHE.plusDays(6), null).block();
+        reserva.setStayPeriod(new Reservation.StayPeriod(NOCHE.plusDays(1).atTime(13, 0), NOCHE.plusDays(6).atTime(10, 0)));
+        StepVerifier.create(ocupacionService.sincronizar(reserva)).expectError(IllegalStateException.class).verify();
+        assertEquals(3, libro.values().stream().filter(o -> o.getReservaId().equals("r1")).count());
+
+        reserva.setIsCancelled(true);
+        ocupacionService.sincronizar(reserva).block();
+        assertEquals(List.of("r2"), libro.values().stream().map(OcupacionNoche::getReservaId).toList());
+    }
+
+    @Test
+    @DisplayName("Las noches van del check-in al día anterior al check-out")
+    void noches_SinElDiaDeSalida() {
+        assertEquals(List.of(NOCHE, NOCHE.plusDays(1)), OcupacionService.noches(NOCHE, NOCHE.plusDays(2)));
+        assertTrue(OcupacionService.noches(NOCHE, NOCHE).isEmpty());
+    }
+}
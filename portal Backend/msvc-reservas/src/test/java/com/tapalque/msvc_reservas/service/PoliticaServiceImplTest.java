@@ -0,0 +1,91 @@
+package com.tapalque.msvc_reservas.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import com.tapalque.msvc_reservas.config.RabbitMQConfig;
+import com.tapalque.msvc_reservas.dto.CatalogoEventoDTO;
+import com.tapalque.msvc_reservas.entity.PoliticaGlobal;
+import com.tapalque.msvc_reservas.repository.PoliticaRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+@DisplayName("PoliticaServiceImpl Tests")
+class PoliticaServiceImplTest {
+
+    private PoliticaRepository politicaRepository;
+    private RabbitTemplate rabbitTemplate;
+    private PoliticaServiceImpl politicaService;
+
+    @BeforeEach
+    void setUp() {
+        politicaRepository = mock(PoliticaRepository.class);
+        rabbitTemplate = mock(RabbitTemplate.class);
+        politicaService = new PoliticaServiceImpl(politicaRepository, rabbitTemplate, new SimpleMeterRegistry(),
+                Duration.ofMinutes(5), Duration.ofHours(1));
+        when(politicaRepository.save(any(PoliticaGlobal.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+    }
+
+    private static PoliticaGlobal politica(int estadiaMinima) {
+        PoliticaGlobal politica = new PoliticaGlobal();
+        politica.setHotelId("hotel1");
+        politica.setEstadiaMinima(estadiaMinima);
+        return politica;
+    }
+
+    @Test
+    @DisplayName("Las lecturas repetidas van a Mongo una sola vez")
+    void obtenerPolitica_Cacheada() {
+        when(politicaRepository.findByHotelId("hotel1")).thenReturn(Mono.just(politica(2)));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(2, politicaService.obtenerPolitica("hotel1").block().getEstadiaMinima());
+        }
+
+        verify(politicaRepository, times(1)).findByHotelId("hotel1");
+    }
+
+    @Test
+    @DisplayName("Actualizar invalida la cache local y avisa a las demás réplicas")
+    void actualizarPolitica_InvalidaYAvisa() {
+        when(politicaRepository.findByHotelId("hotel1"))
+                .thenReturn(Mono.just(politica(2)))
+                .thenReturn(Mono.just(politica(2)))
+                .thenReturn(Mono.just(politica(3)));
+        PoliticaGlobal cacheada = politicaService.obtenerPolitica("hotel1").block();
+
+        politicaService.actualizarPolitica("hotel1", null, null, 3, "admin").block();
+
+        assertEquals(2, cacheada.getEstadiaMinima(), "No se modifica la instancia compartida de la cache");
+        assertEquals(3, politicaService.obtenerPolitica("hotel1").block().getEstadiaMinima());
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.EXCHANGE_CATALOGO), eq(""),
+                argThat((CatalogoEventoDTO e) -> CatalogoEventoDTO.POLITICA.equals(e.getTipo()) && "hotel1".equals(e.getHospedajeId())));
+    }
+
+    @Test
+    @DisplayName("El aviso de otra réplica invalida la política cacheada")
+    void invalidarCache_RecargaDesdeMongo() {
+        when(politicaRepository.findByHotelId("hotel1"))
+                .thenReturn(Mono.just(politica(2)))
+                .thenReturn(Mono.just(politica(4)));
+        politicaService.obtenerPolitica("hotel1").block();
+
+        politicaService.invalidarCache("hotel1");
+
+        assertEquals(4, politicaService.obtenerPolitica("hotel1").block().getEstadiaMinima());
+    }
+}
@@ -0,0 +1,89 @@
+package com.tapalque.msvc_reservas.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.tapalque.msvc_reservas.dto.CustomerDTO;
+import com.tapalque.msvc_reservas.dto.HotelDTO;
+import com.tapalque.msvc_reservas.dto.ReservationDTO;
+import com.tapalque.msvc_reservas.dto.StayPeriodDTO;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@DisplayName("ReservaEmailService Tests")
+class ReservaEmailServiceTest {
+
+    private EmailOutboxService outbox;
+    private ReservaEmailService emailService;
+    private ReservationDTO reserva;
+
+    @BeforeEach
+    void setUp() {
+        outbox = mock(EmailOutboxService.class);
+        emailService = new ReservaEmailService(outbox);
+
+        CustomerDTO customer = new CustomerDTO();
+        customer.setCustomerName("Juan Pérez");
+        customer.setCustomerEmail("juan@mail.test");
+        HotelDTO hotel = new HotelDTO();
+        hotel.setHotelId("hotel1");
+        hotel.setHotelName("Hotel <Test> & Spa");
+
+        reserva = new ReservationDTO();
+        reserva.setId("res123");
+        reserva.setCustomer(customer);
+        reserva.setHotel(hotel);
+        reserva.setStayPeriod(new StayPeriodDTO(LocalDateTime.of(2026, 3, 1, 14, 0), LocalDateTime.of(2026, 3, 4, 10, 0)));
+        reserva.setRoomNumber(7);
+        reserva.setTotalPrice(45000.0);
+    }
+
+    @Test
+    @DisplayName("Arma el cuerpo con la plantilla y omite las líneas sin dato")
+    void cuerpoNuevaReserva_OmiteCamposVacios() {
+        String cuerpo = emailService.cuerpoNuevaReserva(reserva);
+
+        assertTrue(cuerpo.startsWith("Se registró una nueva reserva en Hotel <Test> & Spa.\n\n"));
+        assertTrue(cuerpo.contains("— Huésped: Juan Pérez\n  Email: juan@mail.test\n"));
+        assertTrue(cuerpo.contains("— Check-in:  01/03/2026\n— Check-out: 04/03/2026\n"));
+        assertTrue(cuerpo.contains("— Habitación: 7\n"));
+        assertTrue(cuerpo.contains("— Total: $" + String.format("%.2f", 45000.0) + "\n"));
+        assertTrue(cuerpo.contains("ID de reserva: res123"));
+        assertFalse(cuerpo.contains("Teléfono"));
+        assertFalse(cuerpo.contains("Notas"));
+        assertFalse(cuerpo.contains("null"));
+    }
+
+    @Test
+    @DisplayName("Encola el aviso al hospedaje con un id por reserva, sin esperar a conocer su email")
+    void notificarNuevaReserva_Encola() {
+        when(outbox.encolarParaHospedaje(anyString(), anyString(), anyString(), anyString())).thenReturn(Mono.empty());
+
+        StepVerifier.create(emailService.notificarNuevaReserva(reserva)).verifyComplete();
+
+        verify(outbox).encolarParaHospedaje(eq("nueva-reserva:res123"), eq("hotel1"),
+                eq("Nueva reserva — Hotel <Test> & Spa"), anyString());
+    }
+
+    @Test
+    @DisplayName("Sin hospedaje no encola nada")
+    void notificarNuevaReserva_SinHospedaje() {
+        reserva.setHotel(null);
+
+        StepVerifier.create(emailService.notificarNuevaReserva(reserva)).verifyComplete();
+
+        verify(outbox, never()).encolarParaHospedaje(anyString(), anyString(), anyString(), anyString());
+    }
+}
@@ -1,10 +1,20 @@
 package com.tapalque.msvc_reservas.service;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -12,15 +22,22 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.tapalque.msvc_reservas.client.HospedajeClient;
+import com.tapalque.msvc_reservas.client.MercadoPagoClient;
 import com.tapalque.msvc_reservas.dto.CustomerDTO;
+import com.tapalque.msvc_reservas.dto.HabitacionDTO;
 import com.tapalque.msvc_reservas.dto.HotelDTO;
+import com.tapalque.msvc_reservas.dto.PagoEventoDTO;
 import com.tapalque.msvc_reservas.dto.PaymentDTO;
 import com.tapalque.msvc_reservas.dto.ReservationDTO;
 import com.tapalque.msvc_reservas.dto.StayPeriodDTO;
+import com.tapalque.msvc_reservas.entity.PoliticaGlobal;
 import com.tapalque.msvc_reservas.entity.Reservation;
 import com.tapalque.msvc_reservas.repository.ReservationRepositoryInterface;
 
@@ -39,6 +56,21 @@ class ReservationServiceImplTest {
     @Mock
     private AdminNotificationService adminNotificationService;
 
+    @Mock
+    private HospedajeClient hospedajeClient;
+
+    @Mock
+    private MercadoPagoClient mercadoPagoClient;
+
+    @Mock
+    private PoliticaService politicaService;
+
+    @Mock
+    private OcupacionService ocupacionService;
+
+    @Mock
+    private LibroPagosService libroPagosService;
+
     @InjectMocks
     private ReservationServiceImpl reservationService;
 
@@ -104,6 +136,7 @@ class ReservationServiceImplTest {
         testReservationDTO.setHotel(hotelDTO);
         testReservationDTO.setStayPeriod(stayPeriodDTO);
         testReservationDTO.setPayment(paymentDTO);
+        testReservationDTO.setRoomNumber(7);
 
     }
 
@@ -115,8 +148,12 @@ class ReservationServiceImplTest {
         @DisplayName("Debe crear reserva exitosamente")
         void createReservation_ConDatosValidos_RetornaReservationDTO() {
             // Given
+            habitacionDisponible();
+            when(ocupacionService.reservar(anyString(), eq("hotel1"), eq(7), any(), any(), isNull()))
+                    .thenReturn(Mono.empty());
             when(reservationRepository.save(any(Reservation.class)))
-                    .thenReturn(Mono.just(testReservation));
+                    .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+            when(libroPagosService.registrar(any(Reservation.class))).thenReturn(Mono.empty());
 
             // When & Then
             StepVerifier.create(reservationService.createReservation(testReservationDTO))
@@ -125,6 +162,31 @@ class ReservationServiceImplTest {
                     .verifyComplete();
 
             verify(reservationRepository).save(any(Reservation.class));
+            verify(libroPagosService).registrar(any(Reservation.class));
+        }
+
+        @Test
+        @DisplayName("Si otra reserva ocupó alguna noche no guarda nada")
+        void createReservation_NochesOcupadas_NoGuarda() {
+            // Given
+            habitacionDisponible();
+            when(ocupacionService.reservar(anyString(), eq("hotel1"), eq(7), any(), any(), isNull()))
+                    .thenReturn(Mono.error(new IllegalStateException("La habitación 7 no está disponible para las fechas seleccionadas")));
+
+            // When & Then
+            StepVerifier.create(reservationService.createReservation(testReservationDTO))
+                    .expectError(IllegalStateException.class)
+                    .verify();
+
+            verify(reservationRepository, never()).save(any(Reservation.class));
+        }
+
+        private void habitacionDisponible() {
+            HabitacionDTO habitacion = new HabitacionDTO();
+            habitacion.setNumero(7);
+            habitacion.setPrecio(new BigDecimal("500"));
+            when(politicaService.obtenerPolitica("hotel1")).thenReturn(Mono.just(new PoliticaGlobal()));
+            when(hospedajeClient.fetchHabitaciones("hotel1")).thenReturn(Mono.just(List.of(habitacion)));
         }
     }
 
@@ -136,19 +198,21 @@ class ReservationServiceImplTest {
         @DisplayName("Debe retornar reserva cuando existe")
         void getReservationById_ConIdExistente_RetornaReservation() {
             // Given
-            when(reservationRepository.findAll()).thenReturn(Flux.just(testReservation));
+            when(reservationRepository.findById("res123")).thenReturn(Mono.just(testReservation));
 
             // When & Then
             StepVerifier.create(reservationService.getReservationById("res123"))
                     .expectNextMatches(result -> result.getId().equals("res123"))
                     .verifyComplete();
+
+            verify(reservationRepository, never()).findAll();
         }
 
         @Test
         @DisplayName("Debe retornar vacío cuando no existe")
         void getReservationById_ConIdNoExistente_RetornaVacio() {
             // Given
-            when(reservationRepository.findAll()).thenReturn(Flux.just(testReservation));
+            when(reservationRepository.findById("noexiste")).thenReturn(Mono.empty());
 
             // When & Then
             StepVerifier.create(reservationService.getReservationById("noexiste"))
@@ -165,7 +229,9 @@ class ReservationServiceImplTest {
         void updateReservation_ConDatosValidos_RetornaReservationActualizada() {
             // Given
             when(reservationRepository.findById("res123")).thenReturn(Mono.just(testReservation));
+            when(ocupacionService.sincronizar(any(Reservation.class))).thenReturn(Mono.empty());
             when(reservationRepository.save(any(Reservation.class))).thenReturn(Mono.just(testReservation));
+            when(libroPagosService.registrar(testReservation)).thenReturn(Mono.empty());
 
             // When & Then
             StepVerifier.create(reservationService.updateReservation(testReservationDTO))
@@ -173,6 +239,22 @@ class ReservationServiceImplTest {
                     .verifyComplete();
 
             verify(reservationRepository).save(any(Reservation.class));
+            verify(libroPagosService).registrar(testReservation);
+        }
+
+        @Test
+        @DisplayName("Si falla el libro de pagos la actualización igual se confirma")
+        void updateReservation_FallaLibroPagos_RetornaReservation() {
+            // Given
+            when(reservationRepository.findById("res123")).thenReturn(Mono.just(testReservation));
+            when(ocupacionService.sincronizar(any(Reservation.class))).thenReturn(Mono.empty());
+            when(reservationRepository.save(any(Reservation.class))).thenReturn(Mono.just(testReservation));
+            when(libroPagosService.registrar(testReservation)).thenReturn(Mono.error(new RuntimeException("mongo caído")));
+
+            // When & Then
+            StepVerifier.create(reservationService.updateReservation(testReservationDTO))
+                    .expectNextCount(1)
+                    .verifyComplete();
         }
 
         @Test
@@ -196,13 +278,18 @@ class ReservationServiceImplTest {
         @DisplayName("Debe eliminar reserva exitosamente")
         void deleteReservation_ConIdExistente_RetornaVoid() {
             // Given
-            when(reservationRepository.deleteById("res123")).thenReturn(Mono.empty());
+            // La baja es lógica: la reserva queda cancelada e inactiva
+            when(reservationRepository.findById("res123")).thenReturn(Mono.just(testReservation));
+            when(reservationRepository.save(any(Reservation.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+            when(ocupacionService.liberar("res123")).thenReturn(Mono.empty());
 
             // When & Then
             StepVerifier.create(reservationService.deleteReservation("res123"))
                     .verifyComplete();
 
-            verify(reservationRepository).deleteById("res123");
+            verify(reservationRepository).save(argThat(r -> r.getIsCancelled() && !r.getIsActive()));
+            verify(reservationRepository, never()).deleteById("res123");
+            verify(ocupacionService).liberar("res123");
         }
     }
 
@@ -273,4 +360,78 @@ class ReservationServiceImplTest {
                     .verifyComplete();
         }
     }
+
+    @Nested
+    @DisplayName("Tests de getReservationsWithPaymentsInRange")
+    class GetReservationsWithPaymentsInRangeTests {
+
+        @Test
+        @DisplayName("Debe buscar por id las reservas que el libro de pagos indica")
+        void getReservationsWithPaymentsInRange_UsaLibroPagos() {
+            // Given
+            LocalDateTime desde = LocalDateTime.now().minusDays(1);
+            LocalDateTime hasta = LocalDateTime.now();
+            when(libroPagosService.reservasConPagos("hotel1", desde, hasta)).thenReturn(Flux.just("res123"));
+            when(reservationRepository.findAllById(List.of("res123"))).thenReturn(Flux.just(testReservation));
+
+            // When & Then
+            StepVerifier.create(reservationService.getReservationsWithPaymentsInRange("hotel1", desde, hasta))
+                    .expectNextMatches(dto -> "res123".equals(dto.getId()))
+                    .verifyComplete();
+        }
+    }
+
+    @Nested
+    @DisplayName("Tests de confirmarPagoReserva")
+    class ConfirmarPagoReservaTests {
+
+        @Test
+        @DisplayName("El aviso al hospedaje queda en el outbox aunque hosteleria no responda")
+        void confirmarPagoReserva_EncolaSinConsultarHospedaje() {
+            // Given
+            EmailOutboxService outbox = mock(EmailOutboxService.class);
+            when(outbox.encolarParaHospedaje(anyString(), anyString(), anyString(), anyString())).thenReturn(Mono.empty());
+            ReflectionTestUtils.setField(reservationService, "emailService", new ReservaEmailService(outbox));
+            lenient().when(hospedajeClient.fetchEmailNotificacion(anyString()))
+                    .thenReturn(Mono.error(new IllegalStateException("503 msvc-hosteleria")));
+            when(reservationRepository.findById("res123")).thenReturn(Mono.just(testReservation));
+            when(ocupacionService.sincronizar(any(Reservation.class))).thenReturn(Mono.empty());
+            when(reservationRepository.save(any(Reservation.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+            when(libroPagosService.registrar(any(Reservation.class))).thenReturn(Mono.empty());
+            PagoEventoDTO evento = new PagoEventoDTO();
+            evento.setMonto(BigDecimal.valueOf(1000));
+
+            // When
+            reservationService.confirmarPagoReserva("res123", evento);
+
+            // Then
+            verify(outbox).encolarParaHospedaje(eq("nueva-reserva:res123"), eq("hotel1"), anyString(), anyString());
+            verify(hospedajeClient, never()).fetchEmailNotificacion(anyString());
+            verify(adminNotificationService).notificarNuevaReserva(any(ReservationDTO.class));
+        }
+
+        @Test
+        @DisplayName("Guarda el pago antes de volver firme la ocupación, para que el vencimiento no la suelte")
+        void confirmarPagoReserva_GuardaAntesDeSincronizar() {
+            // Given
+            EmailOutboxService outbox = mock(EmailOutboxService.class);
+            when(outbox.encolarParaHospedaje(anyString(), anyString(), anyString(), anyString())).thenReturn(Mono.empty());
+            ReflectionTestUtils.setField(reservationService, "emailService", new ReservaEmailService(outbox));
+            when(reservationRepository.findById("res123")).thenReturn(Mono.just(testReservation));
+            when(ocupacionService.sincronizar(any(Reservation.class))).thenReturn(Mono.empty());
+            when(reservationRepository.save(any(Reservation.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+            when(libroPagosService.registrar(any(Reservation.class))).thenReturn(Mono.empty());
+            PagoEventoDTO evento = new PagoEventoDTO();
+            evento.setMonto(BigDecimal.valueOf(1000));
+            evento.setTransaccionId(77L);
+
+            // When
+            reservationService.confirmarPagoReserva("res123", evento);
+
+            // Then
+            InOrder orden = inOrder(reservationRepository, ocupacionService);
+            orden.verify(reservationRepository).save(argThat(r -> Long.valueOf(77L).equals(r.getTransaccionId()) && r.getIsActive()));
+            orden.verify(ocupacionService).sincronizar(any(Reservation.class));
+        }
+    }
 }
@@ -0,0 +1,215 @@
+package com.tapalque.msvc_reservas.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.client.result.UpdateResult;
+import com.tapalque.msvc_reservas.config.RabbitMQConfig;
+import com.tapalque.msvc_reservas.entity.Reservation;
+import com.tapalque.msvc_reservas.enums.PaymentType;
+import com.tapalque.msvc_reservas.repository.ReservationRepositoryInterface;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("RetencionService Tests")
+class RetencionServiceTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private ReservationRepositoryInterface reservationRepository;
+
+    @Mock
+    private OcupacionService ocupacionService;
+
+    private RetencionService retencionService;
+
+    @BeforeEach
+    void setUp() {
+        retencionService = new RetencionService(mongoTemplate, rabbitTemplate, reservationRepository, ocupacionService);
+    }
+
+    private static Reservation pendiente(String id, LocalDateTime creada) {
+        Reservation reserva = new Reservation();
+        reserva.setId(id);
+        reserva.setDateCreated(creada);
+        return reserva;
+    }
+
+    private static Reservation cancelada(String id) {
+        Reservation reserva = new Reservation();
+        reserva.setId(id);
+        reserva.setIsCancelled(true);
+        reserva.setIsActive(false);
+        return reserva;
+    }
+
+    private static MessageProperties aplicar(MessagePostProcessor postProcesador) {
+        return postProcesador.postProcessMessage(new Message(new byte[0], new MessageProperties())).getMessageProperties();
+    }
+
+    @Test
+    @DisplayName("Cancela sólo si sigue sin pago y entonces suelta las noches")
+    void vencer_SinPago_CancelaYLibera() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Reservation.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(ocupacionService.liberar("res1")).thenReturn(Mono.empty());
+        when(reservationRepository.findById("res1")).thenReturn(Mono.just(cancelada("res1")));
+
+        StepVerifier.create(retencionService.vencer("res1")).expectNext(true).verifyComplete();
+
+        ArgumentCaptor<Query> condicion = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> cambio = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(condicion.capture(), cambio.capture(), eq(Reservation.class));
+        Document filtro = condicion.getValue().getQueryObject();
+        assertEquals("res1", filtro.get("_id"));
+        assertEquals(PaymentType.MERCADO_PAGO, filtro.get("payment.paymentType"));
+        assertEquals(false, filtro.get("payment.isPaid"));
+        assertEquals(false, filtro.get("isCancelled"));
+        assertTrue(filtro.containsKey("transaccionId") && filtro.get("transaccionId") == null);
+        Document set = cambio.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(true, set.get("isCancelled"));
+        assertEquals(false, set.get("isActive"));
+        verify(ocupacionService).liberar("res1");
+    }
+
+    @Test
+    @DisplayName("Si ya se pagó (o llegó un evento de pago) no toca nada")
+    void vencer_YaPagada_NoLibera() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Reservation.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+        StepVerifier.create(retencionService.vencer("res1")).expectNext(false).verifyComplete();
+
+        verify(ocupacionService, never()).liberar(any());
+    }
+
+    @Test
+    @DisplayName("Si el pago la reactivó mientras vencía, vuelve a ocupar las noches que soltó")
+    void vencer_PagoEnElMedio_VuelveASincronizar() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Reservation.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(ocupacionService.liberar("res1")).thenReturn(Mono.empty());
+        // La confirmación leyó la reserva antes de la cancelación y la guardó activa después
+        Reservation pagada = new Reservation();
+        pagada.setId("res1");
+        pagada.setIsCancelled(false);
+        pagada.setIsActive(true);
+        when(reservationRepository.findById("res1")).thenReturn(Mono.just(pagada));
+        when(ocupacionService.sincronizar(pagada)).thenReturn(Mono.empty());
+
+        StepVerifier.create(retencionService.vencer("res1")).expectNext(false).verifyComplete();
+
+        InOrder orden = inOrder(ocupacionService);
+        orden.verify(ocupacionService).liberar("res1");
+        orden.verify(ocupacionService).sincronizar(pagada);
+    }
+
+    @Test
+    @DisplayName("Programar deja el id en la cola con TTL")
+    void programar_PublicaEnColaDeEspera() {
+        StepVerifier.create(retencionService.programar("res1")).verifyComplete();
+
+        verify(rabbitTemplate).convertAndSend("", RabbitMQConfig.QUEUE_RETENCIONES, (Object) "res1");
+    }
+
+    @Test
+    @DisplayName("Si RabbitMQ falla la reserva igual se crea")
+    void programar_RabbitCaido_NoFalla() {
+        doThrow(new RuntimeException("broker caído"))
+                .when(rabbitTemplate).convertAndSend("", RabbitMQConfig.QUEUE_RETENCIONES, (Object) "res1");
+
+        StepVerifier.create(retencionService.programar("res1")).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Al arrancar cancela las vencidas y reprograma las demás por lo que les falta")
+    void revisarPendientes_CancelaYReprograma() {
+        LocalDateTime ahora = LocalDateTime.now();
+        when(reservationRepository.findAbandonedOnlineReservations(any(LocalDateTime.class)))
+                .thenReturn(Flux.just(pendiente("nueva", ahora.minusMinutes(1)), pendiente("vieja", ahora.minusMinutes(20))));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Reservation.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(ocupacionService.liberar("vieja")).thenReturn(Mono.empty());
+        when(reservationRepository.findById("vieja")).thenReturn(Mono.just(cancelada("vieja")));
+
+        retencionService.revisarPendientes();
+
+        verify(ocupacionService, timeout(1000)).liberar("vieja");
+        ArgumentCaptor<MessagePostProcessor> postProcesador = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(rabbitTemplate, timeout(1000)).convertAndSend(eq(""), eq(RabbitMQConfig.QUEUE_RETENCIONES),
+                eq((Object) "nueva"), postProcesador.capture());
+        long expiracion = Long.parseLong(aplicar(postProcesador.getValue()).getExpiration());
+        assertTrue(expiracion <= Duration.ofMinutes(4).toMillis() && expiracion > Duration.ofMinutes(3).toMillis(),
+                "Le quedan unos 4 minutos, no los 5 de la retención: " + expiracion + " ms");
+    }
+
+    @Test
+    @DisplayName("Un vencimiento que falla vuelve a la cola de espera con el intento contado")
+    void reintentar_ReprogramaConEspera() {
+        StepVerifier.create(retencionService.reintentar("res1", 2)).verifyComplete();
+
+        ArgumentCaptor<MessagePostProcessor> postProcesador = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq(RabbitMQConfig.QUEUE_RETENCIONES), eq((Object) "res1"),
+                postProcesador.capture());
+        MessageProperties propiedades = aplicar(postProcesador.getValue());
+        assertEquals(String.valueOf(RetencionService.REINTENTO.toMillis()), propiedades.getExpiration());
+        assertEquals(3, (Integer) propiedades.getHeader(RetencionService.HEADER_INTENTOS));
+    }
+
+    @Test
+    @DisplayName("Agotados los intentos el aviso queda en la cola de fallidas")
+    void reintentar_Agotado_VaAFallidas() {
+        StepVerifier.create(retencionService.reintentar("res1", RetencionService.MAX_INTENTOS - 1)).verifyComplete();
+
+        verify(rabbitTemplate).convertAndSend("", RabbitMQConfig.QUEUE_RETENCIONES_FALLIDAS, (Object) "res1");
+        verify(rabbitTemplate, never()).convertAndSend(eq(""), eq(RabbitMQConfig.QUEUE_RETENCIONES), any(Object.class),
+                any(MessagePostProcessor.class));
+    }
+
+    @Test
+    @DisplayName("La cola de espera vence a los minutos de la retención y pasa a la de vencidas")
+    void colaDeEspera_TtlYDeadLetter() {
+        Queue cola = new RabbitMQConfig().retencionesQueue();
+
+        assertEquals((int) OcupacionService.RETENCION_PENDIENTE.toMillis(), cola.getArguments().get("x-message-ttl"));
+        assertEquals("", cola.getArguments().get("x-dead-letter-exchange"));
+        assertEquals(RabbitMQConfig.QUEUE_RETENCIONES_VENCIDAS, cola.getArguments().get("x-dead-letter-routing-key"));
+        assertTrue(cola.isDurable());
+    }
+}
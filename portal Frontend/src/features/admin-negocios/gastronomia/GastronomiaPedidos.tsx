@@ -1,6 +1,6 @@
 import jsPDF from 'jspdf';
 import autoTable from 'jspdf-autotable';
-import { useCallback, useEffect, useState } from 'react';
+import { useCallback, useEffect, useRef, useState } from 'react';
 import { printPedido, printCocina } from '../../gastronomia/utils/printPedido';
 import {
   Alert,
@@ -23,6 +23,7 @@ import {
   EstadoPedido,
   fetchPedidosByRestaurant,
   fetchPedidosByRestaurantAndDateRange,
+  fetchPedidoSnapshot,
   updateEstadoPedido,
   crearPedido,
   type CrearPedidoDTO,
@@ -36,6 +37,7 @@ import {
   getSiguienteEstadoPedido,
   getTextoBotonSiguienteEstado,
   type Pedido,
+  type PedidoDelta,
 } from '../types';
 
 interface GastronomiaPedidosProps {
@@ -126,17 +128,33 @@ export function GastronomiaPedidos({
   );
   const { registerAdminTopic } = useNotifications();
 
+  const pedidosRef = useRef<Pedido[]>([]);
+  useEffect(() => {
+    pedidosRef.current = pedidos;
+  }, [pedidos]);
+
+  // Si se perdió algún evento (salto de versión) se pide el snapshot del pedido
+  const resincronizarPedido = useCallback(async (pedidoId: string) => {
+    const snapshot = await fetchPedidoSnapshot(pedidoId);
+    if (!snapshot) return;
+    setPedidos((prev) =>
+      prev.map((p) => (p.id === pedidoId ? { ...p, ...snapshot } : p))
+    );
+  }, []);
+
   // Manejar mensajes WebSocket (actualización de panel local)
   // La notificación global (campana) la gestiona registerAdminTopic en el contexto,
   // lo que garantiza que se reciba aunque el admin esté en otra sección.
+  // pedido:nuevo trae un snapshot compacto; pedido:actualizado y pedido:pago traen
+  // sólo id, estado y versión.
   useEffect(() => {
     if (!lastMessage) return;
-    const pedido = lastMessage.payload as Pedido;
 
     if (lastMessage.type === 'pedido:nuevo') {
+      const pedido = lastMessage.payload as Pedido;
       setPedidos((prev) => {
         const existe = prev.some((p) => p.id === pedido.id);
-        if (existe) return prev.map((p) => (p.id === pedido.id ? pedido : p));
+        if (existe) return prev.map((p) => (p.id === pedido.id ? { ...p, ...pedido } : p));
         return [pedido, ...prev];
       });
       try {
@@ -144,10 +162,37 @@ export function GastronomiaPedidos({
       } catch {
         /* ignore */
       }
-    } else if (lastMessage.type === 'pedido:actualizado') {
-      setPedidos((prev) => prev.map((p) => (p.id === pedido.id ? pedido : p)));
+    } else if (
+      lastMessage.type === 'pedido:actualizado' ||
+      lastMessage.type === 'pedido:pago'
+    ) {
+      const delta = lastMessage.payload as PedidoDelta;
+      const actual = pedidosRef.current.find((p) => p.id === delta.id);
+      if (!actual) return;
+
+      const versionActual = actual.version ?? 0;
+      if (delta.version <= versionActual) return; // evento repetido o viejo
+      if (actual.version !== undefined && delta.version > versionActual + 1) {
+        resincronizarPedido(delta.id);
+        return;
+      }
+
+      setPedidos((prev) =>
+        prev.map((p) =>
+          p.id === delta.id
+            ? {
+                ...p,
+                status: delta.status,
+                version: delta.version,
+                ...(delta.paidWithMercadoPago !== undefined && {
+                  paidWithMercadoPago: delta.paidWithMercadoPago,
+                }),
+              }
+            : p
+        )
+      );
     }
-  }, [lastMessage]);
+  }, [lastMessage, resincronizarPedido]);
 
   const cargarPedidos = useCallback(async () => {
     try {
@@ -375,10 +420,21 @@ export function GastronomiaPedidos({
     );
     if (!siguiente) return;
 
-    await updateEstadoPedido(pedido.id, siguiente);
+    const actualizado = await updateEstadoPedido(pedido.id, siguiente, pedido.version);
+    if (!actualizado) {
+      setMensaje({
+        tipo: 'danger',
+        texto: 'No se pudo cambiar el estado: el pedido cambió o la transición no es válida.',
+      });
+      return;
+    }
 
     setPedidos((prev) =>
-      prev.map((p) => (p.id === pedido.id ? { ...p, status: siguiente } : p))
+      prev.map((p) =>
+        p.id === pedido.id
+          ? { ...p, status: actualizado.status, version: actualizado.version }
+          : p
+      )
     );
   };
 
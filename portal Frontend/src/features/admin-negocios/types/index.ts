@@ -84,6 +84,15 @@ export interface Pedido {
   mercadoPagoId?: string;
   fechaPago?: string;
   payment?: PagoPedido;
+  version?: number;
+}
+
+// Deltas de pedido enviados por WebSocket (pedido:actualizado / pedido:pago)
+export interface PedidoDelta {
+  id: string;
+  status: EstadoPedido;
+  version: number;
+  paidWithMercadoPago?: boolean;
 }
 
 // Cliente de reserva
@@ -207,6 +216,7 @@ export interface Habitacion {
 export type WebSocketMessageType =
   | 'pedido:nuevo'
   | 'pedido:actualizado'
+  | 'pedido:pago'
   | 'reserva:nueva'
   | 'reserva:actualizada'
   | 'connection:established'
@@ -214,7 +224,8 @@ export type WebSocketMessageType =
 
 export interface WebSocketMessage {
   type: WebSocketMessageType;
-  payload: Pedido | Reserva | null;
+  v?: number;
+  payload: Pedido | PedidoDelta | Reserva | null;
   businessId: string;
   businessType: BusinessType;
   timestamp: string;
@@ -336,6 +336,7 @@ export const MenuCard: FC<Props> = ({ items, restaurantId, restaurantName, allow
                 allowDelivery={allowDelivery}
                 deliveryPrice={deliveryPrice}
                 estimatedWaitTime={estimatedWaitTime}
+                restaurantId={restaurantId}
                 onCancel={() => setIsFinalizing(false)}
                 onConfirm={handleConfirmOrder}
               />
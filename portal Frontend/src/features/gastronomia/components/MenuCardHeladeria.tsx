@@ -384,6 +384,7 @@ export const MenuCardHeladeria: FC<Props> = ({
                 allowDelivery={allowDelivery}
                 deliveryPrice={deliveryPrice}
                 estimatedWaitTime={estimatedWaitTime}
+                restaurantId={restaurantId}
                 onCancel={() => setIsFinalizing(false)}
                 onConfirm={handleConfirmOrder}
               />
@@ -1,6 +1,7 @@
 import { useEffect, useState, type FC } from 'react';
 import { Button, Form } from 'react-bootstrap';
 
+import { fetchEtaPedido, type EtaPedido } from '../../../services/fetchPedidos';
 import type { PedidoItem } from '../types/Imenu';
 import { ItemCounter } from './ItemCounter';
 
@@ -11,6 +12,7 @@ interface Props {
   allowDelivery?: boolean;
   deliveryPrice: number;
   estimatedWaitTime?: number;
+  restaurantId?: string;
   onConfirm: (data: {
     items: PedidoItem[];
     total: number;
@@ -26,6 +28,7 @@ export const OrderSummaryCard: FC<Props> = ({
   allowDelivery,
   deliveryPrice,
   estimatedWaitTime = 0,
+  restaurantId,
   onConfirm,
   onCancel,
 }) => {
@@ -40,6 +43,25 @@ export const OrderSummaryCard: FC<Props> = ({
     }
   }, [allowDelivery]);
 
+  // Demora según la historia del restaurante; sin datos queda el tiempo que cargó el dueño
+  const [eta, setEta] = useState<EtaPedido | null>(null);
+  useEffect(() => {
+    if (!restaurantId) return;
+    let vigente = true;
+    fetchEtaPedido(restaurantId, delivery && !!allowDelivery).then((data) => {
+      if (vigente) setEta(data);
+    });
+    return () => {
+      vigente = false;
+    };
+  }, [restaurantId, delivery, allowDelivery]);
+  const etaRango =
+    eta?.p50Minutos != null && eta.p90Minutos != null
+      ? eta.p50Minutos === eta.p90Minutos
+        ? `${eta.p50Minutos} min`
+        : `entre ${eta.p50Minutos} y ${eta.p90Minutos} min`
+      : null;
+
   const handleQuantityChange = (id: number, cantidad: number) =>
     setPedido((prev) =>
       prev.map((i) => (i.id === id ? { ...i, cantidad } : i))
@@ -112,11 +134,18 @@ export const OrderSummaryCard: FC<Props> = ({
         />
       </div>
 
-      {estimatedWaitTime > 0 && (
+      {etaRango ? (
         <div className="mb-3 text-muted">
           <i className="bi bi-clock me-1"></i>
-          Tiempo de espera aproximado: <strong>{estimatedWaitTime} min</strong>
+          Tiempo de espera aproximado: <strong>{etaRango}</strong>
         </div>
+      ) : (
+        estimatedWaitTime > 0 && (
+          <div className="mb-3 text-muted">
+            <i className="bi bi-clock me-1"></i>
+            Tiempo de espera aproximado: <strong>{estimatedWaitTime} min</strong>
+          </div>
+        )
       )}
 
       <div className="mb-3">
@@ -25,14 +25,15 @@ export const GestionPedidosTab = () => {
         setLoading(false);
     };
 
-    const cambiarEstado = async (pedidoId: string, nuevoEstado: EstadoPedido) => {
-        const exito = await updateEstadoPedido(pedidoId, nuevoEstado);
-        if (exito) {
+    const cambiarEstado = async (pedido: Pedido, nuevoEstado: EstadoPedido) => {
+        const actualizado = await updateEstadoPedido(pedido.id, nuevoEstado, pedido.version);
+        if (actualizado) {
             setPedidos(prev =>
-                prev.map(p => p.id === pedidoId ? { ...p, status: nuevoEstado, dateUpdated: new Date().toISOString() } : p)
+                prev.map(p => p.id === pedido.id ? { ...p, status: actualizado.status, dateUpdated: actualizado.dateUpdated, version: actualizado.version } : p)
             );
         } else {
-            alert('Error al actualizar el estado del pedido');
+            alert('No se pudo actualizar el estado: el pedido cambió o la transición no es válida');
+            cargarPedidos();
         }
     };
 
@@ -220,7 +221,7 @@ export const GestionPedidosTab = () => {
                                             variant="primary"
                                             size="sm"
                                             className="w-100"
-                                            onClick={() => cambiarEstado(pedido.id, getSiguienteEstado(pedido)!)}
+                                            onClick={() => cambiarEstado(pedido, getSiguienteEstado(pedido)!)}
                                         >
                                             {getBotonTexto(pedido)}
                                         </Button>
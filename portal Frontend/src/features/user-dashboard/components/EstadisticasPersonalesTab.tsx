@@ -1,7 +1,7 @@
 import { useState, useEffect } from "react";
 import { Card, Row, Col, ProgressBar } from "react-bootstrap";
 import authService from "../../../services/authService";
-import { fetchPedidosByUser } from "../../../services/fetchPedidos";
+import { fetchResumenPedidosByUser } from "../../../services/fetchPedidos";
 import { fetchReservasByUser } from "../../../services/fetchReservas";
 
 export const EstadisticasPersonalesTab = () => {
@@ -29,13 +29,13 @@ export const EstadisticasPersonalesTab = () => {
 
             // Cargar pedidos y reservas
             const [pedidos, reservas] = await Promise.all([
-                fetchPedidosByUser(String(user.id)),
+                fetchResumenPedidosByUser(String(user.id)),
                 fetchReservasByUser(String(user.id))
             ]);
 
             // Calcular estadísticas de pedidos
             const gastadoPedidos = pedidos.reduce((sum, p) =>
-                sum + (p.totalAmount || p.totalPrice || 0), 0
+                sum + (p.totalPrice || 0), 0
             );
             const pedidosEntregados = pedidos.filter(p => p.status === "DELIVERED").length;
 
@@ -48,7 +48,7 @@ export const EstadisticasPersonalesTab = () => {
             // Restaurante favorito (más pedidos)
             const restauranteCount: { [key: string]: number } = {};
             pedidos.forEach(p => {
-                const nombre = p.restaurantName || "Desconocido";
+                const nombre = p.restaurant?.restaurantName || "Desconocido";
                 restauranteCount[nombre] = (restauranteCount[nombre] || 0) + 1;
             });
             const restauranteFavorito = Object.keys(restauranteCount).length > 0
@@ -1,7 +1,7 @@
 import { useState, useEffect } from "react";
 import { Card, Row, Col, Badge, Button, Alert, Modal } from "react-bootstrap";
 import authService from "../../../services/authService";
-import { fetchPedidosByUser, cancelarPedido, type Pedido, EstadoPedido } from "../../../services/fetchPedidos";
+import { fetchResumenPedidosByUser, fetchPedidoById, cancelarPedido, type Pedido, type PedidoResumen, EstadoPedido } from "../../../services/fetchPedidos";
 import { useNotifications } from "../../../shared/context/NotificationContext";
 
 const estadoLabel: Record<string, { bg: string; text: string }> = {
@@ -14,7 +14,7 @@ const estadoLabel: Record<string, { bg: string; text: string }> = {
 };
 
 export const MisPedidosTab = () => {
-    const [pedidos, setPedidos] = useState<Pedido[]>([]);
+    const [pedidos, setPedidos] = useState<PedidoResumen[]>([]);
     const [loading, setLoading] = useState(true);
     const [filtroEstado, setFiltroEstado] = useState<EstadoPedido | "TODOS">("TODOS");
     const [pedidoSeleccionado, setPedidoSeleccionado] = useState<Pedido | null>(null);
@@ -36,7 +36,7 @@ export const MisPedidosTab = () => {
             const user = authService.getUser();
             if (!user?.id) return;
 
-            const data = await fetchPedidosByUser(String(user.id));
+            const data = await fetchResumenPedidosByUser(String(user.id));
             setPedidos(data);
 
             const totalElement = document.getElementById("total-pedidos");
@@ -57,13 +57,19 @@ export const MisPedidosTab = () => {
         return <Badge bg={config.bg}>{config.text}</Badge>;
     };
 
-    const verDetalle = (pedido: Pedido) => {
-        setPedidoSeleccionado(pedido);
+    // El listado trae el resumen; ítems, dirección y pago se piden al abrir el detalle
+    const verDetalle = async (pedido: PedidoResumen) => {
+        const completo = await fetchPedidoById(pedido.id);
+        if (!completo) {
+            alert('No se pudo cargar el detalle del pedido.');
+            return;
+        }
+        setPedidoSeleccionado(completo);
         setModalDetalle(true);
     };
 
-    const handleCancelar = async (pedido: Pedido) => {
-        const restaurante = pedido.restaurantName ?? pedido.restaurant?.restaurantName ?? 'el restaurante';
+    const handleCancelar = async (pedido: PedidoResumen | Pedido) => {
+        const restaurante = pedido.restaurant?.restaurantName ?? 'el restaurante';
         if (!window.confirm(`¿Cancelar el pedido en ${restaurante}? Esta acción no se puede deshacer.`)) return;
         setCancelando(pedido.id);
         const ok = await cancelarPedido(pedido.id);
@@ -172,7 +178,7 @@ export const MisPedidosTab = () => {
                                             </Col>
                                             <Col md={3}>
                                                 <small className="text-muted d-block">Restaurante</small>
-                                                <strong>{pedido.restaurantName || pedido.restaurant?.restaurantName || "N/A"}</strong>
+                                                <strong>{pedido.restaurant?.restaurantName || "N/A"}</strong>
                                             </Col>
                                             <Col md={2}>
                                                 <small className="text-muted d-block">Fecha</small>
@@ -181,7 +187,7 @@ export const MisPedidosTab = () => {
                                             <Col md={2}>
                                                 <small className="text-muted d-block">Total</small>
                                                 <strong className="text-success">
-                                                    ${(pedido.totalPrice ?? pedido.totalAmount ?? 0).toLocaleString()}
+                                                    ${(pedido.totalPrice ?? 0).toLocaleString()}
                                                 </strong>
                                             </Col>
                                             <Col md={2} className="text-end d-flex flex-column gap-1">
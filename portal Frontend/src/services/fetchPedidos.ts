@@ -1,5 +1,5 @@
 // Servicios para gestión de pedidos
-import { api } from '../config/api';
+import { api, apiRequest } from '../config/api';
 
 export enum EstadoPedido {
   RECIBIDO = 'RECIBIDO',
@@ -55,6 +55,7 @@ export interface Pedido {
   payment?: Payment;
   isDelivery: boolean;
   deliveryAddress?: string;
+  version?: number;
 }
 
 export interface CrearPedidoDTO {
@@ -84,6 +85,32 @@ export async function fetchPedidosByUser(userId: string): Promise<Pedido[]> {
   return data ?? [];
 }
 
+// Vista liviana de los listados (?view=summary): sin ítems, dirección ni datos de Mercado Pago.
+// El detalle completo se pide con fetchPedidoById.
+export type PedidoResumen = Pick<
+  Pedido,
+  | 'id'
+  | 'userId'
+  | 'restaurant'
+  | 'status'
+  | 'totalPrice'
+  | 'isDelivery'
+  | 'paidWithMercadoPago'
+  | 'paidWithCash'
+  | 'dateCreated'
+  | 'dateUpdated'
+  | 'version'
+>;
+
+export async function fetchResumenPedidosByUser(
+  userId: string
+): Promise<PedidoResumen[]> {
+  const data = await api.get<PedidoResumen[]>(
+    `/pedidos/orders/user/${userId}?view=summary`
+  );
+  return data ?? [];
+}
+
 export async function fetchPedidoById(
   pedidoId: string
 ): Promise<Pedido | null> {
@@ -94,17 +121,31 @@ export async function fetchPedidoById(
   }
 }
 
+// Snapshot compacto del pedido (mismo formato que el evento pedido:nuevo).
+// Se usa para resincronizar cuando llega un delta con un salto de versión.
+export async function fetchPedidoSnapshot(
+  pedidoId: string
+): Promise<Pedido | null> {
+  try {
+    return await api.get<Pedido>(`/pedidos/orders/${pedidoId}/snapshot`);
+  } catch {
+    return null;
+  }
+}
+
+// Con la versión que se vio, el backend rechaza (409) el cambio si otro lo modificó antes
 export async function updateEstadoPedido(
   pedidoId: string,
-  nuevoEstado: EstadoPedido
-): Promise<boolean> {
+  nuevoEstado: EstadoPedido,
+  version?: number
+): Promise<Pedido | null> {
   try {
-    await api.patch(`/pedidos/orders/${pedidoId}/estado`, {
+    return await api.patch<Pedido>(`/pedidos/orders/${pedidoId}/estado`, {
       status: nuevoEstado,
+      version,
     });
-    return true;
   } catch {
-    return false;
+    return null;
   }
 }
 
@@ -120,16 +161,61 @@ export async function fetchPedidosByRestaurantAndDateRange(
   return data ?? [];
 }
 
-export async function crearPedido(
-  pedido: CrearPedidoDTO
-): Promise<Pedido | null> {
+// Demora estimada según la historia del restaurante a esta hora del día y de la semana.
+// p50/p90 vienen en null cuando no hay muestras suficientes (base 'sin-datos').
+export interface EtaPedido {
+  restaurantId: string;
+  delivery: boolean;
+  p50Minutos: number | null;
+  p90Minutos: number | null;
+  muestras: number;
+  base: 'franja' | 'restaurante' | 'sin-datos';
+}
+
+export async function fetchEtaPedido(
+  restaurantId: string,
+  delivery: boolean
+): Promise<EtaPedido | null> {
   try {
-    return await api.post<Pedido>('/pedidos/orders/new', pedido);
+    return await api.get<EtaPedido>(
+      `/pedidos/orders/restaurant/${restaurantId}/eta?delivery=${delivery}`
+    );
   } catch {
     return null;
   }
 }
 
+const REINTENTOS_ALTA = 3;
+
+// Errores de red, 409 (la solicitud original sigue en proceso) y 5xx se pueden reintentar
+function esTransitorio(error: unknown): boolean {
+  if (error instanceof TypeError) return true;
+  const status = Number(/status: (\d+)/.exec(String(error))?.[1]);
+  return status === 409 || status >= 500;
+}
+
+export async function crearPedido(
+  pedido: CrearPedidoDTO
+): Promise<Pedido | null> {
+  // La misma clave en todos los reintentos: el backend devuelve el pedido ya creado en vez de duplicarlo
+  const idempotencyKey = crypto.randomUUID();
+  for (let intento = 1; intento <= REINTENTOS_ALTA; intento++) {
+    try {
+      return await apiRequest<Pedido>('/pedidos/orders/new', {
+        method: 'POST',
+        body: JSON.stringify(pedido),
+        headers: { 'Idempotency-Key': idempotencyKey },
+      });
+    } catch (error) {
+      if (intento === REINTENTOS_ALTA || !esTransitorio(error)) {
+        return null;
+      }
+      await new Promise((resolve) => setTimeout(resolve, 500 * intento));
+    }
+  }
+  return null;
+}
+
 export async function cancelarPedido(pedidoId: string): Promise<boolean> {
   return updateEstadoPedido(pedidoId, EstadoPedido.FAILED);
 }
@@ -253,12 +253,12 @@ export function NotificationProvider({ children }: { children: ReactNode }) {
                   businessId,
                 });
               } else if (data.type === 'pedido:actualizado' && data.payload?.status === 'FAILED') {
+                // El delta sólo trae id, estado y versión; userName llega únicamente en payloads viejos
                 const p = data.payload;
-                const cliente = p?.userName ?? 'Cliente';
                 addNotification({
                   type: 'pedido',
                   title: 'Pedido cancelado',
-                  message: `${cliente} canceló su pedido`,
+                  message: p?.userName ? `${p.userName} canceló su pedido` : 'Se canceló un pedido',
                   businessId,
                 });
               }